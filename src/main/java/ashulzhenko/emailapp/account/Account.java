@@ -0,0 +1,585 @@
+package ashulzhenko.emailapp.account;
+
+import ashulzhenko.emailapp.bean.EmailCustom;
+import ashulzhenko.emailapp.bean.MergeProgress;
+import ashulzhenko.emailapp.bean.MergeRecipient;
+import ashulzhenko.emailapp.bean.SyncProgress;
+import ashulzhenko.emailapp.bean.UserConfigBean;
+import ashulzhenko.emailapp.data.ChangeLogModule;
+import ashulzhenko.emailapp.data.ConnectionBudget;
+import ashulzhenko.emailapp.data.FolderStorageModule;
+import ashulzhenko.emailapp.data.MailStorageModule;
+import ashulzhenko.emailapp.data.MergeStorageModule;
+import ashulzhenko.emailapp.data.OutboxModule;
+import ashulzhenko.emailapp.data.SearchStorageModule;
+import ashulzhenko.emailapp.data.StatisticsModule;
+import ashulzhenko.emailapp.data.SyncStorageModule;
+import ashulzhenko.emailapp.data.ThreadStorageModule;
+import ashulzhenko.emailapp.interfaces.ChangeLogDAO;
+import ashulzhenko.emailapp.interfaces.FolderStorageDAO;
+import ashulzhenko.emailapp.interfaces.MailStorageDAO;
+import ashulzhenko.emailapp.interfaces.MergeStorageDAO;
+import ashulzhenko.emailapp.interfaces.OutboxDAO;
+import ashulzhenko.emailapp.interfaces.SearchStorageDAO;
+import ashulzhenko.emailapp.interfaces.StatisticsDAO;
+import ashulzhenko.emailapp.interfaces.SyncStorageDAO;
+import ashulzhenko.emailapp.interfaces.ThreadStorageDAO;
+import ashulzhenko.emailapp.interfaces.Mailer;
+import ashulzhenko.emailapp.mail.MailModule;
+import ashulzhenko.emailapp.mail.MergeTemplate;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Account class holds everything needed to work with one email account:
+ * its user information, the Mailer and the data access objects.
+ * Every account has its own limited number of mail server sessions and
+ * database connections, and its own scheduler that checks for new emails
+ * and archives old ones, so that a large account cannot slow down the other ones.
+ *
+ * @author Alena Shulzhenko
+ * @version 19/10/2026
+ * @since 1.8
+ */
+public class Account {
+    //time in hours between two archiving runs
+    private static final long ARCHIVE_INTERVAL = 24;
+    //time in minutes between two purges of the deleted emails
+    private static final long PURGE_INTERVAL = 10;
+    //deleted emails removed at once, and pause in milliseconds between two batches
+    private static final int PURGE_BATCH = 100;
+    private static final long PURGE_PAUSE = 500;
+    //number of removed emails after which the attachments table is compacted
+    private static final int COMPACT_THRESHOLD = 5000;
+    //time in days during which the changes of the store are kept
+    private static final long CHANGE_RETENTION = 7;
+    //time in seconds between two checks for new emails if the server cannot push them
+    private static final long POLL_INTERVAL = 60;
+    //time in seconds between two checks of all folders while INBOX is pushed
+    private static final long FOLDERS_INTERVAL = 300;
+    //partial emails whose messages and attachments are received at once in the background
+    private static final int PREFETCH_BATCH = 10;
+    private final UserConfigBean userInfo;
+    private final Mailer mail;
+    private final MailStorageDAO maildao;
+    private final FolderStorageDAO folderdao;
+    private final ThreadStorageDAO threaddao;
+    private final StatisticsDAO statsdao;
+    private final ChangeLogDAO changedao;
+    private final SearchStorageDAO searchdao;
+    private final SyncStorageDAO syncdao;
+    private final OutboxDAO outboxdao;
+    private final MergeStorageDAO mergedao;
+    private final SyncCoordinator coordinator;
+    private final OutboxSender outbox;
+    private final MailMerge merge;
+    private final ScheduledExecutorService scheduler;
+    private ScheduledFuture<?> syncTask;
+    //true while a check requested by the server waits for the scheduler
+    private final AtomicBoolean pushPending = new AtomicBoolean();
+    //true while the next batch of the prefetch waits for the scheduler
+    private final AtomicBoolean prefetchPending = new AtomicBoolean();
+    private int purgedSinceCompaction;
+    private final Logger log = LoggerFactory.getLogger(getClass().getName());
+
+    /**
+     * Instantiates the account and its resources.
+     *
+     * @param userInfo user's information of this account.
+     * @param maxSessions the maximum number of open IMAP and SMTP sessions.
+     * @param maxConnections the maximum number of open database connections.
+     *
+     * @throws SQLException If there is a problem when connecting to the database.
+     */
+    public Account(UserConfigBean userInfo, int maxSessions, int maxConnections) throws SQLException {
+        if (userInfo == null)
+            throw new IllegalArgumentException("User information value is null.");
+
+        this.userInfo = userInfo;
+        ConnectionBudget.setLimit(userInfo.getFromEmail(), maxConnections);
+        this.mail = new MailModule(userInfo, maxSessions);
+        this.maildao = new MailStorageModule(userInfo);
+        this.folderdao = new FolderStorageModule(userInfo);
+        this.threaddao = new ThreadStorageModule(userInfo);
+        this.statsdao = new StatisticsModule(userInfo);
+        this.changedao = new ChangeLogModule(userInfo);
+        this.searchdao = new SearchStorageModule(userInfo);
+        this.syncdao = new SyncStorageModule(userInfo);
+        this.outboxdao = new OutboxModule(userInfo);
+        this.coordinator = new SyncCoordinator(userInfo.getFromEmail(), mail, maildao, folderdao,
+                                               syncdao, maxSessions);
+        this.mergedao = new MergeStorageModule(userInfo);
+        this.outbox = new OutboxSender(userInfo.getFromEmail(), mail, maildao, outboxdao);
+        this.merge = new MailMerge(userInfo.getFromEmail(), mail, mergedao, maxSessions);
+        outbox.start();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "sync-" + userInfo.getFromEmail());
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (userInfo.getArchiveAge() > 0)
+            scheduler.scheduleWithFixedDelay(this::runArchive, 1, ARCHIVE_INTERVAL, TimeUnit.HOURS);
+        scheduler.schedule(this::runPurge, PURGE_INTERVAL, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Returns the email address of this account.
+     *
+     * @return the email address of this account.
+     */
+    public String getName() {
+        return userInfo.getFromEmail();
+    }
+
+    /**
+     * Returns user information of this account.
+     *
+     * @return user information of this account.
+     */
+    public UserConfigBean getUserInfo() {
+        return userInfo;
+    }
+
+    /**
+     * Returns the Mailer of this account.
+     *
+     * @return the Mailer of this account.
+     */
+    public Mailer getMailer() {
+        return mail;
+    }
+
+    /**
+     * Returns the emails data access object of this account.
+     *
+     * @return the emails data access object of this account.
+     */
+    public MailStorageDAO getMailDAO() {
+        return maildao;
+    }
+
+    /**
+     * Returns the directories data access object of this account.
+     *
+     * @return the directories data access object of this account.
+     */
+    public FolderStorageDAO getFolderDAO() {
+        return folderdao;
+    }
+
+    /**
+     * Returns the conversation threads data access object of this account.
+     *
+     * @return the conversation threads data access object of this account.
+     */
+    public ThreadStorageDAO getThreadDAO() {
+        return threaddao;
+    }
+
+    /**
+     * Returns the statistics data access object of this account.
+     *
+     * @return the statistics data access object of this account.
+     */
+    public StatisticsDAO getStatisticsDAO() {
+        return statsdao;
+    }
+
+    /**
+     * Returns the change log data access object of this account.
+     *
+     * @return the change log data access object of this account.
+     */
+    public ChangeLogDAO getChangeLogDAO() {
+        return changedao;
+    }
+
+    /**
+     * Returns the saved searches data access object of this account.
+     *
+     * @return the saved searches data access object of this account.
+     */
+    public SearchStorageDAO getSearchDAO() {
+        return searchdao;
+    }
+
+    /**
+     * Returns the outbox data access object of this account.
+     *
+     * @return the outbox data access object of this account.
+     */
+    public OutboxDAO getOutboxDAO() {
+        return outboxdao;
+    }
+
+    /**
+     * Saves the email in the outbox and sends it in the background,
+     * so that the caller does not wait for the mail server. If it cannot
+     * be sent now, it is tried again later; once sent, it is moved to the
+     * sent directory.
+     *
+     * @param email the created email.
+     *
+     * @return the id of the saved email.
+     *
+     * @throws SQLException If there was a problem when writing to the database.
+     */
+    public int queueEmail(EmailCustom email) throws SQLException {
+        if (email == null)
+            throw new IllegalArgumentException("Email value is null.");
+        email.setDirectory(OutboxDAO.DIRECTORY);
+        int id = maildao.saveEmail(email);
+        outbox.wake();
+        return id;
+    }
+
+    /**
+     * Sends the email of the template to every recipient, several emails at
+     * once, on the calling thread. The emails are not saved; the progress is,
+     * so that a mail merge that was stopped is resumed by running it again
+     * with the same name and recipients.
+     *
+     * @param name the name of the mail merge.
+     * @param template the email sent to every recipient.
+     * @param recipients the recipients, in the same order for every run.
+     *
+     * @return the progress of the mail merge once all recipients are done.
+     *
+     * @throws SQLException If there was a problem when working with the database.
+     * @throws InterruptedException If the thread was interrupted.
+     */
+    public MergeProgress sendMerge(String name, MergeTemplate template, Iterator<MergeRecipient> recipients)
+            throws SQLException, InterruptedException {
+        if (name == null || template == null || recipients == null)
+            throw new IllegalArgumentException("Mail merge value is null.");
+        return merge.run(name, template, recipients);
+    }
+
+    /**
+     * Checks periodically for new emails in all folders of the server 
+     * on the account's scheduler.
+     * The previous periodic check, if any, is cancelled.
+     *
+     * @param interval the time in seconds between two checks.
+     * @param listener receives the new emails of every folder once they are saved;
+     *                 it is called on the thread that synchronized the folder.
+     */
+    public synchronized void startSync(long interval, Consumer<List<EmailCustom>> listener) {
+        if (interval < 1)
+            throw new IllegalArgumentException("Invalid synchronization interval: " + interval);
+        stopSync();
+        syncTask = scheduler.scheduleWithFixedDelay(() -> runSync(listener, true), 
+                                                    interval, interval, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stops checking for new emails periodically.
+     */
+    public synchronized void stopSync() {
+        if (syncTask != null) {
+            syncTask.cancel(false);
+            syncTask = null;
+        }
+    }
+
+    /**
+     * Receives new emails as soon as the server has them: an IMAP IDLE
+     * connection to the inbox tells when to check for new emails, and the
+     * other folders are checked every few minutes.
+     * If the server does not support IDLE or cannot be reached, checks
+     * for new emails in all folders periodically instead.
+     *
+     * @param listener receives the new emails of every folder once they are saved;
+     *                 it is called on the thread that synchronized the folder.
+     *
+     * @return the Future that completes when the emails are pushed or checked periodically.
+     */
+    public Future<?> startPush(Consumer<List<EmailCustom>> listener) {
+        return scheduler.submit(() -> {
+            try {
+                if (mail.startPush(SyncCoordinator.INBOX_FOLDER, () -> requestSync(listener))) {
+                    log.info("New emails of " + getName() + " are pushed by the server");
+                    //only INBOX is watched
+                    startSync(FOLDERS_INTERVAL, listener);
+                    return;
+                }
+                log.info("Server of " + getName() + " does not support IDLE, checking periodically");
+            }
+            catch (RuntimeException ex) {
+                log.error("Unable to watch new emails of " + getName() + ", checking periodically", ex);
+            }
+            startSync(POLL_INTERVAL, listener);
+        });
+    }
+
+    /**
+     * Stops receiving new emails as soon as the server has them
+     * and checking for them periodically.
+     */
+    public void stopPush() {
+        mail.stopPush(SyncCoordinator.INBOX_FOLDER);
+        stopSync();
+    }
+
+    /**
+     * Checks for new emails in all folders of the server now on the account's scheduler.
+     *
+     * @param listener receives the new emails of every folder once they are saved;
+     *                 it is called on the thread that synchronized the folder.
+     *
+     * @return the Future that completes when the check is done.
+     */
+    public Future<?> syncNow(Consumer<List<EmailCustom>> listener) {
+        return scheduler.submit(() -> runSync(listener, true));
+    }
+
+    /**
+     * Receives the messages and attachments of a partial email now on the
+     * account's scheduler, e.g. once the user opened it, and saves them.
+     * It runs before the next batch of the background prefetch.
+     *
+     * @param email the partial email.
+     * @param listener receives the email once its messages and attachments are saved;
+     *                 it is called on the scheduler thread.
+     *
+     * @return the Future that completes when the email is saved.
+     */
+    public Future<?> loadContent(EmailCustom email, Consumer<List<EmailCustom>> listener) {
+        if (email == null)
+            throw new IllegalArgumentException("Email value is null.");
+        return scheduler.submit(() -> {
+            try {
+                if (receiveContent(email) && listener != null)
+                    listener.accept(Collections.singletonList(email));
+            }
+            catch (SQLException | RuntimeException ex) {
+                log.error("Unable to receive email " + email.getId() + " of " + getName(), ex);
+            }
+        });
+    }
+
+    /**
+     * Returns the progress of every folder of the server during the last
+     * check for new emails of all folders, INBOX first.
+     *
+     * @return the progress of every folder.
+     */
+    public List<SyncProgress> getSyncProgress() {
+        return coordinator.getProgress();
+    }
+
+    /**
+     * Archives the emails older than the archive age now on the account's scheduler.
+     *
+     * @return the Future that completes when the emails are archived.
+     */
+    public Future<?> archiveNow() {
+        return scheduler.submit(this::runArchive);
+    }
+
+    /**
+     * Computes the statistics of the account again on the account's scheduler.
+     *
+     * @return the Future of the rebuild.
+     */
+    public Future<?> rebuildStatistics() {
+        return scheduler.submit(() -> {
+            try {
+                int counted = statsdao.rebuild();
+                log.info("Rebuilt statistics of " + counted + " emails of " + getName());
+            }
+            catch (SQLException | RuntimeException ex) {
+                log.error("Unable to rebuild statistics of " + getName(), ex);
+            }
+        });
+    }
+
+    /**
+     * Finds the emails of the saved searches of the account again
+     * on the account's scheduler.
+     *
+     * @return the Future of the refresh.
+     */
+    public Future<?> refreshSearches() {
+        return scheduler.submit(() -> {
+            try {
+                int counted = searchdao.refreshAll();
+                log.info("Refreshed saved searches of " + getName() + " with " + counted + " emails");
+            }
+            catch (SQLException | RuntimeException ex) {
+                log.error("Unable to refresh saved searches of " + getName(), ex);
+            }
+        });
+    }
+
+    /**
+     * Stops the scheduler and the sending of the outbox, closes the open
+     * mail server sessions and removes the connection limit of this account.
+     */
+    public void close() {
+        //the pushed emails are no longer given to the scheduler
+        mail.close();
+        scheduler.shutdownNow();
+        coordinator.close();
+        outbox.close();
+        ConnectionBudget.removeLimit(userInfo.getFromEmail());
+    }
+
+    /**
+     * Archives the emails older than the archive age of the account.
+     */
+    private void runArchive() {
+        int days = userInfo.getArchiveAge();
+        if (days < 1)
+            return;
+        try {
+            Date olderThan = new Date(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(days));
+            int archived = maildao.archiveEmails(olderThan);
+            log.info("Archived " + archived + " emails of " + getName());
+        }
+        catch (SQLException | RuntimeException ex) {
+            //the next run tries again
+            log.error("Unable to archive emails of " + getName(), ex);
+        }
+    }
+
+    /**
+     * Removes one small batch of the deleted emails, and schedules the next
+     * batch after a pause, so that the database stays responsive and the
+     * scheduler runs the other tasks of the account in between. Once no
+     * batch is left, the tables are compacted if enough emails were removed,
+     * the old changes of the store are removed as well, and the next purge
+     * is scheduled after the purge interval.
+     */
+    private void runPurge() {
+        long delay = TimeUnit.MINUTES.toMillis(PURGE_INTERVAL);
+        try {
+            int purged = maildao.purgeDeleted(PURGE_BATCH);
+            purgedSinceCompaction += purged;
+            if (purged == PURGE_BATCH)
+                delay = PURGE_PAUSE;
+            else {
+                if (purgedSinceCompaction >= COMPACT_THRESHOLD) {
+                    maildao.compactStorage();
+                    log.info("Compacted storage of " + getName() + " after removing " 
+                             + purgedSinceCompaction + " emails");
+                    purgedSinceCompaction = 0;
+                }
+                changedao.pruneChanges(new Date(System.currentTimeMillis() 
+                                                - TimeUnit.DAYS.toMillis(CHANGE_RETENTION)));
+            }
+        }
+        catch (SQLException | RuntimeException ex) {
+            //the next run tries again
+            log.error("Unable to purge deleted emails of " + getName(), ex);
+        }
+        if (!scheduler.isShutdown())
+            scheduler.schedule(this::runPurge, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Receives the new emails of all folders of the server, or of INBOX only,
+     * and saves them in the database.
+     *
+     * @param listener receives the new emails of every folder once they are saved.
+     * @param allFolders true to synchronize all folders; false for INBOX only.
+     */
+    private void runSync(Consumer<List<EmailCustom>> listener, boolean allFolders) {
+        try {
+            int received = allFolders ? coordinator.syncAll(listener) : coordinator.syncInbox(listener);
+            if (received != 0)
+                log.info("Received " + received + " emails of " + getName());
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        catch (SQLException | RuntimeException ex) {
+            //the next check tries again
+            log.error("Unable to check new emails of " + getName(), ex);
+        }
+        //the new emails are listed; their messages follow
+        requestPrefetch();
+    }
+
+    /**
+     * Receives the messages and attachments of the next partial emails,
+     * the most recent first, and gives the scheduler back between two
+     * batches, so that the emails opened by the user and the checks
+     * for new emails do not wait for the whole folder.
+     */
+    private void runPrefetch() {
+        try {
+            List<EmailCustom> list = maildao.findPartialEmails(PREFETCH_BATCH);
+            for (EmailCustom e : list)
+                receiveContent(e);
+            if (list.size() == PREFETCH_BATCH)
+                requestPrefetch();
+        }
+        catch (SQLException | RuntimeException ex) {
+            //the next check for new emails starts the prefetch again
+            log.error("Unable to prefetch emails of " + getName(), ex);
+        }
+    }
+
+    /**
+     * Runs the next batch of the prefetch on the account's scheduler,
+     * unless it is already waiting for it.
+     */
+    private void requestPrefetch() {
+        if (prefetchPending.compareAndSet(false, true)) {
+            scheduler.execute(() -> {
+                prefetchPending.set(false);
+                runPrefetch();
+            });
+        }
+    }
+
+    /**
+     * Receives the messages and attachments of a partial email and saves them.
+     * An email that is no longer on the server keeps only its headers
+     * and is no longer partial, so that it is not asked for again.
+     *
+     * @param email the partial email.
+     *
+     * @return true if the email was saved; false if it was no longer partial.
+     *
+     * @throws SQLException If there was a problem when writing to the database.
+     */
+    private boolean receiveContent(EmailCustom email) throws SQLException {
+        if (!email.isPartial())
+            return false;
+        if (mail.receiveContent(email) == null) {
+            log.warn("Email " + email.getId() + " of " + getName() + " is no longer on the server");
+            email.setPartial(false);
+        }
+        return maildao.saveEmailContent(email) != 0;
+    }
+
+    /**
+     * Checks for new emails on the account's scheduler once the server
+     * told about them. The notifications that arrive before the check
+     * starts are handled by the same check.
+     *
+     * @param listener receives the new emails once they are saved.
+     */
+    private void requestSync(Consumer<List<EmailCustom>> listener) {
+        if (pushPending.compareAndSet(false, true)) {
+            scheduler.execute(() -> {
+                pushPending.set(false);
+                runSync(listener, false);
+            });
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package ashulzhenko.emailapp.account;
+
+import ashulzhenko.emailapp.bean.UserConfigBean;
+import ashulzhenko.emailapp.interfaces.MailStorageDAO;
+import ashulzhenko.emailapp.mail.SendRate;
+import ashulzhenko.emailapp.mail.ServerBudget;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * AccountManager class creates and holds all email accounts of the user.
+ * The first account is the primary one, used by default by the application.
+ *
+ * @author Alena Shulzhenko
+ * @version 19/10/2026
+ * @since 1.8
+ */
+public class AccountManager {
+    /** The default maximum number of open IMAP and SMTP sessions per account. */
+    public static final int DEFAULT_MAX_SESSIONS = 2;
+    /** The default maximum number of open database connections per account. */
+    public static final int DEFAULT_MAX_CONNECTIONS = 4;
+    /** The default maximum number of IMAP sessions in use on one server by all accounts. */
+    public static final int DEFAULT_MAX_SERVER_SESSIONS = 10;
+    /** The default maximum number of emails sent through one server per minute by all accounts. */
+    public static final int DEFAULT_MAX_SERVER_SENDS = 30;
+
+    private final List<Account> accounts;
+
+    /**
+     * Instantiates all accounts with the default limits.
+     *
+     * @param users user information of every account, the primary first.
+     *
+     * @throws SQLException If there is a problem when connecting to the database.
+     */
+    public AccountManager(List<UserConfigBean> users) throws SQLException {
+        this(users, DEFAULT_MAX_SESSIONS, DEFAULT_MAX_CONNECTIONS);
+    }
+
+    /**
+     * Instantiates all accounts.
+     *
+     * @param users user information of every account, the primary first.
+     * @param maxSessions the maximum number of open IMAP and SMTP sessions per account.
+     * @param maxConnections the maximum number of open database connections per account.
+     *
+     * @throws SQLException If there is a problem when connecting to the database.
+     */
+    public AccountManager(List<UserConfigBean> users, int maxSessions, int maxConnections)
+                          throws SQLException {
+        if (users == null || users.isEmpty())
+            throw new IllegalArgumentException("At least one account is required.");
+
+        List<Account> list = new ArrayList<>();
+        Set<String> servers = new HashSet<>();
+        Set<String> smtpServers = new HashSet<>();
+        for (UserConfigBean user : users) {
+            //the accounts of the same server share its limit
+            if (servers.add(user.getImapUrl()))
+                ServerBudget.setLimit(user.getImapUrl(), DEFAULT_MAX_SERVER_SESSIONS);
+            if (smtpServers.add(user.getSmtpUrl()))
+                SendRate.setLimit(user.getSmtpUrl(), DEFAULT_MAX_SERVER_SENDS);
+            list.add(new Account(user, maxSessions, maxConnections));
+        }
+        this.accounts = Collections.unmodifiableList(list);
+    }
+
+    /**
+     * Returns the primary account.
+     *
+     * @return the primary account.
+     */
+    public Account getPrimary() {
+        return accounts.get(0);
+    }
+
+    /**
+     * Returns all accounts, the primary first.
+     *
+     * @return all accounts.
+     */
+    public List<Account> getAccounts() {
+        return accounts;
+    }
+
+    /**
+     * Returns the view of the given directory of all accounts,
+     * the most recent emails first.
+     *
+     * @param directory the directory to show, e.g. inbox.
+     * @param pageSize the number of emails read from one account at a time.
+     *
+     * @return the view of the directory of all accounts.
+     */
+    public UnifiedInbox unifiedView(String directory, int pageSize) {
+        List<MailStorageDAO> daos = new ArrayList<>();
+        for (Account account : accounts)
+            daos.add(account.getMailDAO());
+        return new UnifiedInbox(daos, directory, pageSize);
+    }
+
+    /**
+     * Stops all accounts' schedulers.
+     */
+    public void close() {
+        for (Account account : accounts)
+            account.close();
+    }
+}
@@ -0,0 +1,242 @@
+package ashulzhenko.emailapp.account;
+
+import ashulzhenko.emailapp.bean.EmailCustom;
+import ashulzhenko.emailapp.bean.MergeProgress;
+import ashulzhenko.emailapp.bean.MergeRecipient;
+import ashulzhenko.emailapp.bean.SendResult;
+import ashulzhenko.emailapp.interfaces.Mailer;
+import ashulzhenko.emailapp.interfaces.MergeStorageDAO;
+import ashulzhenko.emailapp.mail.MergeTemplate;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * MailMerge class sends the email of a template to every recipient of a list
+ * of one account. The recipients are read as the emails are sent, so that
+ * the list does not have to fit in memory, and are sent in chunks by several
+ * threads at once, each over its own SMTP session.
+ * The progress is saved once all the recipients before a position are done,
+ * so that a mail merge that was stopped, e.g. once the server could not be
+ * reached, is resumed after them; only the emails of the chunks that were
+ * being sent at that time may be sent again.
+ * The emails that cannot be sent are counted as failed and skipped, so that
+ * the recipients already sent in their chunk do not receive their email twice;
+ * the mail merge only stops if no email of a chunk could be sent, e.g. once
+ * the server cannot be reached.
+ *
+ * @author Alena Shulzhenko
+ * @version 19/10/2026
+ * @since 1.8
+ */
+class MailMerge {
+    //recipients sent over one session at once, and saved together
+    private static final int CHUNK = 20;
+
+    private final String name;
+    private final Mailer mail;
+    private final MergeStorageDAO mergedao;
+    private final int parallelism;
+    private final Logger log = LoggerFactory.getLogger(getClass().getName());
+
+    /**
+     * Instantiates the mail merge of the account.
+     *
+     * @param name the email address of the account.
+     * @param mail the Mailer of the account.
+     * @param mergedao the mail merge data access object of the account.
+     * @param parallelism the maximum number of chunks sent at once.
+     */
+    MailMerge(String name, Mailer mail, MergeStorageDAO mergedao, int parallelism) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("Invalid mail merge parallelism: " + parallelism);
+        this.name = name;
+        this.mail = mail;
+        this.mergedao = mergedao;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Sends the email of the template to the recipients that were not
+     * done by the previous runs of the mail merge with this name.
+     *
+     * @param merge the name of the mail merge.
+     * @param template the email sent to every recipient.
+     * @param recipients the recipients, in the same order for every run.
+     *
+     * @return the progress of the mail merge once all recipients are done.
+     *
+     * @throws SQLException If there was a problem when working with the database.
+     * @throws InterruptedException If the thread was interrupted; the progress
+     *                              of the finished chunks is saved.
+     */
+    MergeProgress run(String merge, MergeTemplate template, Iterator<MergeRecipient> recipients)
+            throws SQLException, InterruptedException {
+        Checkpoint checkpoint = new Checkpoint(mergedao.findProgress(merge));
+        long position = 0;
+        while (position < checkpoint.start && recipients.hasNext()) {
+            recipients.next();
+            position++;
+        }
+
+        ExecutorService workers = Executors.newFixedThreadPool(parallelism, r -> {
+            Thread thread = new Thread(r, "merge-" + name);
+            thread.setDaemon(true);
+            return thread;
+        });
+        //the chunks read ahead of the threads, so that the list is read as it is sent
+        Semaphore window = new Semaphore(parallelism * 2);
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        try {
+            while (recipients.hasNext() && failure.get() == null) {
+                List<MergeRecipient> chunk = new ArrayList<>(CHUNK);
+                while (chunk.size() < CHUNK && recipients.hasNext())
+                    chunk.add(recipients.next());
+                long first = position;
+                position += chunk.size();
+                window.acquire();
+                workers.execute(() -> {
+                    try {
+                        if (failure.get() == null)
+                            sendChunk(template, chunk, first, checkpoint);
+                    }
+                    catch (SQLException | RuntimeException ex) {
+                        failure.compareAndSet(null, ex);
+                    }
+                    finally {
+                        window.release();
+                    }
+                });
+            }
+            workers.shutdown();
+            workers.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        }
+        finally {
+            workers.shutdownNow();
+        }
+
+        Exception ex = failure.get();
+        if (ex instanceof SQLException)
+            throw (SQLException) ex;
+        if (ex != null)
+            throw (RuntimeException) ex;
+        MergeProgress progress = checkpoint.current();
+        log.info("Mail merge " + merge + " of " + name + " done: " + progress.getSent() + " sent, "
+                 + progress.getFailed() + " failed");
+        return progress;
+    }
+
+    /**
+     * Sends the emails of one chunk of recipients and saves the progress.
+     *
+     * @param template the email sent to every recipient.
+     * @param chunk the recipients.
+     * @param first the position of the first recipient of the chunk.
+     * @param checkpoint the progress of the mail merge.
+     *
+     * @throws SQLException If there was a problem when writing to the database.
+     */
+    private void sendChunk(MergeTemplate template, List<MergeRecipient> chunk, long first,
+                           Checkpoint checkpoint) throws SQLException {
+        List<EmailCustom> emails = new ArrayList<>(chunk.size());
+        int failed = 0;
+        for (MergeRecipient recipient : chunk) {
+            try {
+                emails.add(template.render(mail.getUserInfo().getFromEmail(), recipient));
+            }
+            catch (RuntimeException ex) {
+                log.warn("Unable to create the email of " + recipient.getAddress() + ": " + ex.getMessage());
+                failed++;
+            }
+        }
+        int sent = 0;
+        RuntimeException error = null;
+        for (SendResult result : mail.sendEmails(emails)) {
+            if (result.isSent())
+                sent++;
+            else {
+                log.warn("Email to " + result.getEmail().getTo()[0].getEmail() + " not sent: "
+                         + result.getError().getMessage());
+                failed++;
+                if (!result.isPermanent())
+                    error = result.getError();
+            }
+        }
+        //nothing of the chunk was sent, e.g. the server cannot be reached, so the
+        //mail merge stops and the chunk is sent again once it is resumed
+        if (error != null && sent == 0)
+            throw error;
+        checkpoint.finish(first, chunk.size(), sent, failed);
+    }
+
+    /**
+     * The progress of a mail merge: the chunks are saved in the order of the
+     * list, once all the chunks before them are done.
+     */
+    private class Checkpoint {
+        private final String merge;
+        private final long start;
+        //the chunks done after the saved position, by their first position
+        private final Map<Long, long[]> done = new TreeMap<>();
+        private long position;
+        private int sent;
+        private int failed;
+
+        /**
+         * Instantiates the progress.
+         *
+         * @param saved the progress of the previous runs.
+         */
+        Checkpoint(MergeProgress saved) {
+            this.merge = saved.getName();
+            this.start = saved.getPosition();
+            this.position = saved.getPosition();
+            this.sent = saved.getSent();
+            this.failed = saved.getFailed();
+        }
+
+        /**
+         * Counts a chunk that is done and saves the progress if the
+         * position moved forward.
+         *
+         * @param first the position of the first recipient of the chunk.
+         * @param size the number of recipients of the chunk.
+         * @param sent the number of emails sent.
+         * @param failed the number of emails not sent.
+         *
+         * @throws SQLException If there was a problem when writing to the database.
+         */
+        synchronized void finish(long first, int size, int sent, int failed) throws SQLException {
+            done.put(first, new long[] {size, sent, failed});
+            long[] next;
+            boolean moved = false;
+            while ((next = done.remove(position)) != null) {
+                position += next[0];
+                this.sent += next[1];
+                this.failed += next[2];
+                moved = true;
+            }
+            if (moved)
+                mergedao.saveProgress(current());
+        }
+
+        /**
+         * Returns the progress saved last.
+         *
+         * @return the progress of the mail merge.
+         */
+        synchronized MergeProgress current() {
+            return new MergeProgress(merge, position, sent, failed);
+        }
+    }
+}
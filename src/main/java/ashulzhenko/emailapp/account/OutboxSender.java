@@ -0,0 +1,249 @@
+package ashulzhenko.emailapp.account;
+
+import ashulzhenko.emailapp.bean.EmailCustom;
+import ashulzhenko.emailapp.bean.OutboxEntry;
+import ashulzhenko.emailapp.bean.SendResult;
+import ashulzhenko.emailapp.interfaces.MailStorageDAO;
+import ashulzhenko.emailapp.interfaces.Mailer;
+import ashulzhenko.emailapp.interfaces.OutboxDAO;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import jodd.mail.EmailAttachment;
+import jodd.mail.EmailMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * OutboxSender class sends the emails of the outbox of one account in the
+ * background, so that composing an email does not wait for the mail server
+ * and an email is not lost while the server cannot be reached.
+ * A sent email is moved to the sent directory. An email that failed is tried
+ * again later, waiting twice as long after every failure, with a random part
+ * so that the emails that failed together are not tried again together.
+ * The emails are claimed in the database before they are sent, so that the
+ * applications that share the database do not send the same email.
+ * The emails refused by the server, e.g. with an invalid recipient, and
+ * the emails that failed too many times stay in the outbox with the error.
+ * Sending runs on its own thread, so that a slow server, or the sending rate
+ * of the server, does not delay the checks for new emails. The moves are
+ * recorded in the change log, so the application displays them as usual.
+ *
+ * @author Alena Shulzhenko
+ * @version 19/10/2026
+ * @since 1.8
+ */
+class OutboxSender {
+    /** The number of failed attempts after which an email is no longer tried. */
+    static final int MAX_ATTEMPTS = 8;
+    //time in seconds to wait after the first failure, and at most
+    private static final long BASE_DELAY = 30;
+    private static final long MAX_DELAY = TimeUnit.HOURS.toSeconds(2);
+    //time in seconds between two checks of the outbox
+    private static final long INTERVAL = 60;
+    //emails sent over one connection, before the outbox is read again
+    private static final int BATCH = 20;
+    //time in seconds during which the claimed emails are not sent by others,
+    //above the time to send a batch at the sending rate of the server
+    private static final int LEASE = (int) TimeUnit.MINUTES.toSeconds(10);
+
+    private final String name;
+    private final Mailer mail;
+    private final MailStorageDAO maildao;
+    private final OutboxDAO outboxdao;
+    private final ScheduledExecutorService sender;
+    private final Random random = new Random();
+    //true while a delivery requested by a new email waits for the thread
+    private final AtomicBoolean pending = new AtomicBoolean();
+    private final Logger log = LoggerFactory.getLogger(getClass().getName());
+
+    /**
+     * Instantiates the sender; start() starts checking the outbox.
+     *
+     * @param name the email address of the account.
+     * @param mail the Mailer of the account.
+     * @param maildao the emails data access object of the account.
+     * @param outboxdao the outbox data access object of the account.
+     */
+    OutboxSender(String name, Mailer mail, MailStorageDAO maildao, OutboxDAO outboxdao) {
+        this.name = name;
+        this.mail = mail;
+        this.maildao = maildao;
+        this.outboxdao = outboxdao;
+        this.sender = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "outbox-" + name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts checking the outbox periodically.
+     */
+    void start() {
+        //the emails left in the outbox by the last run are sent first
+        sender.scheduleWithFixedDelay(this::runDelivery, 0, INTERVAL, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Sends the due emails of the outbox now, e.g. once an email was added.
+     * The requests that arrive before the delivery starts are handled by it.
+     */
+    void wake() {
+        if (pending.compareAndSet(false, true)) {
+            sender.execute(() -> {
+                pending.set(false);
+                runDelivery();
+            });
+        }
+    }
+
+    /**
+     * Stops sending the emails; the emails left are sent by the next run.
+     */
+    void close() {
+        sender.shutdownNow();
+    }
+
+    /**
+     * Returns the time to wait before the next attempt to send an email:
+     * twice as long after every failure, up to the maximum delay, of
+     * which a random half is left out.
+     *
+     * @param attempts the number of failed attempts, at least 1.
+     * @param random the source of the random part.
+     *
+     * @return the time to wait in milliseconds.
+     */
+    static long delayOf(int attempts, Random random) {
+        int doublings = Math.min(Math.max(attempts, 1) - 1, 30);
+        long delay = TimeUnit.SECONDS.toMillis(Math.min(MAX_DELAY, BASE_DELAY << doublings));
+        return delay / 2 + (long) (random.nextDouble() * (delay / 2));
+    }
+
+    /**
+     * Sends the due emails of the outbox; the errors are logged.
+     */
+    private void runDelivery() {
+        try {
+            int sent = deliverDue();
+            if (sent != 0)
+                log.info("Sent " + sent + " emails of " + name);
+        }
+        catch (SQLException | RuntimeException ex) {
+            //the next run tries again
+            log.error("Unable to send the outbox of " + name, ex);
+        }
+    }
+
+    /**
+     * Sends the due emails of the outbox batch by batch, on the calling thread.
+     *
+     * @return the number of emails sent.
+     *
+     * @throws SQLException If there was a problem when working with the database.
+     */
+    int deliverDue() throws SQLException {
+        int sent = 0;
+        int due;
+        do {
+            List<OutboxEntry> entries = outboxdao.claimDueEmails(BATCH, LEASE);
+            due = entries.size();
+            if (due != 0)
+                sent += deliver(entries);
+        } while (due == BATCH && !Thread.currentThread().isInterrupted());
+        return sent;
+    }
+
+    /**
+     * Sends the emails together and saves the result of every email.
+     *
+     * @param entries the due emails.
+     *
+     * @return the number of emails sent.
+     *
+     * @throws SQLException If there was a problem when working with the database.
+     */
+    private int deliver(List<OutboxEntry> entries) throws SQLException {
+        Map<Integer, OutboxEntry> byId = new HashMap<>();
+        List<EmailCustom> emails = new ArrayList<>(entries.size());
+        for (OutboxEntry entry : entries) {
+            EmailCustom email = maildao.findEmailById(entry.getEmailId());
+            //deleted or moved out of the outbox in the meantime
+            if (email != null && OutboxDAO.DIRECTORY.equals(email.getDirectory())) {
+                restoreEmbedded(email);
+                byId.put(email.getId(), entry);
+                emails.add(email);
+            }
+        }
+        int sent = 0;
+        for (SendResult result : mail.sendEmails(emails)) {
+            EmailCustom email = result.getEmail();
+            if (result.isSent()) {
+                //the email leaves the outbox together with its id,
+                //so that a sent email is never sent again
+                outboxdao.markSent(email.getId(), email.getMessageId());
+                email.setDirectory(OutboxDAO.SENT_DIRECTORY);
+                sent++;
+            }
+            else
+                fail(byId.get(email.getId()), result);
+        }
+        return sent;
+    }
+
+    /**
+     * Saves a failed attempt: the email is tried again later,
+     * unless it cannot succeed or it failed too many times.
+     *
+     * @param entry the email that failed.
+     * @param result why it failed.
+     *
+     * @throws SQLException If there was a problem when writing to the database.
+     */
+    private void fail(OutboxEntry entry, SendResult result) throws SQLException {
+        int attempts = entry.getAttempts() + 1;
+        RuntimeException error = result.getError();
+        String message = error.getMessage() == null ? error.toString() : error.getMessage();
+        if (result.isPermanent() || attempts >= MAX_ATTEMPTS) {
+            outboxdao.markFailed(entry.getEmailId(), message);
+            log.error("Gave up sending email " + entry.getEmailId() + " of " + name
+                      + " after " + attempts + " attempts: " + message);
+        }
+        else {
+            long delay = delayOf(attempts, random);
+            outboxdao.scheduleRetry(entry.getEmailId(), new Date(System.currentTimeMillis() + delay),
+                                    message);
+            log.warn("Unable to send email " + entry.getEmailId() + " of " + name + ", trying again in "
+                     + TimeUnit.MILLISECONDS.toSeconds(delay) + " s: " + message);
+        }
+    }
+
+    /**
+     * Embeds the attachments of an email read from the database into the
+     * message that refers to them, since the database does not keep which
+     * message they belonged to. The other attachments are sent as such.
+     *
+     * @param email the email read from the database.
+     */
+    private void restoreEmbedded(EmailCustom email) {
+        List<EmailAttachment> attachments = email.getAttachments();
+        if (attachments == null)
+            return;
+        for (EmailAttachment attachment : attachments) {
+            if (!attachment.isInline() || attachment.getContentId() == null)
+                continue;
+            for (EmailMessage message : email.getAllMessages())
+                if (message.getContent().contains("cid:" + attachment.getContentId()))
+                    attachment.setEmbeddedMessage(message);
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package ashulzhenko.emailapp.account;
+
+import ashulzhenko.emailapp.bean.EmailCustom;
+import ashulzhenko.emailapp.bean.SyncProgress;
+import ashulzhenko.emailapp.bean.SyncState;
+import ashulzhenko.emailapp.interfaces.FolderStorageDAO;
+import ashulzhenko.emailapp.interfaces.MailStorageDAO;
+import ashulzhenko.emailapp.interfaces.Mailer;
+import ashulzhenko.emailapp.interfaces.SyncStorageDAO;
+import ashulzhenko.emailapp.mail.MailModule;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * SyncCoordinator class synchronizes all folders of the mail server of one
+ * account. Every folder is saved in the directory that has the same path,
+ * INBOX in the inbox; the missing directories are created.
+ * INBOX is synchronized first, so that its new emails are displayed first
+ * and an email that is also in another folder, e.g. under a Gmail label,
+ * is saved in the inbox. The other folders are then synchronized at the same
+ * time on a few threads; the Mailer limits the number of sessions open
+ * for the account and for the server. An email found in two of these folders
+ * at the same time is saved by the first folder that claims its Message-ID,
+ * since both may find that it is not saved yet.
+ *
+ * @author Alena Shulzhenko
+ * @version 19/10/2026
+ * @since 1.8
+ */
+class SyncCoordinator {
+    /** The folder of the server that every account has. */
+    static final String INBOX_FOLDER = "INBOX";
+    private static final String INBOX_DIRECTORY = "inbox";
+
+    private final String name;
+    private final Mailer mail;
+    private final MailStorageDAO maildao;
+    private final FolderStorageDAO folderdao;
+    private final SyncStorageDAO syncdao;
+    private final ExecutorService workers;
+    //the progress of every folder of the last synchronization, INBOX first
+    private final Map<String, SyncProgress> progress = new LinkedHashMap<>();
+    private final Logger log = LoggerFactory.getLogger(getClass().getName());
+
+    /**
+     * Instantiates the coordinator.
+     *
+     * @param name the email address of the account.
+     * @param mail the Mailer of the account.
+     * @param maildao the emails data access object of the account.
+     * @param folderdao the directories data access object of the account.
+     * @param syncdao the synchronization data access object of the account.
+     * @param parallelism the number of folders synchronized at the same time.
+     */
+    SyncCoordinator(String name, Mailer mail, MailStorageDAO maildao, FolderStorageDAO folderdao,
+                    SyncStorageDAO syncdao, int parallelism) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("Invalid number of folders synchronized at once: "
+                                               + parallelism);
+        this.name = name;
+        this.mail = mail;
+        this.maildao = maildao;
+        this.folderdao = folderdao;
+        this.syncdao = syncdao;
+        AtomicInteger count = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(parallelism, r -> {
+            Thread thread = new Thread(r, "sync-" + name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Synchronizes all folders of the server and waits until they are done.
+     * A folder that fails does not stop the other ones; it is synchronized
+     * again by the next call.
+     *
+     * @param listener receives the new emails of every folder once they are saved,
+     *                 batch by batch; it is called on a thread of the Mailer.
+     *
+     * @return the number of new emails saved.
+     *
+     * @throws SQLException If the directories cannot be created.
+     * @throws InterruptedException If the thread is interrupted while waiting.
+     */
+    int syncAll(Consumer<List<EmailCustom>> listener) throws SQLException, InterruptedException {
+        Map<String, String> folders = new LinkedHashMap<>();
+        for (Map.Entry<String, String> folder : mail.listFolders().entrySet())
+            folders.put(folder.getKey(), directoryOf(folder.getValue()));
+        createDirectories(folders.values());
+        synchronized (progress) {
+            progress.clear();
+            for (Map.Entry<String, String> folder : folders.entrySet())
+                progress.put(folder.getKey(), new SyncProgress(folder.getKey(), folder.getValue(),
+                                                               SyncProgress.Status.WAITING, 0));
+        }
+
+        int received = syncFolder(INBOX_FOLDER, INBOX_DIRECTORY, listener, null);
+        //the Message-IDs saved by the folders synchronized at the same time
+        Set<String> claimed = ConcurrentHashMap.newKeySet();
+        List<Future<Integer>> running = new ArrayList<>();
+        for (Map.Entry<String, String> folder : folders.entrySet())
+            if (!folder.getKey().equals(INBOX_FOLDER))
+                running.add(workers.submit(() -> syncFolder(folder.getKey(), folder.getValue(), 
+                                                            listener, claimed)));
+        try {
+            for (Future<Integer> folder : running)
+                received += folder.get();
+        }
+        catch (ExecutionException ex) {
+            //syncFolder() handles its own failures
+            throw new IllegalStateException(ex.getCause());
+        }
+        finally {
+            for (Future<Integer> folder : running)
+                folder.cancel(true);
+        }
+        return received;
+    }
+
+    /**
+     * Synchronizes INBOX only, e.g. once the server told about new emails.
+     *
+     * @param listener receives the new emails once they are saved, batch by batch.
+     *
+     * @return the number of new emails saved.
+     */
+    int syncInbox(Consumer<List<EmailCustom>> listener) {
+        return syncFolder(INBOX_FOLDER, INBOX_DIRECTORY, listener, null);
+    }
+
+    /**
+     * Returns the progress of every folder of the last synchronization of
+     * all folders, INBOX first.
+     *
+     * @return the progress of every folder.
+     */
+    List<SyncProgress> getProgress() {
+        synchronized (progress) {
+            return new ArrayList<>(progress.values());
+        }
+    }
+
+    /**
+     * Stops the threads that synchronize the folders.
+     */
+    void close() {
+        workers.shutdownNow();
+    }
+
+    /**
+     * Returns the directory where the emails of a folder are saved.
+     *
+     * @param path the path of the folder of the server.
+     *
+     * @return the directory with the same path; the inbox for INBOX and below it.
+     */
+    static String directoryOf(String path) {
+        String prefix = INBOX_FOLDER + MailModule.FOLDER_SEPARATOR;
+        if (path.equalsIgnoreCase(INBOX_FOLDER))
+            return INBOX_DIRECTORY;
+        if (path.regionMatches(true, 0, prefix, 0, prefix.length()))
+            return INBOX_DIRECTORY + FolderStorageDAO.SEPARATOR + path.substring(prefix.length());
+        return path.replace(MailModule.FOLDER_SEPARATOR, FolderStorageDAO.SEPARATOR);
+    }
+
+    /**
+     * Receives the new emails of the folder and saves them in the directory
+     * batch by batch while the next ones are received. The state is saved
+     * after every batch, so that a folder that fails is resumed from the
+     * last saved batch.
+     *
+     * @param folder the name of the folder of the server.
+     * @param directory the directory where the emails are saved.
+     * @param listener receives every batch of new emails once it is saved.
+     * @param claimed the Message-IDs of the emails saved by the folders synchronized
+     *                at the same time; an email already claimed is skipped;
+     *                null if no other folder is synchronized at the same time.
+     *
+     * @return the number of new emails saved; the emails saved before
+     *         the failure if the folder failed.
+     */
+    private int syncFolder(String folder, String directory, Consumer<List<EmailCustom>> listener,
+                           Set<String> claimed) {
+        update(folder, directory, SyncProgress.Status.RUNNING, 0);
+        AtomicInteger saved = new AtomicInteger();
+        try {
+            SyncState state = syncdao.findSyncState(folder);
+            mail.receiveEmail(state, batch -> {
+                //the emails of a check that failed before saving its state are received again
+                List<EmailCustom> list = new ArrayList<>();
+                for (EmailCustom e : syncdao.findNewEmails(batch)) {
+                    //another folder found the same email not saved yet and saves it
+                    if (claimed != null && e.getMessageId() != null 
+                            && !claimed.add(e.getMessageId().trim()))
+                        continue;
+                    e.setDirectory(directory);
+                    maildao.saveEmail(e);
+                    list.add(e);
+                }
+                syncdao.saveSyncState(state);
+                update(folder, directory, SyncProgress.Status.RUNNING, saved.addAndGet(list.size()));
+                if (listener != null && !list.isEmpty())
+                    listener.accept(list);
+            });
+            if (state.isResync())
+                log.info("UIDVALIDITY of " + folder + " of " + name
+                         + " changed, received the whole folder again");
+            update(folder, directory, SyncProgress.Status.DONE, saved.get());
+            return saved.get();
+        }
+        catch (SQLException | RuntimeException ex) {
+            //the next check resumes after the last saved batch
+            update(folder, directory, SyncProgress.Status.FAILED, saved.get());
+            log.error("Unable to check new emails of " + folder + " of " + name, ex);
+            return saved.get();
+        }
+    }
+
+    /**
+     * Creates the directories that do not exist yet.
+     *
+     * @param directories the directories of all folders.
+     *
+     * @throws SQLException If there was a problem when writing to the database.
+     */
+    private void createDirectories(Iterable<String> directories) throws SQLException {
+        Set<String> existing = new HashSet<>(folderdao.findAll());
+        for (String directory : directories) {
+            if (existing.contains(directory))
+                continue;
+            try {
+                folderdao.createDirectory(directory);
+            }
+            catch (IllegalArgumentException ex) {
+                //created in the meantime; a folder with an invalid name fails on its own
+                log.debug("Directory " + directory + " of " + name + " not created: " + ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Sets the progress of a folder.
+     *
+     * @param folder the name of the folder of the server.
+     * @param directory the directory where the emails are saved.
+     * @param status the step of the synchronization.
+     * @param received the number of new emails saved.
+     */
+    private void update(String folder, String directory, SyncProgress.Status status, int received) {
+        synchronized (progress) {
+            progress.put(folder, new SyncProgress(folder, directory, status, received));
+        }
+    }
+}
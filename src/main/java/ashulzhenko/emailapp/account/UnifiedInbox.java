@@ -0,0 +1,107 @@
+package ashulzhenko.emailapp.account;
+
+import ashulzhenko.emailapp.bean.EmailCustom;
+import ashulzhenko.emailapp.compare.EmailDateSorter;
+import ashulzhenko.emailapp.interfaces.MailStorageDAO;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * UnifiedInbox class shows one directory of several accounts as a single
+ * list, the most recent emails first.
+ * Each account's emails are read page by page, already sorted by the
+ * database, and the pages are merged, so only the emails that are
+ * displayed and one page per account are loaded.
+ *
+ * @author Alena Shulzhenko
+ * @version 19/10/2026
+ * @since 1.8
+ */
+public class UnifiedInbox {
+    private final PriorityQueue<AccountCursor> queue;
+    private final List<AccountCursor> pending;
+    private final EmailDateSorter sorter = new EmailDateSorter();
+
+    /**
+     * Instantiates the view.
+     *
+     * @param daos the emails data access objects of every account.
+     * @param directory the directory to show.
+     * @param pageSize the number of emails read from one account at a time.
+     */
+    public UnifiedInbox(List<MailStorageDAO> daos, String directory, int pageSize) {
+        if (daos == null || directory == null || directory.trim().isEmpty() || pageSize < 1)
+            throw new IllegalArgumentException("Invalid unified inbox arguments.");
+
+        queue = new PriorityQueue<>((c1, c2) -> sorter.compare(c1.peek(), c2.peek()));
+        pending = new ArrayList<>();
+        for (MailStorageDAO dao : daos)
+            pending.add(new AccountCursor(dao, directory, pageSize));
+    }
+
+    /**
+     * Returns the next emails of the view.
+     *
+     * @param number the maximum number of emails to return.
+     *
+     * @return the next emails, the most recent first; 
+     *         empty if all emails were returned.
+     *
+     * @throws SQLException If there was a problem when reading from the database.
+     */
+    public List<EmailCustom> next(int number) throws SQLException {
+        //the first page of every account is read on the first call
+        for (AccountCursor cursor : pending)
+            if (cursor.hasNext())
+                queue.add(cursor);
+        pending.clear();
+
+        List<EmailCustom> emails = new ArrayList<>();
+        while (!queue.isEmpty() && emails.size() < number) {
+            AccountCursor cursor = queue.poll();
+            emails.add(cursor.next());
+            if (cursor.hasNext())
+                queue.add(cursor);
+        }
+        return emails;
+    }
+
+    /**
+     * Reads the emails of one account page by page.
+     */
+    private static class AccountCursor {
+        private final MailStorageDAO dao;
+        private final String directory;
+        private final int pageSize;
+        private List<EmailCustom> page = new ArrayList<>();
+        private int index;
+        private int start;
+        private boolean last;
+
+        AccountCursor(MailStorageDAO dao, String directory, int pageSize) {
+            this.dao = dao;
+            this.directory = directory;
+            this.pageSize = pageSize;
+        }
+
+        boolean hasNext() throws SQLException {
+            if (index == page.size() && !last) {
+                page = dao.findAllInDirectory(directory, start, pageSize);
+                start += page.size();
+                index = 0;
+                last = page.size() < pageSize;
+            }
+            return index < page.size();
+        }
+
+        EmailCustom peek() {
+            return page.get(index);
+        }
+
+        EmailCustom next() {
+            return page.get(index++);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package ashulzhenko.emailapp.bean;
+
+/**
+ * Change class describes one change of the mail store: the email or
+ * directory that was inserted, updated or deleted, and the version of
+ * the store after the change.
+ * Versions only grow, so that the application can ask for the changes
+ * made after the version it has read.
+ *
+ * @author Alena Shulzhenko
+ * @version 19/10/2026
+ * @since 1.8
+ */
+public class Change {
+    /**
+     * The kind of the changed object. MAILBOX means that the whole
+     * store changed (e.g. it was restored) and must be read again.
+     * SEARCH is a saved search that was saved, run again or deleted;
+     * its id is 0 when all of them were run again.
+     */
+    public enum Entity {
+        EMAIL, DIRECTORY, SEARCH, MAILBOX
+    }
+
+    /**
+     * The operation done on the changed object.
+     */
+    public enum Operation {
+        INSERT, UPDATE, DELETE
+    }
+
+    private final long version;
+    private final Entity entity;
+    private final Operation operation;
+    private final int id;
+
+    /**
+     * Instantiates the change.
+     *
+     * @param version the version of the store after the change.
+     * @param entity the kind of the changed object.
+     * @param operation the operation done on the object.
+     * @param id the id of the email or directory; 0 for MAILBOX.
+     */
+    public Change(long version, Entity entity, Operation operation, int id) {
+        if (entity == null || operation == null)
+            throw new IllegalArgumentException("Entity or operation value is null.");
+        this.version = version;
+        this.entity = entity;
+        this.operation = operation;
+        this.id = id;
+    }
+
+    /**
+     * Returns the version of the store after the change.
+     *
+     * @return the version of the store after the change.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns the kind of the changed object.
+     *
+     * @return the kind of the changed object.
+     */
+    public Entity getEntity() {
+        return entity;
+    }
+
+    /**
+     * Returns the operation done on the object.
+     *
+     * @return the operation done on the object.
+     */
+    public Operation getOperation() {
+        return operation;
+    }
+
+    /**
+     * Returns the id of the changed email or directory.
+     *
+     * @return the id of the email or directory; 0 for MAILBOX.
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Compares this Change to the specified object.
+     *
+     * @param obj The object to compare this against.
+     *
+     * @return true if objects are equal, false otherwise.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null || getClass() != obj.getClass())
+            return false;
+        Change other = (Change) obj;
+        return version == other.version && entity == other.entity
+                && operation == other.operation && id == other.id;
+    }
+
+    /**
+     * Returns a hash code value for this object.
+     *
+     * @return a hash code value for this object.
+     */
+    @Override
+    public int hashCode() {
+        int hash = 5;
+        hash = 37 * hash + Long.hashCode(version);
+        hash = 37 * hash + entity.hashCode();
+        hash = 37 * hash + operation.hashCode();
+        hash = 37 * hash + id;
+        return hash;
+    }
+
+    /**
+     * Returns the String representation of the change.
+     *
+     * @return the String representation of the change.
+     */
+    @Override
+    public String toString() {
+        return "Change{" + "version=" + version + ", entity=" + entity 
+                + ", operation=" + operation + ", id=" + id + "}";
+    }
+}
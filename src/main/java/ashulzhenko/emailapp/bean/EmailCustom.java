@@ -28,14 +28,31 @@ import jodd.mail.ReceivedEmail;
 public class EmailCustom extends Email implements Serializable {
     
     private static final long serialVersionUID = 42051768871L;
+    /** The header holding the unique id of the message. */
+    public static final String MESSAGE_ID = "Message-ID";
+    /** The header holding the id of the message this one replies to. */
+    public static final String IN_REPLY_TO = "In-Reply-To";
+    /** The header holding the ids of all previous messages of the conversation. */
+    public static final String REFERENCES = "References";
+    //true if the messages and attachments are kept in the archive
+    private boolean archived;
     private List<ReceivedEmail> attachedMessages; //ReceivedEmail field
     //used to differentiate send and received emails ("sent" and "inbox" directories)
     private String directory;
     private Flags flags; //ReceivedEmail field
     private int id = -1;
     private int messageNumber; //ReceivedEmail field
+    //true while only the headers are received; the messages and attachments are not
+    private boolean partial;
     //Date type for consistency since Jodd uses Date for sent date
     private Date rcvDate; //ReceivedEmail field
+    //true if the email was read; only set for the emails read from the database
+    private boolean seen;
+    //where the received email is on the server
+    private String serverFolder;
+    private int serverSize;
+    private long uid;
+    private long uidValidity = -1;
 
     /**
      * Instantiates EmailCustom object. Sets directory default to sent.
@@ -77,6 +94,10 @@ public class EmailCustom extends Email implements Serializable {
         this.to = rcvEmail.getTo();
         this.setPriority(rcvEmail.getPriority());
         this.rcvDate = rcvEmail.getReceiveDate();
+        //headers needed to build conversation threads
+        setMessageId(findHeader(rcvEmail, MESSAGE_ID));
+        setInReplyTo(findHeader(rcvEmail, IN_REPLY_TO));
+        setReferences(findHeader(rcvEmail, REFERENCES));
     }
     
     
@@ -178,6 +199,24 @@ public class EmailCustom extends Email implements Serializable {
         return id;
     }
 
+    /**
+     * Returns the id of the message this email replies to.
+     *
+     * @return the In-Reply-To header; null if the email is not a reply.
+     */
+    public String getInReplyTo() {
+        return getHeader(IN_REPLY_TO);
+    }
+    
+    /**
+     * Returns the unique id of the message given by the mail server.
+     *
+     * @return the Message-ID header; null if it is unknown.
+     */
+    public String getMessageId() {
+        return getHeader(MESSAGE_ID);
+    }
+
     /**
      * Returns the message number. ReceivedEmail method.
      *
@@ -187,6 +226,37 @@ public class EmailCustom extends Email implements Serializable {
         return messageNumber;
     }
     
+    /**
+     * Indicates whether the email is archived. An archived email found
+     * in a directory listing has no messages and no attachments;
+     * they are read from the archive when the email is found by its id.
+     *
+     * @return true if the email is archived; false otherwise.
+     */
+    public boolean isArchived() {
+        return archived;
+    }
+    
+    /**
+     * Indicates whether only the headers of the email were received.
+     * The messages and attachments of a partial email are downloaded
+     * from the server later, see setContent().
+     *
+     * @return true if the messages and attachments are not received yet; false otherwise.
+     */
+    public boolean isPartial() {
+        return partial;
+    }
+    
+    /**
+     * Returns the ids of the previous messages of the conversation.
+     *
+     * @return the References header; null if there are none.
+     */
+    public String getReferences() {
+        return getHeader(REFERENCES);
+    }
+    
     /**
      * Returns the received date of this email. ReceivedEmail method.
      *
@@ -196,6 +266,63 @@ public class EmailCustom extends Email implements Serializable {
         return rcvDate;
     }
 
+    /**
+     * Indicates whether the email was read. It is set for the emails
+     * read from the database; a new email is read when it is saved
+     * if it has the SEEN flag or it was sent by the user.
+     *
+     * @return true if the email was read; false otherwise.
+     */
+    public boolean isSeen() {
+        return seen;
+    }
+
+    /**
+     * Returns the name of the folder of the server where the email was received.
+     *
+     * @return the name of the folder of the server; null if the email was not received.
+     */
+    public String getServerFolder() {
+        return serverFolder;
+    }
+    
+    /**
+     * Returns the size of the whole message on the server.
+     *
+     * @return the size of the message in bytes; 0 if it is unknown.
+     */
+    public int getServerSize() {
+        return serverSize;
+    }
+    
+    /**
+     * Returns the UID of the email in the folder of the server.
+     *
+     * @return the UID of the email; 0 if it is unknown.
+     */
+    public long getUid() {
+        return uid;
+    }
+    
+    /**
+     * Returns the UIDVALIDITY of the folder of the server when the email
+     * was received. The UID is only valid as long as it is the same.
+     *
+     * @return the UIDVALIDITY of the folder; -1 if it is unknown.
+     */
+    public long getUidValidity() {
+        return uidValidity;
+    }
+
+    /**
+     * Sets whether the email is archived.
+     *
+     * @param archived true if the email is archived; false otherwise.
+     */
+    public void setArchived(boolean archived) {
+        this.archived = archived;
+    }
+
     /**
      * Sets the attached messages for this email. ReceivedEmail method.
      *
@@ -244,6 +371,26 @@ public class EmailCustom extends Email implements Serializable {
             throw new IllegalArgumentException("Id value is invalid: " + id);
     }
     
+    /**
+     * Sets the id of the message this email replies to.
+     *
+     * @param inReplyTo the In-Reply-To header; null is ignored.
+     */
+    public void setInReplyTo(String inReplyTo) {
+        if(inReplyTo != null)
+            setHeader(IN_REPLY_TO, inReplyTo);
+    }
+    
+    /**
+     * Sets the unique id of the message.
+     *
+     * @param messageId the Message-ID header; null is ignored.
+     */
+    public void setMessageId(String messageId) {
+        if(messageId != null)
+            setHeader(MESSAGE_ID, messageId);
+    }
+    
     /**
      * Sets the message number. ReceivedEmail method.
      *
@@ -253,6 +400,93 @@ public class EmailCustom extends Email implements Serializable {
         this.messageNumber = messageNumber;
     }
     
+    /**
+     * Sets whether only the headers of the email were received.
+     *
+     * @param partial true if the messages and attachments are not received yet; false otherwise.
+     */
+    public void setPartial(boolean partial) {
+        this.partial = partial;
+    }
+    
+    /**
+     * Sets whether the email was read, as it is in the database.
+     *
+     * @param seen true if the email was read; false otherwise.
+     */
+    public void setSeen(boolean seen) {
+        this.seen = seen;
+    }
+    
+    /**
+     * Sets where the email is on the server.
+     *
+     * @param serverFolder the name of the folder of the server.
+     * @param uidValidity the UIDVALIDITY of the folder.
+     * @param uid the UID of the email in the folder.
+     */
+    public void setServerLocation(String serverFolder, long uidValidity, long uid) {
+        if(serverFolder == null || serverFolder.isEmpty())
+            throw new IllegalArgumentException("No server folder name provided.");
+        this.serverFolder = serverFolder;
+        this.uidValidity = uidValidity;
+        this.uid = uid;
+    }
+    
+    /**
+     * Sets the size of the whole message on the server.
+     *
+     * @param serverSize the size of the message in bytes.
+     */
+    public void setServerSize(int serverSize) {
+        if(serverSize >= 0)
+            this.serverSize = serverSize;
+        else
+            throw new IllegalArgumentException("Size value is invalid: " + serverSize);
+    }
+    
+    /**
+     * Sets the messages and attachments of a partial email from the same
+     * email received in full. The email is then no longer partial.
+     *
+     * @param content the email received in full.
+     */
+    public void setContent(EmailCustom content) {
+        if(content == null)
+            throw new IllegalArgumentException("Content value is null.");
+        this.messages = content.messages;
+        this.attachments = content.attachments == null ? null : new ArrayList<>(content.attachments);
+        this.attachedMessages = content.attachedMessages;
+        this.partial = false;
+    }
+    
+    /**
+     * Sets the ids of the previous messages of the conversation.
+     *
+     * @param references the References header; null is ignored.
+     */
+    public void setReferences(String references) {
+        if(references != null)
+            setHeader(REFERENCES, references);
+    }
+    
+    /**
+     * Makes this email a reply to the given email, so that
+     * it belongs to the same conversation thread.
+     *
+     * @param original the email this email replies to.
+     */
+    public void setReplyHeaders(EmailCustom original) {
+        if(original == null)
+            throw new IllegalArgumentException("Original email value is null.");
+        String messageId = original.getMessageId();
+        if(messageId == null)
+            return;
+        setInReplyTo(messageId);
+        String references = original.getReferences();
+        setReferences(references == null ? messageId : references + " " + messageId);
+    }
+    
     /**
      * Sets the received date of the email. ReceivedEmail method.
      *
@@ -263,6 +497,32 @@ public class EmailCustom extends Email implements Serializable {
     }
 
 
+    /**
+     * Returns the header of the received email. Mail servers do not
+     * always use the same case for header names, e.g. Message-Id.
+     *
+     * @param rcvEmail the received email.
+     * @param name the name of the header.
+     *
+     * @return the value of the header; null if the email does not have it.
+     */
+    private static String findHeader(ReceivedEmail rcvEmail, String name) {
+        StringBuilder titleCase = new StringBuilder();
+        for(String part : name.toLowerCase().split("-")) {
+            if(titleCase.length() > 0)
+                titleCase.append('-');
+            titleCase.append(Character.toUpperCase(part.charAt(0))).append(part.substring(1));
+        }
+        String lower = name.toLowerCase();
+        String capitalized = Character.toUpperCase(lower.charAt(0)) + lower.substring(1);
+        for(String candidate : new String[] {name, titleCase.toString(), capitalized, lower}) {
+            String value = rcvEmail.getHeader(candidate);
+            if(value != null)
+                return value;
+        }
+        return null;
+    }
+
     /**
      * Compares EmailAttachments.
      *
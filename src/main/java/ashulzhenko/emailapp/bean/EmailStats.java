@@ -0,0 +1,149 @@
+package ashulzhenko.emailapp.bean;
+
+import java.util.Date;
+import java.util.Objects;
+
+/**
+ * EmailStats class describes the statistics of a correspondent or a directory:
+ * the number of its emails, their size and the dates of the first and
+ * the last email, for one month or for all months.
+ *
+ * @author Alena Shulzhenko
+ * @version 19/10/2026
+ * @since 1.8
+ */
+public class EmailStats {
+    private final String name;
+    private final Date month;
+    private final int messageCount;
+    private final long bytes;
+    private final Date firstSeen;
+    private final Date lastSeen;
+
+    /**
+     * Instantiates the statistics.
+     *
+     * @param name the address of the correspondent or the name of the directory.
+     * @param month the first day of the month; null for all months.
+     * @param messageCount the number of emails.
+     * @param bytes the size of the messages and attachments of the emails.
+     * @param firstSeen the date of the first email; may be null.
+     * @param lastSeen the date of the last email; may be null.
+     */
+    public EmailStats(String name, Date month, int messageCount, long bytes, 
+                      Date firstSeen, Date lastSeen) {
+        this.name = name;
+        this.month = copy(month);
+        this.messageCount = messageCount;
+        this.bytes = bytes;
+        this.firstSeen = copy(firstSeen);
+        this.lastSeen = copy(lastSeen);
+    }
+
+    /**
+     * Returns the address of the correspondent or the name of the directory.
+     *
+     * @return the address of the correspondent or the name of the directory.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the month of the statistics.
+     *
+     * @return the first day of the month; null for all months.
+     */
+    public Date getMonth() {
+        return copy(month);
+    }
+
+    /**
+     * Returns the number of emails.
+     *
+     * @return the number of emails.
+     */
+    public int getMessageCount() {
+        return messageCount;
+    }
+
+    /**
+     * Returns the size of the messages and attachments of the emails.
+     *
+     * @return the size of the emails in bytes.
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Returns the date of the first email.
+     *
+     * @return the date of the first email; null if it is unknown.
+     */
+    public Date getFirstSeen() {
+        return copy(firstSeen);
+    }
+
+    /**
+     * Returns the date of the last email.
+     *
+     * @return the date of the last email; null if it is unknown.
+     */
+    public Date getLastSeen() {
+        return copy(lastSeen);
+    }
+
+    /**
+     * Compares this EmailStats to the specified object.
+     *
+     * @param obj The object to compare this against.
+     *
+     * @return true if objects are equal, false otherwise.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null || getClass() != obj.getClass())
+            return false;
+        EmailStats other = (EmailStats) obj;
+        return messageCount == other.messageCount && bytes == other.bytes
+                && Objects.equals(name, other.name) && Objects.equals(month, other.month)
+                && Objects.equals(firstSeen, other.firstSeen)
+                && Objects.equals(lastSeen, other.lastSeen);
+    }
+
+    /**
+     * Returns a hash code value for this object.
+     *
+     * @return a hash code value for this object.
+     */
+    @Override
+    public int hashCode() {
+        int hash = 7;
+        hash = 41 * hash + Objects.hashCode(name);
+        hash = 41 * hash + Objects.hashCode(month);
+        hash = 41 * hash + messageCount;
+        hash = 41 * hash + Long.hashCode(bytes);
+        hash = 41 * hash + Objects.hashCode(firstSeen);
+        hash = 41 * hash + Objects.hashCode(lastSeen);
+        return hash;
+    }
+
+    /**
+     * Returns the String representation of the statistics.
+     *
+     * @return the String representation of the statistics.
+     */
+    @Override
+    public String toString() {
+        return "EmailStats{" + "name=" + name + ", month=" + month + ", messageCount="
+                + messageCount + ", bytes=" + bytes + ", firstSeen=" + firstSeen
+                + ", lastSeen=" + lastSeen + "}";
+    }
+
+    private static Date copy(Date date) {
+        return date == null ? null : new Date(date.getTime());
+    }
+}
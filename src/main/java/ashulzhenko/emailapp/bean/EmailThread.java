@@ -0,0 +1,116 @@
+package ashulzhenko.emailapp.bean;
+
+import java.util.Date;
+import java.util.Objects;
+
+/**
+ * EmailThread class describes a conversation thread as seen in one directory:
+ * its id, its subject, the number of its emails in the directory
+ * and the date of its most recent email there.
+ *
+ * @author Alena Shulzhenko
+ * @version 19/10/2026
+ * @since 1.8
+ */
+public class EmailThread {
+    private final int id;
+    private final String subject;
+    private final int messageCount;
+    private final Date latestDate;
+
+    /**
+     * Instantiates the thread.
+     *
+     * @param id the id of the thread.
+     * @param subject the subject of the thread without Re: and Fw: prefixes.
+     * @param messageCount the number of emails of the thread in the directory.
+     * @param latestDate the date of the most recent email; may be null.
+     */
+    public EmailThread(int id, String subject, int messageCount, Date latestDate) {
+        this.id = id;
+        this.subject = subject;
+        this.messageCount = messageCount;
+        this.latestDate = latestDate == null ? null : new Date(latestDate.getTime());
+    }
+
+    /**
+     * Returns the id of the thread.
+     *
+     * @return the id of the thread.
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Returns the subject of the thread.
+     *
+     * @return the subject of the thread without Re: and Fw: prefixes.
+     */
+    public String getSubject() {
+        return subject;
+    }
+
+    /**
+     * Returns the number of emails of the thread in the directory.
+     *
+     * @return the number of emails of the thread in the directory.
+     */
+    public int getMessageCount() {
+        return messageCount;
+    }
+
+    /**
+     * Returns the date of the most recent email of the thread in the directory.
+     *
+     * @return the date of the most recent email; null if it is unknown.
+     */
+    public Date getLatestDate() {
+        return latestDate == null ? null : new Date(latestDate.getTime());
+    }
+
+    /**
+     * Compares this EmailThread to the specified object.
+     *
+     * @param obj The object to compare this against.
+     *
+     * @return true if objects are equal, false otherwise.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null || getClass() != obj.getClass())
+            return false;
+        EmailThread other = (EmailThread) obj;
+        return id == other.id && messageCount == other.messageCount
+                && Objects.equals(subject, other.subject)
+                && Objects.equals(latestDate, other.latestDate);
+    }
+
+    /**
+     * Returns a hash code value for this object.
+     *
+     * @return a hash code value for this object.
+     */
+    @Override
+    public int hashCode() {
+        int hash = 5;
+        hash = 37 * hash + id;
+        hash = 37 * hash + Objects.hashCode(subject);
+        hash = 37 * hash + messageCount;
+        hash = 37 * hash + Objects.hashCode(latestDate);
+        return hash;
+    }
+
+    /**
+     * Returns the String representation of the thread.
+     *
+     * @return the String representation of the thread.
+     */
+    @Override
+    public String toString() {
+        return "EmailThread{" + "id=" + id + ", subject=" + subject + ", messageCount="
+                + messageCount + ", latestDate=" + latestDate + "}";
+    }
+}
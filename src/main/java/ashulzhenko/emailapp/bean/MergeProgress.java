@@ -0,0 +1,84 @@
+package ashulzhenko.emailapp.bean;
+
+/**
+ * MergeProgress class describes how far a mail merge went, so that it is
+ * resumed after the last recipient it finished: the number of recipients
+ * handled from the start of the list, and how many of their emails were
+ * sent and how many could not be sent.
+ *
+ * @author Alena Shulzhenko
+ * @version 19/10/2026
+ * @since 1.8
+ */
+public class MergeProgress {
+    private final String name;
+    private final long position;
+    private final int sent;
+    private final int failed;
+
+    /**
+     * Instantiates the progress of a mail merge.
+     *
+     * @param name the name of the mail merge.
+     * @param position the number of recipients handled from the start of the list.
+     * @param sent the number of emails sent.
+     * @param failed the number of emails that could not be sent.
+     */
+    public MergeProgress(String name, long position, int sent, int failed) {
+        if (name == null || name.isEmpty())
+            throw new IllegalArgumentException("Mail merge name value is invalid: " + name);
+        if (position < 0 || sent < 0 || failed < 0)
+            throw new IllegalArgumentException("Mail merge progress value is negative.");
+        this.name = name;
+        this.position = position;
+        this.sent = sent;
+        this.failed = failed;
+    }
+
+    /**
+     * Returns the name of the mail merge.
+     *
+     * @return the name of the mail merge.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the number of recipients handled from the start of the list.
+     *
+     * @return the position of the next recipient.
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    /**
+     * Returns the number of emails sent.
+     *
+     * @return the number of emails sent.
+     */
+    public int getSent() {
+        return sent;
+    }
+
+    /**
+     * Returns the number of emails that could not be sent.
+     *
+     * @return the number of emails that could not be sent.
+     */
+    public int getFailed() {
+        return failed;
+    }
+
+    /**
+     * The object itself is returned while represented as a string.
+     *
+     * @return the name, the position and the numbers of emails in a String.
+     */
+    @Override
+    public String toString() {
+        return "MergeProgress{" + "name=" + name + ", position=" + position
+                + ", sent=" + sent + ", failed=" + failed + "}";
+    }
+}
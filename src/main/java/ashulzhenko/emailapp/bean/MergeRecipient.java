@@ -0,0 +1,61 @@
+package ashulzhenko.emailapp.bean;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * MergeRecipient class describes one recipient of a mail merge:
+ * the email address and the values of the placeholders of the template
+ * for this recipient, e.g. the name used in the greeting.
+ *
+ * @author Alena Shulzhenko
+ * @version 19/10/2026
+ * @since 1.8
+ */
+public class MergeRecipient {
+    private final String address;
+    private final Map<String, String> variables;
+
+    /**
+     * Instantiates the recipient.
+     *
+     * @param address the email address of the recipient.
+     * @param variables the values of the placeholders by their names.
+     */
+    public MergeRecipient(String address, Map<String, String> variables) {
+        if (address == null || address.isEmpty())
+            throw new IllegalArgumentException("Recipient address value is invalid: " + address);
+        this.address = address;
+        this.variables = variables == null ? Collections.emptyMap()
+                                           : Collections.unmodifiableMap(new HashMap<>(variables));
+    }
+
+    /**
+     * Returns the email address of the recipient.
+     *
+     * @return the email address of the recipient.
+     */
+    public String getAddress() {
+        return address;
+    }
+
+    /**
+     * Returns the values of the placeholders by their names.
+     *
+     * @return the values of the placeholders.
+     */
+    public Map<String, String> getVariables() {
+        return variables;
+    }
+
+    /**
+     * The object itself is returned while represented as a string.
+     *
+     * @return the address and the values of the recipient in a String.
+     */
+    @Override
+    public String toString() {
+        return "MergeRecipient{" + "address=" + address + ", variables=" + variables + "}";
+    }
+}
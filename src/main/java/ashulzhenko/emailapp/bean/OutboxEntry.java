@@ -0,0 +1,68 @@
+package ashulzhenko.emailapp.bean;
+
+/**
+ * OutboxEntry class describes an email of the outbox that is due to be
+ * sent: its id and how many times sending it failed before.
+ *
+ * @author Alena Shulzhenko
+ * @version 19/10/2026
+ * @since 1.8
+ */
+public class OutboxEntry {
+    private final int emailId;
+    private final int attempts;
+    private final String lastError;
+
+    /**
+     * Instantiates the entry.
+     *
+     * @param emailId the id of the email.
+     * @param attempts the number of failed attempts to send the email.
+     * @param lastError why the last attempt failed; null if it was not tried yet.
+     */
+    public OutboxEntry(int emailId, int attempts, String lastError) {
+        if (emailId < 1 || attempts < 0)
+            throw new IllegalArgumentException("Invalid outbox entry: " + emailId + ", " + attempts);
+        this.emailId = emailId;
+        this.attempts = attempts;
+        this.lastError = lastError;
+    }
+
+    /**
+     * Returns the id of the email.
+     *
+     * @return the id of the email.
+     */
+    public int getEmailId() {
+        return emailId;
+    }
+
+    /**
+     * Returns the number of failed attempts to send the email.
+     *
+     * @return the number of failed attempts.
+     */
+    public int getAttempts() {
+        return attempts;
+    }
+
+    /**
+     * Returns why the last attempt failed.
+     *
+     * @return the error of the last attempt; null if it was not tried yet.
+     */
+    public String getLastError() {
+        return lastError;
+    }
+
+    /**
+     * The object itself is returned while represented as a string.
+     *
+     * @return the id, the number of attempts and the last error in a String.
+     */
+    @Override
+    public String toString() {
+        return "OutboxEntry{" + "emailId=" + emailId + ", attempts=" + attempts
+                + ", lastError=" + lastError + "}";
+    }
+}
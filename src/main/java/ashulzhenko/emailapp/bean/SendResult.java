@@ -0,0 +1,98 @@
+package ashulzhenko.emailapp.bean;
+
+import com.sun.mail.smtp.SMTPAddressFailedException;
+import com.sun.mail.smtp.SMTPSendFailedException;
+
+/**
+ * SendResult class tells whether one email of the emails sent together
+ * was sent, or why it failed.
+ *
+ * @author Alena Shulzhenko
+ * @version 19/10/2026
+ * @since 1.8
+ */
+public class SendResult {
+    //SMTP reply codes of permanent failures start at 500
+    private static final int PERMANENT_FAILURE = 500;
+
+    private final EmailCustom email;
+    private final RuntimeException error;
+
+    /**
+     * Instantiates the result of an email that was sent.
+     *
+     * @param email the sent email, with its message id.
+     */
+    public SendResult(EmailCustom email) {
+        this(email, null);
+    }
+
+    /**
+     * Instantiates the result of an email.
+     *
+     * @param email the email.
+     * @param error why the email was not sent; null if it was sent.
+     */
+    public SendResult(EmailCustom email, RuntimeException error) {
+        if (email == null)
+            throw new IllegalArgumentException("Email value is null.");
+        this.email = email;
+        this.error = error;
+    }
+
+    /**
+     * Returns the email.
+     *
+     * @return the email.
+     */
+    public EmailCustom getEmail() {
+        return email;
+    }
+
+    /**
+     * Verifies whether the email was sent.
+     *
+     * @return true if the email was sent; false otherwise.
+     */
+    public boolean isSent() {
+        return error == null;
+    }
+
+    /**
+     * Returns why the email was not sent.
+     *
+     * @return the failure; null if the email was sent.
+     */
+    public RuntimeException getError() {
+        return error;
+    }
+
+    /**
+     * Verifies whether sending the email again cannot succeed, e.g. because
+     * the server refused its recipients or an attachment cannot be read.
+     *
+     * @return true if the email failed and must not be tried again.
+     */
+    public boolean isPermanent() {
+        if (error instanceof IllegalArgumentException)
+            return true;
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SMTPSendFailedException)
+                return ((SMTPSendFailedException) cause).getReturnCode() >= PERMANENT_FAILURE;
+            if (cause instanceof SMTPAddressFailedException)
+                return ((SMTPAddressFailedException) cause).getReturnCode() >= PERMANENT_FAILURE;
+        }
+        return false;
+    }
+
+    /**
+     * The object itself is returned while represented as a string.
+     *
+     * @return the message id of the email and the failure in a String.
+     */
+    @Override
+    public String toString() {
+        return "SendResult{" + "messageId=" + email.getMessageId() + ", sent=" + isSent()
+                + (error == null ? "" : ", error=" + error.getMessage()) + "}";
+    }
+}
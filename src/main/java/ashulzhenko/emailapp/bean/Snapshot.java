@@ -0,0 +1,114 @@
+package ashulzhenko.emailapp.bean;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Snapshot class describes a backup of the mail store: the directory
+ * where its files are, the snapshot it is based on, when it was taken,
+ * the highest value of every table it contains and the number of rows
+ * written for every table.
+ *
+ * @author Alena Shulzhenko
+ * @version 19/10/2026
+ * @since 1.8
+ */
+public class Snapshot {
+    private final File directory;
+    private final File parent;
+    private final Date created;
+    private final Map<String, Long> cursors;
+    private final Map<String, Long> rows;
+
+    /**
+     * Instantiates the snapshot.
+     *
+     * @param directory the directory of the snapshot files.
+     * @param parent the directory of the snapshot this one is based on; 
+     *               null for a full snapshot.
+     * @param created the time the snapshot was taken, as seen by the database.
+     * @param cursors the highest value captured of every incremental table.
+     * @param rows the number of rows written for every table.
+     */
+    public Snapshot(File directory, File parent, Date created, 
+                    Map<String, Long> cursors, Map<String, Long> rows) {
+        if(directory == null || created == null || cursors == null || rows == null)
+            throw new IllegalArgumentException("Snapshot values cannot be null.");
+        this.directory = directory;
+        this.parent = parent;
+        this.created = new Date(created.getTime());
+        this.cursors = Collections.unmodifiableMap(new LinkedHashMap<>(cursors));
+        this.rows = Collections.unmodifiableMap(new LinkedHashMap<>(rows));
+    }
+
+    /**
+     * Returns the directory of the snapshot files.
+     *
+     * @return the directory of the snapshot files.
+     */
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Returns the directory of the snapshot this one is based on.
+     *
+     * @return the directory of the previous snapshot; null for a full snapshot.
+     */
+    public File getParent() {
+        return parent;
+    }
+
+    /**
+     * Returns the time the snapshot was taken.
+     *
+     * @return the time the snapshot was taken, as seen by the database.
+     */
+    public Date getCreated() {
+        return new Date(created.getTime());
+    }
+
+    /**
+     * Returns the highest value captured of an incremental table.
+     *
+     * @param table the name of the table.
+     *
+     * @return the highest id, or the time for tables read by date; 0 if none was captured.
+     */
+    public long getCursor(String table) {
+        Long cursor = cursors.get(table);
+        return cursor == null ? 0 : cursor;
+    }
+
+    /**
+     * Returns the highest values captured of every incremental table.
+     *
+     * @return the highest values by table name.
+     */
+    public Map<String, Long> getCursors() {
+        return cursors;
+    }
+
+    /**
+     * Returns the number of rows written for every table.
+     *
+     * @return the number of rows by table name.
+     */
+    public Map<String, Long> getRows() {
+        return rows;
+    }
+
+    /**
+     * Returns the String representation of the snapshot.
+     *
+     * @return the String representation of the snapshot.
+     */
+    @Override
+    public String toString() {
+        return "Snapshot{" + "directory=" + directory + ", parent=" + parent 
+                + ", created=" + created + ", rows=" + rows + "}";
+    }
+}
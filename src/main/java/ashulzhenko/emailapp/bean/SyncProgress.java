@@ -0,0 +1,89 @@
+package ashulzhenko.emailapp.bean;
+
+/**
+ * SyncProgress class describes how far the synchronization of one folder
+ * of the mail server went: whether it waits, runs, is done or failed,
+ * and the number of new emails saved in its directory.
+ *
+ * @author Alena Shulzhenko
+ * @version 19/10/2026
+ * @since 1.8
+ */
+public class SyncProgress {
+
+    /**
+     * The steps of the synchronization of a folder.
+     */
+    public enum Status {
+        WAITING, RUNNING, DONE, FAILED
+    }
+
+    private final String folder;
+    private final String directory;
+    private final Status status;
+    private final int received;
+
+    /**
+     * Instantiates the progress of a folder.
+     *
+     * @param folder the name of the folder of the server.
+     * @param directory the directory where the emails of the folder are saved.
+     * @param status the step of the synchronization.
+     * @param received the number of new emails saved.
+     */
+    public SyncProgress(String folder, String directory, Status status, int received) {
+        if (folder == null || directory == null || status == null)
+            throw new IllegalArgumentException("Synchronization progress value is null.");
+        this.folder = folder;
+        this.directory = directory;
+        this.status = status;
+        this.received = received;
+    }
+
+    /**
+     * Returns the name of the folder of the server.
+     *
+     * @return the name of the folder of the server.
+     */
+    public String getFolder() {
+        return folder;
+    }
+
+    /**
+     * Returns the directory where the emails of the folder are saved.
+     *
+     * @return the name of the directory.
+     */
+    public String getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Returns the step of the synchronization.
+     *
+     * @return the step of the synchronization.
+     */
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * Returns the number of new emails saved.
+     *
+     * @return the number of new emails saved.
+     */
+    public int getReceived() {
+        return received;
+    }
+
+    /**
+     * The object itself is returned while represented as a string.
+     *
+     * @return the folder, its directory, the step and the number of new emails in a String.
+     */
+    @Override
+    public String toString() {
+        return "SyncProgress{" + "folder=" + folder + ", directory=" + directory
+                + ", status=" + status + ", received=" + received + "}";
+    }
+}
@@ -0,0 +1,103 @@
+package ashulzhenko.emailapp.bean;
+
+/**
+ * SyncState class describes how far one folder of the mail server was
+ * synchronized: the UIDVALIDITY of the folder and the highest UID received.
+ * The emails whose UID is above it are new. If the UIDVALIDITY of the folder
+ * changed, its UIDs were given again and the whole folder is received.
+ *
+ * @author Alena Shulzhenko
+ * @version 19/10/2026
+ * @since 1.8
+ */
+public class SyncState {
+    private final String folder;
+    private long uidValidity;
+    private long lastUid;
+    private boolean resync;
+
+    /**
+     * Instantiates the state of a folder that was never synchronized.
+     *
+     * @param folder the name of the folder of the server, e.g. INBOX.
+     */
+    public SyncState(String folder) {
+        this(folder, -1, 0);
+    }
+
+    /**
+     * Instantiates the state of a folder.
+     *
+     * @param folder the name of the folder of the server, e.g. INBOX.
+     * @param uidValidity the UIDVALIDITY of the folder; -1 if it is not known.
+     * @param lastUid the highest UID received; 0 if none.
+     */
+    public SyncState(String folder, long uidValidity, long lastUid) {
+        if (folder == null || folder.isEmpty())
+            throw new IllegalArgumentException("Folder value is invalid.");
+        this.folder = folder;
+        this.uidValidity = uidValidity;
+        this.lastUid = lastUid;
+    }
+
+    /**
+     * Returns the name of the folder of the server.
+     *
+     * @return the name of the folder of the server.
+     */
+    public String getFolder() {
+        return folder;
+    }
+
+    /**
+     * Returns the UIDVALIDITY of the folder.
+     *
+     * @return the UIDVALIDITY of the folder; -1 if it is not known.
+     */
+    public long getUidValidity() {
+        return uidValidity;
+    }
+
+    /**
+     * Returns the highest UID received.
+     *
+     * @return the highest UID received; 0 if none.
+     */
+    public long getLastUid() {
+        return lastUid;
+    }
+
+    /**
+     * Returns whether the whole folder was received by the last synchronization,
+     * so that it may contain emails that were already saved.
+     *
+     * @return true if the whole folder was received; false otherwise.
+     */
+    public boolean isResync() {
+        return resync;
+    }
+
+    /**
+     * Sets the state after a synchronization.
+     *
+     * @param uidValidity the UIDVALIDITY of the folder.
+     * @param lastUid the highest UID received.
+     * @param resync true if the whole folder was received.
+     */
+    public void update(long uidValidity, long lastUid, boolean resync) {
+        this.uidValidity = uidValidity;
+        this.lastUid = lastUid;
+        this.resync = resync;
+    }
+
+    /**
+     * The object itself is returned while represented as a string.
+     *
+     * @return the folder, its UIDVALIDITY and the highest UID received in a String.
+     */
+    @Override
+    public String toString() {
+        return "SyncState{" + "folder=" + folder + ", uidValidity=" + uidValidity
+                + ", lastUid=" + lastUid + ", resync=" + resync + "}";
+    }
+}
@@ -23,8 +23,13 @@ public class UserConfigBean implements Serializable {
     private StringProperty mysqlDbName;
     private StringProperty mysqlPassword;
     private StringProperty mysqlPort;
+    private StringProperty mysqlReplicas;
     private StringProperty mysqlUrl;
     private StringProperty mysqlUser;
+    private StringProperty readAfterWriteWindow;
+    private StringProperty slowQueryThreshold;
+    private StringProperty archiveAge;
+    private StringProperty imapIdleTime;
     private StringProperty smtpPort;
     private StringProperty smtpUrl;
 
@@ -62,6 +67,11 @@ public class UserConfigBean implements Serializable {
         this.mysqlPassword = new SimpleStringProperty("");
         this.mysqlUrl = new SimpleStringProperty("");
         this.mysqlUser = new SimpleStringProperty("");
+        this.mysqlReplicas = new SimpleStringProperty("");
+        this.readAfterWriteWindow = new SimpleStringProperty("2000");
+        this.slowQueryThreshold = new SimpleStringProperty("500");
+        this.archiveAge = new SimpleStringProperty("365");
+        this.imapIdleTime = new SimpleStringProperty("300");
     }
     
     
@@ -111,6 +121,21 @@ public class UserConfigBean implements Serializable {
         if (!Objects.equals(this.mysqlUser.get(), other.mysqlUser.get())) {
             return false;
         }
+        if (!Objects.equals(this.mysqlReplicas.get(), other.mysqlReplicas.get())) {
+            return false;
+        }
+        if (!Objects.equals(this.readAfterWriteWindow.get(), other.readAfterWriteWindow.get())) {
+            return false;
+        }
+        if (!Objects.equals(this.slowQueryThreshold.get(), other.slowQueryThreshold.get())) {
+            return false;
+        }
+        if (!Objects.equals(this.archiveAge.get(), other.archiveAge.get())) {
+            return false;
+        }
+        if (!Objects.equals(this.imapIdleTime.get(), other.imapIdleTime.get())) {
+            return false;
+        }
         if (!Objects.equals(this.smtpUrl.get(), other.smtpUrl.get())) {
             return false;
         }
@@ -182,6 +207,16 @@ public class UserConfigBean implements Serializable {
         return Integer.parseInt(mysqlPort.get());
     }
     
+    /**
+     * Returns the comma separated list of MySQL read replicas.
+     * Each replica is given as host or host:port.
+     *
+     * @return the comma separated list of MySQL read replicas.
+     */
+    public String getMysqlReplicas() {
+        return mysqlReplicas.get();
+    }
+    
     /**
      * Returns the URL of the MySQL server.
      *
@@ -199,6 +234,44 @@ public class UserConfigBean implements Serializable {
     public String getMysqlUserName() {
         return mysqlUser.get();
     }
+    
+    /**
+     * Returns the time in milliseconds during which reads are sent 
+     * to the primary MySQL server after a write.
+     *
+     * @return the read-after-write window in milliseconds.
+     */
+    public int getReadAfterWriteWindow() {
+        return Integer.parseInt(readAfterWriteWindow.get());
+    }
+    
+    /**
+     * Returns the time in milliseconds above which a SQL statement
+     * is recorded in the slow query log.
+     *
+     * @return the slow query threshold in milliseconds.
+     */
+    public int getSlowQueryThreshold() {
+        return Integer.parseInt(slowQueryThreshold.get());
+    }
+    
+    /**
+     * Returns the age in days after which emails are archived.
+     *
+     * @return the archive age in days; 0 if emails are never archived.
+     */
+    public int getArchiveAge() {
+        return Integer.parseInt(archiveAge.get());
+    }
+    
+    /**
+     * Returns the time in seconds after which an unused IMAP session is closed.
+     *
+     * @return the IMAP idle time in seconds.
+     */
+    public int getImapIdleTime() {
+        return Integer.parseInt(imapIdleTime.get());
+    }
 
     /**
      * Returns the port number of the SMTP server.
@@ -281,6 +354,15 @@ public class UserConfigBean implements Serializable {
         return mysqlPort;
     }
     
+    /**
+     * Returns the list of MySQL read replicas as a property.
+     *
+     * @return the list of MySQL read replicas as a property.
+     */
+    public StringProperty mysqlReplicas() {
+        return mysqlReplicas;
+    }
+    
     /**
      * Returns the URL of the MySQL server as a property.
      *
@@ -299,6 +381,42 @@ public class UserConfigBean implements Serializable {
         return mysqlUser;
     }
     
+    /**
+     * Returns the read-after-write window in milliseconds as a property.
+     *
+     * @return the read-after-write window in milliseconds as a property.
+     */
+    public StringProperty readAfterWriteWindow() {
+        return readAfterWriteWindow;
+    }
+    
+    /**
+     * Returns the slow query threshold in milliseconds as a property.
+     *
+     * @return the slow query threshold in milliseconds as a property.
+     */
+    public StringProperty slowQueryThreshold() {
+        return slowQueryThreshold;
+    }
+    
+    /**
+     * Returns the archive age in days as a property.
+     *
+     * @return the archive age in days as a property.
+     */
+    public StringProperty archiveAge() {
+        return archiveAge;
+    }
+    
+    /**
+     * Returns the IMAP idle time in seconds as a property.
+     *
+     * @return the IMAP idle time in seconds as a property.
+     */
+    public StringProperty imapIdleTime() {
+        return imapIdleTime;
+    }
+    
     /**
      * Returns the port number of the SMTP server as a property.
      *
@@ -336,6 +454,11 @@ public class UserConfigBean implements Serializable {
         hash = 23 * hash + Objects.hashCode(this.smtpPort.get());
         hash = 23 * hash + Objects.hashCode(this.smtpUrl.get());
         hash = 23 * hash + Objects.hashCode(this.mysqlDbName.get());
+        hash = 23 * hash + Objects.hashCode(this.mysqlReplicas.get());
+        hash = 23 * hash + Objects.hashCode(this.readAfterWriteWindow.get());
+        hash = 23 * hash + Objects.hashCode(this.slowQueryThreshold.get());
+        hash = 23 * hash + Objects.hashCode(this.archiveAge.get());
+        hash = 23 * hash + Objects.hashCode(this.imapIdleTime.get());
         return hash;
     }
     
@@ -402,6 +525,15 @@ public class UserConfigBean implements Serializable {
         this.mysqlPort.set(mysqlPort+"");
     }
     
+    /**
+     * Sets the comma separated list of MySQL read replicas (host or host:port).
+     *
+     * @param mysqlReplicas the list of MySQL read replicas; empty if none.
+     */
+    public void setMysqlReplicas(String mysqlReplicas) {
+        this.mysqlReplicas.set(mysqlReplicas == null ? "" : mysqlReplicas);
+    }
+    
     /**
      * Sets the URL of the MySQL server.
      *
@@ -419,6 +551,44 @@ public class UserConfigBean implements Serializable {
     public void setMysqlUserName(String mysqlUser) {
         this.mysqlUser.set(mysqlUser);
     }
+    
+    /**
+     * Sets the time in milliseconds during which reads are sent 
+     * to the primary MySQL server after a write.
+     *
+     * @param readAfterWriteWindow the read-after-write window in milliseconds.
+     */
+    public void setReadAfterWriteWindow(int readAfterWriteWindow) {
+        this.readAfterWriteWindow.set(readAfterWriteWindow+"");
+    }
+    
+    /**
+     * Sets the time in milliseconds above which a SQL statement
+     * is recorded in the slow query log.
+     *
+     * @param slowQueryThreshold the slow query threshold in milliseconds.
+     */
+    public void setSlowQueryThreshold(int slowQueryThreshold) {
+        this.slowQueryThreshold.set(slowQueryThreshold+"");
+    }
+    
+    /**
+     * Sets the age in days after which emails are archived.
+     *
+     * @param archiveAge the archive age in days; 0 if emails are never archived.
+     */
+    public void setArchiveAge(int archiveAge) {
+        this.archiveAge.set(archiveAge+"");
+    }
+    
+    /**
+     * Sets the time in seconds after which an unused IMAP session is closed.
+     *
+     * @param imapIdleTime the IMAP idle time in seconds.
+     */
+    public void setImapIdleTime(int imapIdleTime) {
+        this.imapIdleTime.set(imapIdleTime+"");
+    }
 
     /**
      * Sets the port number of the SMTP server.
@@ -444,7 +614,9 @@ public class UserConfigBean implements Serializable {
      *
      * @return user's email, password, IMAP port number, IMAP server URL, 
      *         SMTP port number, SMTP server URL, MySQL URL, MySQL port number,
-     *         MySQL user name, MySQL password, and MySQL database name in a String.
+     *         MySQL user name, MySQL password, MySQL database name, MySQL replicas,
+     *         read-after-write window, slow query threshold, archive age
+     *         and IMAP idle time in a String.
      */
     @Override
     public String toString() {
@@ -453,7 +625,12 @@ public class UserConfigBean implements Serializable {
                 ", imapUrl=" + imapUrl.get() + ", mysqlDbName=" + mysqlDbName.get() + 
                 ", mysqlPassword=" + mysqlPassword.get() + ", mysqlPort=" + mysqlPort.get() + 
                 ", mysqlUrl=" + mysqlUrl.get() + ", mysqlUser=" + mysqlUser.get() + 
-                ", smtpPort=" + smtpPort.get() + ", smtpUrl=" + smtpUrl.get() + "}";
+                ", smtpPort=" + smtpPort.get() + ", smtpUrl=" + smtpUrl.get() + 
+                ", mysqlReplicas=" + mysqlReplicas.get() + 
+                ", readAfterWriteWindow=" + readAfterWriteWindow.get() + 
+                ", slowQueryThreshold=" + slowQueryThreshold.get() + 
+                ", archiveAge=" + archiveAge.get() + 
+                ", imapIdleTime=" + imapIdleTime.get() + "}";
     }
 
 }
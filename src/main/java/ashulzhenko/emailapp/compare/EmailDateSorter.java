@@ -0,0 +1,57 @@
+package ashulzhenko.emailapp.compare;
+
+import ashulzhenko.emailapp.bean.EmailCustom;
+import java.util.Comparator;
+import java.util.Date;
+
+/**
+ * EmailDateSorter implements the Comparator<EmailCustom> interface 
+ * to enable sorting of emails from the most recent to the oldest.
+ * The date of an email is its received date or, for sent emails, its sent date,
+ * which is the order used by the database when listing a directory.
+ * Emails with the same date are sorted by id, the highest first.
+ * 
+ * @author Alena Shulzhenko
+ * @version 19/10/2026
+ * @since 1.8
+ */
+public class EmailDateSorter implements Comparator<EmailCustom> {
+
+    /**
+     * Compares two EmailCustom based on date.
+     * 
+     * @param o1 the first EmailCustom to be compared.
+     * @param o2 the second EmailCustom to be compared.
+     * 
+     * @return a negative integer, zero, or a positive integer as the first
+     *         argument is more recent than, as recent as, or older than the second.
+     */
+    @Override
+    public int compare(EmailCustom o1, EmailCustom o2) {
+        if(o1 == o2)
+            return 0;
+        if(o1 == null || o2 == null)
+            throw new IllegalArgumentException("One of the provided values is null");
+        
+        Date d1 = getDate(o1);
+        Date d2 = getDate(o2);
+        int result;
+        //emails without a date are the oldest, as in the database
+        if(d1 == null || d2 == null)
+            result = d1 == d2 ? 0 : (d1 == null ? 1 : -1);
+        else
+            result = d2.compareTo(d1);
+        return result != 0 ? result : Integer.compare(o2.getId(), o1.getId());
+    }
+    
+    /**
+     * Returns the date used to sort the email.
+     * 
+     * @param email the email which date is returned.
+     * 
+     * @return the received date; the sent date if there is no received date.
+     */
+    private Date getDate(EmailCustom email) {
+        return email.getReceivedDate() != null ? email.getReceivedDate() : email.getSentDate();
+    }
+}
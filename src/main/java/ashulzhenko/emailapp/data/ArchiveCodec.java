@@ -0,0 +1,136 @@
+package ashulzhenko.emailapp.data;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * ArchiveCodec class converts the heavy part of an email (its messages
+ * and its attachments) to the compressed payload kept in the archive
+ * table, and back.
+ * The payload starts with a format version, so that archives written
+ * today can still be read if the format changes.
+ *
+ * @author Alena Shulzhenko
+ * @version 19/10/2026
+ * @since 1.8
+ */
+class ArchiveCodec {
+    private static final int VERSION = 1;
+
+    private final String message;
+    private final List<String> names;
+    private final List<byte[]> attachments;
+
+    /**
+     * Instantiates the content of an archived email.
+     *
+     * @param message the messages of the email as saved in the emails table.
+     * @param names the file names of the attachments.
+     * @param attachments the contents of the attachments.
+     */
+    ArchiveCodec(String message, List<String> names, List<byte[]> attachments) {
+        if(names.size() != attachments.size())
+            throw new IllegalArgumentException("Every attachment must have a name.");
+        this.message = message == null ? "" : message;
+        this.names = names;
+        this.attachments = attachments;
+    }
+
+    /**
+     * Returns the messages of the email.
+     *
+     * @return the messages as saved in the emails table.
+     */
+    String getMessage() {
+        return message;
+    }
+
+    /**
+     * Returns the file names of the attachments.
+     *
+     * @return the file names of the attachments.
+     */
+    List<String> getNames() {
+        return names;
+    }
+
+    /**
+     * Returns the contents of the attachments.
+     *
+     * @return the contents of the attachments.
+     */
+    List<byte[]> getAttachments() {
+        return attachments;
+    }
+
+    /**
+     * Returns the compressed payload.
+     *
+     * @return the compressed payload.
+     */
+    byte[] encode() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try(DataOutputStream out = new DataOutputStream(new GZIPOutputStream(bytes))) {
+            out.writeInt(VERSION);
+            writeBytes(out, message.getBytes(StandardCharsets.UTF_8));
+            out.writeInt(attachments.size());
+            for(int i = 0; i < attachments.size(); i++) {
+                writeBytes(out, names.get(i).getBytes(StandardCharsets.UTF_8));
+                writeBytes(out, attachments.get(i));
+            }
+        }
+        catch(IOException e) {
+            throw new IllegalStateException("Unable to compress the email.", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Reads the compressed payload.
+     *
+     * @param payload the compressed payload.
+     *
+     * @return the content of the archived email.
+     *
+     * @throws IOException If the payload is damaged or has an unknown format.
+     */
+    static ArchiveCodec decode(byte[] payload) throws IOException {
+        try(DataInputStream in = new DataInputStream
+                    (new GZIPInputStream(new ByteArrayInputStream(payload)))) {
+            int version = in.readInt();
+            if(version != VERSION)
+                throw new IOException("Unknown archive format: " + version);
+            String message = new String(readBytes(in), StandardCharsets.UTF_8);
+            int count = in.readInt();
+            List<String> names = new ArrayList<>(count);
+            List<byte[]> attachments = new ArrayList<>(count);
+            for(int i = 0; i < count; i++) {
+                names.add(new String(readBytes(in), StandardCharsets.UTF_8));
+                attachments.add(readBytes(in));
+            }
+            return new ArchiveCodec(message, names, attachments);
+        }
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] value) throws IOException {
+        out.writeInt(value.length);
+        out.write(value);
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if(length < 0)
+            throw new IOException("Damaged archive.");
+        byte[] value = new byte[length];
+        in.readFully(value);
+        return value;
+    }
+}
@@ -0,0 +1,89 @@
+package ashulzhenko.emailapp.data;
+
+import ashulzhenko.emailapp.bean.Change;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * ChangeLog class records the changes of the emails and directories
+ * in the change_log table, on the connection that made the change,
+ * so that a change and its record are committed together.
+ * The auto-incremented key of the table is the version of the store.
+ *
+ * @author Alena Shulzhenko
+ * @version 19/10/2026
+ * @since 1.8
+ */
+class ChangeLog {
+    //time in seconds to wait for the transaction that holds a missing version
+    private static final int LOCK_WAIT = 1;
+    private static final int ER_LOCK_WAIT_TIMEOUT = 1205;
+
+    /**
+     * Prevents instantiation.
+     */
+    private ChangeLog() {}
+
+    /**
+     * Records a change.
+     *
+     * @param connection the connection that made the change.
+     * @param entity the kind of the changed object.
+     * @param operation the operation done on the object.
+     * @param id the id of the email, directory or search; 0 for MAILBOX.
+     *
+     * @throws SQLException If there was a problem when writing to the database.
+     */
+    static void record(Connection connection, Change.Entity entity, Change.Operation operation,
+                       int id) throws SQLException {
+        String query = "insert into change_log (entity, operation, entityId) values (?,?,?)";
+        try(PreparedStatement pstmt = connection.prepareStatement(query)) {
+            pstmt.setString(1, entity.name());
+            pstmt.setString(2, operation.name());
+            pstmt.setInt(3, id);
+            pstmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Verifies whether the missing versions were rolled back, rather than
+     * recorded by transactions that are still open. The locking read waits for
+     * the transactions that inserted the versions; if they do not end in time,
+     * or if they were committed meanwhile, the versions are not rolled back.
+     * The connection must be in autocommit mode, so that the lock is not held
+     * until the end of a transaction.
+     *
+     * @param connection the connection to the database.
+     * @param from the first missing version.
+     * @param to the version after the last missing one.
+     *
+     * @return true if no change has the missing versions; false otherwise.
+     *
+     * @throws SQLException If there was a problem when reading from the database.
+     */
+    static boolean isRolledBack(Connection connection, long from, long to) throws SQLException {
+        String query = "select count(*) from change_log where version >= ? and version < ? "
+                + "lock in share mode";
+        try(Statement stmt = connection.createStatement()) {
+            stmt.execute("set session innodb_lock_wait_timeout = " + LOCK_WAIT);
+            try(PreparedStatement pstmt = connection.prepareStatement(query)) {
+                pstmt.setLong(1, from);
+                pstmt.setLong(2, to);
+                try(ResultSet rs = pstmt.executeQuery()) {
+                    return rs.next() && rs.getLong(1) == 0;
+                }
+            }
+            catch(SQLException e) {
+                if(e.getErrorCode() == ER_LOCK_WAIT_TIMEOUT)
+                    return false;
+                throw e;
+            }
+            finally {
+                stmt.execute("set session innodb_lock_wait_timeout = default");
+            }
+        }
+    }
+}
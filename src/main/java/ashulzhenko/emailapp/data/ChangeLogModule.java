@@ -0,0 +1,143 @@
+package ashulzhenko.emailapp.data;
+
+import ashulzhenko.emailapp.bean.Change;
+import ashulzhenko.emailapp.bean.UserConfigBean;
+import ashulzhenko.emailapp.interfaces.ChangeLogDAO;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * ChangeLogModule class is used to read the changes of the emails and
+ * directories recorded by the other modules, so that the application only
+ * reads again what changed, including the changes made by other
+ * applications that use the same database.
+ * The versions are given when the changes are recorded, so a change may be
+ * committed after a change with a greater version, however long its
+ * transaction lasts. The changes after a missing version are therefore only
+ * returned once no open transaction holds it: the missing versions are read
+ * with a locking read, which waits for the transaction that inserted them.
+ *
+ * @author Alena Shulzhenko
+ * @version 19/10/2026
+ * @since 1.8
+ */
+public class ChangeLogModule extends DatabaseModule implements ChangeLogDAO {
+
+    /**
+     * Instantiates the object with all necessary information to work with the database.
+     *
+     * @param userInfo user's information needed to connect to the database.
+     * @throws SQLException If there is a problem when connecting to the database.
+     */
+    public ChangeLogModule(UserConfigBean userInfo) throws SQLException {
+        super(userInfo);
+    }
+
+    /**
+     * Returns the version of the store after its latest change.
+     *
+     * @return the current version; 0 if nothing was changed.
+     *
+     * @throws SQLException If there was a problem when reading from the database.
+     */
+    @Override
+    public long findCurrentVersion() throws SQLException {
+        String query = "select coalesce(max(version), 0) from change_log";
+        Connection connection = getConnection();
+        try(PreparedStatement pstmt = connection.prepareStatement(query);
+            ResultSet rs = pstmt.executeQuery()) {
+            rs.next();
+            return rs.getLong(1);
+        }
+        finally {
+            closeConnection(connection);
+        }
+    }
+
+    /**
+     * Returns the changes made after the given version, the oldest first.
+     * The changes are read from the main database, since a replica may
+     * not have them yet.
+     *
+     * @param version the version already read by the caller.
+     * @param number the maximum number of changes to retrieve.
+     *
+     * @return the changes after the version; null if some of them were
+     *         removed and the store must be read again.
+     *
+     * @throws SQLException If there was a problem when reading from the database.
+     */
+    @Override
+    public List<Change> findChangesSince(long version, int number) throws SQLException {
+        if(version < 0 || number < 1)
+            throw new IllegalArgumentException ("Invalid arguments. version >= 0 and number > 0.");
+
+        List<Change> changes = new ArrayList<>();
+        String query = "select version, entity, operation, entityId "
+                + "from change_log where version > ? order by version limit ?";
+        Connection connection = getConnection();
+        try {
+            //the changes after the version were pruned
+            try(PreparedStatement pstmt = connection.prepareStatement("select min(version) from change_log");
+                ResultSet rs = pstmt.executeQuery()) {
+                if(rs.next() && rs.getLong(1) > version + 1)
+                    return null;
+            }
+            try(PreparedStatement pstmt = connection.prepareStatement(query)) {
+                pstmt.setLong(1, version);
+                pstmt.setInt(2, number);
+                try(ResultSet rs = pstmt.executeQuery()) {
+                    long expected = version + 1;
+                    while(rs.next()) {
+                        long current = rs.getLong(1);
+                        //the missing versions may not be committed yet
+                        if(current != expected && !ChangeLog.isRolledBack(connection, expected, current))
+                            break;
+                        changes.add(new Change(current, Change.Entity.valueOf(rs.getString(2)),
+                                               Change.Operation.valueOf(rs.getString(3)), rs.getInt(4)));
+                        expected = current + 1;
+                    }
+                }
+            }
+        }
+        finally {
+            closeConnection(connection);
+        }
+        return changes;
+    }
+
+    /**
+     * Removes the changes recorded before the given date. The latest change
+     * is kept, so that an application which is behind can tell that
+     * changes were removed.
+     *
+     * @param olderThan the date before which changes are removed.
+     *
+     * @return the number of removed changes.
+     *
+     * @throws SQLException If there was a problem when writing to the database.
+     */
+    @Override
+    public int pruneChanges(Date olderThan) throws SQLException {
+        if(olderThan == null)
+            throw new IllegalArgumentException("Date value is null.");
+
+        long latest = findCurrentVersion();
+        String query = "delete from change_log where changed < ? and version < ?";
+        Connection connection = getConnection();
+        try(PreparedStatement pstmt = connection.prepareStatement(query)) {
+            pstmt.setTimestamp(1, new Timestamp(olderThan.getTime()));
+            pstmt.setLong(2, latest);
+            return pstmt.executeUpdate();
+        }
+        finally {
+            closeConnection(connection);
+        }
+    }
+}
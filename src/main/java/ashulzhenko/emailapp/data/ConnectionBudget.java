@@ -0,0 +1,104 @@
+package ashulzhenko.emailapp.data;
+
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ConnectionBudget class limits the number of database connections
+ * that one account can have open at the same time, so that a busy
+ * account cannot take all the connections of the database server.
+ * Accounts without a configured budget are not limited.
+ *
+ * @author Alena Shulzhenko
+ * @version 19/10/2026
+ * @since 1.8
+ */
+public class ConnectionBudget {
+    //time in seconds to wait for a free connection
+    private static final long WAIT_TIMEOUT = 30;
+    private static final Map<String, ConnectionBudget> BUDGETS = new ConcurrentHashMap<>();
+
+    private final Semaphore permits;
+    private final int limit;
+
+    /**
+     * Instantiates the budget.
+     *
+     * @param limit the maximum number of open connections.
+     */
+    private ConnectionBudget(int limit) {
+        this.limit = limit;
+        this.permits = new Semaphore(limit, true);
+    }
+
+    /**
+     * Sets the maximum number of open connections for the account.
+     * The limit applies to the connections opened after this call.
+     *
+     * @param account the email address of the account.
+     * @param limit the maximum number of open connections.
+     */
+    public static void setLimit(String account, int limit) {
+        if(account == null || limit < 1)
+            throw new IllegalArgumentException("Invalid connection budget for " + account);
+        BUDGETS.put(account, new ConnectionBudget(limit));
+    }
+
+    /**
+     * Removes the limit of the account.
+     *
+     * @param account the email address of the account.
+     */
+    public static void removeLimit(String account) {
+        if(account != null)
+            BUDGETS.remove(account);
+    }
+
+    /**
+     * Returns the budget of the account.
+     *
+     * @param account the email address of the account.
+     *
+     * @return the budget of the account; null if the account is not limited.
+     */
+    static ConnectionBudget forAccount(String account) {
+        return account == null ? null : BUDGETS.get(account);
+    }
+
+    /**
+     * Waits for a free connection.
+     *
+     * @throws SQLException If no connection becomes free in time.
+     */
+    void acquire() throws SQLException {
+        try {
+            if(!permits.tryAcquire(WAIT_TIMEOUT, TimeUnit.SECONDS))
+                throw new SQLTransientConnectionException
+                        ("All " + limit + " connections of the account are in use.");
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Interrupted while waiting for a connection.", e);
+        }
+    }
+
+    /**
+     * Returns a connection to the budget.
+     */
+    void release() {
+        permits.release();
+    }
+
+    /**
+     * Returns the number of connections that can be opened now.
+     *
+     * @return the number of connections that can be opened now.
+     */
+    public int available() {
+        return permits.availablePermits();
+    }
+}
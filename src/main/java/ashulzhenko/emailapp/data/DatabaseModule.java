@@ -9,11 +9,12 @@ import java.io.StringReader;
 import static java.nio.file.Files.readAllBytes;
 import static java.nio.file.Paths.get;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -26,6 +27,8 @@ import org.slf4j.LoggerFactory;
  */
 public abstract class DatabaseModule {
     private UserConfigBean userInfo;
+    //budget from which every open connection was taken
+    private final Map<Connection, ConnectionBudget> budgets = new ConcurrentHashMap<>();
     private final Logger log = LoggerFactory.getLogger(getClass().getName());
     
     /**
@@ -63,29 +66,69 @@ public abstract class DatabaseModule {
     }
     
     /**
-     * Creates a connection to the database.
+     * Creates a connection to the primary database server.
+     * This connection must be used for every write, and reads
+     * are pinned to the primary server for the read-after-write window.
+     * The statements executed through the connection are counted in QueryStatistics
+     * and the slow ones are recorded in the slow query log.
      * 
      * @return Connection variable.
      * 
      * @throws SQLException If there is a problem when opening a connection.
      */
     protected Connection getConnection() throws SQLException {
-        String url = userInfo.getMysqlUrl();
-        int port = userInfo.getMysqlPort();
-        String dbName = userInfo.getMysqlDbName();
-        String user = userInfo.getMysqlUserName();
-        String password = userInfo.getMysqlPassword();
-        if(url == null || url.isEmpty() || port < 1 || dbName == null || dbName.isEmpty() ||
-                user == null || user.isEmpty() || password == null)
-            throw new IllegalArgumentException ("Invalid values provided. Cannot connect to the database.");
+        validateUserInfo();
+        ConnectionBudget budget = acquireBudget();
         
-	Connection connection = DriverManager.getConnection
-            ("jdbc:mysql://"+url + ":"+port+"/"+dbName, user, password);
+	Connection connection;
+        try {
+            connection = ReplicaRouter.forUser(userInfo).getWriteConnection
+                (userInfo.getMysqlUserName(), userInfo.getMysqlPassword());
+            connection = JdbcInstrumentation.wrap(connection, JdbcInstrumentation.callerOf(), slowQueryLog());
+        }
+        catch(SQLException | RuntimeException e) {
+            if(budget != null)
+                budget.release();
+            throw e;
+        }
+        trackBudget(connection, budget);
         
 	log.info("Connected to the database.");  
         return connection;
     }
     
+    /**
+     * Creates a connection for read-only queries. The connection is opened
+     * to one of the replicas if any are configured and available;
+     * otherwise to the primary database server.
+     * The statements executed through the connection are counted in QueryStatistics
+     * and the slow ones are recorded in the slow query log.
+     * 
+     * @return Connection variable.
+     * 
+     * @throws SQLException If there is a problem when opening a connection.
+     */
+    protected Connection getReadConnection() throws SQLException {
+        validateUserInfo();
+        ConnectionBudget budget = acquireBudget();
+        
+	Connection connection;
+        try {
+            connection = ReplicaRouter.forUser(userInfo).getReadConnection
+                (userInfo.getMysqlUserName(), userInfo.getMysqlPassword());
+            connection = JdbcInstrumentation.wrap(connection, JdbcInstrumentation.callerOf(), slowQueryLog());
+        }
+        catch(SQLException | RuntimeException e) {
+            if(budget != null)
+                budget.release();
+            throw e;
+        }
+        trackBudget(connection, budget);
+        
+	log.info("Connected to the database for reading.");  
+        return connection;
+    }
+    
     /**
      * Closes the connection to the database.
      * 
@@ -94,24 +137,89 @@ public abstract class DatabaseModule {
      * @throws SQLException If there is a problem when closing a connection.
      */
     protected void closeConnection(Connection connection) throws SQLException {
-        if(connection != null)
-            connection.close();
+        if(connection != null) {
+            ConnectionBudget budget = budgets.remove(connection);
+            try {
+                connection.close();
+            }
+            finally {
+                if(budget != null)
+                    budget.release();
+            }
+        }
+    }
+    
+    /**
+     * Waits for a free connection in the budget of the account.
+     * 
+     * @return the budget of the account; null if the account is not limited.
+     * 
+     * @throws SQLException If no connection becomes free in time.
+     */
+    private ConnectionBudget acquireBudget() throws SQLException {
+        ConnectionBudget budget = ConnectionBudget.forAccount(userInfo.getFromEmail());
+        if(budget != null)
+            budget.acquire();
+        return budget;
+    }
+    
+    /**
+     * Creates the slow query log with the threshold of the user.
+     * EXPLAIN is run on a separate read connection that is neither
+     * instrumented nor taken from the connection budget.
+     * 
+     * @return the slow query log.
+     */
+    private SlowQueryLog slowQueryLog() {
+        UserConfigBean info = userInfo;
+        return new SlowQueryLog(info.getSlowQueryThreshold(), () -> ReplicaRouter.forUser(info)
+                .getReadConnection(info.getMysqlUserName(), info.getMysqlPassword()));
+    }
+    
+    /**
+     * Remembers the budget the connection was taken from.
+     * 
+     * @param connection the open connection.
+     * @param budget the budget of the account; null if the account is not limited.
+     */
+    private void trackBudget(Connection connection, ConnectionBudget budget) {
+        if(budget != null)
+            budgets.put(connection, budget);
+    }
+    
+    /**
+     * Verifies that user information contains all values needed to connect.
+     */
+    private void validateUserInfo() {
+        String url = userInfo.getMysqlUrl();
+        int port = userInfo.getMysqlPort();
+        String dbName = userInfo.getMysqlDbName();
+        String user = userInfo.getMysqlUserName();
+        String password = userInfo.getMysqlPassword();
+        if(url == null || url.isEmpty() || port < 1 || dbName == null || dbName.isEmpty() ||
+                user == null || user.isEmpty() || password == null)
+            throw new IllegalArgumentException ("Invalid values provided. Cannot connect to the database.");
     }
     
     /**
      * Verifies whether the necessary tables exist in the database.
+     * The tables of an existing database are migrated to the current schema.
      * @throws SQLException If there is a problem when connecting to the database.
      */
     private void checkTables() throws SQLException {
         Connection connection = getConnection();
         
-        String query = "select * from email_address";    
-        try(Statement stmt = connection.createStatement();) {
-            stmt.executeQuery(query);
-        }
-        catch(MySQLSyntaxErrorException e){
-            log.info("No tables found in the database. Creating new tables.");
-            createTables(connection);
+        String query = "select 1 from email_address limit 1";    
+        try {
+            try(Statement stmt = connection.createStatement();) {
+                stmt.executeQuery(query).close();
+            }
+            catch(MySQLSyntaxErrorException e){
+                log.info("No tables found in the database. Creating new tables.");
+                createTables(connection);
+                return;
+            }
+            SchemaMigration.migrate(connection, userInfo.getFromEmail());
         }
         finally {
             closeConnection(connection);
@@ -1,6 +1,7 @@
 package ashulzhenko.emailapp.data;
 
 import ashulzhenko.emailapp.interfaces.FolderStorageDAO;
+import ashulzhenko.emailapp.bean.Change;
 import ashulzhenko.emailapp.bean.UserConfigBean;
 import com.mysql.jdbc.exceptions.jdbc4.MySQLIntegrityConstraintViolationException;
 import java.sql.Connection;
@@ -8,13 +9,21 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Types;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * FolderStorageModule class is used to create, rename, update, and delete directories.
+ * Directories are nested: the name of a directory is its full path
+ * (e.g. Clients/Acme/2024), and every directory has a link to its parent.
+ * The directory_paths table holds every ancestor of every directory
+ * (closure table), so that a whole subtree is listed, counted, renamed,
+ * moved or deleted with a fixed number of queries, whatever its depth.
  *
  * @author Alena Shulzhenko
  * @version 30/09/2016
@@ -22,7 +31,7 @@ import org.slf4j.LoggerFactory;
  */
 public class FolderStorageModule extends DatabaseModule implements FolderStorageDAO {
     private final Logger log = LoggerFactory.getLogger(getClass().getName());
-    
+
     /**
      * Instantiates the object with all necessary information to work with the database.
      *
@@ -35,33 +44,35 @@ public class FolderStorageModule extends DatabaseModule implements FolderStorage
 
     /**
      * Creates new directory with the provided name.
-     * 
+     * The missing parent directories are created as well.
+     *
      * @param name The name of the directory to create.
-     * 
+     *
      * @return the id of the created directory.
-     * 
+     *
      * @throws SQLException If there was a problem when writing to the database.
      */
     @Override
     public int createDirectory(String name) throws SQLException {
-        if(name == null || name.trim().isEmpty())
-            throw new IllegalArgumentException("Directory name value is invalid.");
-        
-        int id = -1;
-        String query = "insert into directories (name) values (?)";
+        name = normalize(name);
+
+        int id;
         try {
             Connection connection = getConnection();
-            try(PreparedStatement pstmt = connection.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
-                pstmt.setString(1, name);
-                pstmt.executeUpdate();
-                //get id of newly created directory
-                try(ResultSet rs = pstmt.getGeneratedKeys()) {
-                    rs.next();
-                    id = rs.getInt(1);
-                }
+            try {
+                connection.setAutoCommit(false);
+                String parent = parentOf(name);
+                id = insertDirectory(connection, name,
+                                     parent == null ? -1 : findOrCreate(connection, parent));
+                connection.commit();
+            }
+            catch(SQLException e) {
+                connection.rollback();
+                throw e;
             }
             finally {
                 closeConnection(connection);
+                StoreCache.forUser(getUserInfo()).clearDirectories();
             }
         }
         catch(MySQLIntegrityConstraintViolationException e) {
@@ -72,12 +83,12 @@ public class FolderStorageModule extends DatabaseModule implements FolderStorage
     }
 
     /**
-     * Deletes the requested directory.
-     * 
+     * Deletes the requested directory and its subdirectories.
+     *
      * @param name The name of the directory to delete.
-     * 
+     *
      * @return number of deleted directories.
-     * 
+     *
      * @throws SQLException If there was a problem when writing to the database.
      */
     @Override
@@ -85,32 +96,135 @@ public class FolderStorageModule extends DatabaseModule implements FolderStorage
         if(name == null || name.trim().isEmpty())
             throw new IllegalArgumentException("Directory name value is invalid.");
 
-        int result;
-        String query = "delete from directories where name = ?";
+        int result = 0;
+        String query = "select descendant from directory_paths "
+                + "where ancestor = (select id from directories where name = ?)";
         Connection connection = getConnection();
-        try(PreparedStatement pstmt = connection.prepareStatement(query)) {
-            pstmt.setString(1, name);
-            result = pstmt.executeUpdate();
+        try {
+            connection.setAutoCommit(false);
+            try {
+                int id = findId(connection, name);
+                List<Integer> ids = new ArrayList<>();
+                try(PreparedStatement pstmt = connection.prepareStatement(query)) {
+                    pstmt.setString(1, name);
+                    try(ResultSet rs = pstmt.executeQuery()) {
+                        while(rs.next())
+                            ids.add(rs.getInt(1));
+                    }
+                }
+                if(!ids.isEmpty()) {
+                    //the paths, emails and statistics of the directories are removed by the cascade
+                    StringBuilder delete = new StringBuilder("delete from directories where id in (");
+                    for(int i = 0; i < ids.size(); i++)
+                        delete.append(i == 0 ? "?" : ",?");
+                    try(PreparedStatement pstmt = connection.prepareStatement(delete.append(")").toString())) {
+                        for(int i = 0; i < ids.size(); i++)
+                            pstmt.setInt(i + 1, ids.get(i));
+                        result = pstmt.executeUpdate();
+                    }
+                    ChangeLog.record(connection, Change.Entity.DIRECTORY, Change.Operation.DELETE, id);
+                }
+                connection.commit();
+            }
+            catch(SQLException e) {
+                connection.rollback();
+                throw e;
+            }
         }
         finally {
             closeConnection(connection);
+            StoreCache.forUser(getUserInfo()).clearDirectories();
         }
         return result;
     }
 
     /**
-     * Find all directory names in the database.
-     * 
+     * Find all directory names in the database. The names are cached.
+     *
      * @return the list of directories in the database.
-     * 
+     *
      * @throws SQLException If there was a problem when reading form the database.
      */
     @Override
     public List<String> findAll() throws SQLException {
         List<String> dirs = new ArrayList<>(0);
         String query = "select name from directories";
-        Connection connection = getConnection();
+        StoreCache cache = StoreCache.forUser(getUserInfo());
+        List<String> cached = cache.getDirectories();
+        if(cached != null && cache.isFresh())
+            return cached;
+        Connection connection = getReadConnection();
+        try(PreparedStatement pstmt = connection.prepareStatement(query)){
+            cache.validate(connection);
+            cached = cache.getDirectories();
+            if(cached != null)
+                return cached;
+            int generation = cache.getGeneration();
+            try(ResultSet rs = pstmt.executeQuery()){
+                while(rs.next())
+                    dirs.add(rs.getString(1));
+            }
+            cache.putDirectories(dirs, generation);
+        }
+        finally {
+            closeConnection(connection);
+        }
+        return dirs;
+    }
+
+    /**
+     * Finds the direct subdirectories of the directory.
+     *
+     * @param name The name of the directory; null for the top directories.
+     *
+     * @return the names of the subdirectories with their number of subdirectories,
+     *         ordered by name.
+     *
+     * @throws SQLException If there was a problem when reading form the database.
+     */
+    @Override
+    public Map<String, Integer> findChildren(String name) throws SQLException {
+        Map<String, Integer> children = new LinkedHashMap<>();
+        String query = "select d.name, (select count(*) from directories c where c.parent = d.id) "
+                + "from directories d where d.parent <=> (select id from directories where name = ?) "
+                + "order by d.name";
+        Connection connection = getReadConnection();
+        try(PreparedStatement pstmt = connection.prepareStatement(query)){
+            if(name == null)
+                pstmt.setNull(1, Types.VARCHAR);
+            else
+                pstmt.setString(1, name);
+            try(ResultSet rs = pstmt.executeQuery()){
+                while(rs.next())
+                    children.put(rs.getString(1), rs.getInt(2));
+            }
+        }
+        finally {
+            closeConnection(connection);
+        }
+        return children;
+    }
+
+    /**
+     * Finds the directory and all its subdirectories at any depth.
+     *
+     * @param name The name of the directory.
+     *
+     * @return the names of the directories, ordered by name; empty if the directory does not exist.
+     *
+     * @throws SQLException If there was a problem when reading form the database.
+     */
+    @Override
+    public List<String> findSubtree(String name) throws SQLException {
+        if(name == null || name.trim().isEmpty())
+            throw new IllegalArgumentException("Directory name value is invalid.");
+
+        List<String> dirs = new ArrayList<>();
+        String query = "select d.name from directory_paths p join directories d on d.id = p.descendant "
+                + "where p.ancestor = (select id from directories where name = ?) order by d.name";
+        Connection connection = getReadConnection();
         try(PreparedStatement pstmt = connection.prepareStatement(query)){
+            pstmt.setString(1, name);
             try(ResultSet rs = pstmt.executeQuery()){
                 while(rs.next())
                     dirs.add(rs.getString(1));
@@ -123,30 +237,87 @@ public class FolderStorageModule extends DatabaseModule implements FolderStorage
     }
 
     /**
-     * Updates directory's name.
-     * 
+     * Counts the emails in the directory and all its subdirectories.
+     *
+     * @param name The name of the directory.
+     *
+     * @return the number of emails.
+     *
+     * @throws SQLException If there was a problem when reading form the database.
+     */
+    @Override
+    public int countEmails(String name) throws SQLException {
+        if(name == null || name.trim().isEmpty())
+            throw new IllegalArgumentException("Directory name value is invalid.");
+
+        String query = "select count(*) from directory_paths p join emails e on e.directory = p.descendant "
+                + "where p.ancestor = (select id from directories where name = ?) and e.deleted = false";
+        Connection connection = getReadConnection();
+        try(PreparedStatement pstmt = connection.prepareStatement(query)){
+            pstmt.setString(1, name);
+            try(ResultSet rs = pstmt.executeQuery()){
+                rs.next();
+                return rs.getInt(1);
+            }
+        }
+        finally {
+            closeConnection(connection);
+        }
+    }
+
+    /**
+     * Updates directory's name, and the names of its subdirectories.
+     * The directory is moved if the parent in the new name is different;
+     * the missing parent directories are created. The saved searches
+     * restricted to directories are run again.
+     *
      * @param oldName The old name of the directory.
      * @param newName The new name of the directory.
-     * 
+     *
      * @return the number of updated directories.
-     * 
+     *
      * @throws SQLException If there was a problem when reading form the database.
      */
     @Override
     public int updateDirectory(String oldName, String newName) throws SQLException {
         checkNames(oldName, newName);
-        
-        int result;
-        String query = "update directories set name = ? where name = ?";
+        oldName = normalize(oldName);
+        newName = normalize(newName);
+        if(newName.startsWith(oldName + SEPARATOR))
+            throw new IllegalArgumentException("Directory cannot be moved into itself: " + newName);
+
+        int result = 0;
+        String query = "update directories d join directory_paths p on p.descendant = d.id "
+                + "set d.name = concat(?, substring(d.name, ?)) where p.ancestor = ?";
         try{
             Connection connection = getConnection();
-            try(PreparedStatement pstmt = connection.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
-                pstmt.setString(1, newName);
-                pstmt.setString(2, oldName);
-                result = pstmt.executeUpdate();
+            try {
+                connection.setAutoCommit(false);
+                int id = findId(connection, oldName);
+                if(id != -1) {
+                    String parent = parentOf(newName);
+                    int parentId = parent == null ? -1 : findOrCreate(connection, parent);
+                    try(PreparedStatement pstmt = connection.prepareStatement(query)) {
+                        pstmt.setString(1, newName);
+                        pstmt.setInt(2, oldName.length() + 1);
+                        pstmt.setInt(3, id);
+                        result = pstmt.executeUpdate();
+                    }
+                    if(!sameParent(oldName, newName))
+                        moveSubtree(connection, id, parentId);
+                    //the emails of the subtree are not changed one by one
+                    SearchIndex.rebuildAll(connection, true);
+                    ChangeLog.record(connection, Change.Entity.DIRECTORY, Change.Operation.UPDATE, id);
+                }
+                connection.commit();
+            }
+            catch(SQLException e) {
+                connection.rollback();
+                throw e;
             }
             finally {
                 closeConnection(connection);
+                StoreCache.forUser(getUserInfo()).clearDirectories();
             }
         }
         catch(MySQLIntegrityConstraintViolationException e) {
@@ -155,7 +326,26 @@ public class FolderStorageModule extends DatabaseModule implements FolderStorage
         }
         return result;
     }
-    
+
+    /**
+     * Moves the directory with its subdirectories to another parent directory.
+     *
+     * @param name The name of the directory to move.
+     * @param parent The name of the new parent directory; null to move it to the top.
+     *
+     * @return the number of moved directories.
+     *
+     * @throws SQLException If there was a problem when writing to the database.
+     */
+    @Override
+    public int moveDirectory(String name, String parent) throws SQLException {
+        name = normalize(name);
+        String leaf = name.substring(name.lastIndexOf(SEPARATOR) + 1);
+        if(parent == null || parent.trim().isEmpty())
+            return updateDirectory(name, leaf);
+        return updateDirectory(name, normalize(parent) + SEPARATOR + leaf);
+    }
+
     /**
      * Verifies that provided names are not empty and not the same.
      * @param oldName The old name of the directory.
@@ -171,5 +361,153 @@ public class FolderStorageModule extends DatabaseModule implements FolderStorage
         if(oldName.equals(newName))
             throw new IllegalArgumentException("Both names are the same.");
     }
-    
+
+    /**
+     * Removes the spaces around every part of the name,
+     * and verifies that no part is empty.
+     * @param name The name of the directory.
+     * @return the name of the directory without spaces around its parts.
+     */
+    static String normalize(String name) {
+        if(name == null || name.trim().isEmpty())
+            throw new IllegalArgumentException("Directory name value is invalid.");
+        StringBuilder path = new StringBuilder();
+        for(String part : name.split(SEPARATOR, -1)) {
+            if(part.trim().isEmpty())
+                throw new IllegalArgumentException("Directory name value is invalid: " + name);
+            if(path.length() != 0)
+                path.append(SEPARATOR);
+            path.append(part.trim());
+        }
+        return path.toString();
+    }
+
+    /**
+     * Returns the name of the parent directory.
+     * @param name The name of the directory.
+     * @return the name of the parent directory; null for a top directory.
+     */
+    private static String parentOf(String name) {
+        int index = name.lastIndexOf(SEPARATOR);
+        return index == -1 ? null : name.substring(0, index);
+    }
+
+    /**
+     * Verifies whether both directories have the same parent.
+     * @param name The name of the first directory.
+     * @param other The name of the second directory.
+     * @return true if both directories have the same parent; false otherwise.
+     */
+    private boolean sameParent(String name, String other) {
+        String parent = parentOf(name);
+        return parent == null ? parentOf(other) == null : parent.equals(parentOf(other));
+    }
+
+    /**
+     * Returns the id of the directory with the given name.
+     * @param connection the connection to the database.
+     * @param name The name of the directory.
+     * @return the id of the directory; -1 if it does not exist.
+     * @throws SQLException If there was a problem when reading from the database.
+     */
+    private static int findId(Connection connection, String name) throws SQLException {
+        String query = "select id from directories where name = ?";
+        try(PreparedStatement pstmt = connection.prepareStatement(query)) {
+            pstmt.setString(1, name);
+            try(ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : -1;
+            }
+        }
+    }
+
+    /**
+     * Returns the id of the directory with the given name,
+     * and creates it with its missing parents if it does not exist.
+     * The directories are created on the given connection, e.g. within
+     * the transaction of the caller, without opening another connection.
+     * @param connection the connection to the database.
+     * @param name The name of the directory.
+     * @return the id of the directory.
+     * @throws SQLException If there was a problem when writing to the database.
+     */
+    static int findOrCreate(Connection connection, String name) throws SQLException {
+        int id = findId(connection, name);
+        if(id == -1) {
+            String parent = parentOf(name);
+            id = insertDirectory(connection, name, parent == null ? -1 : findOrCreate(connection, parent));
+        }
+        return id;
+    }
+
+    /**
+     * Saves the directory and its paths from every ancestor.
+     * @param connection the connection to the database.
+     * @param name The name of the directory.
+     * @param parent The id of the parent directory; -1 for a top directory.
+     * @return the id of the created directory.
+     * @throws SQLException If there was a problem when writing to the database.
+     */
+    private static int insertDirectory(Connection connection, String name, int parent) throws SQLException {
+        int id;
+        String query = "insert into directories (name, parent) values (?, ?)";
+        try(PreparedStatement pstmt = connection.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
+            pstmt.setString(1, name);
+            if(parent == -1)
+                pstmt.setNull(2, Types.INTEGER);
+            else
+                pstmt.setInt(2, parent);
+            pstmt.executeUpdate();
+            //get id of newly created directory
+            try(ResultSet rs = pstmt.getGeneratedKeys()) {
+                rs.next();
+                id = rs.getInt(1);
+            }
+        }
+        query = "insert into directory_paths (ancestor, descendant, depth) "
+                + "select ancestor, ?, depth + 1 from directory_paths where descendant = ? "
+                + "union all select ?, ?, 0";
+        try(PreparedStatement pstmt = connection.prepareStatement(query)) {
+            pstmt.setInt(1, id);
+            pstmt.setInt(2, parent);
+            pstmt.setInt(3, id);
+            pstmt.setInt(4, id);
+            pstmt.executeUpdate();
+        }
+        ChangeLog.record(connection, Change.Entity.DIRECTORY, Change.Operation.INSERT, id);
+        return id;
+    }
+
+    /**
+     * Moves the directory with its subdirectories under another parent:
+     * the paths from the old ancestors are replaced by paths from the new ones.
+     * @param connection the connection to the database.
+     * @param id The id of the directory.
+     * @param parent The id of the new parent directory; -1 for the top.
+     * @throws SQLException If there was a problem when writing to the database.
+     */
+    private void moveSubtree(Connection connection, int id, int parent) throws SQLException {
+        //paths that end in the subtree but start outside of it
+        String[] queries = {"delete p from directory_paths p "
+                + "join directory_paths sub on sub.descendant = p.descendant "
+                + "left join directory_paths inner_path on inner_path.ancestor = ? "
+                + "and inner_path.descendant = p.ancestor "
+                + "where sub.ancestor = ? and inner_path.ancestor is null",
+            "insert into directory_paths (ancestor, descendant, depth) "
+                + "select up.ancestor, sub.descendant, up.depth + sub.depth + 1 "
+                + "from directory_paths up join directory_paths sub "
+                + "where up.descendant = ? and sub.ancestor = ?",
+            "update directories set parent = ? where id = ?"};
+        for(int i = 0; i < queries.length; i++) {
+            try(PreparedStatement pstmt = connection.prepareStatement(queries[i])) {
+                if(i == 2 && parent == -1)
+                    pstmt.setNull(1, Types.INTEGER);
+                else if(i == 0)
+                    pstmt.setInt(1, id);
+                else
+                    pstmt.setInt(1, parent);
+                pstmt.setInt(2, id);
+                pstmt.executeUpdate();
+            }
+        }
+    }
 }
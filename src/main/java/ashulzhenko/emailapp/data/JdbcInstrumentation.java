@@ -0,0 +1,333 @@
+package ashulzhenko.emailapp.data;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * JdbcInstrumentation class wraps the connections handed out by
+ * DatabaseModule, so that every statement executed through them is
+ * timed and counted in QueryStatistics.
+ * The statements and the result sets created by a wrapped connection
+ * are wrapped as well; everything else is passed to the driver unchanged.
+ * Executions slower than the threshold are also written to SlowQueryLog.
+ *
+ * @author Alena Shulzhenko
+ * @version 19/10/2026
+ * @since 1.8
+ */
+class JdbcInstrumentation {
+
+    /**
+     * Prevents instantiation.
+     */
+    private JdbcInstrumentation() {}
+
+    /**
+     * Wraps the connection if the statistics are collected.
+     *
+     * @param connection the connection opened by the driver.
+     * @param method the DAO method that uses the connection.
+     *
+     * @return the wrapped connection; the same connection if the statistics are not collected.
+     */
+    static Connection wrap(Connection connection, String method) {
+        return wrap(connection, method, null);
+    }
+
+    /**
+     * Wraps the connection if the statistics are collected.
+     *
+     * @param connection the connection opened by the driver.
+     * @param method the DAO method that uses the connection.
+     * @param slowLog the log of slow statements; may be null.
+     *
+     * @return the wrapped connection; the same connection if the statistics are not collected.
+     */
+    static Connection wrap(Connection connection, String method, SlowQueryLog slowLog) {
+        if(!QueryStatistics.isEnabled())
+            return connection;
+        return (Connection)Proxy.newProxyInstance(JdbcInstrumentation.class.getClassLoader(),
+                new Class<?>[] {Connection.class}, new ConnectionHandler(connection, method, slowLog));
+    }
+
+    /**
+     * Returns the DAO method that called DatabaseModule to open a connection.
+     *
+     * @return the simple class name and the name of the method.
+     */
+    static String callerOf() {
+        StackTraceElement[] stack = new Throwable().getStackTrace();
+        String module = DatabaseModule.class.getName();
+        for(int i = 0; i < stack.length - 1; i++) {
+            StackTraceElement frame = stack[i];
+            if(frame.getClassName().equals(module) && frame.getMethodName().endsWith("Connection")) {
+                StackTraceElement caller = stack[i + 1];
+                String name = caller.getClassName();
+                return name.substring(name.lastIndexOf('.') + 1) + "." + caller.getMethodName();
+            }
+        }
+        return "unknown";
+    }
+
+    /**
+     * Returns the approximate number of bytes that the value takes on the wire.
+     *
+     * @param value the value of a parameter or of a column.
+     *
+     * @return the approximate size of the value.
+     */
+    static long sizeOf(Object value) {
+        try {
+            if(value == null)
+                return 0;
+            if(value instanceof byte[])
+                return ((byte[])value).length;
+            if(value instanceof CharSequence)
+                return ((CharSequence)value).length();
+            if(value instanceof Blob)
+                return ((Blob)value).length();
+            if(value instanceof Clob)
+                return ((Clob)value).length();
+            if(value instanceof Boolean || value instanceof Byte)
+                return 1;
+            if(value instanceof Short)
+                return 2;
+            if(value instanceof Integer || value instanceof Float)
+                return 4;
+            return 8;
+        }
+        catch(SQLException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Calls the method on the wrapped object and rethrows the original exception.
+     *
+     * @param target the wrapped object.
+     * @param method the method to call.
+     * @param args the arguments of the method.
+     *
+     * @return the result of the method.
+     *
+     * @throws Throwable the exception thrown by the method.
+     */
+    private static Object call(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        }
+        catch(InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Handles the methods of Object so that a proxy is only equal to itself.
+     *
+     * @param proxy the proxy.
+     * @param target the wrapped object.
+     * @param method the method to call.
+     * @param args the arguments of the method.
+     *
+     * @return the result of the method; null if it is not a method of Object.
+     */
+    private static Object objectMethod(Object proxy, Object target, Method method, Object[] args) {
+        switch(method.getName()) {
+            case "equals":
+                return method.getParameterCount() == 1 ? proxy == args[0] : null;
+            case "hashCode":
+                return method.getParameterCount() == 0 ? System.identityHashCode(proxy) : null;
+            case "toString":
+                return method.getParameterCount() == 0 ? "Instrumented " + target : null;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Wraps the statements created by a connection.
+     */
+    private static class ConnectionHandler implements InvocationHandler {
+        private final Connection connection;
+        private final String method;
+        private final SlowQueryLog slowLog;
+
+        ConnectionHandler(Connection connection, String method, SlowQueryLog slowLog) {
+            this.connection = connection;
+            this.method = method;
+            this.slowLog = slowLog;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method m, Object[] args) throws Throwable {
+            Object result = objectMethod(proxy, connection, m, args);
+            if(result != null)
+                return result;
+            result = call(connection, m, args);
+            switch(m.getName()) {
+                case "prepareStatement":
+                case "prepareCall":
+                    return wrapStatement((Statement)result, (String)args[0], m.getReturnType());
+                case "createStatement":
+                    return wrapStatement((Statement)result, null, Statement.class);
+                default:
+                    return result;
+            }
+        }
+
+        private Object wrapStatement(Statement stmt, String sql, Class<?> type) {
+            return Proxy.newProxyInstance(JdbcInstrumentation.class.getClassLoader(),
+                    new Class<?>[] {type}, new StatementHandler(stmt, sql, method, slowLog));
+        }
+    }
+
+    /**
+     * Times the executions of a statement and remembers its parameters.
+     */
+    private static class StatementHandler implements InvocationHandler {
+        private final Statement stmt;
+        private final String sql;
+        private final String method;
+        private final SlowQueryLog slowLog;
+        private final Map<Integer, Object> parameters = new TreeMap<>();
+        //slow execution whose rows are still being read
+        private SlowQueryLog.Entry pending;
+
+        StatementHandler(Statement stmt, String sql, String method, SlowQueryLog slowLog) {
+            this.stmt = stmt;
+            this.sql = sql;
+            this.method = method;
+            this.slowLog = slowLog;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method m, Object[] args) throws Throwable {
+            Object result = objectMethod(proxy, stmt, m, args);
+            if(result != null)
+                return result;
+            String name = m.getName();
+            if(name.startsWith("execute"))
+                return execute(m, args);
+            if(name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer)
+                parameters.put((Integer)args[0], name.equals("setNull") ? null : args[1]);
+            else if(name.equals("clearParameters"))
+                parameters.clear();
+            else if(name.equals("close"))
+                finishPending();
+            result = call(stmt, m, args);
+            if(name.equals("getResultSet") && result != null)
+                return wrapResultSet((ResultSet)result, shape(args));
+            return result;
+        }
+
+        private Object execute(Method m, Object[] args) throws Throwable {
+            finishPending();
+            String shape = shape(args);
+            long written = 0;
+            for(Object value : parameters.values())
+                written += sizeOf(value);
+            boolean failed = true;
+            long start = System.nanoTime();
+            long elapsed = 0;
+            try {
+                Object result = call(stmt, m, args);
+                elapsed = System.nanoTime() - start;
+                failed = false;
+                if(slowLog != null && slowLog.isSlow(elapsed)) {
+                    pending = slowLog.start(method, sql != null ? sql : (String)args[0], parameters, elapsed);
+                    if(!(result instanceof ResultSet)) {
+                        pending.addRows(updateCount(result));
+                        finishPending();
+                    }
+                }
+                if(result instanceof ResultSet)
+                    return wrapResultSet((ResultSet)result, shape);
+                return result;
+            }
+            finally {
+                if(failed)
+                    elapsed = System.nanoTime() - start;
+                QueryStatistics.statsFor(method, shape).recordCall(elapsed, written, failed);
+            }
+        }
+
+        private long updateCount(Object result) throws SQLException {
+            if(result instanceof int[]) {
+                long count = 0;
+                for(int rows : (int[])result)
+                    count += Math.max(rows, 0);
+                return count;
+            }
+            if(result instanceof Number)
+                return ((Number)result).longValue();
+            return Math.max(stmt.getUpdateCount(), 0);
+        }
+
+        private void finishPending() {
+            if(pending != null) {
+                pending.finish();
+                pending = null;
+            }
+        }
+
+        private String shape(Object[] args) {
+            if(sql == null && args != null && args.length > 0 && args[0] instanceof String)
+                return QueryStatistics.shapeOf((String)args[0]);
+            return QueryStatistics.shapeOf(sql);
+        }
+
+        private ResultSet wrapResultSet(ResultSet rs, String shape) {
+            return (ResultSet)Proxy.newProxyInstance(JdbcInstrumentation.class.getClassLoader(),
+                    new Class<?>[] {ResultSet.class},
+                    new ResultSetHandler(rs, QueryStatistics.statsFor(method, shape), pending));
+        }
+    }
+
+    /**
+     * Counts the rows and the bytes read from a result set.
+     */
+    private static class ResultSetHandler implements InvocationHandler {
+        private final ResultSet rs;
+        private final QueryStats stats;
+        private final SlowQueryLog.Entry slow;
+
+        ResultSetHandler(ResultSet rs, QueryStats stats, SlowQueryLog.Entry slow) {
+            this.rs = rs;
+            this.stats = stats;
+            this.slow = slow;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method m, Object[] args) throws Throwable {
+            Object result = objectMethod(proxy, rs, m, args);
+            if(result != null)
+                return result;
+            result = call(rs, m, args);
+            String name = m.getName();
+            if(name.equals("next")) {
+                if(Boolean.TRUE.equals(result)) {
+                    stats.recordRow();
+                    if(slow != null)
+                        slow.addRows(1);
+                }
+                else if(slow != null)
+                    slow.finish();
+            }
+            else if(name.equals("close") && slow != null)
+                slow.finish();
+            else if(name.startsWith("get") && args != null && args.length >= 1)
+                stats.recordRead(sizeOf(result));
+            return result;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package ashulzhenko.emailapp.data;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * LatencyHistogram class records durations in microseconds with a fixed
+ * relative precision, in the same way as HdrHistogram does.
+ * Values below 128 are counted exactly; larger values are counted in
+ * buckets that are 64 per power of two wide, which keeps the error under
+ * 1.6% whatever the value. The histogram uses a fixed amount of memory,
+ * is safe to use from several threads and never blocks.
+ * Values above one hour are counted as one hour.
+ *
+ * @author Alena Shulzhenko
+ * @version 19/10/2026
+ * @since 1.8
+ */
+public class LatencyHistogram {
+    //number of buckets per power of two
+    private static final int SUB_BUCKETS = 64;
+    private static final int SUB_BUCKET_BITS = 6;
+    /** The highest recorded value: one hour in microseconds. */
+    public static final long MAX_VALUE = 3_600_000_000L;
+
+    private final AtomicLongArray counts;
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Instantiates an empty histogram.
+     */
+    public LatencyHistogram() {
+        counts = new AtomicLongArray(indexOf(MAX_VALUE) + 1);
+    }
+
+    /**
+     * Records one duration.
+     *
+     * @param micros the duration in microseconds.
+     */
+    public void record(long micros) {
+        long value = Math.min(Math.max(micros, 0), MAX_VALUE);
+        counts.incrementAndGet(indexOf(value));
+        total.incrementAndGet();
+        sum.addAndGet(value);
+        long current;
+        while(value > (current = max.get()) && !max.compareAndSet(current, value)) {
+            //retry until the maximum is updated
+        }
+    }
+
+    /**
+     * Returns the number of recorded durations.
+     *
+     * @return the number of recorded durations.
+     */
+    public long getCount() {
+        return total.get();
+    }
+
+    /**
+     * Returns the longest recorded duration.
+     *
+     * @return the longest recorded duration in microseconds.
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Returns the average recorded duration.
+     *
+     * @return the average duration in microseconds; 0 if nothing was recorded.
+     */
+    public double getMean() {
+        long count = total.get();
+        return count == 0 ? 0 : (double)sum.get() / count;
+    }
+
+    /**
+     * Returns the duration under which the given percentage of durations fall.
+     *
+     * @param percentile the percentage between 0 and 100.
+     *
+     * @return the duration in microseconds; 0 if nothing was recorded.
+     */
+    public long getValueAtPercentile(double percentile) {
+        if(percentile < 0 || percentile > 100)
+            throw new IllegalArgumentException("Invalid percentile: " + percentile);
+        long count = total.get();
+        if(count == 0)
+            return 0;
+        long target = Math.max(1, (long)Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for(int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if(seen >= target)
+                return Math.min(highestValueOf(i), max.get());
+        }
+        return max.get();
+    }
+
+    /**
+     * Returns a copy of this histogram.
+     *
+     * @return a copy of this histogram.
+     */
+    public LatencyHistogram copy() {
+        LatencyHistogram copy = new LatencyHistogram();
+        for(int i = 0; i < counts.length(); i++)
+            copy.counts.set(i, counts.get(i));
+        copy.total.set(total.get());
+        copy.sum.set(sum.get());
+        copy.max.set(max.get());
+        return copy;
+    }
+
+    /**
+     * Returns the bucket of the value.
+     *
+     * @param value the value between 0 and MAX_VALUE.
+     *
+     * @return the index of the bucket.
+     */
+    static int indexOf(long value) {
+        if(value < 2 * SUB_BUCKETS)
+            return (int)value;
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        long mantissa = value >> shift;
+        return 2 * SUB_BUCKETS + (shift - 1) * SUB_BUCKETS + (int)(mantissa - SUB_BUCKETS);
+    }
+
+    /**
+     * Returns the highest value counted in the bucket.
+     *
+     * @param index the index of the bucket.
+     *
+     * @return the highest value counted in the bucket.
+     */
+    static long highestValueOf(int index) {
+        if(index < 2 * SUB_BUCKETS)
+            return index;
+        int shift = (index - 2 * SUB_BUCKETS) / SUB_BUCKETS + 1;
+        long mantissa = (index - 2 * SUB_BUCKETS) % SUB_BUCKETS + SUB_BUCKETS;
+        return ((mantissa + 1) << shift) - 1;
+    }
+}
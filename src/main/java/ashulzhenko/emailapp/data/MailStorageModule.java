@@ -1,11 +1,15 @@
 package ashulzhenko.emailapp.data;
 
 import ashulzhenko.emailapp.interfaces.MailStorageDAO;
+import ashulzhenko.emailapp.bean.Change;
 import ashulzhenko.emailapp.bean.EmailCustom;
 import ashulzhenko.emailapp.bean.UserConfigBean;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
+import javax.mail.Flags;
 import jodd.mail.Email;
 import jodd.mail.EmailAttachment;
 import jodd.mail.EmailMessage;
@@ -33,7 +37,10 @@ public class MailStorageModule extends DatabaseModule implements MailStorageDAO
 
 
     /**
-     * Deletes email that has the provided id.
+     * Deletes email that has the provided id. The email is only marked
+     * as deleted, so that the user does not wait for its attachments and
+     * addresses to be removed; purgeDeleted() removes it later.
+     * Its thread and statistics are updated at once.
      * 
      * @param id The id of the email to delete.
      * 
@@ -47,11 +54,27 @@ public class MailStorageModule extends DatabaseModule implements MailStorageDAO
             throw new IllegalArgumentException("Id value is invalid: " + id);
         
         int result;
-        String query = "delete from emails where id = ?";
+        String query = "update emails set deleted = true where id = ? and deleted = false";
         Connection connection = getConnection();
-        try(PreparedStatement pstmt = connection.prepareStatement(query)) {
-            pstmt.setInt(1, id);
-            result = pstmt.executeUpdate();
+        try {
+            connection.setAutoCommit(false);
+            try(PreparedStatement pstmt = connection.prepareStatement(query)) {
+                StatsIndex.Entry stats = StatsIndex.locate(connection, id);
+                int[] thread = ThreadIndex.locate(connection, id);
+                pstmt.setInt(1, id);
+                result = pstmt.executeUpdate();
+                if(thread != null)
+                    ThreadIndex.refreshFolder(connection, thread[0], thread[1]);
+                if(stats != null && result != 0)
+                    StatsIndex.remove(connection, stats);
+                if(result != 0)
+                    ChangeLog.record(connection, Change.Entity.EMAIL, Change.Operation.DELETE, id);
+                connection.commit();
+            }
+            catch(SQLException e) {
+                connection.rollback();
+                throw e;
+            }
         }
         finally {
             closeConnection(connection);
@@ -76,13 +99,15 @@ public class MailStorageModule extends DatabaseModule implements MailStorageDAO
         if(start < 0 || number < 0)
             throw new IllegalArgumentException ("Invalid arguments. start > 0 and number > 0.");
         
-        Connection connection = getConnection();
+        Connection connection = getReadConnection();
         List<EmailCustom> emails = new ArrayList<>();
         
         String query = "select id, msgNumber, rcvDate, "
                 + "(select name from directories where id = directory), "
                 + "(select address from addresses where id = fromEmail), "
-                + "message, sentDate, subject from emails order by id limit ?, ?";
+                + "message, sentDate, subject, archived, messageId, inReplyTo, refs, "
+                + "partial, serverFolder, uidValidity, uid, seen "
+                + "from emails where deleted = false order by id limit ?, ?";
         try(PreparedStatement pstmt = connection.prepareStatement(query)){
             pstmt.setInt(1, start);
             pstmt.setInt(2, number);
@@ -128,7 +153,7 @@ public class MailStorageModule extends DatabaseModule implements MailStorageDAO
     }
 
     /**
-     * Returns all emails in the given directory.
+     * Returns all emails in the given directory that are not archived.
      * 
      * @param directory The directory where requested email are stored.
      * 
@@ -138,36 +163,210 @@ public class MailStorageModule extends DatabaseModule implements MailStorageDAO
      */
     @Override
     public List<EmailCustom> findAllInDirectory(String directory) throws SQLException {
+        return findAllInDirectory(directory, false);
+    }
+    
+    /**
+     * Returns all emails in the given directory. Archived emails are
+     * returned as stubs, without messages and attachments; 
+     * findEmailById() returns them in full.
+     * 
+     * @param directory The directory where requested email are stored.
+     * 
+     * @param includeArchive true to include archived emails; false otherwise.
+     * 
+     * @return all emails in the given directory.
+     * 
+     * @throws SQLException If there was a problem when reading from the database.
+     */
+    @Override
+    public List<EmailCustom> findAllInDirectory(String directory, boolean includeArchive) 
+                                                throws SQLException {
         if(directory == null || directory.trim().isEmpty())
             throw new IllegalArgumentException("Directory value is null or empty.");
         
-        Connection connection = getConnection();
-        int dirId = findDirectoryId(connection, directory, false);
+        Connection connection = getReadConnection();
         List<EmailCustom> emails = new ArrayList<>(0);
-        if(dirId != -1) {
-            String query = "select id, msgNumber, rcvDate, "
-                    + "(select name from directories where id = directory), "
-                    + "(select address from addresses where id = fromEmail), "
-                    + "message, sentDate, subject "
-                    + "from emails where directory = ?";
-            try(PreparedStatement pstmt = connection.prepareStatement(query)){
-                pstmt.setInt(1, dirId);
-                try(ResultSet rs = pstmt.executeQuery()){
-                    while(rs.next()) {
-                        EmailCustom email = createEmail(rs);
-                        addAttachments(email, connection);
-                        addEmails(email, connection);
-                        emails.add(email);
+        try {
+            int dirId = findDirectoryId(connection, directory, false);
+            if(dirId != -1) {
+                String query = "select id, msgNumber, rcvDate, "
+                        + "(select name from directories where id = directory), "
+                        + "(select address from addresses where id = fromEmail), "
+                        + "message, sentDate, subject, archived, messageId, inReplyTo, refs, "
+                        + "partial, serverFolder, uidValidity, uid, seen "
+                        + "from emails where directory = ? and deleted = false"
+                        + (includeArchive ? "" : " and archived = false");
+                try(PreparedStatement pstmt = connection.prepareStatement(query)){
+                    pstmt.setInt(1, dirId);
+                    try(ResultSet rs = pstmt.executeQuery()){
+                        while(rs.next()) {
+                            EmailCustom email = createEmail(rs);
+                            if(!email.isArchived())
+                                addAttachments(email, connection);
+                            addEmails(email, connection);
+                            emails.add(email);
+                        }
                     }
                 }
             }
         }
-        closeConnection(connection);
+        finally {
+            closeConnection(connection);
+        }
         return emails;
     }
+    
+    /**
+     * Returns emails in the given directory that are not archived, 
+     * the most recent first (from start index with the indicated number of records).
+     * The date of an email is its received date or, for sent emails, its sent date.
+     * 
+     * @param directory The directory where requested email are stored.
+     * 
+     * @param start the starting index for retrieving emails (non-inclusive).
+     * 
+     * @param number the number of emails to retrieve.
+     * 
+     * @return the emails in the given directory.
+     * 
+     * @throws SQLException If there was a problem when reading from the database.
+     */
+    @Override
+    public List<EmailCustom> findAllInDirectory(String directory, int start, int number) 
+                                                throws SQLException {
+        if(directory == null || directory.trim().isEmpty())
+            throw new IllegalArgumentException("Directory value is null or empty.");
+        if(start < 0 || number < 0)
+            throw new IllegalArgumentException ("Invalid arguments. start > 0 and number > 0.");
+        
+        Connection connection = getReadConnection();
+        List<EmailCustom> emails = new ArrayList<>(0);
+        try {
+            int dirId = findDirectoryId(connection, directory, false);
+            if(dirId != -1) {
+                String query = "select id, msgNumber, rcvDate, "
+                        + "(select name from directories where id = directory), "
+                        + "(select address from addresses where id = fromEmail), "
+                        + "message, sentDate, subject, archived, messageId, inReplyTo, refs, "
+                        + "partial, serverFolder, uidValidity, uid, seen "
+                        + "from emails where directory = ? and deleted = false and archived = false "
+                        + "order by emailDate desc, id desc limit ?, ?";
+                try(PreparedStatement pstmt = connection.prepareStatement(query)){
+                    pstmt.setInt(1, dirId);
+                    pstmt.setInt(2, start);
+                    pstmt.setInt(3, number);
+                    try(ResultSet rs = pstmt.executeQuery()){
+                        while(rs.next()) {
+                            EmailCustom email = createEmail(rs);
+                            addAttachments(email, connection);
+                            addEmails(email, connection);
+                            emails.add(email);
+                        }
+                    }
+                }
+            }
+        }
+        finally {
+            closeConnection(connection);
+        }
+        return emails;
+    }
+
+    /**
+     * Returns a page of the emails in the given directory that are not archived,
+     * sorted in the database by the given key. The page starts after the given 
+     * email, which is the last email of the previous page, so that the emails
+     * before it are not read (keyset paging).
+     * 
+     * @param directory The directory where requested email are stored.
+     * 
+     * @param key the key by which the emails are sorted.
+     * 
+     * @param ascending true for ascending order; false for descending.
+     * 
+     * @param after the last email of the previous page; null for the first page.
+     * 
+     * @param number the number of emails to retrieve.
+     * 
+     * @return the emails of the page.
+     * 
+     * @throws SQLException If there was a problem when reading from the database.
+     */
+    @Override
+    public List<EmailCustom> findAllInDirectory(String directory, SortKey key, boolean ascending,
+                                                EmailCustom after, int number) throws SQLException {
+        if(directory == null || directory.trim().isEmpty())
+            throw new IllegalArgumentException("Directory value is null or empty.");
+        if(key == null || number < 0)
+            throw new IllegalArgumentException ("Invalid arguments. key is null or number < 0.");
+        
+        Connection connection = getReadConnection();
+        try {
+            int dirId = findDirectoryId(connection, directory, false);
+            if(dirId == -1)
+                return new ArrayList<>(0);
+            return findPage(connection, "directory = ?", dirId, null, key, ascending, after, number);
+        }
+        finally {
+            closeConnection(connection);
+        }
+    }
+
+    /**
+     * Returns a page of the emails of the given saved search that are not archived,
+     * sorted in the database by the given key (keyset paging, see findAllInDirectory).
+     * The emails of the search are kept up to date when emails are saved,
+     * moved and read, so that its query is not run here; only the emails
+     * that got too old for it are skipped.
+     * 
+     * @param search The name of the saved search.
+     * 
+     * @param key the key by which the emails are sorted.
+     * 
+     * @param ascending true for ascending order; false for descending.
+     * 
+     * @param after the last email of the previous page; null for the first page.
+     * 
+     * @param number the number of emails to retrieve.
+     * 
+     * @return the emails of the page.
+     * 
+     * @throws SQLException If there was a problem when reading from the database.
+     */
+    @Override
+    public List<EmailCustom> findAllInSearch(String search, SortKey key, boolean ascending,
+                                             EmailCustom after, int number) throws SQLException {
+        if(search == null || search.trim().isEmpty())
+            throw new IllegalArgumentException("Search value is null or empty.");
+        if(key == null || number < 0)
+            throw new IllegalArgumentException ("Invalid arguments. key is null or number < 0.");
+        
+        String query = "select id, query from saved_searches where name = ?";
+        Connection connection = getReadConnection();
+        try {
+            int id;
+            int days;
+            try(PreparedStatement pstmt = connection.prepareStatement(query)) {
+                pstmt.setString(1, search);
+                try(ResultSet rs = pstmt.executeQuery()) {
+                    if(!rs.next())
+                        return new ArrayList<>(0);
+                    id = rs.getInt(1);
+                    days = SearchQuery.parse(rs.getString(2)).getDays();
+                }
+            }
+            return findPage(connection, "id in (select email from search_members where search = ?)",
+                            id, days == 0 ? null : SearchQuery.oldest(days), key, ascending, after, number);
+        }
+        finally {
+            closeConnection(connection);
+        }
+    }
 
     /**
      * Find an email in database with given Id.
+     * The messages and attachments of an archived email are read from the archive.
      * 
      * @param id The id of the email to find.
      * 
@@ -180,19 +379,23 @@ public class MailStorageModule extends DatabaseModule implements MailStorageDAO
         if(id < 1)
             throw new IllegalArgumentException("Id value is invalid: " + id);
         
-        Connection connection = getConnection();
+        Connection connection = getReadConnection();
         EmailCustom email  = null;
         String query = "select id, msgNumber, rcvDate, "
                 + "(select name from directories where id = directory), "
                 + "(select address from addresses where id = fromEmail), "
-                + "message, sentDate, subject "
-                + "from emails where id = ?";
+                + "message, sentDate, subject, archived, messageId, inReplyTo, refs, "
+                + "partial, serverFolder, uidValidity, uid, seen "
+                + "from emails where id = ? and deleted = false";
         try(PreparedStatement pstmt = connection.prepareStatement(query)){
             pstmt.setInt(1, id);
             try(ResultSet rs = pstmt.executeQuery()){
                 if(rs.next()) {
                     email = createEmail(rs);
-                    addAttachments(email, connection);
+                    if(email.isArchived())
+                        addArchive(email, connection);
+                    else
+                        addAttachments(email, connection);
                     addEmails(email, connection);
                 }
             }
@@ -204,7 +407,7 @@ public class MailStorageModule extends DatabaseModule implements MailStorageDAO
     }
     
     /**
-     * Saves provided email in the database.
+     * Saves provided email in the database and attaches it to its conversation thread.
      *
      * @param email The email to save in the database.
      *
@@ -219,20 +422,33 @@ public class MailStorageModule extends DatabaseModule implements MailStorageDAO
         
         int id;
         String query = "insert into emails (msgNumber, rcvDate, directory, "
-                + "fromEmail, message, sentDate, subject) "
-                + "values (?,?,?,?,?,?,?)";
+                + "fromEmail, message, sentDate, subject, messageId, inReplyTo, refs, "
+                + "emailDate, contact, size, seen, partial, serverFolder, uidValidity, uid) "
+                + "values (?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?)";
         Connection connection = getConnection();
-        try(PreparedStatement pstmt = connection.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
-            prepareEmail(pstmt, email, connection);
-            pstmt.executeUpdate();
-            //get id of newly created email
-            try(ResultSet rs = pstmt.getGeneratedKeys()) {
-                rs.next();
-                id = rs.getInt(1);
+        try {
+            connection.setAutoCommit(false);
+            try(PreparedStatement pstmt = connection.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
+                prepareEmail(pstmt, email, connection);
+                pstmt.executeUpdate();
+                //get id of newly created email
+                try(ResultSet rs = pstmt.getGeneratedKeys()) {
+                    rs.next();
+                    id = rs.getInt(1);
+                }
+                email.setId(id);
+                saveAttachments(email, connection);
+                saveAddresses(email, connection);
+                ThreadIndex.attach(connection, id, email);
+                StatsIndex.add(connection, id);
+                SearchIndex.update(connection, id);
+                ChangeLog.record(connection, Change.Entity.EMAIL, Change.Operation.INSERT, id);
+                connection.commit();
+            }
+            catch(SQLException e) {
+                connection.rollback();
+                throw e;
             }
-            email.setId(id);
-            saveAttachments(email, connection);
-            saveAddresses(email, connection);
         }
         finally {
             closeConnection(connection);
@@ -240,6 +456,186 @@ public class MailStorageModule extends DatabaseModule implements MailStorageDAO
         return id;
     }
     
+    /**
+     * Saves the messages and attachments of a partial email, once they are
+     * received from the server, so that the email is no longer partial.
+     * The addresses and the other headers were saved with the email.
+     *
+     * @param email The email received in full, with the id of the partial email.
+     *
+     * @return the number of updated rows; 0 if the email is not partial or was deleted.
+     *
+     * @throws SQLException If there was a problem when writing to the database.
+     */
+    @Override
+    public int saveEmailContent(EmailCustom email) throws SQLException {
+        if(email == null)
+            throw new IllegalArgumentException("Email value is null.");
+        if(email.getId() < 1)
+            throw new IllegalArgumentException("Id value is invalid: " + email.getId());
+        
+        int result;
+        String query = "update emails set message = ?, partial = false "
+                + "where id = ? and partial = true and deleted = false";
+        Connection connection = getConnection();
+        try {
+            connection.setAutoCommit(false);
+            try {
+                try(PreparedStatement pstmt = connection.prepareStatement(query)) {
+                    pstmt.setString(1, convertMessagesToStr(email.getAllMessages()));
+                    pstmt.setInt(2, email.getId());
+                    result = pstmt.executeUpdate();
+                }
+                //the email was loaded in the meantime, e.g. by the prefetch
+                if(result != 0) {
+                    saveAttachments(email, connection);
+                    SearchIndex.update(connection, email.getId());
+                    ChangeLog.record(connection, Change.Entity.EMAIL, Change.Operation.UPDATE, email.getId());
+                }
+                connection.commit();
+            }
+            catch(SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+        }
+        finally {
+            closeConnection(connection);
+        }
+        return result;
+    }
+    
+    /**
+     * Returns the partial emails, whose messages and attachments are not
+     * received yet, the most recent first.
+     *
+     * @param number the maximum number of emails to retrieve.
+     *
+     * @return the partial emails, with their location on the server.
+     *
+     * @throws SQLException If there was a problem when reading from the database.
+     */
+    @Override
+    public List<EmailCustom> findPartialEmails(int number) throws SQLException {
+        if(number < 1)
+            throw new IllegalArgumentException ("Invalid argument. number > 0.");
+        
+        List<EmailCustom> emails = new ArrayList<>();
+        //read from the main database, so that the emails loaded on a replica are not loaded again
+        Connection connection = getConnection();
+        String query = "select id, msgNumber, rcvDate, "
+                + "(select name from directories where id = directory), "
+                + "(select address from addresses where id = fromEmail), "
+                + "message, sentDate, subject, archived, messageId, inReplyTo, refs, "
+                + "partial, serverFolder, uidValidity, uid, seen "
+                + "from emails where partial = true and deleted = false "
+                + "order by emailDate desc limit ?";
+        try(PreparedStatement pstmt = connection.prepareStatement(query)) {
+            pstmt.setInt(1, number);
+            try(ResultSet rs = pstmt.executeQuery()) {
+                while(rs.next())
+                    emails.add(createEmail(rs));
+            }
+        }
+        finally {
+            closeConnection(connection);
+        }
+        return emails;
+    }
+    
+    /**
+     * Moves the messages and attachments of the emails older than 
+     * the given date to the archive. Every email is archived in its own transaction,
+     * and only a stub with the headers remains in the emails table.
+     * 
+     * @param olderThan the date before which emails are archived.
+     * 
+     * @return the number of archived emails.
+     * 
+     * @throws SQLException If there was a problem when writing to the database.
+     */
+    @Override
+    public int archiveEmails(java.util.Date olderThan) throws SQLException {
+        if(olderThan == null)
+            throw new IllegalArgumentException("Date value is null.");
+        
+        List<Integer> ids = new ArrayList<>();
+        //the partial emails are archived once their messages are received
+        String query = "select id from emails where archived = false and deleted = false "
+                + "and partial = false and coalesce(rcvDate, sentDate) < ?";
+        Connection connection = getConnection();
+        try {
+            try(PreparedStatement pstmt = connection.prepareStatement(query)) {
+                setDate(pstmt, olderThan, 1);
+                try(ResultSet rs = pstmt.executeQuery()) {
+                    while(rs.next())
+                        ids.add(rs.getInt(1));
+                }
+            }
+            connection.setAutoCommit(false);
+            for(int id : ids) {
+                try {
+                    archiveEmail(id, connection);
+                    connection.commit();
+                }
+                catch(SQLException e) {
+                    connection.rollback();
+                    throw e;
+                }
+            }
+        }
+        finally {
+            closeConnection(connection);
+        }
+        return ids.size();
+    }
+    
+    /**
+     * Removes the emails marked as deleted, at most the given number at once,
+     * together with their addresses, attachments and archives.
+     * 
+     * @param number the maximum number of emails to remove.
+     * 
+     * @return the number of removed emails.
+     * 
+     * @throws SQLException If there was a problem when writing to the database.
+     */
+    @Override
+    public int purgeDeleted(int number) throws SQLException {
+        if(number < 1)
+            throw new IllegalArgumentException ("Invalid argument. number > 0.");
+        
+        //the rows of email_address, attachments and email_archive are removed by the cascade
+        String query = "delete from emails where deleted = true order by id limit ?";
+        Connection connection = getConnection();
+        try(PreparedStatement pstmt = connection.prepareStatement(query)) {
+            pstmt.setInt(1, number);
+            return pstmt.executeUpdate();
+        }
+        finally {
+            closeConnection(connection);
+        }
+    }
+    
+    /**
+     * Rebuilds the tables that hold attachments and archives, 
+     * so that the space of the removed ones is given back.
+     * The tables are locked while they are rebuilt.
+     * 
+     * @throws SQLException If there was a problem when writing to the database.
+     */
+    @Override
+    public void compactStorage() throws SQLException {
+        Connection connection = getConnection();
+        try(Statement stmt = connection.createStatement()) {
+            //optimize returns the status of every table
+            stmt.execute("optimize table attachments, email_archive");
+        }
+        finally {
+            closeConnection(connection);
+        }
+    }
+    
     /**
      * Updates the directory in the database for the provided email.
      * 
@@ -255,13 +651,100 @@ public class MailStorageModule extends DatabaseModule implements MailStorageDAO
             throw new IllegalArgumentException("Email value is null.");
         
         int result;
-        String query = "update emails set directory = ? where id = ?";
         Connection connection = getConnection();
-        int dirId = findDirectoryId(connection, email.getDirectory(), true);
+        try {
+            connection.setAutoCommit(false);
+            try {
+                int dirId = findDirectoryId(connection, email.getDirectory(), true);
+                result = moveEmail(connection, email.getId(), dirId);
+                connection.commit();
+            }
+            catch(SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+        }
+        finally {
+            closeConnection(connection);
+        }
+        return result;
+    }
+    
+    /**
+     * Moves the email to the directory, and updates its thread, statistics,
+     * saved searches and the change log on the same connection, e.g. within
+     * the transaction of the caller.
+     * 
+     * @param connection the connection to the database.
+     * @param id The id of the email.
+     * @param dirId The id of the new directory.
+     * 
+     * @return the number of updated rows.
+     * 
+     * @throws SQLException If there was a problem when writing to the database.
+     */
+    static int moveEmail(Connection connection, int id, int dirId) throws SQLException {
+        int result;
+        String query = "update emails set directory = ? where id = ? and deleted = false";
         try(PreparedStatement pstmt = connection.prepareStatement(query)) {
+            int[] thread = ThreadIndex.locate(connection, id);
+            StatsIndex.Entry stats = StatsIndex.locate(connection, id);
             pstmt.setInt(1, dirId);
-            pstmt.setInt(2, email.getId());
+            pstmt.setInt(2, id);
             result = pstmt.executeUpdate();
+            if(thread != null) {
+                ThreadIndex.refreshFolder(connection, thread[0], thread[1]);
+                ThreadIndex.refreshFolder(connection, thread[0], dirId);
+            }
+            if(stats != null && result != 0) {
+                StatsIndex.remove(connection, stats);
+                StatsIndex.add(connection, id);
+            }
+            if(result != 0) {
+                SearchIndex.update(connection, id);
+                ChangeLog.record(connection, Change.Entity.EMAIL, Change.Operation.UPDATE, id);
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Marks the email with the given id as read or unread,
+     * and updates the saved searches that contain it in the same transaction.
+     * 
+     * @param id The id of the email.
+     * 
+     * @param seen true if the email was read; false otherwise.
+     * 
+     * @return the number of updated rows; 0 if it was already marked.
+     * 
+     * @throws SQLException If there was a problem when writing to the database.
+     */
+    @Override
+    public int updateEmailSeen(int id, boolean seen) throws SQLException {
+        if(id < 1)
+            throw new IllegalArgumentException("Id value is invalid: " + id);
+        
+        int result;
+        String query = "update emails set seen = ? where id = ? and deleted = false and seen <> ?";
+        Connection connection = getConnection();
+        try {
+            connection.setAutoCommit(false);
+            try(PreparedStatement pstmt = connection.prepareStatement(query)) {
+                pstmt.setBoolean(1, seen);
+                pstmt.setInt(2, id);
+                pstmt.setBoolean(3, seen);
+                result = pstmt.executeUpdate();
+                if(result != 0) {
+                    SearchIndex.update(connection, id);
+                    ChangeLog.record(connection, Change.Entity.EMAIL, Change.Operation.UPDATE, id);
+                }
+                connection.commit();
+            }
+            catch(SQLException e) {
+                connection.rollback();
+                throw e;
+            }
         }
         finally {
             closeConnection(connection);
@@ -269,6 +752,61 @@ public class MailStorageModule extends DatabaseModule implements MailStorageDAO
         return result;
     }
     
+    /**
+     * Returns a page of the emails that are not archived and meet the condition,
+     * sorted by the given key, after the given email.
+     * @param connection the Connection object to the the database.
+     * @param condition the condition on the emails, with one parameter.
+     * @param value the value of the parameter of the condition.
+     * @param oldest the date of the oldest email; null for any date.
+     * @param key the key by which the emails are sorted.
+     * @param ascending true for ascending order; false for descending.
+     * @param after the last email of the previous page; null for the first page.
+     * @param number the number of emails to retrieve.
+     * @return the emails of the page.
+     * @throws SQLException If there was a problem when reading from the database.
+     */
+    private List<EmailCustom> findPage(Connection connection, String condition, int value,
+                                       Timestamp oldest, SortKey key, boolean ascending,
+                                       EmailCustom after, int number) throws SQLException {
+        String column = key.getColumn();
+        String compare = ascending ? " > " : " < ";
+        String order = ascending ? " asc" : " desc";
+        List<EmailCustom> emails = new ArrayList<>(0);
+        String query = "select id, msgNumber, rcvDate, "
+                + "(select name from directories where id = directory), "
+                + "(select address from addresses where id = fromEmail), "
+                + "message, sentDate, subject, archived, messageId, inReplyTo, refs, "
+                + "partial, serverFolder, uidValidity, uid, seen "
+                + "from emails where " + condition + " and deleted = false and archived = false "
+                + (oldest == null ? "" : "and emailDate >= ? ")
+                + (after == null ? "" : "and (" + column + compare + "? or (" 
+                                        + column + " = ? and id" + compare + "?)) ")
+                + "order by " + column + order + ", id" + order + " limit ?";
+        try(PreparedStatement pstmt = connection.prepareStatement(query)){
+            int index = 1;
+            pstmt.setInt(index++, value);
+            if(oldest != null)
+                pstmt.setTimestamp(index++, oldest);
+            if(after != null) {
+                Object keyValue = key.valueOf(after, getUserInfo().getFromEmail());
+                pstmt.setObject(index++, keyValue);
+                pstmt.setObject(index++, keyValue);
+                pstmt.setInt(index++, after.getId());
+            }
+            pstmt.setInt(index, number);
+            try(ResultSet rs = pstmt.executeQuery()){
+                while(rs.next()) {
+                    EmailCustom email = createEmail(rs);
+                    addAttachments(email, connection);
+                    addEmails(email, connection);
+                    emails.add(email);
+                }
+            }
+        }
+        return emails;
+    }
+    
     /**
      * Adds embedded attachments to an email.
      * @param email the email to which the attachments are added.
@@ -289,6 +827,80 @@ public class MailStorageModule extends DatabaseModule implements MailStorageDAO
         }  
     }
     
+    /**
+     * Adds the messages and attachments of an archived email.
+     * @param email the archived email.
+     * @param connection the Connection object to the the database.
+     * @throws SQLException If there is a problem when connecting to the database
+     *                      or the archive is damaged.
+     */
+    private void addArchive(EmailCustom email, Connection connection) throws SQLException {             
+        String query = "select payload from email_archive where email = ?";
+        try(PreparedStatement pstmt = connection.prepareStatement(query)){
+            pstmt.setInt(1, email.getId());
+            try(ResultSet rs = pstmt.executeQuery()){
+                if(rs.next()) {
+                    ArchiveCodec archive = ArchiveCodec.decode(rs.getBytes(1));
+                    addMessages(email, archive.getMessage());
+                    for(int i = 0; i < archive.getNames().size(); i++)
+                        email.embed(EmailAttachment.attachment().bytes(archive.getAttachments().get(i))
+                                    .setName(archive.getNames().get(i)));
+                }
+            }
+        }
+        catch(IOException e) {
+            throw new SQLException("Unable to read archived email " + email.getId(), e);
+        }
+    }
+    
+    /**
+     * Moves the messages and attachments of an email to the archive.
+     * @param id the id of the email to archive.
+     * @param connection the Connection object to the the database.
+     * @throws SQLException If there is a problem when connecting to the database.
+     */
+    private void archiveEmail(int id, Connection connection) throws SQLException {
+        String message = "";
+        List<String> names = new ArrayList<>();
+        List<byte[]> attachments = new ArrayList<>();
+        String query = "select message from emails where id = ? for update";
+        try(PreparedStatement pstmt = connection.prepareStatement(query)) {
+            pstmt.setInt(1, id);
+            try(ResultSet rs = pstmt.executeQuery()) {
+                if(rs.next())
+                    message = rs.getString(1);
+            }
+        }
+        query = "select binarydata, filename from attachments where email = ? order by id";
+        try(PreparedStatement pstmt = connection.prepareStatement(query)) {
+            pstmt.setInt(1, id);
+            try(ResultSet rs = pstmt.executeQuery()) {
+                while(rs.next()) {
+                    attachments.add(rs.getBytes(1));
+                    names.add(rs.getString(2));
+                }
+            }
+        }
+        
+        query = "insert into email_archive (email, payload) values (?,?)";
+        try(PreparedStatement pstmt = connection.prepareStatement(query)) {
+            pstmt.setInt(1, id);
+            pstmt.setBytes(2, new ArchiveCodec(message, names, attachments).encode());
+            pstmt.executeUpdate();
+        }
+        query = "delete from attachments where email = ?";
+        try(PreparedStatement pstmt = connection.prepareStatement(query)) {
+            pstmt.setInt(1, id);
+            pstmt.executeUpdate();
+        }
+        query = "update emails set message = '', archived = true where id = ?";
+        try(PreparedStatement pstmt = connection.prepareStatement(query)) {
+            pstmt.setInt(1, id);
+            pstmt.executeUpdate();
+        }
+        ChangeLog.record(connection, Change.Entity.EMAIL, Change.Operation.UPDATE, id);
+    }
+    
     /**
      * Adds email addresses (bcc, cc, to, replyTo) to an email.
      * @param email the email to which the attachments are added.
@@ -352,9 +964,19 @@ public class MailStorageModule extends DatabaseModule implements MailStorageDAO
         email.setReceivedDate(rs.getTimestamp(3));
         email.setDirectory(rs.getString(4));
         email.from(rs.getString(5));
-        addMessages(email, rs.getString(6));
+        email.setArchived(rs.getBoolean(9));
+        //the messages of an archived email are in the archive
+        if(!email.isArchived())
+            addMessages(email, rs.getString(6));
         email.setSentDate(rs.getTimestamp(7));
         email.subject(rs.getString(8));
+        email.setMessageId(rs.getString(10));
+        email.setInReplyTo(rs.getString(11));
+        email.setReferences(rs.getString(12));
+        email.setPartial(rs.getBoolean(13));
+        if(rs.getString(14) != null)
+            email.setServerLocation(rs.getString(14), rs.getLong(15), rs.getLong(16));
+        email.setSeen(rs.getBoolean(17));
         
         return email;
     }
@@ -362,7 +984,7 @@ public class MailStorageModule extends DatabaseModule implements MailStorageDAO
     
     /**
      * Returns the id of the provided directory. Creates new directory if one
-     * is not found in the database.
+     * is not found in the database. The ids are cached.
      * @param conn Database Connection object.
      * @param directory Directory name for which id is required.
      * @param addNew Indicates whether the directory needs to be created if one does not exist.
@@ -370,6 +992,13 @@ public class MailStorageModule extends DatabaseModule implements MailStorageDAO
      * @throws SQLException If there was a problem when reading from the database.
      */
     private int findDirectoryId(Connection conn, String directory, boolean addNew) throws SQLException {
+        StoreCache cache = StoreCache.forUser(getUserInfo());
+        cache.validate(conn);
+        Integer cached = cache.getDirectory(directory);
+        if(cached != null)
+            return cached;
+        
+        int generation = cache.getGeneration();
         int id = -1;
         String query = "select id from directories where name = ?";
         try(PreparedStatement pstmt = conn.prepareStatement(query)) {
@@ -378,13 +1007,18 @@ public class MailStorageModule extends DatabaseModule implements MailStorageDAO
                 //directory exists
                 if(rs.next())
                     id = rs.getInt(1);
-                //directory does not exist, so it is created
+                //directory does not exist, so it is created on the same connection,
+                //since opening another one would wait for the budget this one holds;
+                //it is not cached, as the transaction of the caller may be rolled back
                 else if(addNew) {
-                    FolderStorageModule fs = new FolderStorageModule(getUserInfo());
-                    id = fs.createDirectory(directory);
+                    id = FolderStorageModule.findOrCreate(conn, FolderStorageModule.normalize(directory));
+                    cache.clearDirectories();
+                    return id;
                 }
             }
         }
+        if(id != -1)
+            cache.putDirectory(directory, id, generation);
         return id;
     }
    
@@ -404,9 +1038,35 @@ public class MailStorageModule extends DatabaseModule implements MailStorageDAO
         pstmt.setInt(3, findDirectoryId(connection, email.getDirectory(), true));
         String from = (email.getFrom() == null? null : email.getFrom().getEmail()); 
         pstmt.setInt(4, saveAddress(from, connection));
-        pstmt.setString(5, convertMessagesToStr(email.getAllMessages()));
+        String messages = convertMessagesToStr(email.getAllMessages());
+        pstmt.setString(5, messages);
         setDate(pstmt, email.getSentDate(), 6);
-        pstmt.setString(7, email.getSubject());
+        pstmt.setString(7, SortKey.subjectOf(email));
+        List<String> messageId = ThreadIndex.parseIds(email.getMessageId());
+        pstmt.setString(8, messageId.isEmpty() ? null : messageId.get(0));
+        pstmt.setString(9, email.getInReplyTo());
+        pstmt.setString(10, email.getReferences());
+        pstmt.setTimestamp(11, SortKey.dateOf(email));
+        pstmt.setString(12, SortKey.contactOf(email, getUserInfo().getFromEmail()));
+        long size = messages.getBytes(StandardCharsets.UTF_8).length;
+        if(email.getAttachments() != null)
+            for(EmailAttachment ea : email.getAttachments())
+                size += ea.toByteArray().length;
+        //the messages and attachments of a partial email are not received yet
+        pstmt.setLong(13, email.isPartial() ? email.getServerSize() : size);
+        //the emails sent by the user are read, as are the emails read on another device
+        pstmt.setBoolean(14, email.getReceivedDate() == null 
+                || (email.getFlags() != null && email.getFlags().contains(Flags.Flag.SEEN)));
+        pstmt.setBoolean(15, email.isPartial());
+        pstmt.setString(16, email.getServerFolder());
+        if(email.getServerFolder() != null) {
+            pstmt.setLong(17, email.getUidValidity());
+            pstmt.setLong(18, email.getUid());
+        }
+        else {
+            pstmt.setNull(17, Types.BIGINT);
+            pstmt.setNull(18, Types.BIGINT);
+        }
         return pstmt;
     }
     
@@ -456,16 +1116,33 @@ public class MailStorageModule extends DatabaseModule implements MailStorageDAO
         }
     }
     
+    /**
+     * Returns the id of the address. Creates new address if one is not found
+     * in the database. The ids are cached.
+     * @param address The address for which id is required.
+     * @param conn Database Connection object.
+     * @return the id of the address.
+     * @throws SQLException If there is a problem when writing to the database.
+     */
     private int saveAddress(String address, Connection conn) throws SQLException {
+        StoreCache cache = StoreCache.forUser(getUserInfo());
+        cache.validate(conn);
+        Integer cached = cache.getAddress(address);
+        if(cached != null)
+            return cached;
+        
         int id;
         String query = "select id from addresses where address = ?";
         try(PreparedStatement pstmt = conn.prepareStatement(query)) {
             pstmt.setString(1, address);
             try(ResultSet rs = pstmt.executeQuery()) {
                 //address exists
-                if(rs.next())
+                if(rs.next()) {
                     id = rs.getInt(1);
-                //address does not exist, so it is created
+                    cache.putAddress(address, id);
+                }
+                //address does not exist, so it is created; it is not cached,
+                //as the transaction of the caller may be rolled back
                 else {
                     query = "insert into addresses (address) values (?)";
                     try(PreparedStatement pstmt2 = conn.prepareStatement
@@ -0,0 +1,102 @@
+package ashulzhenko.emailapp.data;
+
+import ashulzhenko.emailapp.bean.MergeProgress;
+import ashulzhenko.emailapp.bean.UserConfigBean;
+import ashulzhenko.emailapp.interfaces.MergeStorageDAO;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * MergeStorageModule class is used to save how far every mail merge went,
+ * so that a mail merge that was stopped is resumed after the recipients
+ * it finished instead of sending their emails again.
+ * The progress is read from the main database, since a replica may not
+ * have the latest progress yet.
+ *
+ * @author Alena Shulzhenko
+ * @version 19/10/2026
+ * @since 1.8
+ */
+public class MergeStorageModule extends DatabaseModule implements MergeStorageDAO {
+    //the maximum length of the name of a mail merge
+    private static final int MAX_NAME = 100;
+
+    /**
+     * Instantiates the object with all necessary information to work with the database.
+     *
+     * @param userInfo user's information needed to connect to the database.
+     * @throws SQLException If there is a problem when connecting to the database.
+     */
+    public MergeStorageModule(UserConfigBean userInfo) throws SQLException {
+        super(userInfo);
+    }
+
+    /**
+     * Returns how far the mail merge went.
+     *
+     * @param name the name of the mail merge.
+     *
+     * @return the progress of the mail merge; an empty progress if it never ran.
+     *
+     * @throws SQLException If there was a problem when reading from the database.
+     */
+    @Override
+    public MergeProgress findProgress(String name) throws SQLException {
+        checkName(name);
+
+        String query = "select position, sent, failed from merge_progress where name = ?";
+        Connection connection = getConnection();
+        try(PreparedStatement pstmt = connection.prepareStatement(query)) {
+            pstmt.setString(1, name);
+            try(ResultSet rs = pstmt.executeQuery()) {
+                if(rs.next())
+                    return new MergeProgress(name, rs.getLong(1), rs.getInt(2), rs.getInt(3));
+            }
+        }
+        finally {
+            closeConnection(connection);
+        }
+        return new MergeProgress(name, 0, 0, 0);
+    }
+
+    /**
+     * Saves how far the mail merge went.
+     *
+     * @param progress the progress of the mail merge.
+     *
+     * @throws SQLException If there was a problem when writing to the database.
+     */
+    @Override
+    public void saveProgress(MergeProgress progress) throws SQLException {
+        if(progress == null)
+            throw new IllegalArgumentException("Mail merge progress value is null.");
+        checkName(progress.getName());
+
+        String query = "insert into merge_progress (name, position, sent, failed) values (?, ?, ?, ?) "
+                + "on duplicate key update position = values(position), sent = values(sent), "
+                + "failed = values(failed)";
+        Connection connection = getConnection();
+        try(PreparedStatement pstmt = connection.prepareStatement(query)) {
+            pstmt.setString(1, progress.getName());
+            pstmt.setLong(2, progress.getPosition());
+            pstmt.setInt(3, progress.getSent());
+            pstmt.setInt(4, progress.getFailed());
+            pstmt.executeUpdate();
+        }
+        finally {
+            closeConnection(connection);
+        }
+    }
+
+    /**
+     * Verifies that the name of the mail merge can be saved.
+     *
+     * @param name the name of the mail merge.
+     */
+    private void checkName(String name) {
+        if(name == null || name.isEmpty() || name.length() > MAX_NAME)
+            throw new IllegalArgumentException("Mail merge name value is invalid: " + name);
+    }
+}
@@ -0,0 +1,245 @@
+package ashulzhenko.emailapp.data;
+
+import ashulzhenko.emailapp.bean.Change;
+import ashulzhenko.emailapp.bean.OutboxEntry;
+import ashulzhenko.emailapp.bean.UserConfigBean;
+import ashulzhenko.emailapp.interfaces.OutboxDAO;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * OutboxModule class is used to save the delivery of the emails that wait
+ * in the outbox directory until they are sent: how many times sending them
+ * failed, why, and when they are tried again.
+ * The emails themselves are saved by MailStorageDAO, so that the outbox is
+ * an ordinary directory; an email without a delivery state was not tried yet,
+ * and an email moved out of the outbox is no longer sent.
+ *
+ * @author Alena Shulzhenko
+ * @version 19/10/2026
+ * @since 1.8
+ */
+public class OutboxModule extends DatabaseModule implements OutboxDAO {
+    //the maximum length of the error saved with the email
+    private static final int MAX_ERROR = 255;
+
+    /**
+     * Instantiates the object with all necessary information to work with the database.
+     *
+     * @param userInfo user's information needed to connect to the database.
+     * @throws SQLException If there is a problem when connecting to the database.
+     */
+    public OutboxModule(UserConfigBean userInfo) throws SQLException {
+        super(userInfo);
+    }
+
+    /**
+     * Returns the emails of the outbox that are due to be sent, the oldest first,
+     * and claims them for the given time: their next attempt is set to the end
+     * of the claim, so that another application that shares the database does
+     * not send them as well. The rows are locked until they are claimed.
+     * The emails whose delivery was given up, and the emails that were sent
+     * but not moved out of the outbox, are not returned.
+     *
+     * @param number the maximum number of emails.
+     * @param lease the time in seconds during which the emails are claimed.
+     *
+     * @return the emails that were not tried yet or whose next attempt is due.
+     *
+     * @throws SQLException If there was a problem when working with the database.
+     */
+    @Override
+    public List<OutboxEntry> claimDueEmails(int number, int lease) throws SQLException {
+        if(number < 1)
+            throw new IllegalArgumentException("Number value is invalid: " + number);
+        if(lease < 1)
+            throw new IllegalArgumentException("Lease value is invalid: " + lease);
+
+        String query = "select e.id, coalesce(o.attempts, 0), o.lastError from emails e "
+                + "join directories d on d.id = e.directory left join outbox o on o.email = e.id "
+                + "where d.name = ? and e.deleted = false and e.messageId is null "
+                + "and (o.email is null or o.nextAttempt <= current_timestamp) "
+                + "order by e.id limit ? for update";
+        String claim = "insert into outbox (email, attempts, nextAttempt) "
+                + "values (?, 0, current_timestamp + interval ? second) "
+                + "on duplicate key update nextAttempt = values(nextAttempt)";
+        List<OutboxEntry> entries = new ArrayList<>();
+        //the state of a failed attempt is only on the main database
+        Connection connection = getConnection();
+        try {
+            connection.setAutoCommit(false);
+            try {
+                try(PreparedStatement pstmt = connection.prepareStatement(query)) {
+                    pstmt.setString(1, DIRECTORY);
+                    pstmt.setInt(2, number);
+                    try(ResultSet rs = pstmt.executeQuery()) {
+                        while(rs.next())
+                            entries.add(new OutboxEntry(rs.getInt(1), rs.getInt(2), rs.getString(3)));
+                    }
+                }
+                try(PreparedStatement pstmt = connection.prepareStatement(claim)) {
+                    for(OutboxEntry entry : entries) {
+                        pstmt.setInt(1, entry.getEmailId());
+                        pstmt.setInt(2, lease);
+                        pstmt.addBatch();
+                    }
+                    if(!entries.isEmpty())
+                        pstmt.executeBatch();
+                }
+                connection.commit();
+            }
+            catch(SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+        }
+        finally {
+            closeConnection(connection);
+        }
+        return entries;
+    }
+
+    /**
+     * Counts a failed attempt to send the email and sets when it is tried again.
+     *
+     * @param id the id of the email.
+     * @param nextAttempt when the email is tried again.
+     * @param error why the attempt failed.
+     *
+     * @throws SQLException If there was a problem when writing to the database.
+     */
+    @Override
+    public void scheduleRetry(int id, Date nextAttempt, String error) throws SQLException {
+        if(nextAttempt == null)
+            throw new IllegalArgumentException("Next attempt value is null.");
+        saveAttempt(id, nextAttempt, error);
+    }
+
+    /**
+     * Counts a failed attempt to send the email and stops trying to send it.
+     * The email stays in the outbox with the error.
+     *
+     * @param id the id of the email.
+     * @param error why the attempt failed.
+     *
+     * @throws SQLException If there was a problem when writing to the database.
+     */
+    @Override
+    public void markFailed(int id, String error) throws SQLException {
+        saveAttempt(id, null, error);
+    }
+
+    /**
+     * Saves the message id given to the sent email, so that the replies
+     * belong to its conversation thread, moves it to the sent directory and
+     * removes its delivery state, in one transaction, so that a sent email
+     * is never found in the outbox again.
+     *
+     * @param id the id of the email.
+     * @param messageId the Message-ID header of the sent email.
+     *
+     * @throws SQLException If there was a problem when writing to the database.
+     */
+    @Override
+    public void markSent(int id, String messageId) throws SQLException {
+        if(id < 1)
+            throw new IllegalArgumentException("Id value is invalid: " + id);
+
+        List<String> ids = ThreadIndex.parseIds(messageId);
+        Connection connection = getConnection();
+        try {
+            connection.setAutoCommit(false);
+            try {
+                if(!ids.isEmpty()) {
+                    String query = "update emails set messageId = ? where id = ?";
+                    try(PreparedStatement pstmt = connection.prepareStatement(query)) {
+                        pstmt.setString(1, ids.get(0));
+                        pstmt.setInt(2, id);
+                        pstmt.executeUpdate();
+                    }
+                    query = "insert ignore into thread_ids (messageId, thread) "
+                            + "select ?, thread from emails where id = ? and thread is not null";
+                    try(PreparedStatement pstmt = connection.prepareStatement(query)) {
+                        pstmt.setString(1, ids.get(0));
+                        pstmt.setInt(2, id);
+                        pstmt.executeUpdate();
+                    }
+                    ChangeLog.record(connection, Change.Entity.EMAIL, Change.Operation.UPDATE, id);
+                }
+                MailStorageModule.moveEmail(connection, id, findDirectoryId(connection, SENT_DIRECTORY));
+                try(PreparedStatement pstmt = connection.prepareStatement("delete from outbox where email = ?")) {
+                    pstmt.setInt(1, id);
+                    pstmt.executeUpdate();
+                }
+                connection.commit();
+            }
+            catch(SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+        }
+        finally {
+            closeConnection(connection);
+        }
+    }
+
+    /**
+     * Returns the id of a directory that exists.
+     *
+     * @param connection the connection to the database.
+     * @param directory the name of the directory.
+     *
+     * @return the id of the directory.
+     *
+     * @throws SQLException If the directory does not exist.
+     */
+    private int findDirectoryId(Connection connection, String directory) throws SQLException {
+        try(PreparedStatement pstmt = connection.prepareStatement("select id from directories where name = ?")) {
+            pstmt.setString(1, directory);
+            try(ResultSet rs = pstmt.executeQuery()) {
+                if(rs.next())
+                    return rs.getInt(1);
+            }
+        }
+        throw new SQLException("Directory not found: " + directory);
+    }
+
+    /**
+     * Counts a failed attempt to send the email.
+     *
+     * @param id the id of the email.
+     * @param nextAttempt when the email is tried again; null if it is not.
+     * @param error why the attempt failed.
+     *
+     * @throws SQLException If there was a problem when writing to the database.
+     */
+    private void saveAttempt(int id, Date nextAttempt, String error) throws SQLException {
+        if(id < 1)
+            throw new IllegalArgumentException("Id value is invalid: " + id);
+
+        String query = "insert into outbox (email, attempts, nextAttempt, lastError) values (?, 1, ?, ?) "
+                + "on duplicate key update attempts = attempts + 1, "
+                + "nextAttempt = values(nextAttempt), lastError = values(lastError)";
+        Connection connection = getConnection();
+        try(PreparedStatement pstmt = connection.prepareStatement(query)) {
+            pstmt.setInt(1, id);
+            if(nextAttempt == null)
+                pstmt.setNull(2, Types.TIMESTAMP);
+            else
+                pstmt.setTimestamp(2, new Timestamp(nextAttempt.getTime()));
+            pstmt.setString(3, error == null || error.length() <= MAX_ERROR ? error
+                                                                            : error.substring(0, MAX_ERROR));
+            pstmt.executeUpdate();
+        }
+        finally {
+            closeConnection(connection);
+        }
+    }
+}
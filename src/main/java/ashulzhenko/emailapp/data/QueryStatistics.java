@@ -0,0 +1,180 @@
+package ashulzhenko.emailapp.data;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * QueryStatistics class collects the statistics of every SQL statement
+ * executed through the connections of DatabaseModule.
+ * Statements are grouped by their shape (the SQL with literals replaced
+ * by question marks) and by the DAO method that executed them.
+ * The statistics can be read at any time with snapshot() and
+ * can be written to the log periodically with startReporting().
+ *
+ * @author Alena Shulzhenko
+ * @version 19/10/2026
+ * @since 1.8
+ */
+public class QueryStatistics {
+    //normalized statements are cached; the cache is cleared when it grows too big
+    private static final int MAX_SHAPES = 1024;
+    private static final Pattern STRING = Pattern.compile("'(?:[^'\\\\]|\\\\.|'')*'");
+    private static final Pattern NUMBER = Pattern.compile("\\b\\d+(?:\\.\\d+)?\\b");
+    private static final Pattern SPACES = Pattern.compile("\\s+");
+    private static final Pattern LIST = Pattern.compile("\\(\\s*\\?(?:\\s*,\\s*\\?)+\\s*\\)");
+
+    private static final Map<String, QueryStats> STATS = new ConcurrentHashMap<>();
+    private static final Map<String, String> SHAPES = new ConcurrentHashMap<>();
+    private static volatile boolean enabled = true;
+    private static ScheduledExecutorService reporter;
+    private static final Logger log = LoggerFactory.getLogger(QueryStatistics.class.getName());
+
+    /**
+     * Prevents instantiation.
+     */
+    private QueryStatistics() {}
+
+    /**
+     * Indicates whether the statistics are collected.
+     *
+     * @return true if the statistics are collected; false otherwise.
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Turns the collection of statistics on or off.
+     * Connections opened while the collection is off are not instrumented.
+     *
+     * @param enabled true to collect the statistics; false otherwise.
+     */
+    public static void setEnabled(boolean enabled) {
+        QueryStatistics.enabled = enabled;
+    }
+
+    /**
+     * Returns a copy of the current statistics, ordered by the
+     * total execution time, the most expensive statements first.
+     *
+     * @return a copy of the current statistics.
+     */
+    public static List<QueryStats> snapshot() {
+        List<QueryStats> list = new ArrayList<>();
+        for(QueryStats stats : STATS.values())
+            list.add(stats.copy());
+        list.sort(Comparator.comparingDouble((QueryStats s) ->
+                -s.getLatency().getMean() * s.getCalls()));
+        return list;
+    }
+
+    /**
+     * Returns a copy of the current statistics of the DAO method.
+     *
+     * @param method the class and the name of the method, for example MailStorageModule.findEmailById.
+     *
+     * @return a copy of the statistics of every statement of the method.
+     */
+    public static List<QueryStats> snapshot(String method) {
+        List<QueryStats> list = new ArrayList<>();
+        for(QueryStats stats : snapshot()) {
+            if(stats.getMethod().equals(method))
+                list.add(stats);
+        }
+        return list;
+    }
+
+    /**
+     * Removes all collected statistics.
+     */
+    public static void reset() {
+        STATS.clear();
+    }
+
+    /**
+     * Writes the statistics to the log every given number of seconds.
+     * Calling this method again changes the interval.
+     *
+     * @param interval the interval in seconds.
+     */
+    public static synchronized void startReporting(long interval) {
+        if(interval < 1)
+            throw new IllegalArgumentException("Invalid reporting interval: " + interval);
+        stopReporting();
+        reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "query-statistics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reporter.scheduleAtFixedRate(QueryStatistics::report, interval, interval, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stops writing the statistics to the log.
+     */
+    public static synchronized void stopReporting() {
+        if(reporter != null) {
+            reporter.shutdownNow();
+            reporter = null;
+        }
+    }
+
+    /**
+     * Writes the current statistics to the log.
+     */
+    public static void report() {
+        List<QueryStats> list = snapshot();
+        if(list.isEmpty())
+            return;
+        StringBuilder sb = new StringBuilder("Query statistics:");
+        for(QueryStats stats : list)
+            sb.append(System.lineSeparator()).append(stats);
+        log.info(sb.toString());
+    }
+
+    /**
+     * Returns the statistics of the statement executed by the DAO method.
+     *
+     * @param method the DAO method that executes the statement.
+     * @param shape the normalized SQL of the statement.
+     *
+     * @return the statistics of the statement.
+     */
+    static QueryStats statsFor(String method, String shape) {
+        return STATS.computeIfAbsent(method + '\n' + shape, k -> new QueryStats(method, shape));
+    }
+
+    /**
+     * Returns the shape of the statement: literals are replaced by
+     * question marks, lists of parameters are reduced to one parameter
+     * and white space is collapsed.
+     *
+     * @param sql the SQL statement.
+     *
+     * @return the shape of the statement.
+     */
+    static String shapeOf(String sql) {
+        if(sql == null)
+            return "";
+        String shape = SHAPES.get(sql);
+        if(shape == null) {
+            shape = STRING.matcher(sql).replaceAll("?");
+            shape = NUMBER.matcher(shape).replaceAll("?");
+            shape = SPACES.matcher(shape).replaceAll(" ").trim();
+            shape = LIST.matcher(shape).replaceAll("(?)");
+            if(SHAPES.size() >= MAX_SHAPES)
+                SHAPES.clear();
+            SHAPES.put(sql, shape);
+        }
+        return shape;
+    }
+}
@@ -0,0 +1,179 @@
+package ashulzhenko.emailapp.data;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * QueryStats class holds the statistics of one SQL statement shape
+ * executed by one DAO method: the number of calls and errors,
+ * the latency histogram, the number of rows read and
+ * the number of bytes sent and received.
+ *
+ * @author Alena Shulzhenko
+ * @version 19/10/2026
+ * @since 1.8
+ */
+public class QueryStats {
+    private final String method;
+    private final String shape;
+    private final LatencyHistogram latency;
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+
+    /**
+     * Instantiates empty statistics.
+     *
+     * @param method the DAO method that executes the statement.
+     * @param shape the normalized SQL of the statement.
+     */
+    QueryStats(String method, String shape) {
+        this(method, shape, new LatencyHistogram());
+    }
+
+    /**
+     * Instantiates statistics with the given histogram.
+     *
+     * @param method the DAO method that executes the statement.
+     * @param shape the normalized SQL of the statement.
+     * @param latency the latency histogram.
+     */
+    private QueryStats(String method, String shape, LatencyHistogram latency) {
+        this.method = method;
+        this.shape = shape;
+        this.latency = latency;
+    }
+
+    /**
+     * Records one execution of the statement.
+     *
+     * @param nanos the execution time in nanoseconds.
+     * @param written the number of bytes sent as parameters.
+     * @param failed true if the execution threw an exception.
+     */
+    void recordCall(long nanos, long written, boolean failed) {
+        calls.increment();
+        if(failed)
+            errors.increment();
+        latency.record(nanos / 1000);
+        bytesWritten.add(written);
+    }
+
+    /**
+     * Records one row read from the result of the statement.
+     */
+    void recordRow() {
+        rows.increment();
+    }
+
+    /**
+     * Records bytes read from the result of the statement.
+     *
+     * @param bytes the number of bytes read.
+     */
+    void recordRead(long bytes) {
+        bytesRead.add(bytes);
+    }
+
+    /**
+     * Returns a copy of these statistics that does not change anymore.
+     *
+     * @return a copy of these statistics.
+     */
+    QueryStats copy() {
+        QueryStats copy = new QueryStats(method, shape, latency.copy());
+        copy.calls.add(calls.sum());
+        copy.errors.add(errors.sum());
+        copy.rows.add(rows.sum());
+        copy.bytesRead.add(bytesRead.sum());
+        copy.bytesWritten.add(bytesWritten.sum());
+        return copy;
+    }
+
+    /**
+     * Returns the DAO method that executes the statement.
+     *
+     * @return the class and the name of the method, for example MailStorageModule.findEmailById.
+     */
+    public String getMethod() {
+        return method;
+    }
+
+    /**
+     * Returns the normalized SQL of the statement.
+     *
+     * @return the normalized SQL of the statement.
+     */
+    public String getShape() {
+        return shape;
+    }
+
+    /**
+     * Returns the latency histogram of the statement.
+     *
+     * @return the latency histogram in microseconds.
+     */
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    /**
+     * Returns the number of executions.
+     *
+     * @return the number of executions.
+     */
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    /**
+     * Returns the number of executions that threw an exception.
+     *
+     * @return the number of failed executions.
+     */
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    /**
+     * Returns the number of rows read from the results.
+     *
+     * @return the number of rows read.
+     */
+    public long getRows() {
+        return rows.sum();
+    }
+
+    /**
+     * Returns the number of bytes read from the results.
+     *
+     * @return the number of bytes read.
+     */
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    /**
+     * Returns the number of bytes sent as parameters.
+     *
+     * @return the number of bytes sent.
+     */
+    public long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    /**
+     * Returns the String representation of the statistics.
+     *
+     * @return the String representation of the statistics.
+     */
+    @Override
+    public String toString() {
+        return String.format("%s calls=%d errors=%d mean=%.0fus p50=%dus p95=%dus p99=%dus "
+                + "max=%dus rows=%d read=%dB written=%dB [%s]", method, getCalls(), getErrors(),
+                latency.getMean(), latency.getValueAtPercentile(50), latency.getValueAtPercentile(95),
+                latency.getValueAtPercentile(99), latency.getMax(), getRows(), getBytesRead(),
+                getBytesWritten(), shape);
+    }
+}
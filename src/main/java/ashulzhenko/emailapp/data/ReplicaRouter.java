@@ -0,0 +1,232 @@
+package ashulzhenko.emailapp.data;
+
+import ashulzhenko.emailapp.bean.UserConfigBean;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * ReplicaRouter class decides which MySQL server serves a connection.
+ * Writes always go to the primary server. Reads are balanced between
+ * the replicas in round-robin order, except during the read-after-write
+ * window following a write, when they are pinned to the primary so that
+ * the application always sees its own changes.
+ * A replica that fails to connect is marked as down and is not used
+ * until the retry interval passes and it answers a validity check again.
+ * If no replica is available, reads fall back to the primary.
+ *
+ * @author Alena Shulzhenko
+ * @version 19/10/2026
+ * @since 1.8
+ */
+class ReplicaRouter {
+    //time in milliseconds before a failed replica is tried again
+    private static final long RETRY_INTERVAL = 30000;
+    //time in seconds to wait for a replica to answer the validity check
+    private static final int VALIDATION_TIMEOUT = 2;
+    //routers are shared, so that a write done by one module pins reads of another
+    private static final Map<String, ReplicaRouter> ROUTERS = new ConcurrentHashMap<>();
+
+    private final String primary;
+    private final List<Replica> replicas;
+    private final long window;
+    private final AtomicInteger next = new AtomicInteger();
+    private volatile long lastWrite;
+    private final Logger log = LoggerFactory.getLogger(getClass().getName());
+
+    /**
+     * Instantiates the object with the servers described by the user information.
+     *
+     * @param userInfo user's information needed to connect to the database.
+     */
+    private ReplicaRouter(UserConfigBean userInfo) {
+        int port = userInfo.getMysqlPort();
+        String dbName = userInfo.getMysqlDbName();
+        this.primary = buildUrl(userInfo.getMysqlUrl(), port, dbName);
+        this.window = userInfo.getReadAfterWriteWindow();
+
+        List<Replica> list = new ArrayList<>();
+        for(String host : parseHosts(userInfo.getMysqlReplicas())) {
+            int index = host.lastIndexOf(':');
+            if(index > 0)
+                list.add(new Replica(buildUrl(host.substring(0, index),
+                        Integer.parseInt(host.substring(index + 1).trim()), dbName)));
+            else
+                list.add(new Replica(buildUrl(host, port, dbName)));
+        }
+        this.replicas = Collections.unmodifiableList(list);
+    }
+
+    /**
+     * Returns the router for the servers described by the user information.
+     * The same router is returned for the same configuration.
+     *
+     * @param userInfo user's information needed to connect to the database.
+     *
+     * @return the router for the provided configuration.
+     */
+    static ReplicaRouter forUser(UserConfigBean userInfo) {
+        String key = userInfo.getMysqlUrl() + ":" + userInfo.getMysqlPort() + "/"
+                + userInfo.getMysqlDbName() + "|" + userInfo.getMysqlReplicas()
+                + "|" + userInfo.getReadAfterWriteWindow();
+        return ROUTERS.computeIfAbsent(key, k -> new ReplicaRouter(userInfo));
+    }
+
+    /**
+     * Splits the comma separated list of hosts.
+     *
+     * @param hosts the comma separated list of hosts; may be null or empty.
+     *
+     * @return the list of trimmed, non-empty hosts.
+     */
+    static List<String> parseHosts(String hosts) {
+        List<String> list = new ArrayList<>();
+        if(hosts != null) {
+            for(String host : hosts.split(",")) {
+                if(!host.trim().isEmpty())
+                    list.add(host.trim());
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Opens a connection to the primary server.
+     * Since the primary connection is used for writes,
+     * reads are pinned to the primary for the read-after-write window.
+     *
+     * @param user the MySQL user name.
+     * @param password the MySQL password.
+     *
+     * @return the connection to the primary server.
+     *
+     * @throws SQLException If there is a problem when opening a connection.
+     */
+    Connection getWriteConnection(String user, String password) throws SQLException {
+        lastWrite = System.currentTimeMillis();
+        return DriverManager.getConnection(primary, user, password);
+    }
+
+    /**
+     * Opens a connection for read-only work. A healthy replica is chosen in
+     * round-robin order unless a write happened during the read-after-write window.
+     *
+     * @param user the MySQL user name.
+     * @param password the MySQL password.
+     *
+     * @return the connection to a replica or to the primary server.
+     *
+     * @throws SQLException If there is a problem when opening a connection.
+     */
+    Connection getReadConnection(String user, String password) throws SQLException {
+        if(!replicas.isEmpty() && !isPinned()) {
+            int size = replicas.size();
+            int start = Math.floorMod(next.getAndIncrement(), size);
+            for(int i = 0; i < size; i++) {
+                Replica replica = replicas.get((start + i) % size);
+                Connection connection = replica.connect(user, password);
+                if(connection != null)
+                    return connection;
+            }
+            log.warn("No replica is available, reading from the primary server.");
+        }
+        return DriverManager.getConnection(primary, user, password);
+    }
+
+    /**
+     * Indicates whether reads are currently pinned to the primary server.
+     *
+     * @return true if a write happened during the read-after-write window; false otherwise.
+     */
+    boolean isPinned() {
+        return System.currentTimeMillis() - lastWrite < window;
+    }
+
+    /**
+     * Returns the number of configured replicas.
+     *
+     * @return the number of configured replicas.
+     */
+    int getReplicaCount() {
+        return replicas.size();
+    }
+
+    /**
+     * Builds the JDBC URL for the given server.
+     *
+     * @param host the host of the server.
+     * @param port the port of the server.
+     * @param dbName the database name.
+     *
+     * @return the JDBC URL.
+     */
+    static String buildUrl(String host, int port, String dbName) {
+        return "jdbc:mysql://" + host + ":" + port + "/" + dbName;
+    }
+
+    /**
+     * One replica server together with its health state.
+     */
+    private class Replica {
+        private final String url;
+        private volatile long downUntil;
+
+        /**
+         * Instantiates the replica.
+         *
+         * @param url the JDBC URL of the replica.
+         */
+        Replica(String url) {
+            this.url = url;
+        }
+
+        /**
+         * Opens a connection to this replica if it is healthy.
+         *
+         * @param user the MySQL user name.
+         * @param password the MySQL password.
+         *
+         * @return the connection; null if the replica is down.
+         */
+        Connection connect(String user, String password) {
+            long now = System.currentTimeMillis();
+            if(now < downUntil)
+                return null;
+            boolean retried = downUntil != 0;
+            try {
+                Connection connection = DriverManager.getConnection(url, user, password);
+                //a replica that failed before must prove it is healthy again
+                if(retried && !connection.isValid(VALIDATION_TIMEOUT)) {
+                    connection.close();
+                    markDown(now, null);
+                    return null;
+                }
+                downUntil = 0;
+                return connection;
+            }
+            catch(SQLException e) {
+                markDown(now, e);
+                return null;
+            }
+        }
+
+        /**
+         * Marks the replica as down for the retry interval.
+         *
+         * @param now the current time.
+         * @param e the reason of the failure; may be null.
+         */
+        private void markDown(long now, SQLException e) {
+            downUntil = now + RETRY_INTERVAL;
+            log.warn("Replica " + url + " is down.", e);
+        }
+    }
+}
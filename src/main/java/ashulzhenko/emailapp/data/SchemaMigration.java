@@ -0,0 +1,322 @@
+package ashulzhenko.emailapp.data;
+
+import com.mysql.jdbc.exceptions.jdbc4.MySQLSyntaxErrorException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * SchemaMigration class brings the tables of an existing database up to
+ * the schema created by createTables.sql. The version of the schema is
+ * kept in the schema_version table; a database created before the table
+ * existed is at version 0. Every version has the statements that migrate
+ * the previous version to it, and the data of the new columns and tables
+ * is filled from the existing emails, so that the migrated database is the
+ * same as one where the emails were saved by the current version.
+ * The statements are not run in a transaction, since MySQL commits every
+ * change of a table, so the number of statements of the next version that
+ * were executed is recorded after each of them. A migration that failed
+ * part way resumes with the statement that failed instead of repeating the
+ * ones that already added their columns and data.
+ * The migration holds a named lock, so that only one connection migrates
+ * a database at a time. createTables.sql records VERSION in a new database.
+ *
+ * @author Alena Shulzhenko
+ * @version 19/10/2026
+ * @since 1.8
+ */
+class SchemaMigration {
+    //the version of the schema created by createTables.sql
+    static final int VERSION = 13;
+    private static final String LOCK = "concat('emailapp_schema.', database())";
+    private static final int LOCK_TIMEOUT = 60;
+    private static final String MONTH = "date_format(emailDate, '%Y-%m-01')";
+    private static final Logger log = LoggerFactory.getLogger(SchemaMigration.class.getName());
+
+    //the statements that migrate version i to version i + 1;
+    //every ? is the address of the account
+    private static final String[][] MIGRATIONS = {
+        //1: archived emails
+        {"alter table emails add column archived boolean not null default false",
+         "create table if not exists email_archive (email integer primary key, "
+            + "payload longblob not null, archivedDate timestamp not null default current_timestamp, "
+            + "foreign key (email) references emails(id) ON DELETE CASCADE ON UPDATE CASCADE)"},
+        //2: conversation threads; every existing email starts its own thread
+        {"create table if not exists threads (id integer primary key AUTO_INCREMENT, "
+            + "subject varchar(50) not null default '', index (subject))",
+         "alter table emails add column messageId varchar(255) null, "
+            + "add column inReplyTo varchar(255) null, add column refs text, "
+            + "add column thread integer null, add index (messageId), "
+            + "add foreign key (thread) references threads(id) ON DELETE SET NULL",
+         "create table if not exists thread_ids (messageId varchar(255) primary key, "
+            + "thread integer not null, index (thread), foreign key (thread) "
+            + "references threads(id) ON DELETE CASCADE ON UPDATE CASCADE)",
+         "create table if not exists thread_folders (thread integer, directory integer, "
+            + "messageCount integer not null default 0, latestDate timestamp null, "
+            + "primary key (directory, thread), index (directory, latestDate), "
+            + "foreign key (thread) references threads(id) ON DELETE CASCADE ON UPDATE CASCADE, "
+            + "foreign key (directory) references directories(id) ON DELETE CASCADE ON UPDATE CASCADE)",
+         "insert into threads (id, subject) select id, coalesce(subject, '') from emails",
+         "update emails set thread = id",
+         "insert into thread_folders (thread, directory, messageCount, latestDate) "
+            + "select id, directory, 1, coalesce(rcvDate, sentDate) from emails where directory is not null"},
+        //3: sort keys; the indexes are added with the deleted column
+        {"alter table emails add column emailDate datetime not null default '1970-01-01 00:00:00', "
+            + "add column contact varchar(150) not null default ''",
+         "update emails set emailDate = coalesce(rcvDate, sentDate, emailDate)",
+         "update emails e join addresses a on a.id = e.fromEmail set e.contact = left(a.address, 150)",
+         "update emails e set e.contact = coalesce((select left(r.address, 150) from email_address ea "
+            + "join addresses r on r.id = ea.addressid where ea.emailid = e.id "
+            + "and ea.address_type = 3 order by ea.addressid limit 1), e.contact) where e.contact = ?"},
+        //4: correspondent and folder statistics
+        {"alter table emails add column size integer not null default 0",
+         "update emails e set e.size = length(coalesce(e.message, '')) + coalesce((select "
+            + "sum(length(binarydata)) from attachments where email = e.id), 0)",
+         "create table if not exists correspondent_stats (contact varchar(150) not null, "
+            + "directory integer, month date not null, messageCount integer not null default 0, "
+            + "bytes bigint not null default 0, firstSeen datetime null, lastSeen datetime null, "
+            + "primary key (contact, directory, month), index (directory, month), "
+            + "foreign key (directory) references directories(id) ON DELETE CASCADE ON UPDATE CASCADE)",
+         "create table if not exists folder_stats (directory integer, month date not null, "
+            + "messageCount integer not null default 0, bytes bigint not null default 0, "
+            + "firstSeen datetime null, lastSeen datetime null, primary key (directory, month), "
+            + "foreign key (directory) references directories(id) ON DELETE CASCADE ON UPDATE CASCADE)",
+         "insert into correspondent_stats (contact, directory, month, messageCount, bytes, "
+            + "firstSeen, lastSeen) select contact, directory, " + MONTH + ", count(*), sum(size), "
+            + "min(emailDate), max(emailDate) from emails where directory is not null "
+            + "group by contact, directory, " + MONTH,
+         "insert into folder_stats (directory, month, messageCount, bytes, firstSeen, lastSeen) "
+            + "select directory, " + MONTH + ", count(*), sum(size), min(emailDate), max(emailDate) "
+            + "from emails where directory is not null group by directory, " + MONTH},
+        //5: soft delete and the sort indexes that skip deleted emails
+        {"alter table emails add column deleted boolean not null default false, "
+            + "add index (directory, deleted, archived, emailDate, id), "
+            + "add index (directory, deleted, archived, contact, id), "
+            + "add index (directory, deleted, archived, subject, id), add index (deleted)"},
+        //6: change feed
+        {"create table if not exists change_log (version bigint primary key AUTO_INCREMENT, "
+            + "entity varchar(10) not null, operation varchar(10) not null, "
+            + "entityId integer not null, changed timestamp not null default current_timestamp, "
+            + "index (changed))"},
+        //7: nested directories; the existing ones are top-level
+        {"alter table directories modify name varchar(255) default '', "
+            + "add column parent integer null, add index (parent)",
+         "create table if not exists directory_paths (ancestor integer, descendant integer, "
+            + "depth integer not null, primary key (ancestor, descendant), index (descendant), "
+            + "foreign key (ancestor) references directories(id) ON DELETE CASCADE, "
+            + "foreign key (descendant) references directories(id) ON DELETE CASCADE)",
+         "insert into directory_paths (ancestor, descendant, depth) select id, id, 0 from directories"},
+        //8: read state and saved searches; the existing emails were already displayed
+        {"alter table emails add column seen boolean not null default false",
+         "update emails set seen = true",
+         "create table if not exists saved_searches (id integer primary key AUTO_INCREMENT, "
+            + "name varchar(100) not null unique, query varchar(255) not null)",
+         "create table if not exists search_members (search integer, email integer, "
+            + "primary key (search, email), index (email), "
+            + "foreign key (search) references saved_searches(id) ON DELETE CASCADE, "
+            + "foreign key (email) references emails(id) ON DELETE CASCADE ON UPDATE CASCADE)"},
+        //9: synchronization by UID
+        {"alter table emails add column serverFolder varchar(255) null, "
+            + "add column uidValidity bigint null, add column uid bigint null",
+         "create table if not exists sync_state (folder varchar(255) primary key, "
+            + "uidValidity bigint not null, lastUid bigint not null)"},
+        //10: emails received without their bodies
+        {"alter table emails add column partial boolean not null default false, "
+            + "add index (partial, emailDate)"},
+        //11: outbox
+        {"create table if not exists outbox (email integer primary key, "
+            + "attempts integer not null default 0, nextAttempt timestamp null, "
+            + "lastError varchar(255) null, index (nextAttempt), "
+            + "foreign key (email) references emails(id) ON DELETE CASCADE ON UPDATE CASCADE)"},
+        //12: mail merge progress
+        {"create table if not exists merge_progress (name varchar(100) primary key, "
+            + "position bigint not null default 0, sent integer not null default 0, "
+            + "failed integer not null default 0)"},
+        //13: received emails without a message id are found by their location
+        {"alter table emails add index (uid, serverFolder)"}
+    };
+
+    /**
+     * Prevents instantiation.
+     */
+    private SchemaMigration() {}
+
+    /**
+     * Migrates the tables of the database to the current version.
+     *
+     * @param connection the connection to the database.
+     * @param account the address of the account, used as the contact
+     *                of the emails the account sent.
+     *
+     * @return the version the database was at before the migration.
+     *
+     * @throws SQLException If there was a problem when migrating the database.
+     */
+    static int migrate(Connection connection, String account) throws SQLException {
+        lock(connection);
+        try {
+            int version = readVersion(connection);
+            int step = readStep(connection);
+            for(int next = version + 1; next <= VERSION; next++) {
+                String[] statements = MIGRATIONS[next - 1];
+                if(step > 0)
+                    log.info("Resuming the migration to version " + next + " at statement " 
+                             + (step + 1) + ".");
+                else
+                    log.info("Migrating the database to version " + next + ".");
+                for(; step < statements.length; step++) {
+                    execute(connection, statements[step], account, next);
+                    saveProgress(connection, next - 1, step + 1);
+                }
+                saveProgress(connection, next, 0);
+                step = 0;
+            }
+            return version;
+        }
+        finally {
+            unlock(connection);
+        }
+    }
+
+    /**
+     * Executes a statement of a migration.
+     *
+     * @param connection the connection to the database.
+     * @param statement the statement to execute.
+     * @param account the address of the account, set for every parameter.
+     * @param version the version the statement migrates to.
+     *
+     * @throws SQLException If the statement failed.
+     */
+    private static void execute(Connection connection, String statement, String account, int version)
+            throws SQLException {
+        try(PreparedStatement pstmt = connection.prepareStatement(statement)) {
+            int parameters = pstmt.getParameterMetaData().getParameterCount();
+            for(int i = 1; i <= parameters; i++)
+                pstmt.setString(i, account == null ? "" : account);
+            pstmt.execute();
+        }
+        catch(SQLException e) {
+            throw new SQLException("Failed migrating the database to version " + version + ".", e);
+        }
+    }
+
+    /**
+     * Records the progress of the migration.
+     *
+     * @param connection the connection to the database.
+     * @param version the version of the schema.
+     * @param step the number of statements of the next version already executed.
+     *
+     * @throws SQLException If there was a problem when writing to the database.
+     */
+    private static void saveProgress(Connection connection, int version, int step) 
+            throws SQLException {
+        try(PreparedStatement pstmt = connection.prepareStatement
+                ("update schema_version set version = ?, step = ?")) {
+            pstmt.setInt(1, version);
+            pstmt.setInt(2, step);
+            pstmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Reads the version of the schema; creates the version table
+     * at version 0 if the database was created before it existed.
+     *
+     * @param connection the connection to the database.
+     *
+     * @return the version of the schema.
+     *
+     * @throws SQLException If there was a problem when reading the database.
+     */
+    private static int readVersion(Connection connection) throws SQLException {
+        try(Statement stmt = connection.createStatement();
+            ResultSet rs = stmt.executeQuery("select version from schema_version")) {
+            if(rs.next())
+                return rs.getInt(1);
+        }
+        catch(MySQLSyntaxErrorException e) {
+            createVersionTable(connection);
+            return 0;
+        }
+        throw new SQLException("The version of the database schema is missing.");
+    }
+
+    /**
+     * Reads the number of statements of the next version already executed;
+     * adds the column of the step if the version table was created before it existed.
+     *
+     * @param connection the connection to the database.
+     *
+     * @return the number of statements of the next version already executed.
+     *
+     * @throws SQLException If there was a problem when reading the database.
+     */
+    private static int readStep(Connection connection) throws SQLException {
+        try(Statement stmt = connection.createStatement()) {
+            boolean exists;
+            try(ResultSet rs = stmt.executeQuery("select count(*) from information_schema.columns "
+                    + "where table_schema = database() and table_name = 'schema_version' "
+                    + "and column_name = 'step'")) {
+                exists = rs.next() && rs.getInt(1) > 0;
+            }
+            if(!exists) {
+                stmt.executeUpdate("alter table schema_version add column step integer not null default 0");
+                return 0;
+            }
+            try(ResultSet rs = stmt.executeQuery("select step from schema_version")) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        }
+    }
+
+    /**
+     * Creates the table of the schema version at version 0.
+     *
+     * @param connection the connection to the database.
+     *
+     * @throws SQLException If there was a problem when writing to the database.
+     */
+    private static void createVersionTable(Connection connection) throws SQLException {
+        try(Statement stmt = connection.createStatement()) {
+            stmt.executeUpdate("create table if not exists schema_version (version integer not null, "
+                               + "step integer not null default 0)");
+            stmt.executeUpdate("insert into schema_version (version) values (0)");
+        }
+    }
+
+    /**
+     * Waits for the lock of the migration.
+     *
+     * @param connection the connection to the database.
+     *
+     * @throws SQLException If the lock was not acquired in time.
+     */
+    private static void lock(Connection connection) throws SQLException {
+        try(PreparedStatement pstmt = connection.prepareStatement("select get_lock(" + LOCK + ", ?)")) {
+            pstmt.setInt(1, LOCK_TIMEOUT);
+            try(ResultSet rs = pstmt.executeQuery()) {
+                if(!rs.next() || rs.getInt(1) != 1)
+                    throw new SQLException("Timed out waiting for another migration of the database.");
+            }
+        }
+    }
+
+    /**
+     * Releases the lock of the migration.
+     *
+     * @param connection the connection to the database.
+     *
+     * @throws SQLException If there was a problem when releasing the lock.
+     */
+    private static void unlock(Connection connection) throws SQLException {
+        try(Statement stmt = connection.createStatement()) {
+            stmt.executeQuery("select release_lock(" + LOCK + ")").close();
+        }
+    }
+}
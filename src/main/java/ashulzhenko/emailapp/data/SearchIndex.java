@@ -0,0 +1,125 @@
+package ashulzhenko.emailapp.data;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * SearchIndex class keeps the emails of the saved searches up to date
+ * (search_members table) when emails are saved, moved and marked as read,
+ * so that a saved search is displayed without running its query on all emails.
+ * Only the changed email is checked against the queries of the searches.
+ * rebuild() runs the query of a search on all emails again, e.g. once
+ * directories were renamed or moved, or the emails got too old for it.
+ *
+ * @author Alena Shulzhenko
+ * @version 19/10/2026
+ * @since 1.8
+ */
+class SearchIndex {
+
+    /**
+     * Prevents instantiation.
+     */
+    private SearchIndex() {}
+
+    /**
+     * Checks a saved, moved or changed email against all saved searches.
+     *
+     * @param connection the connection to the database.
+     * @param id the id of the email.
+     *
+     * @throws SQLException If there was a problem when writing to the database.
+     */
+    static void update(Connection connection, int id) throws SQLException {
+        try(PreparedStatement pstmt = connection.prepareStatement(
+                "delete from search_members where email = ?")) {
+            pstmt.setInt(1, id);
+            pstmt.executeUpdate();
+        }
+        Map<Integer, SearchQuery> searches = findSearches(connection);
+        if(searches.isEmpty())
+            return;
+        //one statement checks the email against every search
+        List<String> selects = new ArrayList<>();
+        for(SearchQuery query : searches.values())
+            selects.add("select ?, e.id from emails e where e.id = ? and e.deleted = false and ("
+                        + query.getCondition() + ")");
+        String query = "insert into search_members (search, email) " + String.join(" union all ", selects);
+        try(PreparedStatement pstmt = connection.prepareStatement(query)) {
+            int index = 1;
+            for(Map.Entry<Integer, SearchQuery> search : searches.entrySet()) {
+                pstmt.setInt(index++, search.getKey());
+                pstmt.setInt(index++, id);
+                index = search.getValue().setValues(pstmt, index);
+            }
+            pstmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Runs the query of the saved search on all emails again.
+     *
+     * @param connection the connection to the database.
+     * @param search the id of the search.
+     * @param query the query of the search.
+     *
+     * @return the number of emails of the search.
+     *
+     * @throws SQLException If there was a problem when writing to the database.
+     */
+    static int rebuild(Connection connection, int search, SearchQuery query) throws SQLException {
+        try(PreparedStatement pstmt = connection.prepareStatement(
+                "delete from search_members where search = ?")) {
+            pstmt.setInt(1, search);
+            pstmt.executeUpdate();
+        }
+        String insert = "insert into search_members (search, email) select ?, e.id from emails e "
+                + "where e.deleted = false and (" + query.getCondition() + ")";
+        try(PreparedStatement pstmt = connection.prepareStatement(insert)) {
+            pstmt.setInt(1, search);
+            query.setValues(pstmt, 2);
+            return pstmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Runs the queries of the saved searches on all emails again.
+     * The searches restricted to directories must be run again once
+     * directories are renamed or moved, since their emails are not
+     * changed one by one.
+     *
+     * @param connection the connection to the database.
+     * @param byDirectory true to only run the queries that have an in: term;
+     *                    false to run all of them.
+     *
+     * @return the number of emails of the searches that were run.
+     *
+     * @throws SQLException If there was a problem when writing to the database.
+     */
+    static int rebuildAll(Connection connection, boolean byDirectory) throws SQLException {
+        int count = 0;
+        for(Map.Entry<Integer, SearchQuery> search : findSearches(connection).entrySet())
+            if(!byDirectory || search.getValue().isByDirectory())
+                count += rebuild(connection, search.getKey(), search.getValue());
+        return count;
+    }
+
+    /**
+     * Returns the parsed queries of all saved searches by their id.
+     */
+    private static Map<Integer, SearchQuery> findSearches(Connection connection) throws SQLException {
+        Map<Integer, SearchQuery> searches = new LinkedHashMap<>();
+        try(PreparedStatement pstmt = connection.prepareStatement("select id, query from saved_searches");
+            ResultSet rs = pstmt.executeQuery()) {
+            while(rs.next())
+                searches.put(rs.getInt(1), SearchQuery.parse(rs.getString(2)));
+        }
+        return searches;
+    }
+}
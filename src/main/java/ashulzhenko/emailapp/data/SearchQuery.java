@@ -0,0 +1,188 @@
+package ashulzhenko.emailapp.data;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * SearchQuery class turns the query of a saved search into a condition
+ * on the emails table, whose alias is e. The query is made of terms
+ * separated by spaces, all of which must match:
+ * from:address, to:address, subject:text, in:folder (with its subfolders),
+ * has:attachment, is:unread, is:read and newer:days.
+ * A value that contains spaces is written in quotes, e.g. subject:"lunch plans".
+ *
+ * @author Alena Shulzhenko
+ * @version 19/10/2026
+ * @since 1.8
+ */
+class SearchQuery {
+    private static final Pattern TERM = Pattern.compile("(\\w+):(\"[^\"]*\"|\\S+)|(\\S+)");
+    private final String condition;
+    private final List<String> values;
+    private final int days;
+    private final boolean byDirectory;
+
+    private SearchQuery(String condition, List<String> values, int days, boolean byDirectory) {
+        this.condition = condition;
+        this.values = values;
+        this.days = days;
+        this.byDirectory = byDirectory;
+    }
+
+    /**
+     * Parses the query of a saved search.
+     *
+     * @param query the query of the search.
+     *
+     * @return the parsed query.
+     *
+     * @throws IllegalArgumentException If the query is empty or has an unknown term.
+     */
+    static SearchQuery parse(String query) {
+        if(query == null || query.trim().isEmpty())
+            throw new IllegalArgumentException("Query value is null or empty.");
+
+        List<String> clauses = new ArrayList<>();
+        List<String> values = new ArrayList<>();
+        int days = 0;
+        boolean byDirectory = false;
+        Matcher matcher = TERM.matcher(query.trim());
+        while(matcher.find()) {
+            if(matcher.group(3) != null)
+                throw new IllegalArgumentException("Invalid search term: " + matcher.group(3));
+            String name = matcher.group(1).toLowerCase();
+            String value = matcher.group(2);
+            if(value.startsWith("\""))
+                value = value.substring(1, value.length() - 1);
+            if(value.isEmpty())
+                throw new IllegalArgumentException("Invalid search term: " + matcher.group());
+            switch(name) {
+                case "from":
+                    clauses.add("e.fromEmail in (select id from addresses where address like ?)");
+                    values.add(like(value));
+                    break;
+                case "to":
+                    clauses.add("exists (select 1 from email_address ea join addresses a "
+                            + "on a.id = ea.addressid where ea.emailid = e.id and ea.address_type = "
+                            + AddressType.TO.getType() + " and a.address like ?)");
+                    values.add(like(value));
+                    break;
+                case "subject":
+                    clauses.add("e.subject like ?");
+                    values.add(like(value));
+                    break;
+                case "in":
+                    clauses.add("e.directory in (select p.descendant from directory_paths p "
+                            + "join directories d on d.id = p.ancestor where d.name = ?)");
+                    values.add(value);
+                    byDirectory = true;
+                    break;
+                case "has":
+                    if(!value.equalsIgnoreCase("attachment"))
+                        throw new IllegalArgumentException("Invalid search term: " + matcher.group());
+                    clauses.add("exists (select 1 from attachments a where a.email = e.id)");
+                    break;
+                case "is":
+                    if(!value.equalsIgnoreCase("unread") && !value.equalsIgnoreCase("read"))
+                        throw new IllegalArgumentException("Invalid search term: " + matcher.group());
+                    clauses.add("e.seen = " + value.equalsIgnoreCase("read"));
+                    break;
+                case "newer":
+                    days = parseDays(value, matcher.group());
+                    break;
+                default:
+                    throw new IllegalArgumentException("Invalid search term: " + matcher.group());
+            }
+        }
+        //the age is checked when the query is run, since it changes with time
+        if(days > 0)
+            clauses.add("e.emailDate >= ?");
+        String condition = clauses.isEmpty() ? "true" : String.join(" and ", clauses);
+        return new SearchQuery(condition, values, days, byDirectory);
+    }
+
+    /**
+     * Returns the condition on the emails table.
+     *
+     * @return the condition on the emails table, whose alias is e.
+     */
+    String getCondition() {
+        return condition;
+    }
+
+    /**
+     * Returns the number of days of newer:days; 0 if the age is not restricted.
+     *
+     * @return the maximum age of the emails in days; 0 for any age.
+     */
+    int getDays() {
+        return days;
+    }
+
+    /**
+     * Returns whether the query depends on the directories of the emails,
+     * so that it must be run again when directories are renamed or moved.
+     *
+     * @return true if the query has an in: term; false otherwise.
+     */
+    boolean isByDirectory() {
+        return byDirectory;
+    }
+
+    /**
+     * Sets the values of the parameters of the condition.
+     *
+     * @param pstmt the statement that contains the condition.
+     * @param index the index of the first parameter of the condition.
+     *
+     * @return the index of the parameter after the condition.
+     *
+     * @throws SQLException If the parameters cannot be set.
+     */
+    int setValues(PreparedStatement pstmt, int index) throws SQLException {
+        for(String value : values)
+            pstmt.setString(index++, value);
+        if(days > 0)
+            pstmt.setTimestamp(index++, oldest(days));
+        return index;
+    }
+
+    /**
+     * Returns the date of the oldest email that is newer than the given number of days.
+     *
+     * @param days the maximum age of the emails in days.
+     *
+     * @return the date of the oldest email.
+     */
+    static Timestamp oldest(int days) {
+        return new Timestamp(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(days));
+    }
+
+    private static int parseDays(String value, String term) {
+        if(value.endsWith("d"))
+            value = value.substring(0, value.length() - 1);
+        try {
+            int days = Integer.parseInt(value);
+            if(days > 0)
+                return days;
+        }
+        catch(NumberFormatException e) {
+            //reported below
+        }
+        throw new IllegalArgumentException("Invalid search term: " + term);
+    }
+
+    /**
+     * Returns the pattern that contains the value, the wildcards of the
+     * value being matched as themselves.
+     */
+    private static String like(String value) {
+        return "%" + value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+    }
+}
@@ -0,0 +1,249 @@
+package ashulzhenko.emailapp.data;
+
+import ashulzhenko.emailapp.bean.Change;
+import ashulzhenko.emailapp.bean.UserConfigBean;
+import ashulzhenko.emailapp.interfaces.SearchStorageDAO;
+import com.mysql.jdbc.exceptions.jdbc4.MySQLIntegrityConstraintViolationException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * SearchStorageModule class is used to save, run again and delete
+ * the saved searches, which are displayed as folders.
+ * The emails of every search are kept by MailStorageModule when emails
+ * are saved, moved and read (see SearchIndex), so that the emails of a
+ * search are read with MailStorageDAO.findAllInSearch() without running
+ * its query. refreshSearch() runs the query on all emails again.
+ *
+ * @author Alena Shulzhenko
+ * @version 19/10/2026
+ * @since 1.8
+ */
+public class SearchStorageModule extends DatabaseModule implements SearchStorageDAO {
+    private final Logger log = LoggerFactory.getLogger(getClass().getName());
+
+    /**
+     * Instantiates the object with all necessary information to work with the database.
+     *
+     * @param userInfo user's information needed to connect to the database.
+     * @throws SQLException If there is a problem when connecting to the database.
+     */
+    public SearchStorageModule(UserConfigBean userInfo) throws SQLException {
+        super(userInfo);
+    }
+
+    /**
+     * Saves a search and finds its emails in one transaction.
+     *
+     * @param name The name of the search.
+     *
+     * @param query The search terms, e.g. from:alice has:attachment newer:30 is:unread.
+     *
+     * @return the number of emails of the search.
+     *
+     * @throws SQLException If there was a problem when writing to the database.
+     */
+    @Override
+    public int createSearch(String name, String query) throws SQLException {
+        if(name == null || name.trim().isEmpty())
+            throw new IllegalArgumentException("Search name value is invalid.");
+        SearchQuery parsed = SearchQuery.parse(query);
+
+        int count;
+        String insert = "insert into saved_searches (name, query) values (?, ?)";
+        try {
+            Connection connection = getConnection();
+            try {
+                connection.setAutoCommit(false);
+                int id;
+                try(PreparedStatement pstmt = connection.prepareStatement(insert, Statement.RETURN_GENERATED_KEYS)) {
+                    pstmt.setString(1, name.trim());
+                    pstmt.setString(2, query.trim());
+                    pstmt.executeUpdate();
+                    try(ResultSet rs = pstmt.getGeneratedKeys()) {
+                        rs.next();
+                        id = rs.getInt(1);
+                    }
+                }
+                count = SearchIndex.rebuild(connection, id, parsed);
+                ChangeLog.record(connection, Change.Entity.SEARCH, Change.Operation.INSERT, id);
+                connection.commit();
+            }
+            catch(SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+            finally {
+                closeConnection(connection);
+            }
+        }
+        catch(MySQLIntegrityConstraintViolationException e) {
+            log.error("Such search already exists", e);
+            throw new IllegalArgumentException("Such search already exists: " + name);
+        }
+        return count;
+    }
+
+    /**
+     * Deletes the saved search; its emails are not deleted.
+     *
+     * @param name The name of the search.
+     *
+     * @return the number of deleted searches.
+     *
+     * @throws SQLException If there was a problem when writing to the database.
+     */
+    @Override
+    public int deleteSearch(String name) throws SQLException {
+        if(name == null || name.trim().isEmpty())
+            throw new IllegalArgumentException("Search name value is invalid.");
+
+        int result = 0;
+        Connection connection = getConnection();
+        try {
+            connection.setAutoCommit(false);
+            try {
+                int id = findId(connection, name);
+                if(id != -1) {
+                    //the emails of the search are removed by the cascade
+                    try(PreparedStatement pstmt = connection.prepareStatement(
+                            "delete from saved_searches where id = ?")) {
+                        pstmt.setInt(1, id);
+                        result = pstmt.executeUpdate();
+                    }
+                    ChangeLog.record(connection, Change.Entity.SEARCH, Change.Operation.DELETE, id);
+                }
+                connection.commit();
+            }
+            catch(SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+        }
+        finally {
+            closeConnection(connection);
+        }
+        return result;
+    }
+
+    /**
+     * Returns all saved searches.
+     *
+     * @return the queries of the searches by their name, ordered by name.
+     *
+     * @throws SQLException If there was a problem when reading from the database.
+     */
+    @Override
+    public Map<String, String> findSearches() throws SQLException {
+        Map<String, String> searches = new LinkedHashMap<>();
+        String query = "select name, query from saved_searches order by name";
+        Connection connection = getReadConnection();
+        try(PreparedStatement pstmt = connection.prepareStatement(query);
+            ResultSet rs = pstmt.executeQuery()) {
+            while(rs.next())
+                searches.put(rs.getString(1), rs.getString(2));
+        }
+        finally {
+            closeConnection(connection);
+        }
+        return searches;
+    }
+
+    /**
+     * Finds the emails of the saved search again from all emails in one transaction,
+     * e.g. once they got too old for it.
+     *
+     * @param name The name of the search.
+     *
+     * @return the number of emails of the search; -1 if the search is not found.
+     *
+     * @throws SQLException If there was a problem when writing to the database.
+     */
+    @Override
+    public int refreshSearch(String name) throws SQLException {
+        if(name == null || name.trim().isEmpty())
+            throw new IllegalArgumentException("Search name value is invalid.");
+
+        int count = -1;
+        String query = "select id, query from saved_searches where name = ?";
+        Connection connection = getConnection();
+        try {
+            connection.setAutoCommit(false);
+            try {
+                try(PreparedStatement pstmt = connection.prepareStatement(query)) {
+                    pstmt.setString(1, name);
+                    try(ResultSet rs = pstmt.executeQuery()) {
+                        if(rs.next()) {
+                            count = SearchIndex.rebuild(connection, rs.getInt(1),
+                                                        SearchQuery.parse(rs.getString(2)));
+                            ChangeLog.record(connection, Change.Entity.SEARCH,
+                                             Change.Operation.UPDATE, rs.getInt(1));
+                        }
+                    }
+                }
+                connection.commit();
+            }
+            catch(SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+        }
+        finally {
+            closeConnection(connection);
+        }
+        return count;
+    }
+
+    /**
+     * Finds the emails of every saved search again from all emails in one transaction.
+     *
+     * @return the number of emails of all searches.
+     *
+     * @throws SQLException If there was a problem when writing to the database.
+     */
+    @Override
+    public int refreshAll() throws SQLException {
+        int count;
+        Connection connection = getConnection();
+        try {
+            connection.setAutoCommit(false);
+            try {
+                count = SearchIndex.rebuildAll(connection, false);
+                ChangeLog.record(connection, Change.Entity.SEARCH, Change.Operation.UPDATE, 0);
+                connection.commit();
+            }
+            catch(SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+        }
+        finally {
+            closeConnection(connection);
+        }
+        return count;
+    }
+
+    /**
+     * Returns the id of the search with the given name.
+     * @param connection the connection to the database.
+     * @param name The name of the search.
+     * @return the id of the search; -1 if it does not exist.
+     * @throws SQLException If there was a problem when reading from the database.
+     */
+    private int findId(Connection connection, String name) throws SQLException {
+        String query = "select id from saved_searches where name = ?";
+        try(PreparedStatement pstmt = connection.prepareStatement(query)) {
+            pstmt.setString(1, name);
+            try(ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : -1;
+            }
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package ashulzhenko.emailapp.data;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * ShardRing class is a consistent hash ring that maps a key (an account
+ * or a directory name) to one of the shards.
+ * Every shard is placed on the ring several times (virtual nodes), so that
+ * keys are spread evenly and adding a shard only moves the keys that
+ * the new shard takes over.
+ * The ring is immutable: adding a shard returns a new ring.
+ *
+ * @author Alena Shulzhenko
+ * @version 19/10/2026
+ * @since 1.8
+ */
+class ShardRing {
+    //number of positions of every shard on the ring
+    private static final int VIRTUAL_NODES = 64;
+
+    private final TreeMap<Long, Integer> ring;
+    private final int size;
+
+    /**
+     * Instantiates the ring with the indicated number of shards.
+     *
+     * @param size the number of shards.
+     */
+    ShardRing(int size) {
+        if(size < 1)
+            throw new IllegalArgumentException("At least one shard is required.");
+        this.size = size;
+        this.ring = new TreeMap<>();
+        for(int i = 0; i < size; i++)
+            addNodes(i);
+    }
+
+    /**
+     * Instantiates the ring as a copy of the given ring with one more shard.
+     *
+     * @param other the ring to copy.
+     */
+    private ShardRing(ShardRing other) {
+        this.size = other.size + 1;
+        this.ring = new TreeMap<>(other.ring);
+        addNodes(other.size);
+    }
+
+    /**
+     * Returns a new ring containing one more shard.
+     * The index of the new shard is the size of this ring.
+     *
+     * @return the new ring.
+     */
+    ShardRing withNewShard() {
+        return new ShardRing(this);
+    }
+
+    /**
+     * Returns the number of shards on the ring.
+     *
+     * @return the number of shards on the ring.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the index of the shard responsible for the key.
+     *
+     * @param key the account or the directory name.
+     *
+     * @return the index of the shard.
+     */
+    int shardFor(String key) {
+        if(key == null)
+            throw new IllegalArgumentException("Shard key value is null.");
+        Map.Entry<Long, Integer> entry = ring.ceilingEntry(hash(key));
+        //the ring wraps around
+        if(entry == null)
+            entry = ring.firstEntry();
+        return entry.getValue();
+    }
+
+    /**
+     * Places the virtual nodes of the shard on the ring.
+     *
+     * @param shard the index of the shard.
+     */
+    private void addNodes(int shard) {
+        for(int i = 0; i < VIRTUAL_NODES; i++)
+            ring.put(hash("shard-" + shard + "#" + i), shard);
+    }
+
+    /**
+     * Returns the position of the value on the ring.
+     *
+     * @param value the value to hash.
+     *
+     * @return the position of the value on the ring.
+     */
+    private static long hash(String value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5")
+                            .digest(value.getBytes(StandardCharsets.UTF_8));
+            long hash = 0;
+            for(int i = 0; i < 8; i++)
+                hash = (hash << 8) | (digest[i] & 0xff);
+            return hash;
+        }
+        catch(NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 is not available.", e);
+        }
+    }
+}
@@ -0,0 +1,774 @@
+package ashulzhenko.emailapp.data;
+
+import ashulzhenko.emailapp.bean.EmailCustom;
+import ashulzhenko.emailapp.compare.EmailDateSorter;
+import ashulzhenko.emailapp.interfaces.MailStorageDAO;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import jodd.mail.MailAddress;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * ShardedMailStorage class spreads the emails over several databases
+ * (or several sets of tables), each one accessed through its own MailStorageDAO.
+ * The shard of an email is chosen with a consistent hash ring, either by
+ * the directory of the email or by the account when one is provided,
+ * so that all emails of one account stay together.
+ *
+ * The ids returned by this class are global: the id of the email in its
+ * shard multiplied by MAX_SHARDS plus the index of the shard. Therefore
+ * finding and deleting by id only touches one shard, while finding emails
+ * without a directory is a fan-out query merged in id order.
+ *
+ * A shard can be added while the application is running. Directories that
+ * belong to the new shard are moved by rebalance(); until it finishes,
+ * the directories are read from both their old and new shards.
+ * Moved emails get new ids.
+ *
+ * @author Alena Shulzhenko
+ * @version 19/10/2026
+ * @since 1.8
+ */
+public class ShardedMailStorage implements MailStorageDAO {
+    /** The maximum number of shards that can be encoded in an email id. */
+    public static final int MAX_SHARDS = 16;
+
+    private final List<MailStorageDAO> shards;
+    private final String account;
+    private volatile ShardRing ring;
+    //ring used before the last shard was added; null if no rebalancing is in progress
+    private volatile ShardRing previousRing;
+    private final Logger log = LoggerFactory.getLogger(getClass().getName());
+
+    /**
+     * Instantiates the object with shards chosen by directory.
+     *
+     * @param shards the data access objects of every shard.
+     */
+    public ShardedMailStorage(List<MailStorageDAO> shards) {
+        this(shards, null);
+    }
+
+    /**
+     * Instantiates the object with the shards chosen by account.
+     *
+     * @param shards the data access objects of every shard.
+     * @param account the account used as a shard key;
+     *                null to choose the shard by directory.
+     */
+    public ShardedMailStorage(List<MailStorageDAO> shards, String account) {
+        if(shards == null || shards.isEmpty() || shards.size() > MAX_SHARDS)
+            throw new IllegalArgumentException("Between 1 and " + MAX_SHARDS
+                                               + " shards are required.");
+        this.shards = new CopyOnWriteArrayList<>(shards);
+        this.account = account;
+        this.ring = new ShardRing(shards.size());
+    }
+
+    /**
+     * Deletes email that has the provided id.
+     *
+     * @param id The id of the email to delete.
+     *
+     * @return the number of deleted rows.
+     *
+     * @throws SQLException If there was a problem when writing to the database.
+     */
+    @Override
+    public int deleteEmail(int id) throws SQLException {
+        if(id < 1)
+            throw new IllegalArgumentException("Id value is invalid: " + id);
+
+        MailStorageDAO shard = shardOf(id);
+        return shard == null ? 0 : shard.deleteEmail(localId(id));
+    }
+
+    /**
+     * Returns emails saved in all shards (from start index with the indicated
+     * number of records) ordered by id.
+     *
+     * @param start the starting index for retrieving emails (non-inclusive).
+     *
+     * @param number the number of emails to retrieve.
+     *
+     * @return the emails saved in the database.
+     *
+     * @throws SQLException If there was a problem when reading from the database.
+     */
+    @Override
+    public List<EmailCustom> findEmails(int start, int number) throws SQLException {
+        if(start < 0 || number < 0)
+            throw new IllegalArgumentException ("Invalid arguments. start > 0 and number > 0.");
+
+        //every shard may hold all of the requested emails
+        int limit = (int)Math.min((long)start + number, Integer.MAX_VALUE);
+        PriorityQueue<ShardCursor> queue = new PriorityQueue<>
+                    (Comparator.comparingInt((ShardCursor c) -> c.peek().getId()));
+        for(int i = 0; i < shards.size(); i++) {
+            ShardCursor cursor = new ShardCursor(globalIds(shards.get(i).findEmails(0, limit), i));
+            if(cursor.hasNext())
+                queue.add(cursor);
+        }
+
+        List<EmailCustom> emails = new ArrayList<>();
+        int skipped = 0;
+        while(!queue.isEmpty() && emails.size() < number) {
+            ShardCursor cursor = queue.poll();
+            EmailCustom email = cursor.next();
+            if(skipped < start)
+                skipped++;
+            else
+                emails.add(email);
+            if(cursor.hasNext())
+                queue.add(cursor);
+        }
+        return emails;
+    }
+
+    /**
+     * Returns the indicated number of emails saved in all shards.
+     *
+     * @param number the number of emails to retrieve.
+     *
+     * @return the emails saved in the database.
+     *
+     * @throws SQLException If there was a problem when reading from the database.
+     */
+    @Override
+    public List<EmailCustom> findEmails(int number) throws SQLException {
+        return findEmails(0, number);
+    }
+
+    /**
+     * Returns all emails saved in all shards.
+     *
+     * @return all email saved in the database.
+     *
+     * @throws SQLException If there was a problem when reading from the database.
+     */
+    @Override
+    public List<EmailCustom> findAll() throws SQLException {
+        return findEmails(0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns all emails in the given directory that are not archived.
+     *
+     * @param directory The directory where requested email are stored.
+     *
+     * @return all emails in the given directory.
+     *
+     * @throws SQLException If there was a problem when reading from the database.
+     */
+    @Override
+    public List<EmailCustom> findAllInDirectory(String directory) throws SQLException {
+        return findAllInDirectory(directory, false);
+    }
+
+    /**
+     * Returns all emails in the given directory. Only the shard responsible
+     * for the directory is queried, or both the old and the new one
+     * while rebalancing is in progress.
+     *
+     * @param directory The directory where requested email are stored.
+     *
+     * @param includeArchive true to include archived emails; false otherwise.
+     *
+     * @return all emails in the given directory.
+     *
+     * @throws SQLException If there was a problem when reading from the database.
+     */
+    @Override
+    public List<EmailCustom> findAllInDirectory(String directory, boolean includeArchive)
+                                                throws SQLException {
+        if(directory == null || directory.trim().isEmpty())
+            throw new IllegalArgumentException("Directory value is null or empty.");
+
+        ShardRing previous = previousRing;
+        int owner = ring.shardFor(keyFor(directory));
+        List<EmailCustom> emails = globalIds(shards.get(owner)
+                                   .findAllInDirectory(directory, includeArchive), owner);
+        if(previous != null) {
+            int oldOwner = previous.shardFor(keyFor(directory));
+            if(oldOwner != owner)
+                emails.addAll(globalIds(shards.get(oldOwner)
+                              .findAllInDirectory(directory, includeArchive), oldOwner));
+        }
+        return emails;
+    }
+
+    /**
+     * Returns emails in the given directory, the most recent first
+     * (from start index with the indicated number of records).
+     * While rebalancing is in progress, the pages of the old and the new
+     * shard are merged.
+     *
+     * @param directory The directory where requested email are stored.
+     *
+     * @param start the starting index for retrieving emails (non-inclusive).
+     *
+     * @param number the number of emails to retrieve.
+     *
+     * @return the emails in the given directory.
+     *
+     * @throws SQLException If there was a problem when reading from the database.
+     */
+    @Override
+    public List<EmailCustom> findAllInDirectory(String directory, int start, int number)
+                                                throws SQLException {
+        if(directory == null || directory.trim().isEmpty())
+            throw new IllegalArgumentException("Directory value is null or empty.");
+        if(start < 0 || number < 0)
+            throw new IllegalArgumentException ("Invalid arguments. start > 0 and number > 0.");
+
+        ShardRing previous = previousRing;
+        int owner = ring.shardFor(keyFor(directory));
+        int oldOwner = previous == null ? owner : previous.shardFor(keyFor(directory));
+        if(oldOwner == owner)
+            return globalIds(shards.get(owner).findAllInDirectory(directory, start, number), owner);
+
+        int limit = (int)Math.min((long)start + number, Integer.MAX_VALUE);
+        List<EmailCustom> emails = globalIds(shards.get(owner).findAllInDirectory(directory, 0, limit), owner);
+        emails.addAll(globalIds(shards.get(oldOwner).findAllInDirectory(directory, 0, limit), oldOwner));
+        emails.sort(new EmailDateSorter());
+        return new ArrayList<>(emails.subList(Math.min(start, emails.size()),
+                                              Math.min(limit, emails.size())));
+    }
+
+    /**
+     * Returns a page of the emails in the given directory, sorted by the given key.
+     * While rebalancing is in progress, the pages of the old and the new
+     * shard are merged; the contacts are then compared as seen by the account
+     * of this object, or by their sender when the shards are chosen by directory.
+     *
+     * @param directory The directory where requested email are stored.
+     *
+     * @param key the key by which the emails are sorted.
+     *
+     * @param ascending true for ascending order; false for descending.
+     *
+     * @param after the last email of the previous page; null for the first page.
+     *
+     * @param number the number of emails to retrieve.
+     *
+     * @return the emails of the page.
+     *
+     * @throws SQLException If there was a problem when reading from the database.
+     */
+    @Override
+    public List<EmailCustom> findAllInDirectory(String directory, SortKey key, boolean ascending,
+                                                EmailCustom after, int number) throws SQLException {
+        if(directory == null || directory.trim().isEmpty())
+            throw new IllegalArgumentException("Directory value is null or empty.");
+        if(key == null || number < 0)
+            throw new IllegalArgumentException ("Invalid arguments. key is null or number < 0.");
+
+        ShardRing previous = previousRing;
+        int owner = ring.shardFor(keyFor(directory));
+        int oldOwner = previous == null ? owner : previous.shardFor(keyFor(directory));
+        List<EmailCustom> emails = globalIds(shards.get(owner).findAllInDirectory(directory, key,
+                ascending, localCursor(after, owner, ascending), number), owner);
+        if(oldOwner == owner)
+            return emails;
+
+        emails.addAll(globalIds(shards.get(oldOwner).findAllInDirectory(directory, key,
+                ascending, localCursor(after, oldOwner, ascending), number), oldOwner));
+        emails.sort(key.comparator(account, ascending));
+        return new ArrayList<>(emails.subList(0, Math.min(number, emails.size())));
+    }
+
+    /**
+     * Returns a page of the emails of the given saved search, sorted by the given key.
+     * Every shard keeps the emails of its own searches, so the pages of all
+     * shards are merged; the contacts are compared as seen by the account
+     * of this object, or by their sender when the shards are chosen by directory.
+     *
+     * @param search The name of the saved search.
+     *
+     * @param key the key by which the emails are sorted.
+     *
+     * @param ascending true for ascending order; false for descending.
+     *
+     * @param after the last email of the previous page; null for the first page.
+     *
+     * @param number the number of emails to retrieve.
+     *
+     * @return the emails of the page.
+     *
+     * @throws SQLException If there was a problem when reading from the database.
+     */
+    @Override
+    public List<EmailCustom> findAllInSearch(String search, SortKey key, boolean ascending,
+                                             EmailCustom after, int number) throws SQLException {
+        if(search == null || search.trim().isEmpty())
+            throw new IllegalArgumentException("Search value is null or empty.");
+        if(key == null || number < 0)
+            throw new IllegalArgumentException ("Invalid arguments. key is null or number < 0.");
+
+        List<EmailCustom> emails = new ArrayList<>();
+        for(int i = 0; i < shards.size(); i++)
+            emails.addAll(globalIds(shards.get(i).findAllInSearch(search, key, ascending,
+                                    localCursor(after, i, ascending), number), i));
+        emails.sort(key.comparator(account, ascending));
+        return new ArrayList<>(emails.subList(0, Math.min(number, emails.size())));
+    }
+
+    /**
+     * Find an email in database with given Id.
+     *
+     * @param id The id of the email to find.
+     *
+     * @return the found email corresponding to the given id.
+     *
+     * @throws SQLException If there was a problem when reading from the database.
+     */
+    @Override
+    public EmailCustom findEmailById(int id) throws SQLException {
+        if(id < 1)
+            throw new IllegalArgumentException("Id value is invalid: " + id);
+
+        MailStorageDAO shard = shardOf(id);
+        if(shard == null)
+            return null;
+        EmailCustom email = shard.findEmailById(localId(id));
+        if(email != null)
+            email.setId(id);
+        return email;
+    }
+
+    /**
+     * Saves provided email in the shard responsible for its directory or account.
+     *
+     * @param email The email to save in the database.
+     *
+     * @return the global id of the saved email
+     *
+     * @throws SQLException If there was a problem when writing to the database.
+     */
+    @Override
+    public int saveEmail(EmailCustom email) throws SQLException {
+        if(email == null)
+            throw new IllegalArgumentException("Email value is null.");
+
+        int shard = ring.shardFor(keyFor(email.getDirectory()));
+        return saveTo(shard, email);
+    }
+
+    /**
+     * Saves the messages and attachments of a partial email in its shard.
+     *
+     * @param email The email received in full, with the global id of the partial email.
+     *
+     * @return the number of updated rows; 0 if the email is no longer partial.
+     *
+     * @throws SQLException If there was a problem when writing to the database.
+     */
+    @Override
+    public int saveEmailContent(EmailCustom email) throws SQLException {
+        if(email == null)
+            throw new IllegalArgumentException("Email value is null.");
+
+        int id = email.getId();
+        MailStorageDAO shard = id < 1 ? null : shardOf(id);
+        if(shard == null)
+            return 0;
+        email.setId(localId(id));
+        try {
+            return shard.saveEmailContent(email);
+        }
+        finally {
+            email.setId(id);
+        }
+    }
+
+    /**
+     * Returns the partial emails of all shards, the most recent first.
+     *
+     * @param number the maximum number of emails to retrieve.
+     *
+     * @return the partial emails.
+     *
+     * @throws SQLException If there was a problem when reading from the database.
+     */
+    @Override
+    public List<EmailCustom> findPartialEmails(int number) throws SQLException {
+        if(number < 1)
+            throw new IllegalArgumentException ("Invalid argument. number > 0.");
+
+        List<EmailCustom> emails = new ArrayList<>();
+        for(int i = 0; i < shards.size(); i++)
+            emails.addAll(globalIds(shards.get(i).findPartialEmails(number), i));
+        emails.sort(new EmailDateSorter());
+        return emails.size() > number ? new ArrayList<>(emails.subList(0, number)) : emails;
+    }
+
+    /**
+     * Marks the email with the given id as read or unread in its shard.
+     *
+     * @param id The id of the email.
+     *
+     * @param seen true if the email was read; false otherwise.
+     *
+     * @return the number of updated rows.
+     *
+     * @throws SQLException If there was a problem when writing to the database.
+     */
+    @Override
+    public int updateEmailSeen(int id, boolean seen) throws SQLException {
+        if(id < 1)
+            throw new IllegalArgumentException("Id value is invalid: " + id);
+
+        MailStorageDAO shard = shardOf(id);
+        return shard == null ? 0 : shard.updateEmailSeen(localId(id), seen);
+    }
+
+    /**
+     * Updates the directory in the database for the provided email.
+     * If the new directory belongs to another shard, the email is moved
+     * there and receives a new id.
+     *
+     * @param email The email containing new directory name.
+     *
+     * @return the number of updated rows.
+     *
+     * @throws SQLException If there was a problem when writing to the database.
+     */
+    @Override
+    public int updateEmailDirectory(EmailCustom email) throws SQLException {
+        if(email == null)
+            throw new IllegalArgumentException("Email value is null.");
+
+        int id = email.getId();
+        MailStorageDAO shard = id < 1 ? null : shardOf(id);
+        if(shard == null)
+            return 0;
+
+        int from = id % MAX_SHARDS;
+        int to = ring.shardFor(keyFor(email.getDirectory()));
+        if(from == to) {
+            email.setId(localId(id));
+            try {
+                return shard.updateEmailDirectory(email);
+            }
+            finally {
+                email.setId(id);
+            }
+        }
+
+        //the full email is required to copy it to another shard
+        EmailCustom stored = shard.findEmailById(localId(id));
+        if(stored == null)
+            return 0;
+        stored.setDirectory(email.getDirectory());
+        email.setId(moveEmail(stored, from, to));
+        return 1;
+    }
+
+    /**
+     * Archives the old emails of every shard.
+     *
+     * @param olderThan the date before which emails are archived.
+     *
+     * @return the number of archived emails.
+     *
+     * @throws SQLException If there was a problem when writing to the database.
+     */
+    @Override
+    public int archiveEmails(Date olderThan) throws SQLException {
+        int archived = 0;
+        for(MailStorageDAO shard : shards)
+            archived += shard.archiveEmails(olderThan);
+        return archived;
+    }
+
+    /**
+     * Removes the deleted emails of the shards, one shard after the other,
+     * at most the given number at once in total.
+     *
+     * @param number the maximum number of emails to remove.
+     *
+     * @return the number of removed emails.
+     *
+     * @throws SQLException If there was a problem when writing to the database.
+     */
+    @Override
+    public int purgeDeleted(int number) throws SQLException {
+        if(number < 1)
+            throw new IllegalArgumentException ("Invalid argument. number > 0.");
+
+        int purged = 0;
+        for(MailStorageDAO shard : shards) {
+            if(purged == number)
+                break;
+            purged += shard.purgeDeleted(number - purged);
+        }
+        return purged;
+    }
+
+    /**
+     * Gives back the space of the removed attachments and archives in every shard.
+     *
+     * @throws SQLException If there was a problem when writing to the database.
+     */
+    @Override
+    public void compactStorage() throws SQLException {
+        for(MailStorageDAO shard : shards)
+            shard.compactStorage();
+    }
+
+    /**
+     * Adds a new shard. New emails of the directories that now belong
+     * to it are written to the new shard immediately; existing emails
+     * are moved by rebalance().
+     *
+     * @param shard the data access object of the new shard.
+     *
+     * @return the index of the new shard.
+     */
+    public synchronized int addShard(MailStorageDAO shard) {
+        if(shard == null)
+            throw new IllegalArgumentException("Shard value is null.");
+        if(shards.size() == MAX_SHARDS)
+            throw new IllegalStateException("The maximum number of shards is reached.");
+        if(previousRing != null)
+            throw new IllegalStateException("Rebalancing is in progress.");
+
+        shards.add(shard);
+        previousRing = ring;
+        ring = ring.withNewShard();
+        return shards.size() - 1;
+    }
+
+    /**
+     * Moves the emails of the given directories to the shards that are
+     * responsible for them after the last shard was added.
+     * Reads and writes can continue while the emails are moved.
+     * Archived emails are moved in full and are archived again
+     * in their new shard by the next archiveEmails() call.
+     *
+     * @param directories the names of all directories.
+     *
+     * @return the number of moved emails.
+     *
+     * @throws SQLException If there was a problem when working with the database.
+     */
+    public synchronized int rebalance(List<String> directories) throws SQLException {
+        if(directories == null)
+            throw new IllegalArgumentException("Directories value is null.");
+        ShardRing previous = previousRing;
+        if(previous == null)
+            return 0;
+
+        int moved = 0;
+        for(String directory : directories) {
+            int from = previous.shardFor(keyFor(directory));
+            int to = ring.shardFor(keyFor(directory));
+            if(from != to) {
+                for(EmailCustom email : shards.get(from).findAllInDirectory(directory, true)) {
+                    //the stub of an archived email has no messages and attachments
+                    if(email.isArchived())
+                        email = shards.get(from).findEmailById(email.getId());
+                    if(email == null)
+                        continue;
+                    moveEmail(email, from, to);
+                    moved++;
+                }
+                log.info("Moved directory " + directory + " from shard " + from + " to " + to);
+            }
+        }
+        previousRing = null;
+        return moved;
+    }
+
+    /**
+     * Indicates whether rebalancing after adding a shard is in progress.
+     *
+     * @return true if rebalancing is in progress; false otherwise.
+     */
+    public boolean isRebalancing() {
+        return previousRing != null;
+    }
+
+    /**
+     * Copies the email with its local id from one shard to another
+     * and deletes the original. Saving the copy derives whether it was
+     * read from the flags of the email, so the read state of the original
+     * is set on the copy after it is saved.
+     * The shards are separate databases, so the move is not atomic: if the
+     * read state cannot be set or the original cannot be deleted, the copy
+     * is deleted and the email stays where it was. Only if deleting the copy
+     * fails as well are both kept until the move is repeated.
+     *
+     * @param email the email to move with the id it has in its shard.
+     * @param from the index of the shard where the email is.
+     * @param to the index of the shard where the email is moved.
+     *
+     * @return the new global id of the email.
+     *
+     * @throws SQLException If there was a problem when working with the database.
+     */
+    private int moveEmail(EmailCustom email, int from, int to) throws SQLException {
+        int oldLocalId = email.getId();
+        int id = saveTo(to, email);
+        try {
+            shards.get(to).updateEmailSeen(localId(id), email.isSeen());
+            shards.get(from).deleteEmail(oldLocalId);
+        }
+        catch(SQLException | RuntimeException e) {
+            email.setId(oldLocalId);
+            try {
+                shards.get(to).deleteEmail(localId(id));
+            }
+            catch(SQLException | RuntimeException ex) {
+                e.addSuppressed(ex);
+                log.error("Email " + oldLocalId + " of shard " + from + " was copied to shard "
+                          + to + " as " + id + " and cannot be deleted from either.");
+            }
+            throw e;
+        }
+        return id;
+    }
+
+    /**
+     * Saves the email in the given shard and sets its global id.
+     *
+     * @param shard the index of the shard.
+     * @param email the email to save.
+     *
+     * @return the global id of the saved email.
+     *
+     * @throws SQLException If there was a problem when writing to the database.
+     */
+    private int saveTo(int shard, EmailCustom email) throws SQLException {
+        int id = globalId(shards.get(shard).saveEmail(email), shard);
+        email.setId(id);
+        return id;
+    }
+
+    /**
+     * Returns the shard key for the directory.
+     *
+     * @param directory the directory name.
+     *
+     * @return the account if it is set; the directory otherwise.
+     */
+    private String keyFor(String directory) {
+        return account != null ? account : directory;
+    }
+
+    /**
+     * Returns the shard that contains the email with the given global id.
+     *
+     * @param id the global id of the email.
+     *
+     * @return the shard; null if there is no such shard.
+     */
+    private MailStorageDAO shardOf(int id) {
+        int shard = id % MAX_SHARDS;
+        return shard < shards.size() ? shards.get(shard) : null;
+    }
+
+    /**
+     * Returns the id of the email inside its shard.
+     *
+     * @param id the global id of the email.
+     *
+     * @return the id of the email inside its shard.
+     */
+    private int localId(int id) {
+        return id / MAX_SHARDS;
+    }
+
+    /**
+     * Returns the global id of an email.
+     *
+     * @param localId the id of the email inside its shard.
+     * @param shard the index of the shard.
+     *
+     * @return the global id of the email.
+     */
+    private int globalId(int localId, int shard) {
+        if(localId > (Integer.MAX_VALUE - shard) / MAX_SHARDS)
+            throw new IllegalStateException("Email id is too large for sharding: " + localId);
+        return localId * MAX_SHARDS + shard;
+    }
+
+    /**
+     * Returns the cursor of a page for one shard. Its id is the local id
+     * that comes right after or before the global id of the given email 
+     * in the given shard, so that ties are broken in global id order.
+     *
+     * @param after the last email of the previous page; may be null.
+     * @param shard the index of the shard.
+     * @param ascending true for ascending order; false for descending.
+     *
+     * @return the cursor for the shard; null if the given email is null.
+     */
+    private EmailCustom localCursor(EmailCustom after, int shard, boolean ascending) {
+        if(after == null)
+            return null;
+        long distance = (long)after.getId() - shard;
+        int id = (int)(ascending ? Math.floorDiv(distance, MAX_SHARDS)
+                                 : -Math.floorDiv(-distance, MAX_SHARDS));
+        EmailCustom cursor = new EmailCustom();
+        cursor.setId(id);
+        cursor.setReceivedDate(after.getReceivedDate());
+        cursor.setSentDate(after.getSentDate());
+        cursor.subject(after.getSubject());
+        //only the addresses are needed to find the contact
+        if(after.getFrom() != null)
+            cursor.from(after.getFrom().getEmail());
+        for(MailAddress to : after.getTo())
+            cursor.to(to.getEmail());
+        return cursor;
+    }
+
+    /**
+     * Replaces the ids of the emails read from a shard with global ids.
+     *
+     * @param emails the emails read from the shard.
+     * @param shard the index of the shard.
+     *
+     * @return the same list of emails.
+     */
+    private List<EmailCustom> globalIds(List<EmailCustom> emails, int shard) {
+        for(EmailCustom email : emails)
+            email.setId(globalId(email.getId(), shard));
+        return emails;
+    }
+
+    /**
+     * Iterates over the emails read from one shard during a fan-out query.
+     */
+    private static class ShardCursor {
+        private final List<EmailCustom> emails;
+        private int index;
+
+        /**
+         * Instantiates the cursor.
+         *
+         * @param emails the emails read from the shard in id order.
+         */
+        ShardCursor(List<EmailCustom> emails) {
+            this.emails = emails;
+        }
+
+        boolean hasNext() {
+            return index < emails.size();
+        }
+
+        EmailCustom peek() {
+            return emails.get(index);
+        }
+
+        EmailCustom next() {
+            return emails.get(index++);
+        }
+    }
+}
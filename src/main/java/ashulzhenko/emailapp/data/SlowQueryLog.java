@@ -0,0 +1,227 @@
+package ashulzhenko.emailapp.data;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.Date;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * SlowQueryLog class records the SQL statements that take longer than
+ * the configured threshold, together with their redacted parameters,
+ * the elapsed time and the number of rows.
+ * The first time a statement shape is slow, its EXPLAIN plan is captured
+ * in the background using a separate connection, so that the slow
+ * statement itself is not delayed any further.
+ * Everything is written to the logger of this class, which log4j2.xml
+ * sends to a rotating file of its own.
+ *
+ * @author Alena Shulzhenko
+ * @version 19/10/2026
+ * @since 1.8
+ */
+class SlowQueryLog {
+    //number of distinct shapes that are explained before the list is started again
+    private static final int MAX_EXPLAINED = 1000;
+    //number of EXPLAIN requests that can wait; further requests are dropped
+    private static final int MAX_PENDING = 50;
+    private static final Set<String> EXPLAINED = ConcurrentHashMap.newKeySet();
+    private static final ExecutorService EXPLAINER = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(MAX_PENDING), r -> {
+                Thread thread = new Thread(r, "slow-query-explain");
+                thread.setDaemon(true);
+                return thread;
+            });
+    private static final Logger log = LoggerFactory.getLogger(SlowQueryLog.class.getName());
+
+    private final long threshold;
+    private final ConnectionSource source;
+
+    /**
+     * Opens the connections used to run EXPLAIN.
+     */
+    interface ConnectionSource {
+        /**
+         * Opens a connection that is not instrumented.
+         *
+         * @return the connection.
+         *
+         * @throws SQLException If there is a problem when opening a connection.
+         */
+        Connection open() throws SQLException;
+    }
+
+    /**
+     * Instantiates the log.
+     *
+     * @param threshold the time in milliseconds above which a statement is slow.
+     * @param source opens the connections used to run EXPLAIN.
+     */
+    SlowQueryLog(long threshold, ConnectionSource source) {
+        if(threshold < 0 || source == null)
+            throw new IllegalArgumentException("Invalid slow query log configuration.");
+        this.threshold = TimeUnit.MILLISECONDS.toNanos(threshold);
+        this.source = source;
+    }
+
+    /**
+     * Indicates whether the execution is slow.
+     *
+     * @param nanos the execution time in nanoseconds.
+     *
+     * @return true if the execution took longer than the threshold; false otherwise.
+     */
+    boolean isSlow(long nanos) {
+        return nanos >= threshold;
+    }
+
+    /**
+     * Starts the record of a slow execution. The record is written when
+     * the number of rows is known, that is when finish() is called.
+     *
+     * @param method the DAO method that executed the statement.
+     * @param sql the SQL statement.
+     * @param parameters the parameters of the statement.
+     * @param nanos the execution time in nanoseconds.
+     *
+     * @return the record of the execution.
+     */
+    Entry start(String method, String sql, Map<Integer, Object> parameters, long nanos) {
+        return new Entry(method, sql, new TreeMap<>(parameters), nanos);
+    }
+
+    /**
+     * Returns the parameters in a form that can be logged: numbers, booleans
+     * and dates are kept, while text and binary values are replaced by their size.
+     *
+     * @param parameters the parameters of the statement.
+     *
+     * @return the redacted parameters.
+     */
+    static String redact(Map<Integer, Object> parameters) {
+        StringBuilder sb = new StringBuilder("[");
+        for(Map.Entry<Integer, Object> entry : parameters.entrySet()) {
+            if(sb.length() > 1)
+                sb.append(", ");
+            sb.append(entry.getKey()).append('=');
+            Object value = entry.getValue();
+            if(value == null)
+                sb.append("NULL");
+            else if(value instanceof Number || value instanceof Boolean || value instanceof Date)
+                sb.append(value);
+            else if(value instanceof CharSequence)
+                sb.append("'***'(").append(((CharSequence)value).length()).append(" chars)");
+            else if(value instanceof byte[])
+                sb.append('<').append(((byte[])value).length).append(" bytes>");
+            else
+                sb.append('<').append(value.getClass().getSimpleName()).append('>');
+        }
+        return sb.append(']').toString();
+    }
+
+    /**
+     * Asks for the EXPLAIN plan of the statement if its shape was not explained yet.
+     *
+     * @param shape the normalized SQL of the statement.
+     * @param sql the SQL statement.
+     * @param parameters the parameters of the statement.
+     */
+    private void explain(String shape, String sql, Map<Integer, Object> parameters) {
+        String verb = shape.split(" ", 2)[0].toLowerCase();
+        if(!(verb.equals("select") || verb.equals("update") || verb.equals("delete")))
+            return;
+        if(EXPLAINED.size() >= MAX_EXPLAINED)
+            EXPLAINED.clear();
+        if(!EXPLAINED.add(shape))
+            return;
+        try {
+            EXPLAINER.execute(() -> runExplain(shape, sql, parameters));
+        }
+        catch(RejectedExecutionException e) {
+            //too many requests are waiting, the shape can be explained next time
+            EXPLAINED.remove(shape);
+        }
+    }
+
+    /**
+     * Runs EXPLAIN for the statement and writes the plan to the log.
+     *
+     * @param shape the normalized SQL of the statement.
+     * @param sql the SQL statement.
+     * @param parameters the parameters of the statement.
+     */
+    private void runExplain(String shape, String sql, Map<Integer, Object> parameters) {
+        try(Connection connection = source.open();
+                PreparedStatement pstmt = connection.prepareStatement("explain " + sql)) {
+            for(Map.Entry<Integer, Object> entry : parameters.entrySet())
+                pstmt.setObject(entry.getKey(), entry.getValue());
+            StringBuilder sb = new StringBuilder("EXPLAIN ").append(shape);
+            try(ResultSet rs = pstmt.executeQuery()) {
+                ResultSetMetaData meta = rs.getMetaData();
+                while(rs.next()) {
+                    sb.append(System.lineSeparator()).append("   ");
+                    for(int i = 1; i <= meta.getColumnCount(); i++)
+                        sb.append(' ').append(meta.getColumnLabel(i)).append('=').append(rs.getString(i));
+                }
+            }
+            log.info(sb.toString());
+        }
+        catch(SQLException e) {
+            log.warn("Cannot explain " + shape, e);
+        }
+    }
+
+    /**
+     * The record of one slow execution.
+     */
+    class Entry {
+        private final String method;
+        private final String sql;
+        private final Map<Integer, Object> parameters;
+        private final long nanos;
+        private long rows;
+        private boolean finished;
+
+        private Entry(String method, String sql, Map<Integer, Object> parameters, long nanos) {
+            this.method = method;
+            this.sql = sql;
+            this.parameters = parameters;
+            this.nanos = nanos;
+        }
+
+        /**
+         * Adds rows to the record.
+         *
+         * @param count the number of rows read or changed.
+         */
+        void addRows(long count) {
+            rows += count;
+        }
+
+        /**
+         * Writes the record and asks for the EXPLAIN plan.
+         * Only the first call has an effect.
+         */
+        void finish() {
+            if(finished)
+                return;
+            finished = true;
+            String shape = QueryStatistics.shapeOf(sql);
+            log.warn(String.format("Slow query %d ms, %d rows, %s: %s %s",
+                    TimeUnit.NANOSECONDS.toMillis(nanos), rows, method, shape, redact(parameters)));
+            explain(shape, sql, parameters);
+        }
+    }
+}
@@ -0,0 +1,345 @@
+package ashulzhenko.emailapp.data;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * SnapshotCodec class reads and writes the rows of one table in the
+ * binary format of the snapshots.
+ * A table file starts with a header (format version, table name and
+ * the name and type of every column), followed by chunks of rows.
+ * Every chunk holds its number of rows, its length before and after
+ * compression, the compressed rows and the CRC32 of the rows, so that
+ * a damaged file is detected while it is read. A chunk without rows
+ * ends the file.
+ * Values are written in binary: numbers as longs, dates as milliseconds,
+ * text as UTF-8 and binary data as is.
+ *
+ * @author Alena Shulzhenko
+ * @version 19/10/2026
+ * @since 1.8
+ */
+class SnapshotCodec {
+    private static final int MAGIC = 0x454d534e;
+    private static final int VERSION = 1;
+    //rows are flushed once a chunk reaches this size in bytes
+    private static final int CHUNK_SIZE = 1 << 20;
+    private static final int CHUNK_ROWS = 1000;
+
+    static final char LONG = 'L';
+    static final char TEXT = 'S';
+    static final char BYTES = 'B';
+    static final char TIMESTAMP = 'T';
+    static final char DATE = 'D';
+
+    /**
+     * Prevents instantiation.
+     */
+    private SnapshotCodec() {}
+
+    /**
+     * Returns the type of the values of a column.
+     *
+     * @param sqlType the type of the column as defined in java.sql.Types.
+     *
+     * @return the type of the values in the snapshot.
+     */
+    static char typeOf(int sqlType) {
+        switch(sqlType) {
+            case Types.BIT :
+            case Types.BOOLEAN :
+            case Types.TINYINT :
+            case Types.SMALLINT :
+            case Types.INTEGER :
+            case Types.BIGINT :
+                return LONG;
+            case Types.BINARY :
+            case Types.VARBINARY :
+            case Types.LONGVARBINARY :
+            case Types.BLOB :
+                return BYTES;
+            case Types.TIMESTAMP :
+                return TIMESTAMP;
+            case Types.DATE :
+                return DATE;
+            default :
+                return TEXT;
+        }
+    }
+
+    /**
+     * Writes the rows of one table.
+     */
+    static class Writer implements Closeable {
+        private final DataOutputStream out;
+        private final char[] types;
+        private final ByteArrayOutputStream chunk = new ByteArrayOutputStream();
+        private final DataOutputStream rows = new DataOutputStream(chunk);
+        private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        private int count;
+        private long total;
+
+        /**
+         * Writes the header of the table.
+         *
+         * @param out the stream of the table file.
+         * @param table the name of the table.
+         * @param columns the names of the columns.
+         * @param types the types of the columns.
+         *
+         * @throws IOException If there was a problem when writing the file.
+         */
+        Writer(OutputStream out, String table, String[] columns, char[] types) throws IOException {
+            this.out = new DataOutputStream(out);
+            this.types = types.clone();
+            this.out.writeInt(MAGIC);
+            this.out.writeInt(VERSION);
+            this.out.writeUTF(table);
+            this.out.writeInt(columns.length);
+            for(int i = 0; i < columns.length; i++) {
+                this.out.writeUTF(columns[i]);
+                this.out.writeChar(types[i]);
+            }
+        }
+
+        /**
+         * Adds a row to the current chunk.
+         *
+         * @param values the values of the row, in the order of the columns.
+         *
+         * @throws IOException If there was a problem when writing the file.
+         */
+        void write(Object[] values) throws IOException {
+            for(int i = 0; i < types.length; i++) {
+                Object value = values[i];
+                rows.writeBoolean(value == null);
+                if(value == null)
+                    continue;
+                switch(types[i]) {
+                    case LONG :
+                        rows.writeLong(value instanceof Boolean ? ((Boolean)value ? 1 : 0)
+                                                                : ((Number)value).longValue());
+                        break;
+                    case TIMESTAMP :
+                    case DATE :
+                        rows.writeLong(((java.util.Date)value).getTime());
+                        break;
+                    case BYTES :
+                        writeBytes(rows, (byte[])value);
+                        break;
+                    default :
+                        writeBytes(rows, value.toString().getBytes("UTF-8"));
+                }
+            }
+            count++;
+            total++;
+            if(count >= CHUNK_ROWS || chunk.size() >= CHUNK_SIZE)
+                flushChunk();
+        }
+
+        /**
+         * Returns the number of rows written.
+         *
+         * @return the number of rows written.
+         */
+        long getRows() {
+            return total;
+        }
+
+        /**
+         * Writes the last chunk and the end of the table.
+         *
+         * @throws IOException If there was a problem when writing the file.
+         */
+        @Override
+        public void close() throws IOException {
+            try {
+                flushChunk();
+                out.writeInt(0);
+                out.flush();
+            }
+            finally {
+                deflater.end();
+                out.close();
+            }
+        }
+
+        private void flushChunk() throws IOException {
+            if(count == 0)
+                return;
+            byte[] raw = chunk.toByteArray();
+            CRC32 crc = new CRC32();
+            crc.update(raw);
+            deflater.reset();
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(raw.length / 2 + 64);
+            byte[] buffer = new byte[8192];
+            while(!deflater.finished())
+                compressed.write(buffer, 0, deflater.deflate(buffer));
+            out.writeInt(count);
+            out.writeInt(raw.length);
+            out.writeInt(compressed.size());
+            compressed.writeTo(out);
+            out.writeLong(crc.getValue());
+            chunk.reset();
+            count = 0;
+        }
+    }
+
+    /**
+     * Reads the rows of one table.
+     */
+    static class Reader implements Closeable {
+        private final DataInputStream in;
+        private final String table;
+        private final String[] columns;
+        private final char[] types;
+        private final Inflater inflater = new Inflater();
+        private DataInputStream rows;
+        private int remaining;
+
+        /**
+         * Reads the header of the table.
+         *
+         * @param in the stream of the table file.
+         *
+         * @throws IOException If the file is damaged or has an unknown format.
+         */
+        Reader(InputStream in) throws IOException {
+            this.in = new DataInputStream(in);
+            if(this.in.readInt() != MAGIC)
+                throw new IOException("Not a snapshot file.");
+            int version = this.in.readInt();
+            if(version != VERSION)
+                throw new IOException("Unknown snapshot format: " + version);
+            table = this.in.readUTF();
+            int count = this.in.readInt();
+            if(count < 1)
+                throw new IOException("Damaged snapshot of " + table);
+            columns = new String[count];
+            types = new char[count];
+            for(int i = 0; i < count; i++) {
+                columns[i] = this.in.readUTF();
+                types[i] = this.in.readChar();
+            }
+        }
+
+        /**
+         * Returns the name of the table.
+         *
+         * @return the name of the table.
+         */
+        String getTable() {
+            return table;
+        }
+
+        /**
+         * Returns the names of the columns.
+         *
+         * @return the names of the columns.
+         */
+        String[] getColumns() {
+            return columns.clone();
+        }
+
+        /**
+         * Returns the next row of the table.
+         *
+         * @return the values of the row; null after the last row.
+         *
+         * @throws IOException If the file is damaged.
+         */
+        Object[] read() throws IOException {
+            if(remaining == 0 && !readChunk())
+                return null;
+            Object[] values = new Object[types.length];
+            for(int i = 0; i < types.length; i++) {
+                if(rows.readBoolean())
+                    continue;
+                switch(types[i]) {
+                    case LONG : values[i] = rows.readLong();
+                        break;
+                    case TIMESTAMP : values[i] = new Timestamp(rows.readLong());
+                        break;
+                    case DATE : values[i] = new Date(rows.readLong());
+                        break;
+                    case BYTES : values[i] = readBytes(rows);
+                        break;
+                    default : values[i] = new String(readBytes(rows), "UTF-8");
+                }
+            }
+            remaining--;
+            return values;
+        }
+
+        /**
+         * Closes the file.
+         *
+         * @throws IOException If there was a problem when closing the file.
+         */
+        @Override
+        public void close() throws IOException {
+            inflater.end();
+            in.close();
+        }
+
+        private boolean readChunk() throws IOException {
+            int count = in.readInt();
+            if(count == 0)
+                return false;
+            int length = in.readInt();
+            int compressedLength = in.readInt();
+            if(count < 0 || length < 0 || compressedLength < 0)
+                throw new IOException("Damaged snapshot of " + table);
+            byte[] compressed = new byte[compressedLength];
+            in.readFully(compressed);
+            long checksum = in.readLong();
+            byte[] raw = new byte[length];
+            inflater.reset();
+            inflater.setInput(compressed);
+            try {
+                if(inflater.inflate(raw) != length || !inflater.finished())
+                    throw new IOException("Damaged snapshot of " + table);
+            }
+            catch(DataFormatException e) {
+                throw new IOException("Damaged snapshot of " + table, e);
+            }
+            CRC32 crc = new CRC32();
+            crc.update(raw);
+            if(crc.getValue() != checksum)
+                throw new IOException("Checksum mismatch in snapshot of " + table);
+            rows = new DataInputStream(new ByteArrayInputStream(raw));
+            remaining = count;
+            return true;
+        }
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] value) throws IOException {
+        out.writeInt(value.length);
+        out.write(value);
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if(length < 0)
+            throw new EOFException("Damaged snapshot.");
+        byte[] value = new byte[length];
+        in.readFully(value);
+        return value;
+    }
+}
@@ -0,0 +1,501 @@
+package ashulzhenko.emailapp.data;
+
+import ashulzhenko.emailapp.bean.Change;
+import ashulzhenko.emailapp.bean.Snapshot;
+import ashulzhenko.emailapp.bean.UserConfigBean;
+import ashulzhenko.emailapp.interfaces.SnapshotDAO;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * SnapshotModule class backs up the mail store into binary snapshot files
+ * and restores it from them, which is much faster than a text dump
+ * with hex-encoded attachments.
+ *
+ * Every table is written into its own file (see SnapshotCodec for the format).
+ * All the tables are read in one REPEATABLE READ transaction on a single
+ * connection, so that the snapshot is consistent and takes one connection
+ * of the budget of the account. A snapshot can be based on a previous one:
+ * tables that only grow (emails, addresses, attachments, change log...) are then
+ * read from the highest id the previous snapshot captured, archives from the time
+ * it was taken, while small tables that change in place (directories, threads,
+ * statistics, outbox) are always written in full. The directory, archive flag,
+ * thread, read flag, partial flag and message of every email are also written
+ * in full, so that emails moved, archived, read, downloaded or deleted since
+ * the previous snapshot are restored as they are now; the attachments of
+ * downloaded emails are new rows. The emails of the saved searches are found
+ * again once the emails are restored.
+ *
+ * Restore replaces the content of the store with the first snapshot of the
+ * chain and then applies the following ones, using batched inserts
+ * with foreign key and unique checks turned off for the session.
+ *
+ * @author Alena Shulzhenko
+ * @version 19/10/2026
+ * @since 1.8
+ */
+public class SnapshotModule extends DatabaseModule implements SnapshotDAO {
+    private static final String MANIFEST = "snapshot.properties";
+    private static final String EXTENSION = ".snap";
+    private static final String STATE = "emails_state";
+    private static final int BATCH = 500;
+    //rows restored between two commits
+    private static final int COMMIT_ROWS = 20000;
+    //tables with the column from which they are read incrementally; null if written in full
+    private static final String[][] TABLES = {
+        {"directories", null}, {"directory_paths", null}, {"addresses", "id"}, {"threads", null},
+        {"emails", "id"}, {"email_address", "emailid"}, {"attachments", "id"},
+        {"email_archive", "archivedDate"}, {"thread_ids", null}, {"thread_folders", null},
+        {"correspondent_stats", null}, {"folder_stats", null}, {"saved_searches", null},
+        {"sync_state", null}, {"outbox", null}, {"merge_progress", null}, {"change_log", "version"}};
+
+    private final Logger log = LoggerFactory.getLogger(getClass().getName());
+
+    /**
+     * Instantiates the object with all necessary information to work with the database.
+     *
+     * @param userInfo user's information needed to connect to the database.
+     * @throws SQLException If there is a problem when connecting to the database.
+     */
+    public SnapshotModule(UserConfigBean userInfo) throws SQLException {
+        super(userInfo);
+    }
+
+    /**
+     * Writes a snapshot of the mail store into the given directory.
+     * The rows of every table are bounded by the highest values read before
+     * the tables are written, so that rows added meanwhile are left
+     * for the next snapshot.
+     *
+     * @param directory The directory where the snapshot files are written.
+     *
+     * @param previous the snapshot the new one is based on; null for a full snapshot.
+     *
+     * @return the written snapshot.
+     *
+     * @throws SQLException If there was a problem when reading from the database.
+     *
+     * @throws IOException If there was a problem when writing the files.
+     */
+    @Override
+    public Snapshot backup(File directory, Snapshot previous) throws SQLException, IOException {
+        if(directory == null)
+            throw new IllegalArgumentException("Directory value is null.");
+        if(!directory.isDirectory() && !directory.mkdirs())
+            throw new IOException("Unable to create " + directory);
+
+        Timestamp created;
+        Map<String, Long> cursors = new LinkedHashMap<>();
+        Map<String, Long> rows = new LinkedHashMap<>();
+        Connection connection = getConnection();
+        try {
+            connection.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+            connection.setAutoCommit(false);
+            try(Statement stmt = connection.createStatement()) {
+                //every table is read from the same view of the store
+                stmt.execute("start transaction with consistent snapshot");
+                try(ResultSet rs = stmt.executeQuery("select now()")) {
+                    rs.next();
+                    created = rs.getTimestamp(1);
+                }
+                for(String[] table : TABLES) {
+                    if(table[1] == null)
+                        continue;
+                    if(isByDate(table))
+                        cursors.put(table[0], created.getTime());
+                    else {
+                        try(ResultSet rs = stmt.executeQuery("select coalesce(max(" + table[1]
+                                                             + "), 0) from " + table[0])) {
+                            rs.next();
+                            cursors.put(table[0], rs.getLong(1));
+                        }
+                    }
+                }
+            }
+            for(String[] table : TABLES)
+                rows.put(table[0], writeTable(connection, directory, table,
+                         previous == null ? 0 : previous.getCursor(table[0]), cursors.get(table[0])));
+            rows.put(STATE, writeTable(connection, directory, STATE,
+                    "select id, directory, archived, thread, seen, partial, message from emails "
+                    + "where deleted = false order by id"));
+            connection.commit();
+        }
+        finally {
+            closeConnection(connection);
+        }
+
+        Snapshot snapshot = new Snapshot(directory, previous == null ? null : previous.getDirectory(),
+                                         created, cursors, rows);
+        writeManifest(snapshot);
+        log.info("Snapshot written: " + snapshot);
+        return snapshot;
+    }
+
+    /**
+     * Reads the description of the snapshot in the given directory.
+     *
+     * @param directory The directory of the snapshot files.
+     *
+     * @return the snapshot.
+     *
+     * @throws IOException If the snapshot cannot be read.
+     */
+    @Override
+    public Snapshot readSnapshot(File directory) throws IOException {
+        if(directory == null)
+            throw new IllegalArgumentException("Directory value is null.");
+
+        Properties manifest = new Properties();
+        try(InputStream in = new FileInputStream(new File(directory, MANIFEST))) {
+            manifest.load(in);
+        }
+        try {
+            Map<String, Long> cursors = new LinkedHashMap<>();
+            Map<String, Long> rows = new LinkedHashMap<>();
+            for(String key : manifest.stringPropertyNames()) {
+                if(key.startsWith("cursor."))
+                    cursors.put(key.substring(7), Long.parseLong(manifest.getProperty(key)));
+                else if(key.startsWith("rows."))
+                    rows.put(key.substring(5), Long.parseLong(manifest.getProperty(key)));
+            }
+            String parent = manifest.getProperty("parent", "");
+            return new Snapshot(directory, parent.isEmpty() ? null : new File(parent),
+                    new Date(Long.parseLong(manifest.getProperty("created"))), cursors, rows);
+        }
+        catch(NumberFormatException e) {
+            throw new IOException("Damaged snapshot description in " + directory, e);
+        }
+    }
+
+    /**
+     * Replaces the content of the mail store with the given snapshot
+     * and the snapshots it is based on.
+     * The rows are committed in large groups; if the restore fails,
+     * the store must be restored again.
+     *
+     * @param directory The directory of the snapshot files.
+     *
+     * @return the number of restored rows.
+     *
+     * @throws SQLException If there was a problem when writing to the database.
+     *
+     * @throws IOException If the snapshot files cannot be read or are damaged.
+     */
+    @Override
+    public long restore(File directory) throws SQLException, IOException {
+        LinkedList<Snapshot> chain = new LinkedList<>();
+        Set<File> seen = new HashSet<>();
+        for(File dir = directory; dir != null; dir = chain.getFirst().getParent()) {
+            if(!seen.add(dir.getAbsoluteFile()))
+                throw new IOException("Snapshot " + dir + " is based on itself.");
+            chain.addFirst(readSnapshot(dir));
+        }
+
+        long restored = 0;
+        Connection connection = getConnection();
+        try(Statement stmt = connection.createStatement()) {
+            stmt.execute("set foreign_key_checks = 0");
+            stmt.execute("set unique_checks = 0");
+            connection.setAutoCommit(false);
+            try {
+                for(String[] table : TABLES)
+                    stmt.executeUpdate("delete from " + table[0]);
+                for(Snapshot snapshot : chain) {
+                    for(String[] table : TABLES) {
+                        File file = fileOf(snapshot.getDirectory(), table[0]);
+                        //snapshots taken before a table was added have no file for it
+                        if(!file.isFile())
+                            continue;
+                        if(table[1] == null)
+                            stmt.executeUpdate("delete from " + table[0]);
+                        restored += insertRows(connection, file);
+                    }
+                    applyState(connection, fileOf(snapshot.getDirectory(), STATE));
+                }
+                //the emails of the saved searches are not written
+                stmt.executeUpdate("delete from search_members");
+                SearchIndex.rebuildAll(connection, false);
+                //the applications read the whole store again
+                ChangeLog.record(connection, Change.Entity.MAILBOX, Change.Operation.UPDATE, 0);
+                connection.commit();
+            }
+            catch(SQLException | IOException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            }
+            finally {
+                stmt.execute("set unique_checks = 1");
+                stmt.execute("set foreign_key_checks = 1");
+            }
+        }
+        finally {
+            closeConnection(connection);
+        }
+        StoreCache.forUser(getUserInfo()).clear();
+        log.info("Restored " + restored + " rows from " + directory);
+        return restored;
+    }
+
+    /**
+     * Writes the rows of a table added since the previous snapshot.
+     *
+     * @param connection the connection of the snapshot transaction.
+     * @param directory The directory of the snapshot files.
+     * @param table the name of the table and its incremental column.
+     * @param from the value captured by the previous snapshot.
+     * @param to the highest value captured by this snapshot.
+     *
+     * @return the number of written rows.
+     *
+     * @throws SQLException If there was a problem when reading from the database.
+     * @throws IOException If there was a problem when writing the file.
+     */
+    private long writeTable(Connection connection, File directory, String[] table, long from, Long to)
+                            throws SQLException, IOException {
+        if(table[1] == null)
+            return writeTable(connection, directory, table[0], "select * from " + table[0]);
+        String query = "select * from " + table[0] + " where " + table[1]
+                + (isByDate(table) ? " >= ? and " + table[1] + " < ?" : " > ? and " + table[1] + " <= ?")
+                + " order by " + table[1];
+        if(isByDate(table))
+            return writeTable(connection, directory, table[0], query, new Timestamp(from), new Timestamp(to));
+        return writeTable(connection, directory, table[0], query, from, to);
+    }
+
+    /**
+     * Writes the rows returned by the query into the file of the table.
+     * The rows are streamed from the database instead of being read at once.
+     *
+     * @param connection the connection of the snapshot transaction.
+     * @param directory The directory of the snapshot files.
+     * @param table the name of the table.
+     * @param query the query that returns the rows.
+     * @param params the values of the parameters of the query.
+     *
+     * @return the number of written rows.
+     *
+     * @throws SQLException If there was a problem when reading from the database.
+     * @throws IOException If there was a problem when writing the file.
+     */
+    private long writeTable(Connection connection, File directory, String table, String query,
+                            Object... params) throws SQLException, IOException {
+        try(PreparedStatement pstmt = connection.prepareStatement(query,
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            //streams the result set with MySQL Connector/J
+            pstmt.setFetchSize(Integer.MIN_VALUE);
+            for(int i = 0; i < params.length; i++)
+                pstmt.setObject(i + 1, params[i]);
+            try(ResultSet rs = pstmt.executeQuery()) {
+                ResultSetMetaData meta = rs.getMetaData();
+                String[] columns = new String[meta.getColumnCount()];
+                char[] types = new char[columns.length];
+                for(int i = 0; i < columns.length; i++) {
+                    columns[i] = meta.getColumnLabel(i + 1);
+                    types[i] = SnapshotCodec.typeOf(meta.getColumnType(i + 1));
+                }
+                try(OutputStream out = new BufferedOutputStream(new FileOutputStream(fileOf(directory, table)));
+                    SnapshotCodec.Writer writer = new SnapshotCodec.Writer(out, table, columns, types)) {
+                    Object[] values = new Object[columns.length];
+                    while(rs.next()) {
+                        for(int i = 0; i < columns.length; i++)
+                            values[i] = readValue(rs, i + 1, types[i]);
+                        writer.write(values);
+                    }
+                    return writer.getRows();
+                }
+            }
+        }
+    }
+
+    /**
+     * Inserts the rows of a table file in batches.
+     *
+     * @param connection the connection to the database.
+     * @param file the file of the table.
+     *
+     * @return the number of inserted rows.
+     *
+     * @throws SQLException If there was a problem when writing to the database.
+     * @throws IOException If the file cannot be read or is damaged.
+     */
+    private long insertRows(Connection connection, File file) throws SQLException, IOException {
+        long count = 0;
+        try(SnapshotCodec.Reader reader = new SnapshotCodec.Reader
+                    (new BufferedInputStream(new FileInputStream(file)))) {
+            String[] columns = reader.getColumns();
+            StringBuilder query = new StringBuilder("insert into ").append(reader.getTable()).append(" (");
+            for(int i = 0; i < columns.length; i++)
+                query.append(i == 0 ? "`" : ", `").append(columns[i].replace("`", "")).append('`');
+            query.append(") values (?");
+            for(int i = 1; i < columns.length; i++)
+                query.append(",?");
+            query.append(')');
+            try(PreparedStatement pstmt = connection.prepareStatement(query.toString())) {
+                Object[] values;
+                while((values = reader.read()) != null) {
+                    for(int i = 0; i < values.length; i++) {
+                        if(values[i] == null)
+                            pstmt.setNull(i + 1, Types.NULL);
+                        else
+                            pstmt.setObject(i + 1, values[i]);
+                    }
+                    pstmt.addBatch();
+                    if(++count % BATCH == 0)
+                        pstmt.executeBatch();
+                    if(count % COMMIT_ROWS == 0)
+                        connection.commit();
+                }
+                pstmt.executeBatch();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Moves, archives, downloads and deletes the restored emails as they were
+     * when the snapshot was taken.
+     *
+     * @param connection the connection to the database.
+     * @param file the file of the emails state.
+     *
+     * @throws SQLException If there was a problem when writing to the database.
+     * @throws IOException If the file cannot be read or is damaged.
+     */
+    private void applyState(Connection connection, File file) throws SQLException, IOException {
+        Set<Long> ids = new HashSet<>();
+        String update = "update emails set directory = ?, archived = ?, thread = ?, "
+                + "message = if(?, '', coalesce(?, message)), seen = ?, "
+                + "partial = coalesce(?, partial) where id = ?";
+        //the attachments of an archived email are in its archive
+        String clear = "delete from attachments where email = ?";
+        try(SnapshotCodec.Reader reader = new SnapshotCodec.Reader
+                    (new BufferedInputStream(new FileInputStream(file)));
+            PreparedStatement pstmt = connection.prepareStatement(update);
+            PreparedStatement attachments = connection.prepareStatement(clear)) {
+            Object[] values;
+            while((values = reader.read()) != null) {
+                long id = (Long)values[0];
+                boolean archived = values[2] != null && (Long)values[2] != 0;
+                ids.add(id);
+                pstmt.setObject(1, values[1]);
+                pstmt.setBoolean(2, archived);
+                pstmt.setObject(3, values[3]);
+                pstmt.setBoolean(4, archived);
+                //the state of older snapshots has no read flag, partial flag and message
+                pstmt.setObject(5, values.length > 6 ? values[6] : null);
+                pstmt.setBoolean(6, values.length > 4 && values[4] != null && (Long)values[4] != 0);
+                if(values.length > 5 && values[5] != null)
+                    pstmt.setBoolean(7, (Long)values[5] != 0);
+                else
+                    pstmt.setNull(7, Types.BOOLEAN);
+                pstmt.setLong(8, id);
+                pstmt.addBatch();
+                if(archived) {
+                    attachments.setLong(1, id);
+                    attachments.addBatch();
+                }
+                if(ids.size() % BATCH == 0) {
+                    pstmt.executeBatch();
+                    attachments.executeBatch();
+                }
+            }
+            pstmt.executeBatch();
+            attachments.executeBatch();
+        }
+
+        //the foreign keys are not checked, so the rows of deleted emails are removed here
+        List<Long> deleted = new ArrayList<>();
+        try(Statement stmt = connection.createStatement();
+            ResultSet rs = stmt.executeQuery("select id from emails")) {
+            while(rs.next())
+                if(!ids.contains(rs.getLong(1)))
+                    deleted.add(rs.getLong(1));
+        }
+        String[] queries = {"delete from email_address where emailid = ?",
+                            "delete from attachments where email = ?",
+                            "delete from email_archive where email = ?",
+                            "delete from outbox where email = ?",
+                            "delete from emails where id = ?"};
+        for(String query : queries) {
+            try(PreparedStatement pstmt = connection.prepareStatement(query)) {
+                for(int i = 0; i < deleted.size(); i++) {
+                    pstmt.setLong(1, deleted.get(i));
+                    pstmt.addBatch();
+                    if((i + 1) % BATCH == 0)
+                        pstmt.executeBatch();
+                }
+                pstmt.executeBatch();
+            }
+        }
+    }
+
+    /**
+     * Writes the description of the snapshot.
+     *
+     * @param snapshot the written snapshot.
+     *
+     * @throws IOException If there was a problem when writing the file.
+     */
+    private void writeManifest(Snapshot snapshot) throws IOException {
+        Properties manifest = new Properties();
+        manifest.setProperty("created", Long.toString(snapshot.getCreated().getTime()));
+        manifest.setProperty("parent", snapshot.getParent() == null ? ""
+                                       : snapshot.getParent().getAbsolutePath());
+        for(Map.Entry<String, Long> cursor : snapshot.getCursors().entrySet())
+            manifest.setProperty("cursor." + cursor.getKey(), cursor.getValue().toString());
+        for(Map.Entry<String, Long> rows : snapshot.getRows().entrySet())
+            manifest.setProperty("rows." + rows.getKey(), rows.getValue().toString());
+        try(OutputStream out = new FileOutputStream(new File(snapshot.getDirectory(), MANIFEST))) {
+            manifest.store(out, "Mail store snapshot");
+        }
+    }
+
+    private static Object readValue(ResultSet rs, int index, char type) throws SQLException {
+        Object value;
+        switch(type) {
+            case SnapshotCodec.LONG : value = rs.getLong(index);
+                break;
+            case SnapshotCodec.BYTES : value = rs.getBytes(index);
+                break;
+            case SnapshotCodec.TIMESTAMP : value = rs.getTimestamp(index);
+                break;
+            case SnapshotCodec.DATE : value = rs.getDate(index);
+                break;
+            default : value = rs.getString(index);
+        }
+        return rs.wasNull() ? null : value;
+    }
+
+    private static boolean isByDate(String[] table) {
+        return table[1] != null && table[1].endsWith("Date");
+    }
+
+    private static File fileOf(File directory, String table) {
+        return new File(directory, table + EXTENSION);
+    }
+}
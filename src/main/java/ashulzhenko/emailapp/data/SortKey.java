@@ -0,0 +1,120 @@
+package ashulzhenko.emailapp.data;
+
+import ashulzhenko.emailapp.bean.EmailCustom;
+import java.sql.Timestamp;
+import java.util.Comparator;
+import java.util.Date;
+
+/**
+ * Enum class that represents the columns by which the emails of a directory
+ * can be sorted in the database: DATE, CONTACT, SUBJECT.
+ * Every key is backed by an index on (directory, archived, column, id),
+ * so that a page of a sorted directory is read without reading the
+ * emails before it (keyset paging).
+ *
+ * @author Alena Shulzhenko
+ * @version 19/10/2026
+ * @since 1.8
+ */
+public enum SortKey {
+    DATE("emailDate"),
+    CONTACT("contact"),
+    SUBJECT("subject");
+
+    private final String column;
+
+    /**
+     * Private constructor for SortKey enum.
+     *
+     * @param column The column of the emails table sorted by this key.
+     */
+    private SortKey(String column) {
+        this.column = column;
+    }
+
+    /**
+     * Returns the column of the emails table sorted by this key.
+     *
+     * @return the column sorted by this key.
+     */
+    String getColumn() {
+        return column;
+    }
+
+    /**
+     * Returns the value of this key for the email, as saved in the database.
+     *
+     * @param email The email which value is returned.
+     * @param account The address of the account; may be null.
+     *
+     * @return Timestamp for DATE, String for CONTACT and SUBJECT.
+     */
+    Object valueOf(EmailCustom email, String account) {
+        switch(this) {
+            case DATE : return dateOf(email);
+            case CONTACT : return contactOf(email, account);
+            default : return subjectOf(email);
+        }
+    }
+
+    /**
+     * Returns the comparator that orders the emails as the database does.
+     * Ties are broken by id. As with the default collation of the database,
+     * the case of contacts and subjects is ignored.
+     *
+     * @param account The address of the account; may be null.
+     * @param ascending true for ascending order; false for descending.
+     *
+     * @return the comparator of the emails for this key.
+     */
+    public Comparator<EmailCustom> comparator(String account, boolean ascending) {
+        Comparator<EmailCustom> comparator;
+        if(this == DATE)
+            comparator = Comparator.comparing(SortKey::dateOf);
+        else
+            comparator = Comparator.comparing(e -> (String)valueOf(e, account),
+                                              String.CASE_INSENSITIVE_ORDER);
+        comparator = comparator.thenComparingInt(EmailCustom::getId);
+        return ascending ? comparator : comparator.reversed();
+    }
+
+    /**
+     * Returns the date by which the email is sorted: the received date or,
+     * for sent emails, the sent date. An email without dates is the oldest.
+     *
+     * @param email The email which date is returned.
+     *
+     * @return the date by which the email is sorted.
+     */
+    static Timestamp dateOf(EmailCustom email) {
+        Date date = email.getReceivedDate() != null ? email.getReceivedDate() : email.getSentDate();
+        return new Timestamp(date == null ? 0 : date.getTime());
+    }
+
+    /**
+     * Returns the contact by which the email is sorted: the first recipient
+     * if the account sent the email; the sender otherwise.
+     *
+     * @param email The email which contact is returned.
+     * @param account The address of the account; may be null.
+     *
+     * @return the contact by which the email is sorted, at most 150 characters long.
+     */
+    static String contactOf(EmailCustom email, String account) {
+        String contact = email.getFrom() == null ? "" : email.getFrom().getEmail();
+        if(contact.equalsIgnoreCase(account) && email.getTo().length != 0)
+            contact = email.getTo()[0].getEmail();
+        return contact.length() > 150 ? contact.substring(0, 150) : contact;
+    }
+
+    /**
+     * Returns the subject by which the email is sorted.
+     *
+     * @param email The email which subject is returned.
+     *
+     * @return the subject; empty if the email has none.
+     */
+    static String subjectOf(EmailCustom email) {
+        return email.getSubject() == null ? "" : email.getSubject();
+    }
+}
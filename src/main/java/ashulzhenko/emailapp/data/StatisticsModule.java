@@ -0,0 +1,190 @@
+package ashulzhenko.emailapp.data;
+
+import ashulzhenko.emailapp.bean.EmailStats;
+import ashulzhenko.emailapp.bean.UserConfigBean;
+import ashulzhenko.emailapp.interfaces.StatisticsDAO;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * StatisticsModule class is used to read the correspondent and folder statistics.
+ * The statistics are kept up to date by MailStorageModule when emails are
+ * saved, moved and deleted, so that reports only read the statistics tables.
+ * rebuild() computes them again from the emails, e.g. after they were
+ * changed outside of the application.
+ *
+ * @author Alena Shulzhenko
+ * @version 19/10/2026
+ * @since 1.8
+ */
+public class StatisticsModule extends DatabaseModule implements StatisticsDAO {
+
+    /**
+     * Instantiates the object with all necessary information to work with the database.
+     *
+     * @param userInfo user's information needed to connect to the database.
+     * @throws SQLException If there is a problem when connecting to the database.
+     */
+    public StatisticsModule(UserConfigBean userInfo) throws SQLException {
+        super(userInfo);
+    }
+
+    /**
+     * Returns the correspondents with the most emails in the given directory.
+     *
+     * @param directory The directory where the emails are stored.
+     *
+     * @param number the number of correspondents to retrieve.
+     *
+     * @return the statistics of the correspondents for all months, the most emails first.
+     *
+     * @throws SQLException If there was a problem when reading from the database.
+     */
+    @Override
+    public List<EmailStats> findTopCorrespondents(String directory, int number) throws SQLException {
+        if(directory == null || directory.trim().isEmpty())
+            throw new IllegalArgumentException("Directory value is null or empty.");
+        if(number < 1)
+            throw new IllegalArgumentException ("Invalid arguments. number > 0.");
+
+        String query = "select contact, null, sum(messageCount), sum(bytes), min(firstSeen), "
+                + "max(lastSeen) from correspondent_stats "
+                + "where directory = (select id from directories where name = ?) "
+                + "group by contact order by 3 desc, contact limit ?";
+        return findStats(query, directory, number);
+    }
+
+    /**
+     * Returns the statistics of the correspondent in all directories by month.
+     *
+     * @param address The address of the correspondent.
+     *
+     * @return the statistics of the correspondent, the oldest month first.
+     *
+     * @throws SQLException If there was a problem when reading from the database.
+     */
+    @Override
+    public List<EmailStats> findCorrespondentByMonth(String address) throws SQLException {
+        if(address == null || address.trim().isEmpty())
+            throw new IllegalArgumentException("Address value is null or empty.");
+
+        String query = "select contact, month, sum(messageCount), sum(bytes), min(firstSeen), "
+                + "max(lastSeen) from correspondent_stats where contact = ? "
+                + "group by contact, month order by month";
+        return findStats(query, address, -1);
+    }
+
+    /**
+     * Returns the statistics of the given directory by month.
+     *
+     * @param directory The directory where the emails are stored.
+     *
+     * @return the statistics of the directory, the oldest month first.
+     *
+     * @throws SQLException If there was a problem when reading from the database.
+     */
+    @Override
+    public List<EmailStats> findFolderByMonth(String directory) throws SQLException {
+        if(directory == null || directory.trim().isEmpty())
+            throw new IllegalArgumentException("Directory value is null or empty.");
+
+        String query = "select d.name, s.month, s.messageCount, s.bytes, s.firstSeen, s.lastSeen "
+                + "from folder_stats s join directories d on d.id = s.directory "
+                + "where d.name = ? order by s.month";
+        return findStats(query, directory, -1);
+    }
+
+    /**
+     * Returns the statistics of every directory for all months.
+     *
+     * @return the statistics of every directory.
+     *
+     * @throws SQLException If there was a problem when reading from the database.
+     */
+    @Override
+    public List<EmailStats> findFolders() throws SQLException {
+        String query = "select d.name, null, sum(s.messageCount), sum(s.bytes), min(s.firstSeen), "
+                + "max(s.lastSeen) from folder_stats s join directories d on d.id = s.directory "
+                + "group by d.name order by d.name";
+        return findStats(query, null, -1);
+    }
+
+    /**
+     * Computes all statistics again from the saved emails in one transaction.
+     *
+     * @return the number of emails counted.
+     *
+     * @throws SQLException If there was a problem when writing to the database.
+     */
+    @Override
+    public int rebuild() throws SQLException {
+        String month = "date_format(emailDate, '%Y-%m-01')";
+        String[] queries = {"delete from correspondent_stats", "delete from folder_stats",
+            "insert into correspondent_stats (contact, directory, month, messageCount, "
+            + "bytes, firstSeen, lastSeen) select contact, directory, " + month + ", count(*), "
+            + "sum(size), min(emailDate), max(emailDate) from emails where deleted = false "
+            + "group by contact, directory, " + month,
+            "insert into folder_stats (directory, month, messageCount, bytes, firstSeen, lastSeen) "
+            + "select directory, " + month + ", count(*), sum(size), min(emailDate), "
+            + "max(emailDate) from emails where deleted = false group by directory, " + month};
+        int count = 0;
+        Connection connection = getConnection();
+        try {
+            connection.setAutoCommit(false);
+            try(Statement stmt = connection.createStatement()) {
+                for(String query : queries)
+                    stmt.executeUpdate(query);
+                try(ResultSet rs = stmt.executeQuery("select coalesce(sum(messageCount), 0) "
+                                                     + "from folder_stats")) {
+                    if(rs.next())
+                        count = rs.getInt(1);
+                }
+                connection.commit();
+            }
+            catch(SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+        }
+        finally {
+            closeConnection(connection);
+        }
+        return count;
+    }
+
+    /**
+     * Reads the statistics returned by the query.
+     *
+     * @param query the query that returns name, month, count, bytes, first and last dates.
+     * @param value the value of the first parameter; null if there is none.
+     * @param number the value of the second parameter; -1 if there is none.
+     *
+     * @return the statistics returned by the query.
+     *
+     * @throws SQLException If there was a problem when reading from the database.
+     */
+    private List<EmailStats> findStats(String query, String value, int number) throws SQLException {
+        List<EmailStats> stats = new ArrayList<>();
+        Connection connection = getReadConnection();
+        try(PreparedStatement pstmt = connection.prepareStatement(query)) {
+            if(value != null)
+                pstmt.setString(1, value);
+            if(number != -1)
+                pstmt.setInt(2, number);
+            try(ResultSet rs = pstmt.executeQuery()) {
+                while(rs.next())
+                    stats.add(new EmailStats(rs.getString(1), rs.getDate(2), rs.getInt(3),
+                                             rs.getLong(4), rs.getTimestamp(5), rs.getTimestamp(6)));
+            }
+        }
+        finally {
+            closeConnection(connection);
+        }
+        return stats;
+    }
+}
@@ -0,0 +1,162 @@
+package ashulzhenko.emailapp.data;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+
+/**
+ * StatsIndex class keeps the correspondent and folder statistics up to date
+ * when emails are saved, moved and deleted.
+ * The statistics are kept by month: the number of emails, their size and
+ * the dates of the first and the last email of every correspondent in
+ * every directory (correspondent_stats table) and of every directory
+ * (folder_stats table). A saved email is added to its rows and a removed
+ * one is subtracted, so that the statistics never have to be computed
+ * from all the emails. The first and last dates are only read again from
+ * the emails of one month when the removed email was the first or the last.
+ * The statistics must be updated in the transaction that changes the email.
+ *
+ * @author Alena Shulzhenko
+ * @version 19/10/2026
+ * @since 1.8
+ */
+class StatsIndex {
+    private static final String MONTH = "date_format(emailDate, '%Y-%m-01')";
+
+    /**
+     * Prevents instantiation.
+     */
+    private StatsIndex() {}
+
+    /**
+     * The statistics values of an email, read before the email is
+     * moved or deleted.
+     */
+    static class Entry {
+        private final String contact;
+        private final int directory;
+        private final Timestamp date;
+        private final long size;
+
+        private Entry(String contact, int directory, Timestamp date, long size) {
+            this.contact = contact;
+            this.directory = directory;
+            this.date = date;
+            this.size = size;
+        }
+    }
+
+    /**
+     * Adds a saved or moved email to the statistics.
+     *
+     * @param connection the connection to the database.
+     * @param id the id of the email.
+     *
+     * @throws SQLException If there was a problem when writing to the database.
+     */
+    static void add(Connection connection, int id) throws SQLException {
+        String update = "on duplicate key update messageCount = messageCount + 1, "
+                + "bytes = bytes + values(bytes), firstSeen = least(firstSeen, values(firstSeen)), "
+                + "lastSeen = greatest(lastSeen, values(lastSeen))";
+        String[] queries = {"insert into correspondent_stats (contact, directory, month, "
+                + "messageCount, bytes, firstSeen, lastSeen) select contact, directory, " + MONTH
+                + ", 1, size, emailDate, emailDate from emails where id = ? " + update,
+                "insert into folder_stats (directory, month, messageCount, bytes, firstSeen, lastSeen) "
+                + "select directory, " + MONTH + ", 1, size, emailDate, emailDate "
+                + "from emails where id = ? " + update};
+        for(String query : queries) {
+            try(PreparedStatement pstmt = connection.prepareStatement(query)) {
+                pstmt.setInt(1, id);
+                pstmt.executeUpdate();
+            }
+        }
+    }
+
+    /**
+     * Returns the statistics values of the email, to be subtracted
+     * once the email is moved or deleted. The email is locked until the
+     * end of the transaction, so that it is not moved or deleted twice
+     * at the same time.
+     *
+     * @param connection the connection to the database.
+     * @param id the id of the email.
+     *
+     * @return the statistics values of the email; null if it is not found.
+     *
+     * @throws SQLException If there was a problem when reading from the database.
+     */
+    static Entry locate(Connection connection, int id) throws SQLException {
+        String query = "select contact, directory, emailDate, size from emails "
+                + "where id = ? and deleted = false for update";
+        try(PreparedStatement pstmt = connection.prepareStatement(query)) {
+            pstmt.setInt(1, id);
+            try(ResultSet rs = pstmt.executeQuery()) {
+                if(rs.next())
+                    return new Entry(rs.getString(1), rs.getInt(2), rs.getTimestamp(3), rs.getLong(4));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Subtracts a moved or deleted email from the statistics.
+     * Must be called after the email is moved or deleted.
+     *
+     * @param connection the connection to the database.
+     * @param entry the statistics values of the email before it was moved or deleted.
+     *
+     * @throws SQLException If there was a problem when writing to the database.
+     */
+    static void remove(Connection connection, Entry entry) throws SQLException {
+        String month = "date_format(?, '%Y-%m-01')";
+        String range = "deleted = false and emailDate >= " + month 
+                + " and emailDate < " + month + " + interval 1 month";
+        remove(connection, entry, "correspondent_stats",
+               "contact = ? and directory = ? and month = " + month,
+               "contact = ? and directory = ? and " + range, true);
+        remove(connection, entry, "folder_stats",
+               "directory = ? and month = " + month,
+               "directory = ? and " + range, false);
+    }
+
+    private static void remove(Connection connection, Entry entry, String table, String key,
+                               String emails, boolean byContact) throws SQLException {
+        String[] queries = {"update " + table + " set messageCount = messageCount - 1, "
+                            + "bytes = bytes - ? where " + key,
+                            "delete from " + table + " where messageCount <= 0 and " + key};
+        for(int i = 0; i < queries.length; i++) {
+            try(PreparedStatement pstmt = connection.prepareStatement(queries[i])) {
+                int index = 1;
+                if(i == 0)
+                    pstmt.setLong(index++, entry.size);
+                setKey(pstmt, index, entry, byContact, 1);
+                pstmt.executeUpdate();
+            }
+        }
+        //the dates only change if the email was the first or the last of the month
+        String query = "update " + table + " set "
+                + "firstSeen = (select min(emailDate) from emails where " + emails + "), "
+                + "lastSeen = (select max(emailDate) from emails where " + emails + ") "
+                + "where " + key + " and (firstSeen = ? or lastSeen = ?)";
+        try(PreparedStatement pstmt = connection.prepareStatement(query)) {
+            int index = setKey(pstmt, 1, entry, byContact, 2);
+            index = setKey(pstmt, index, entry, byContact, 2);
+            index = setKey(pstmt, index, entry, byContact, 1);
+            pstmt.setTimestamp(index++, entry.date);
+            pstmt.setTimestamp(index, entry.date);
+            pstmt.executeUpdate();
+        }
+    }
+
+    private static int setKey(PreparedStatement pstmt, int index, Entry entry,
+                              boolean byContact, int dates) throws SQLException {
+        if(byContact)
+            pstmt.setString(index++, entry.contact);
+        pstmt.setInt(index++, entry.directory);
+        for(int i = 0; i < dates; i++)
+            pstmt.setTimestamp(index++, entry.date);
+        return index;
+    }
+}
@@ -0,0 +1,234 @@
+package ashulzhenko.emailapp.data;
+
+import ashulzhenko.emailapp.bean.UserConfigBean;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * StoreCache class keeps the ids of the directories and addresses and the
+ * list of directories of one database, so that they are not read for
+ * every saved or listed email.
+ * Other applications may use the same database, so the cache is checked
+ * against the change log at most every few seconds: a change of the
+ * directories empties the directories, and a change of the whole store
+ * empties everything. The cache is thus at most that old.
+ * A change may be committed after a change with a greater version, so the
+ * cache keeps the version below the first missing one, and reads the changes
+ * from there until the missing versions are committed or known to be
+ * rolled back (see ChangeLog.isRolledBack).
+ * Addresses are never changed or removed, except by restoring the store.
+ *
+ * @author Alena Shulzhenko
+ * @version 19/10/2026
+ * @since 1.8
+ */
+class StoreCache {
+    //time in milliseconds during which the cache is used without being checked
+    private static final long MAX_STALENESS = 2000;
+    //changes read at once; more changes than that empty the whole cache
+    private static final int MAX_CHANGES = 1000;
+    private static final Map<String, StoreCache> CACHES = new ConcurrentHashMap<>();
+
+    private final Map<String, Integer> directories = new ConcurrentHashMap<>();
+    private final Map<String, Integer> addresses = new ConcurrentHashMap<>();
+    private volatile List<String> names;
+    //changed whenever the directories are emptied, so that older reads are not kept
+    private volatile int generation;
+    //every change up to this version was seen or rolled back
+    private long version = -1;
+    private long checked;
+
+    /**
+     * Prevents instantiation outside of this class.
+     */
+    private StoreCache() {}
+
+    /**
+     * Returns the cache of the database of the user.
+     *
+     * @param userInfo user's information needed to connect to the database.
+     *
+     * @return the cache of the database.
+     */
+    static StoreCache forUser(UserConfigBean userInfo) {
+        String key = userInfo.getMysqlUrl() + ":" + userInfo.getMysqlPort() + "/"
+                + userInfo.getMysqlDbName();
+        return CACHES.computeIfAbsent(key, k -> new StoreCache());
+    }
+
+    /**
+     * Empties the cache if the directories or the whole store were changed
+     * since it was last checked. Does nothing if it was checked recently.
+     *
+     * @param connection the connection to the database.
+     *
+     * @throws SQLException If there was a problem when reading from the database.
+     */
+    synchronized void validate(Connection connection) throws SQLException {
+        long now = System.currentTimeMillis();
+        if(version >= 0 && now - checked < MAX_STALENESS)
+            return;
+        String query = "select coalesce(max(version), 0), min(version) from change_log";
+        try(PreparedStatement pstmt = connection.prepareStatement(query);
+            ResultSet rs = pstmt.executeQuery()) {
+            rs.next();
+            long latest = rs.getLong(1);
+            if(version < 0) {
+                //nothing is cached yet
+                version = latest;
+                checked = now;
+                return;
+            }
+            //the changes after the version were pruned, or the store was created again
+            if(rs.getLong(2) > version + 1 || latest < version) {
+                clear();
+                version = latest;
+                checked = now;
+                return;
+            }
+        }
+
+        query = "select version, entity from change_log where version > ? order by version limit ?";
+        //a rolled back version is only told from an open transaction outside of a transaction
+        boolean resolvable = connection.getAutoCommit();
+        boolean settled = true;
+        int read = 0;
+        try(PreparedStatement pstmt = connection.prepareStatement(query)) {
+            pstmt.setLong(1, version);
+            pstmt.setInt(2, MAX_CHANGES);
+            try(ResultSet rs = pstmt.executeQuery()) {
+                long expected = version + 1;
+                while(rs.next()) {
+                    read++;
+                    long current = rs.getLong(1);
+                    //the missing versions may still be committed, so they are read again next time
+                    if(settled && current != expected 
+                               && !(resolvable && ChangeLog.isRolledBack(connection, expected, current)))
+                        settled = false;
+                    if(settled)
+                        version = current;
+                    expected = current + 1;
+                    String entity = rs.getString(2);
+                    if("MAILBOX".equals(entity))
+                        clear();
+                    else if("DIRECTORY".equals(entity))
+                        clearDirectories();
+                }
+            }
+        }
+        if(read == MAX_CHANGES)
+            clear();
+        checked = now;
+    }
+
+    /**
+     * Returns whether the cache was checked recently enough to be used
+     * without checking it again.
+     *
+     * @return true if the cache can be used as it is; false otherwise.
+     */
+    synchronized boolean isFresh() {
+        return version >= 0 && System.currentTimeMillis() - checked < MAX_STALENESS;
+    }
+
+    /**
+     * Returns the generation of the directories, to be read before
+     * the directories are read from the database.
+     *
+     * @return the generation of the directories.
+     */
+    int getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Returns the id of the directory.
+     *
+     * @param name the name of the directory.
+     *
+     * @return the id of the directory; null if it is not cached.
+     */
+    Integer getDirectory(String name) {
+        return name == null ? null : directories.get(name);
+    }
+
+    /**
+     * Keeps the id of the directory, unless the directories were
+     * emptied since it was read.
+     *
+     * @param name the name of the directory.
+     * @param id the id of the directory.
+     * @param readGeneration the generation before the id was read.
+     */
+    synchronized void putDirectory(String name, int id, int readGeneration) {
+        if(name != null && readGeneration == generation)
+            directories.put(name, id);
+    }
+
+    /**
+     * Returns the names of all directories.
+     *
+     * @return the names of the directories; null if they are not cached.
+     */
+    List<String> getDirectories() {
+        List<String> list = names;
+        return list == null ? null : new ArrayList<>(list);
+    }
+
+    /**
+     * Keeps the names of all directories, unless the directories were
+     * emptied since they were read.
+     *
+     * @param list the names of the directories.
+     * @param readGeneration the generation before the names were read.
+     */
+    synchronized void putDirectories(List<String> list, int readGeneration) {
+        if(readGeneration == generation)
+            names = new ArrayList<>(list);
+    }
+
+    /**
+     * Returns the id of the address.
+     *
+     * @param address the address.
+     *
+     * @return the id of the address; null if it is not cached.
+     */
+    Integer getAddress(String address) {
+        return address == null ? null : addresses.get(address);
+    }
+
+    /**
+     * Keeps the id of the address.
+     *
+     * @param address the address.
+     * @param id the id of the address.
+     */
+    void putAddress(String address, int id) {
+        if(address != null)
+            addresses.put(address, id);
+    }
+
+    /**
+     * Empties the directories after they were changed.
+     */
+    synchronized void clearDirectories() {
+        generation++;
+        directories.clear();
+        names = null;
+    }
+
+    /**
+     * Empties the cache after the whole store was changed.
+     */
+    synchronized void clear() {
+        clearDirectories();
+        addresses.clear();
+    }
+}
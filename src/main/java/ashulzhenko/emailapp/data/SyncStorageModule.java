@@ -0,0 +1,236 @@
+package ashulzhenko.emailapp.data;
+
+import ashulzhenko.emailapp.bean.EmailCustom;
+import ashulzhenko.emailapp.bean.SyncState;
+import ashulzhenko.emailapp.bean.UserConfigBean;
+import ashulzhenko.emailapp.interfaces.SyncStorageDAO;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * SyncStorageModule class is used to save how far every folder of the mail
+ * server was synchronized, so that only the emails above the highest UID
+ * received are asked for, and to find the emails that are already saved,
+ * e.g. once a whole folder is received again.
+ * The state is read from the main database, since a replica may not have
+ * the latest state yet.
+ *
+ * @author Alena Shulzhenko
+ * @version 19/10/2026
+ * @since 1.8
+ */
+public class SyncStorageModule extends DatabaseModule implements SyncStorageDAO {
+    //number of message ids looked for in one query
+    private static final int BATCH = 500;
+
+    /**
+     * Instantiates the object with all necessary information to work with the database.
+     *
+     * @param userInfo user's information needed to connect to the database.
+     * @throws SQLException If there is a problem when connecting to the database.
+     */
+    public SyncStorageModule(UserConfigBean userInfo) throws SQLException {
+        super(userInfo);
+    }
+
+    /**
+     * Returns how far the folder of the server was synchronized.
+     *
+     * @param folder the name of the folder of the server.
+     *
+     * @return the state of the folder; a state without UIDVALIDITY if it
+     *         was never synchronized.
+     *
+     * @throws SQLException If there was a problem when reading from the database.
+     */
+    @Override
+    public SyncState findSyncState(String folder) throws SQLException {
+        if(folder == null || folder.isEmpty())
+            throw new IllegalArgumentException("Folder value is invalid.");
+
+        String query = "select uidValidity, lastUid from sync_state where folder = ?";
+        Connection connection = getConnection();
+        try(PreparedStatement pstmt = connection.prepareStatement(query)) {
+            pstmt.setString(1, folder);
+            try(ResultSet rs = pstmt.executeQuery()) {
+                if(rs.next())
+                    return new SyncState(folder, rs.getLong(1), rs.getLong(2));
+            }
+        }
+        finally {
+            closeConnection(connection);
+        }
+        return new SyncState(folder);
+    }
+
+    /**
+     * Saves how far the folder of the server was synchronized.
+     *
+     * @param state the state of the folder.
+     *
+     * @throws SQLException If there was a problem when writing to the database.
+     */
+    @Override
+    public void saveSyncState(SyncState state) throws SQLException {
+        if(state == null)
+            throw new IllegalArgumentException("Synchronization state value is null.");
+
+        String query = "insert into sync_state (folder, uidValidity, lastUid) values (?, ?, ?) "
+                + "on duplicate key update uidValidity = values(uidValidity), lastUid = values(lastUid)";
+        Connection connection = getConnection();
+        try(PreparedStatement pstmt = connection.prepareStatement(query)) {
+            pstmt.setString(1, state.getFolder());
+            pstmt.setLong(2, state.getUidValidity());
+            pstmt.setLong(3, state.getLastUid());
+            pstmt.executeUpdate();
+        }
+        finally {
+            closeConnection(connection);
+        }
+    }
+
+    /**
+     * Returns the emails whose message id is not saved yet as a received
+     * email, including the deleted emails that are not purged yet.
+     * The copies of the emails sent by the user have the same message id
+     * but no received date, so they are not counted.
+     * Emails without a message id are found by their location on the server
+     * instead: the folder, its UIDVALIDITY and the UID; they are new if they
+     * have neither.
+     *
+     * @param emails the received emails.
+     *
+     * @return the emails that are not saved yet, in the same order.
+     *
+     * @throws SQLException If there was a problem when reading from the database.
+     */
+    @Override
+    public List<EmailCustom> findNewEmails(List<EmailCustom> emails) throws SQLException {
+        if(emails == null)
+            throw new IllegalArgumentException("Emails value is null.");
+        if(emails.isEmpty())
+            return Collections.emptyList();
+
+        List<String> ids = new ArrayList<>();
+        List<EmailCustom> located = new ArrayList<>();
+        for(EmailCustom email : emails) {
+            String id = messageIdOf(email);
+            if(id != null)
+                ids.add(id);
+            else if(email.getServerFolder() != null)
+                located.add(email);
+        }
+        Set<String> saved = new HashSet<>();
+        Set<List<Object>> savedLocations = new HashSet<>();
+        Connection connection = getConnection();
+        try {
+            for(int i = 0; i < ids.size(); i += BATCH)
+                saved.addAll(findSaved(connection, ids.subList(i, Math.min(i + BATCH, ids.size()))));
+            for(int i = 0; i < located.size(); i += BATCH)
+                savedLocations.addAll(findLocated(connection, 
+                                      located.subList(i, Math.min(i + BATCH, located.size()))));
+        }
+        finally {
+            closeConnection(connection);
+        }
+
+        List<EmailCustom> result = new ArrayList<>(emails.size());
+        for(EmailCustom email : emails) {
+            String id = messageIdOf(email);
+            if(id != null ? !saved.contains(id) 
+                          : email.getServerFolder() == null || !savedLocations.contains(locationOf(email)))
+                result.add(email);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the message ids that are saved.
+     *
+     * @param connection the connection to the database.
+     * @param ids the message ids to look for.
+     *
+     * @return the message ids that are saved.
+     *
+     * @throws SQLException If there was a problem when reading from the database.
+     */
+    private Set<String> findSaved(Connection connection, List<String> ids) throws SQLException {
+        StringBuilder query = new StringBuilder("select messageId from emails "
+                                                + "where rcvDate is not null and messageId in (");
+        for(int i = 0; i < ids.size(); i++)
+            query.append(i == 0 ? "?" : ", ?");
+        query.append(")");
+        Set<String> saved = new HashSet<>();
+        try(PreparedStatement pstmt = connection.prepareStatement(query.toString())) {
+            for(int i = 0; i < ids.size(); i++)
+                pstmt.setString(i + 1, ids.get(i));
+            try(ResultSet rs = pstmt.executeQuery()) {
+                while(rs.next())
+                    saved.add(rs.getString(1));
+            }
+        }
+        return saved;
+    }
+
+    /**
+     * Returns the locations on the server of the given emails that are saved.
+     *
+     * @param connection the connection to the database.
+     * @param emails the emails to look for, with their location on the server.
+     *
+     * @return the locations that are saved, as returned by locationOf().
+     *
+     * @throws SQLException If there was a problem when reading from the database.
+     */
+    private Set<List<Object>> findLocated(Connection connection, List<EmailCustom> emails) 
+                                         throws SQLException {
+        StringBuilder query = new StringBuilder("select serverFolder, uidValidity, uid from emails where ");
+        for(int i = 0; i < emails.size(); i++)
+            query.append(i == 0 ? "" : " or ").append("(uid = ? and serverFolder = ? and uidValidity = ?)");
+        Set<List<Object>> saved = new HashSet<>();
+        try(PreparedStatement pstmt = connection.prepareStatement(query.toString())) {
+            int index = 1;
+            for(EmailCustom email : emails) {
+                pstmt.setLong(index++, email.getUid());
+                pstmt.setString(index++, email.getServerFolder());
+                pstmt.setLong(index++, email.getUidValidity());
+            }
+            try(ResultSet rs = pstmt.executeQuery()) {
+                while(rs.next())
+                    saved.add(Arrays.asList(rs.getString(1), rs.getLong(2), rs.getLong(3)));
+            }
+        }
+        return saved;
+    }
+
+    /**
+     * Returns the location of the email on the server.
+     *
+     * @param email the email.
+     *
+     * @return the folder, its UIDVALIDITY and the UID of the email.
+     */
+    private List<Object> locationOf(EmailCustom email) {
+        return Arrays.asList(email.getServerFolder(), email.getUidValidity(), email.getUid());
+    }
+
+    /**
+     * Returns the message id of the email as it is saved.
+     *
+     * @param email the email.
+     *
+     * @return the message id; null if the email has none.
+     */
+    private String messageIdOf(EmailCustom email) {
+        List<String> ids = ThreadIndex.parseIds(email.getMessageId());
+        return ids.isEmpty() ? null : ids.get(0);
+    }
+}
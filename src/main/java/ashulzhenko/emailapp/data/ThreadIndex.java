@@ -0,0 +1,311 @@
+package ashulzhenko.emailapp.data;
+
+import ashulzhenko.emailapp.bean.EmailCustom;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * ThreadIndex class maintains the conversation threads when emails are
+ * saved, moved and deleted, following the algorithm of Jamie Zawinski
+ * used by most mail clients.
+ * Every message id that was seen, either as the id of a saved email or in
+ * its In-Reply-To and References headers, is mapped to a thread in the
+ * thread_ids table. A new email joins the thread of any of its ids;
+ * if its ids belong to several threads (a reply that arrived before its
+ * parent, for example), these threads are merged. An email without
+ * references whose subject starts with Re: or Fw: joins the most recent
+ * thread with the same subject.
+ * Only indexed lookups are done, so attaching an email does not depend
+ * on the number of emails in the database. The number of emails and the
+ * latest date of every thread in every directory are kept up to date
+ * in the thread_folders table.
+ *
+ * @author Alena Shulzhenko
+ * @version 19/10/2026
+ * @since 1.8
+ */
+class ThreadIndex {
+    //only the most recent references are used, as other clients do
+    private static final int MAX_REFERENCES = 50;
+    private static final Pattern MESSAGE_ID = Pattern.compile("<[^<>\\s]+>");
+    private static final Pattern REPLY_PREFIX = Pattern.compile("^\\s*((re|fw|fwd)\\s*(\\[\\d+\\])?\\s*:\\s*)+",
+                                                                Pattern.CASE_INSENSITIVE);
+
+    /**
+     * Prevents instantiation.
+     */
+    private ThreadIndex() {}
+
+    /**
+     * Attaches a saved email to its thread.
+     *
+     * @param connection the connection used to save the email.
+     * @param id the id of the saved email.
+     * @param email the saved email.
+     *
+     * @return the id of the thread.
+     *
+     * @throws SQLException If there was a problem when writing to the database.
+     */
+    static int attach(Connection connection, int id, EmailCustom email) throws SQLException {
+        List<String> references = parseIds(email.getReferences());
+        if(references.size() > MAX_REFERENCES)
+            references = references.subList(references.size() - MAX_REFERENCES, references.size());
+        Set<String> ids = new LinkedHashSet<>(references);
+        ids.addAll(parseIds(email.getInReplyTo()));
+        boolean reply = !ids.isEmpty();
+        ids.addAll(parseIds(email.getMessageId()));
+
+        String subject = normalizeSubject(email.getSubject());
+        TreeSet<Integer> threads = findThreads(connection, ids);
+        if(threads.isEmpty() && !reply && isReplySubject(email.getSubject()) && !subject.isEmpty())
+            threads.addAll(findThreadBySubject(connection, subject));
+
+        int thread;
+        if(threads.isEmpty())
+            thread = createThread(connection, subject);
+        else {
+            thread = threads.first();
+            for(int other : threads.tailSet(thread, false))
+                merge(connection, other, thread);
+        }
+
+        addIds(connection, ids, thread);
+        String query = "update emails set thread = ? where id = ?";
+        try(PreparedStatement pstmt = connection.prepareStatement(query)) {
+            pstmt.setInt(1, thread);
+            pstmt.setInt(2, id);
+            pstmt.executeUpdate();
+        }
+
+        if(threads.size() > 1)
+            refreshAllFolders(connection, thread);
+        else
+            addToFolder(connection, id, thread);
+        return thread;
+    }
+
+    /**
+     * Returns the thread and the directory of the email, to be refreshed
+     * once the email is moved or deleted.
+     *
+     * @param connection the connection to the database.
+     * @param id the id of the email.
+     *
+     * @return the thread and the directory ids; null if the email has no thread.
+     *
+     * @throws SQLException If there was a problem when reading from the database.
+     */
+    static int[] locate(Connection connection, int id) throws SQLException {
+        String query = "select thread, directory from emails where id = ? and thread is not null "
+                + "and deleted = false";
+        try(PreparedStatement pstmt = connection.prepareStatement(query)) {
+            pstmt.setInt(1, id);
+            try(ResultSet rs = pstmt.executeQuery()) {
+                if(rs.next())
+                    return new int[] {rs.getInt(1), rs.getInt(2)};
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Recalculates the number of emails and the latest date
+     * of the thread in the directory.
+     *
+     * @param connection the connection to the database.
+     * @param thread the id of the thread.
+     * @param directory the id of the directory.
+     *
+     * @throws SQLException If there was a problem when writing to the database.
+     */
+    static void refreshFolder(Connection connection, int thread, int directory) throws SQLException {
+        String query = "select count(*), max(coalesce(rcvDate, sentDate)) from emails "
+                + "where thread = ? and directory = ? and deleted = false";
+        int count = 0;
+        Timestamp latest = null;
+        try(PreparedStatement pstmt = connection.prepareStatement(query)) {
+            pstmt.setInt(1, thread);
+            pstmt.setInt(2, directory);
+            try(ResultSet rs = pstmt.executeQuery()) {
+                if(rs.next()) {
+                    count = rs.getInt(1);
+                    latest = rs.getTimestamp(2);
+                }
+            }
+        }
+        if(count == 0)
+            query = "delete from thread_folders where thread = ? and directory = ?";
+        else
+            query = "insert into thread_folders (thread, directory, messageCount, latestDate) "
+                    + "values (?,?,?,?) on duplicate key update "
+                    + "messageCount = values(messageCount), latestDate = values(latestDate)";
+        try(PreparedStatement pstmt = connection.prepareStatement(query)) {
+            pstmt.setInt(1, thread);
+            pstmt.setInt(2, directory);
+            if(count != 0) {
+                pstmt.setInt(3, count);
+                pstmt.setTimestamp(4, latest);
+            }
+            pstmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Returns the message ids found in the header value.
+     *
+     * @param header the value of the Message-ID, In-Reply-To or References header.
+     *
+     * @return the message ids in the order of the header; empty if there are none.
+     */
+    static List<String> parseIds(String header) {
+        List<String> ids = new ArrayList<>();
+        if(header != null) {
+            Matcher matcher = MESSAGE_ID.matcher(header);
+            while(matcher.find()) {
+                String id = matcher.group();
+                //longer ids cannot be indexed and are not valid anyway
+                if(id.length() <= 255)
+                    ids.add(id);
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Returns the subject without the Re: and Fw: prefixes.
+     *
+     * @param subject the subject of the email.
+     *
+     * @return the normalized subject, at most 50 characters long.
+     */
+    static String normalizeSubject(String subject) {
+        if(subject == null)
+            return "";
+        String normalized = REPLY_PREFIX.matcher(subject).replaceFirst("").trim();
+        return normalized.length() > 50 ? normalized.substring(0, 50) : normalized;
+    }
+
+    /**
+     * Indicates whether the subject starts with Re: or Fw:.
+     *
+     * @param subject the subject of the email.
+     *
+     * @return true if the subject has a reply or forward prefix; false otherwise.
+     */
+    static boolean isReplySubject(String subject) {
+        return subject != null && REPLY_PREFIX.matcher(subject).find();
+    }
+
+    private static TreeSet<Integer> findThreads(Connection connection, Set<String> ids) throws SQLException {
+        TreeSet<Integer> threads = new TreeSet<>();
+        if(ids.isEmpty())
+            return threads;
+        StringBuilder query = new StringBuilder("select distinct thread from thread_ids where messageId in (?");
+        for(int i = 1; i < ids.size(); i++)
+            query.append(",?");
+        query.append(')');
+        try(PreparedStatement pstmt = connection.prepareStatement(query.toString())) {
+            int index = 1;
+            for(String id : ids)
+                pstmt.setString(index++, id);
+            try(ResultSet rs = pstmt.executeQuery()) {
+                while(rs.next())
+                    threads.add(rs.getInt(1));
+            }
+        }
+        return threads;
+    }
+
+    private static List<Integer> findThreadBySubject(Connection connection, String subject) throws SQLException {
+        List<Integer> threads = new ArrayList<>(1);
+        String query = "select id from threads where subject = ? order by id desc limit 1";
+        try(PreparedStatement pstmt = connection.prepareStatement(query)) {
+            pstmt.setString(1, subject);
+            try(ResultSet rs = pstmt.executeQuery()) {
+                if(rs.next())
+                    threads.add(rs.getInt(1));
+            }
+        }
+        return threads;
+    }
+
+    private static int createThread(Connection connection, String subject) throws SQLException {
+        String query = "insert into threads (subject) values (?)";
+        try(PreparedStatement pstmt = connection.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
+            pstmt.setString(1, subject);
+            pstmt.executeUpdate();
+            try(ResultSet rs = pstmt.getGeneratedKeys()) {
+                rs.next();
+                return rs.getInt(1);
+            }
+        }
+    }
+
+    private static void merge(Connection connection, int from, int to) throws SQLException {
+        String[] queries = {"update thread_ids set thread = ? where thread = ?",
+                            "update emails set thread = ? where thread = ?"};
+        for(String query : queries) {
+            try(PreparedStatement pstmt = connection.prepareStatement(query)) {
+                pstmt.setInt(1, to);
+                pstmt.setInt(2, from);
+                pstmt.executeUpdate();
+            }
+        }
+        //thread_folders rows of the merged thread are removed by the cascade
+        try(PreparedStatement pstmt = connection.prepareStatement("delete from threads where id = ?")) {
+            pstmt.setInt(1, from);
+            pstmt.executeUpdate();
+        }
+    }
+
+    private static void addIds(Connection connection, Set<String> ids, int thread) throws SQLException {
+        String query = "insert ignore into thread_ids (messageId, thread) values (?,?)";
+        try(PreparedStatement pstmt = connection.prepareStatement(query)) {
+            for(String id : ids) {
+                pstmt.setString(1, id);
+                pstmt.setInt(2, thread);
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+        }
+    }
+
+    private static void addToFolder(Connection connection, int id, int thread) throws SQLException {
+        String query = "insert into thread_folders (thread, directory, messageCount, latestDate) "
+                + "select ?, directory, 1, coalesce(rcvDate, sentDate) from emails where id = ? "
+                + "on duplicate key update messageCount = messageCount + 1, "
+                + "latestDate = greatest(coalesce(latestDate, values(latestDate)), "
+                + "coalesce(values(latestDate), latestDate))";
+        try(PreparedStatement pstmt = connection.prepareStatement(query)) {
+            pstmt.setInt(1, thread);
+            pstmt.setInt(2, id);
+            pstmt.executeUpdate();
+        }
+    }
+
+    private static void refreshAllFolders(Connection connection, int thread) throws SQLException {
+        List<Integer> directories = new ArrayList<>();
+        String query = "select distinct directory from emails where thread = ? and deleted = false";
+        try(PreparedStatement pstmt = connection.prepareStatement(query)) {
+            pstmt.setInt(1, thread);
+            try(ResultSet rs = pstmt.executeQuery()) {
+                while(rs.next())
+                    directories.add(rs.getInt(1));
+            }
+        }
+        for(int directory : directories)
+            refreshFolder(connection, thread, directory);
+    }
+}
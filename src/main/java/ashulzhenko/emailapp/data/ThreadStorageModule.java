@@ -0,0 +1,138 @@
+package ashulzhenko.emailapp.data;
+
+import ashulzhenko.emailapp.bean.EmailThread;
+import ashulzhenko.emailapp.bean.UserConfigBean;
+import ashulzhenko.emailapp.interfaces.ThreadStorageDAO;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ThreadStorageModule class is used to read the conversation threads.
+ * Threads are maintained by MailStorageModule when emails are saved,
+ * moved and deleted.
+ *
+ * @author Alena Shulzhenko
+ * @version 19/10/2026
+ * @since 1.8
+ */
+public class ThreadStorageModule extends DatabaseModule implements ThreadStorageDAO {
+
+    /**
+     * Instantiates the object with all necessary information to work with the database.
+     *
+     * @param userInfo user's information needed to connect to the database.
+     * @throws SQLException If there is a problem when connecting to the database.
+     */
+    public ThreadStorageModule(UserConfigBean userInfo) throws SQLException {
+        super(userInfo);
+    }
+
+    /**
+     * Returns the threads that have emails in the given directory, the most recent first
+     * (from start index with the indicated number of records).
+     *
+     * @param directory The directory where the emails of the threads are stored.
+     *
+     * @param start the starting index for retrieving threads (non-inclusive).
+     *
+     * @param number the number of threads to retrieve.
+     *
+     * @return the threads with their number of emails and latest date in the directory.
+     *
+     * @throws SQLException If there was a problem when reading from the database.
+     */
+    @Override
+    public List<EmailThread> findThreads(String directory, int start, int number) throws SQLException {
+        if(directory == null || directory.trim().isEmpty())
+            throw new IllegalArgumentException("Directory value is null or empty.");
+        if(start < 0 || number < 0)
+            throw new IllegalArgumentException ("Invalid arguments. start > 0 and number > 0.");
+
+        List<EmailThread> threads = new ArrayList<>();
+        String query = "select t.id, t.subject, f.messageCount, f.latestDate "
+                + "from thread_folders f join threads t on t.id = f.thread "
+                + "where f.directory = (select id from directories where name = ?) "
+                + "order by f.latestDate desc, t.id desc limit ?, ?";
+        Connection connection = getReadConnection();
+        try(PreparedStatement pstmt = connection.prepareStatement(query)) {
+            pstmt.setString(1, directory);
+            pstmt.setInt(2, start);
+            pstmt.setInt(3, number);
+            try(ResultSet rs = pstmt.executeQuery()) {
+                while(rs.next())
+                    threads.add(new EmailThread(rs.getInt(1), rs.getString(2),
+                                                rs.getInt(3), rs.getTimestamp(4)));
+            }
+        }
+        finally {
+            closeConnection(connection);
+        }
+        return threads;
+    }
+
+    /**
+     * Returns the ids of all emails of the thread, the oldest first.
+     *
+     * @param thread The id of the thread.
+     *
+     * @return the ids of the emails of the thread.
+     *
+     * @throws SQLException If there was a problem when reading from the database.
+     */
+    @Override
+    public List<Integer> findThreadEmails(int thread) throws SQLException {
+        if(thread < 1)
+            throw new IllegalArgumentException("Id value is invalid: " + thread);
+
+        List<Integer> ids = new ArrayList<>();
+        String query = "select id from emails where thread = ? and deleted = false "
+                + "order by coalesce(rcvDate, sentDate), id";
+        Connection connection = getReadConnection();
+        try(PreparedStatement pstmt = connection.prepareStatement(query)) {
+            pstmt.setInt(1, thread);
+            try(ResultSet rs = pstmt.executeQuery()) {
+                while(rs.next())
+                    ids.add(rs.getInt(1));
+            }
+        }
+        finally {
+            closeConnection(connection);
+        }
+        return ids;
+    }
+
+    /**
+     * Returns the id of the thread of the email.
+     *
+     * @param email The id of the email.
+     *
+     * @return the id of the thread; -1 if the email is not found.
+     *
+     * @throws SQLException If there was a problem when reading from the database.
+     */
+    @Override
+    public int findThreadOf(int email) throws SQLException {
+        if(email < 1)
+            throw new IllegalArgumentException("Id value is invalid: " + email);
+
+        int thread = -1;
+        String query = "select thread from emails where id = ? and thread is not null "
+                + "and deleted = false";
+        Connection connection = getReadConnection();
+        try(PreparedStatement pstmt = connection.prepareStatement(query)) {
+            pstmt.setInt(1, email);
+            try(ResultSet rs = pstmt.executeQuery()) {
+                if(rs.next())
+                    thread = rs.getInt(1);
+            }
+        }
+        finally {
+            closeConnection(connection);
+        }
+        return thread;
+    }
+}
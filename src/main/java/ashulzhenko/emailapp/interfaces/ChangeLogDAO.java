@@ -0,0 +1,42 @@
+package ashulzhenko.emailapp.interfaces;
+
+import ashulzhenko.emailapp.bean.Change;
+import java.sql.SQLException;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * The interface for ChangeLogModule
+ *
+ * @author Alena Shulzhenko
+ * @version 19/10/2026
+ * @since 1.8
+ */
+public interface ChangeLogDAO {
+
+    /**
+     * Returns the version of the store after its latest change.
+     * @return the current version; 0 if nothing was changed.
+     * @throws SQLException If there was a problem when reading from the database.
+     */
+    long findCurrentVersion() throws SQLException;
+
+    /**
+     * Returns the changes made after the given version, the oldest first.
+     * @param version the version already read by the caller.
+     * @param number the maximum number of changes to retrieve.
+     * @return the changes after the version; null if some of them were
+     *         removed and the store must be read again.
+     * @throws SQLException If there was a problem when reading from the database.
+     */
+    List<Change> findChangesSince(long version, int number) throws SQLException;
+
+    /**
+     * Removes the changes recorded before the given date. The latest change is kept.
+     * @param olderThan the date before which changes are removed.
+     * @return the number of removed changes.
+     * @throws SQLException If there was a problem when writing to the database.
+     */
+    int pruneChanges(Date olderThan) throws SQLException;
+
+}
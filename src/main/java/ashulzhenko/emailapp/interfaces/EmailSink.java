@@ -0,0 +1,24 @@
+package ashulzhenko.emailapp.interfaces;
+
+import ashulzhenko.emailapp.bean.EmailCustom;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * The interface for the receivers of the emails streamed by the Mailer,
+ * e.g. the code that saves them in the database.
+ *
+ * @author Alena Shulzhenko
+ * @version 19/10/2026
+ * @since 1.8
+ */
+@FunctionalInterface
+public interface EmailSink {
+
+    /**
+     * Receives the next batch of emails.
+     * @param emails the emails of the batch; may be empty.
+     * @throws SQLException If there was a problem when saving the emails.
+     */
+    void accept(List<EmailCustom> emails) throws SQLException;
+}
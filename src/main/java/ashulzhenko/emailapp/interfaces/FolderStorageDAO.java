@@ -2,6 +2,7 @@ package ashulzhenko.emailapp.interfaces;
 
 import java.sql.SQLException;
 import java.util.List;
+import java.util.Map;
 
 /**
  * The interface for FolderStorageModule
@@ -11,9 +12,15 @@ import java.util.List;
  * @since 1.8
  */
 public interface FolderStorageDAO {
+    /**
+     * Separates the names of the parent directories in the name of a directory,
+     * e.g. Clients/Acme/2024.
+     */
+    String SEPARATOR = "/";
     
     /**
-     * Creates new directory with the provided name.
+     * Creates new directory with the provided name. 
+     * The missing parent directories are created as well.
      * @param name The name of the directory to create.
      * @return the id of the created directory.
      * @throws SQLException If there was a problem when writing to the database.
@@ -21,7 +28,7 @@ public interface FolderStorageDAO {
     int createDirectory(String name) throws SQLException;
     
     /**
-     * Deletes the requested directory.
+     * Deletes the requested directory and its subdirectories.
      * @param name The name of the directory to delete.
      * @return number of deleted directories.
      * @throws SQLException If there was a problem when writing to the database.
@@ -36,7 +43,33 @@ public interface FolderStorageDAO {
     List<String> findAll() throws SQLException;
     
     /**
-     * Updates directory's name.
+     * Finds the direct subdirectories of the directory.
+     * @param name The name of the directory; null for the top directories.
+     * @return the names of the subdirectories with their number of subdirectories,
+     *         ordered by name.
+     * @throws SQLException If there was a problem when reading form the database.
+     */
+    Map<String, Integer> findChildren(String name) throws SQLException;
+    
+    /**
+     * Finds the directory and all its subdirectories at any depth.
+     * @param name The name of the directory.
+     * @return the names of the directories, ordered by name; empty if the directory does not exist.
+     * @throws SQLException If there was a problem when reading form the database.
+     */
+    List<String> findSubtree(String name) throws SQLException;
+    
+    /**
+     * Counts the emails in the directory and all its subdirectories.
+     * @param name The name of the directory.
+     * @return the number of emails.
+     * @throws SQLException If there was a problem when reading form the database.
+     */
+    int countEmails(String name) throws SQLException;
+    
+    /**
+     * Updates directory's name, and the names of its subdirectories.
+     * The directory is moved if the parent in the new name is different.
      * @param oldName The old name of the directory.
      * @param newName The new name of the directory.
      * @return the number of updated directories.
@@ -44,4 +77,13 @@ public interface FolderStorageDAO {
      */
     int updateDirectory(String oldName, String newName) throws SQLException;
     
+    /**
+     * Moves the directory with its subdirectories to another parent directory.
+     * @param name The name of the directory to move.
+     * @param parent The name of the new parent directory; null to move it to the top.
+     * @return the number of moved directories.
+     * @throws SQLException If there was a problem when writing to the database.
+     */
+    int moveDirectory(String name, String parent) throws SQLException;
+    
 }
@@ -1,7 +1,9 @@
 package ashulzhenko.emailapp.interfaces;
 
 import ashulzhenko.emailapp.bean.EmailCustom;
+import ashulzhenko.emailapp.data.SortKey;
 import java.sql.SQLException;
+import java.util.Date;
 import java.util.List;
 
 /**
@@ -14,7 +16,8 @@ import java.util.List;
 public interface MailStorageDAO {
     
     /**
-     * Deletes email that has the provided id.
+     * Deletes email that has the provided id. The email is no longer returned
+     * but may only be removed from the database by purgeDeleted().
      * @param id The id of the email to delete.
      * @return the number of deleted rows.
      * @throws SQLException If there was a problem when writing to the database.
@@ -48,16 +51,65 @@ public interface MailStorageDAO {
     List<EmailCustom> findAll() throws SQLException;
 
     /**
-     * Returns all emails in the given directory.
+     * Returns all emails in the given directory that are not archived.
      * @param directory The directory where requested email are stored.
      * @return all emails in the given directory.
      * @throws SQLException If there was a problem when reading from the database.
      */
     List<EmailCustom> findAllInDirectory(String directory) throws SQLException;
     
+    /**
+     * Returns all emails in the given directory. Archived emails are returned
+     * as stubs without messages and attachments.
+     * @param directory The directory where requested email are stored.
+     * @param includeArchive true to include archived emails; false otherwise.
+     * @return all emails in the given directory.
+     * @throws SQLException If there was a problem when reading from the database.
+     */
+    List<EmailCustom> findAllInDirectory(String directory, boolean includeArchive) throws SQLException;
     
     /**
-     * Find an email in database with given Id.
+     * Returns emails in the given directory that are not archived, the most recent first
+     * (from start index with the indicated number of records).
+     * @param directory The directory where requested email are stored.
+     * @param start the starting index for retrieving emails.
+     * @param number the number of emails to retrieve.
+     * @return the emails in the given directory.
+     * @throws SQLException If there was a problem when reading from the database.
+     */
+    List<EmailCustom> findAllInDirectory(String directory, int start, int number) throws SQLException;
+    
+    /**
+     * Returns a page of the emails in the given directory that are not archived,
+     * sorted by the given key. The page starts after the last email of the previous page.
+     * @param directory The directory where requested email are stored.
+     * @param key the key by which the emails are sorted.
+     * @param ascending true for ascending order; false for descending.
+     * @param after the last email of the previous page; null for the first page.
+     * @param number the number of emails to retrieve.
+     * @return the emails of the page.
+     * @throws SQLException If there was a problem when reading from the database.
+     */
+    List<EmailCustom> findAllInDirectory(String directory, SortKey key, boolean ascending,
+                                         EmailCustom after, int number) throws SQLException;
+    
+    /**
+     * Returns a page of the emails of the given saved search that are not archived,
+     * sorted by the given key. The page starts after the last email of the previous page.
+     * @param search The name of the saved search.
+     * @param key the key by which the emails are sorted.
+     * @param ascending true for ascending order; false for descending.
+     * @param after the last email of the previous page; null for the first page.
+     * @param number the number of emails to retrieve.
+     * @return the emails of the page.
+     * @throws SQLException If there was a problem when reading from the database.
+     */
+    List<EmailCustom> findAllInSearch(String search, SortKey key, boolean ascending,
+                                      EmailCustom after, int number) throws SQLException;
+    
+    
+    /**
+     * Find an email in database with given Id. An archived email is returned in full.
      * @param id The id of the email to find.
      * @return the found email corresponding to the given id.
      * @throws SQLException If there was a problem when reading from the database.
@@ -72,6 +124,23 @@ public interface MailStorageDAO {
      * @throws SQLException If there was a problem when writing to the database.
      */
     int saveEmail(EmailCustom email) throws SQLException;
+    
+    /**
+     * Saves the messages and attachments of a partial email once they are received.
+     * @param email The email received in full, with the id of the partial email.
+     * @return the number of updated rows; 0 if the email is no longer partial.
+     * @throws SQLException If there was a problem when writing to the database.
+     */
+    int saveEmailContent(EmailCustom email) throws SQLException;
+    
+    /**
+     * Returns the partial emails, whose messages and attachments are not received yet,
+     * the most recent first.
+     * @param number the maximum number of emails to retrieve.
+     * @return the partial emails.
+     * @throws SQLException If there was a problem when reading from the database.
+     */
+    List<EmailCustom> findPartialEmails(int number) throws SQLException;
 
     /**
      * Updates the directory in the database for the provided email.
@@ -81,4 +150,36 @@ public interface MailStorageDAO {
      */
     int updateEmailDirectory(EmailCustom email) throws SQLException;
 
+    /**
+     * Marks the email with the given id as read or unread.
+     * @param id The id of the email.
+     * @param seen true if the email was read; false otherwise.
+     * @return the number of updated rows.
+     * @throws SQLException If there was a problem when writing to the database.
+     */
+    int updateEmailSeen(int id, boolean seen) throws SQLException;
+    
+    /**
+     * Moves the messages and attachments of the emails older than the given date
+     * to the archive, leaving a stub for listing.
+     * @param olderThan the date before which emails are archived.
+     * @return the number of archived emails.
+     * @throws SQLException If there was a problem when writing to the database.
+     */
+    int archiveEmails(Date olderThan) throws SQLException;
+    
+    /**
+     * Removes the deleted emails from the database, at most the given number at once.
+     * @param number the maximum number of emails to remove.
+     * @return the number of removed emails.
+     * @throws SQLException If there was a problem when writing to the database.
+     */
+    int purgeDeleted(int number) throws SQLException;
+    
+    /**
+     * Gives back the space of the removed attachments and archives.
+     * @throws SQLException If there was a problem when writing to the database.
+     */
+    void compactStorage() throws SQLException;
+
 }
@@ -1,8 +1,13 @@
 package ashulzhenko.emailapp.interfaces;
 
 import ashulzhenko.emailapp.bean.EmailCustom;
+import ashulzhenko.emailapp.bean.SendResult;
+import ashulzhenko.emailapp.bean.SyncState;
 import ashulzhenko.emailapp.bean.UserConfigBean;
+import java.sql.SQLException;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 /**
  * The interface for MailModule
@@ -27,6 +32,65 @@ public interface Mailer {
     List<EmailCustom> receiveEmail();
     
     
+    /**
+     * Receives the headers of the emails of the folder that arrived since the last
+     * synchronization, without marking them as read on the server.
+     * @param state how far the folder was synchronized; updated once the emails are received.
+     * @return the new partial emails received from the server.
+     */
+    List<EmailCustom> receiveEmail(SyncState state);
+    
+    
+    /**
+     * Receives the headers of the emails of the folder that arrived since the last
+     * synchronization and hands them to the sink in batches while the next ones are
+     * received; receiving waits while the sink is behind.
+     * @param state how far the folder was synchronized; set to the last UID of a batch
+     *              before the sink receives it.
+     * @param sink receives the batches of new partial emails.
+     * @return the number of emails handed to the sink.
+     * @throws SQLException If the sink failed to save a batch.
+     */
+    int receiveEmail(SyncState state, EmailSink sink) throws SQLException;
+    
+    
+    /**
+     * Receives the messages and attachments of an email whose headers only were received.
+     * @param email the partial email, with its location on the server.
+     * @return the same email with its messages and attachments; null if it is no longer on the server.
+     */
+    EmailCustom receiveContent(EmailCustom email);
+    
+    
+    /**
+     * Returns the folders of the server that hold emails, INBOX first.
+     * @return the full names of the folders of the server and their path, with / between the levels.
+     */
+    Map<String, String> listFolders();
+    
+    
+    /**
+     * Starts watching the folder, so that the listener is told as soon as the server has new emails.
+     * @param folder the name of the folder of the server, e.g. INBOX.
+     * @param listener told that the folder may have new emails.
+     * @return true if the server pushes new emails; false if it has to be checked periodically.
+     */
+    boolean startPush(String folder, Runnable listener);
+    
+    
+    /**
+     * Stops watching the folder.
+     * @param folder the name of the folder of the server.
+     */
+    void stopPush(String folder);
+    
+    
+    /**
+     * Closes the mail server sessions that are kept open.
+     */
+    void close();
+    
+    
     /**
      * Using all the provided information, sends the email.
      * @param to the array of addresses to receive the email.
@@ -42,6 +106,39 @@ public interface Mailer {
             String message, String[] attachments, String[] embedAttachments);
     
     
+    /**
+     * Using all the provided information, sends the email as a reply,
+     * so that it belongs to the conversation thread of the original email.
+     * @param to the array of addresses to receive the email.
+     * @param cc the carbon copy array of addresses to receive the email.
+     * @param bcc the blind carbon copy array of addresses to receive the email.
+     * @param subject the subject of the email.
+     * @param message the message of the email.
+     * @param attachments the array of attachments (file paths).
+     * @param embedAttachments the array of attachments to embed (file paths).
+     * @param original the email this email replies to; null if it is not a reply.
+     * @return the created and sent email.
+     */
+    EmailCustom sendEmail(String[] to, String[] cc, String[] bcc, String subject,
+            String message, String[] attachments, String[] embedAttachments, EmailCustom original);
+    
+    
+    /**
+     * Using all the provided information, creates the email without sending it.
+     * @param to the array of addresses to receive the email.
+     * @param cc the carbon copy array of addresses to receive the email.
+     * @param bcc the blind carbon copy array of addresses to receive the email.
+     * @param subject the subject of the email.
+     * @param message the message of the email.
+     * @param attachments the array of attachments (file paths).
+     * @param embedAttachments the array of attachments to embed (file paths).
+     * @param original the email this email replies to; null if it is not a reply.
+     * @return the created email.
+     */
+    EmailCustom createEmail(String[] to, String[] cc, String[] bcc, String subject,
+            String message, String[] attachments, String[] embedAttachments, EmailCustom original);
+    
+    
     /**
      * Sends the email provided.
      * @param email The email to send.
@@ -49,4 +146,13 @@ public interface Mailer {
      */
     EmailCustom sendEmail(EmailCustom email);
     
+    
+    /**
+     * Sends the emails provided over as few connections as possible.
+     * An email that fails does not stop the next ones.
+     * @param emails the emails to send.
+     * @return whether every email was sent, in the same order.
+     */
+    List<SendResult> sendEmails(Collection<EmailCustom> emails);
+    
 }
@@ -0,0 +1,29 @@
+package ashulzhenko.emailapp.interfaces;
+
+import ashulzhenko.emailapp.bean.MergeProgress;
+import java.sql.SQLException;
+
+/**
+ * The interface for MergeStorageModule
+ *
+ * @author Alena Shulzhenko
+ * @version 19/10/2026
+ * @since 1.8
+ */
+public interface MergeStorageDAO {
+    /**
+     * Returns how far the mail merge went.
+     * @param name the name of the mail merge.
+     * @return the progress of the mail merge; an empty progress if it never ran.
+     * @throws SQLException If there was a problem when reading from the database.
+     */
+    MergeProgress findProgress(String name) throws SQLException;
+
+    /**
+     * Saves how far the mail merge went.
+     * @param progress the progress of the mail merge.
+     * @throws SQLException If there was a problem when writing to the database.
+     */
+    void saveProgress(MergeProgress progress) throws SQLException;
+
+}
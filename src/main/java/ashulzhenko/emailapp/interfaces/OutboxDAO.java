@@ -0,0 +1,58 @@
+package ashulzhenko.emailapp.interfaces;
+
+import ashulzhenko.emailapp.bean.OutboxEntry;
+import java.sql.SQLException;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * The interface for OutboxModule
+ *
+ * @author Alena Shulzhenko
+ * @version 19/10/2026
+ * @since 1.8
+ */
+public interface OutboxDAO {
+    /** The directory where the emails wait until they are sent. */
+    String DIRECTORY = "outbox";
+    /** The directory where the emails are moved once they are sent. */
+    String SENT_DIRECTORY = "sent";
+
+    /**
+     * Returns the emails of the outbox that are due to be sent, the oldest first,
+     * and claims them for the given time, so that they are not sent by another
+     * application that shares the database.
+     * @param number the maximum number of emails.
+     * @param lease the time in seconds during which the emails are claimed.
+     * @return the emails that were not tried yet or whose next attempt is due.
+     * @throws SQLException If there was a problem when working with the database.
+     */
+    List<OutboxEntry> claimDueEmails(int number, int lease) throws SQLException;
+
+    /**
+     * Counts a failed attempt to send the email and sets when it is tried again.
+     * @param id the id of the email.
+     * @param nextAttempt when the email is tried again.
+     * @param error why the attempt failed.
+     * @throws SQLException If there was a problem when writing to the database.
+     */
+    void scheduleRetry(int id, Date nextAttempt, String error) throws SQLException;
+
+    /**
+     * Counts a failed attempt to send the email and stops trying to send it.
+     * @param id the id of the email.
+     * @param error why the attempt failed.
+     * @throws SQLException If there was a problem when writing to the database.
+     */
+    void markFailed(int id, String error) throws SQLException;
+
+    /**
+     * Saves the message id given to the sent email, moves it to the sent
+     * directory and removes its delivery state, all at once.
+     * @param id the id of the email.
+     * @param messageId the Message-ID header of the sent email.
+     * @throws SQLException If there was a problem when writing to the database.
+     */
+    void markSent(int id, String messageId) throws SQLException;
+
+}
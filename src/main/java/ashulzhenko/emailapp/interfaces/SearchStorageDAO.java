@@ -0,0 +1,54 @@
+package ashulzhenko.emailapp.interfaces;
+
+import java.sql.SQLException;
+import java.util.Map;
+
+/**
+ * The interface for SearchStorageModule
+ *
+ * @author Alena Shulzhenko
+ * @version 19/10/2026
+ * @since 1.8
+ */
+public interface SearchStorageDAO {
+
+    /**
+     * Saves a search and finds its emails.
+     * @param name The name of the search.
+     * @param query The search terms, e.g. from:alice has:attachment newer:30 is:unread.
+     * @return the number of emails of the search.
+     * @throws SQLException If there was a problem when writing to the database.
+     */
+    int createSearch(String name, String query) throws SQLException;
+
+    /**
+     * Deletes the saved search.
+     * @param name The name of the search.
+     * @return the number of deleted searches.
+     * @throws SQLException If there was a problem when writing to the database.
+     */
+    int deleteSearch(String name) throws SQLException;
+
+    /**
+     * Returns all saved searches.
+     * @return the queries of the searches by their name, ordered by name.
+     * @throws SQLException If there was a problem when reading from the database.
+     */
+    Map<String, String> findSearches() throws SQLException;
+
+    /**
+     * Finds the emails of the saved search again from all emails.
+     * @param name The name of the search.
+     * @return the number of emails of the search; -1 if the search is not found.
+     * @throws SQLException If there was a problem when writing to the database.
+     */
+    int refreshSearch(String name) throws SQLException;
+
+    /**
+     * Finds the emails of every saved search again from all emails.
+     * @return the number of emails of all searches.
+     * @throws SQLException If there was a problem when writing to the database.
+     */
+    int refreshAll() throws SQLException;
+
+}
@@ -0,0 +1,45 @@
+package ashulzhenko.emailapp.interfaces;
+
+import ashulzhenko.emailapp.bean.Snapshot;
+import java.io.File;
+import java.io.IOException;
+import java.sql.SQLException;
+
+/**
+ * The interface for SnapshotModule
+ *
+ * @author Alena Shulzhenko
+ * @version 19/10/2026
+ * @since 1.8
+ */
+public interface SnapshotDAO {
+
+    /**
+     * Writes a snapshot of the mail store into the given directory.
+     * @param directory The directory where the snapshot files are written.
+     * @param previous the snapshot the new one is based on; null for a full snapshot.
+     * @return the written snapshot.
+     * @throws SQLException If there was a problem when reading from the database.
+     * @throws IOException If there was a problem when writing the files.
+     */
+    Snapshot backup(File directory, Snapshot previous) throws SQLException, IOException;
+
+    /**
+     * Reads the description of the snapshot in the given directory.
+     * @param directory The directory of the snapshot files.
+     * @return the snapshot.
+     * @throws IOException If the snapshot cannot be read.
+     */
+    Snapshot readSnapshot(File directory) throws IOException;
+
+    /**
+     * Replaces the content of the mail store with the given snapshot
+     * and the snapshots it is based on.
+     * @param directory The directory of the snapshot files.
+     * @return the number of restored rows.
+     * @throws SQLException If there was a problem when writing to the database.
+     * @throws IOException If the snapshot files cannot be read or are damaged.
+     */
+    long restore(File directory) throws SQLException, IOException;
+
+}
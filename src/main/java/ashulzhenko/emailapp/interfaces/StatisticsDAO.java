@@ -0,0 +1,55 @@
+package ashulzhenko.emailapp.interfaces;
+
+import ashulzhenko.emailapp.bean.EmailStats;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * The interface for StatisticsModule
+ *
+ * @author Alena Shulzhenko
+ * @version 19/10/2026
+ * @since 1.8
+ */
+public interface StatisticsDAO {
+
+    /**
+     * Returns the correspondents with the most emails in the given directory.
+     * @param directory The directory where the emails are stored.
+     * @param number the number of correspondents to retrieve.
+     * @return the statistics of the correspondents for all months, the most emails first.
+     * @throws SQLException If there was a problem when reading from the database.
+     */
+    List<EmailStats> findTopCorrespondents(String directory, int number) throws SQLException;
+
+    /**
+     * Returns the statistics of the correspondent in all directories by month.
+     * @param address The address of the correspondent.
+     * @return the statistics of the correspondent, the oldest month first.
+     * @throws SQLException If there was a problem when reading from the database.
+     */
+    List<EmailStats> findCorrespondentByMonth(String address) throws SQLException;
+
+    /**
+     * Returns the statistics of the given directory by month.
+     * @param directory The directory where the emails are stored.
+     * @return the statistics of the directory, the oldest month first.
+     * @throws SQLException If there was a problem when reading from the database.
+     */
+    List<EmailStats> findFolderByMonth(String directory) throws SQLException;
+
+    /**
+     * Returns the statistics of every directory for all months.
+     * @return the statistics of every directory.
+     * @throws SQLException If there was a problem when reading from the database.
+     */
+    List<EmailStats> findFolders() throws SQLException;
+
+    /**
+     * Computes all statistics again from the saved emails.
+     * @return the number of emails counted.
+     * @throws SQLException If there was a problem when writing to the database.
+     */
+    int rebuild() throws SQLException;
+
+}
@@ -0,0 +1,40 @@
+package ashulzhenko.emailapp.interfaces;
+
+import ashulzhenko.emailapp.bean.EmailCustom;
+import ashulzhenko.emailapp.bean.SyncState;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * The interface for SyncStorageModule
+ *
+ * @author Alena Shulzhenko
+ * @version 19/10/2026
+ * @since 1.8
+ */
+public interface SyncStorageDAO {
+
+    /**
+     * Returns how far the folder of the server was synchronized.
+     * @param folder the name of the folder of the server.
+     * @return the state of the folder; a state without UIDVALIDITY if it was never synchronized.
+     * @throws SQLException If there was a problem when reading from the database.
+     */
+    SyncState findSyncState(String folder) throws SQLException;
+
+    /**
+     * Saves how far the folder of the server was synchronized.
+     * @param state the state of the folder.
+     * @throws SQLException If there was a problem when writing to the database.
+     */
+    void saveSyncState(SyncState state) throws SQLException;
+
+    /**
+     * Returns the emails whose message id is not saved yet as a received email.
+     * @param emails the received emails.
+     * @return the emails that are not saved yet, in the same order.
+     * @throws SQLException If there was a problem when reading from the database.
+     */
+    List<EmailCustom> findNewEmails(List<EmailCustom> emails) throws SQLException;
+
+}
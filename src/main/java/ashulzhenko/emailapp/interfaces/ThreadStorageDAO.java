@@ -0,0 +1,43 @@
+package ashulzhenko.emailapp.interfaces;
+
+import ashulzhenko.emailapp.bean.EmailThread;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * The interface for ThreadStorageModule
+ *
+ * @author Alena Shulzhenko
+ * @version 19/10/2026
+ * @since 1.8
+ */
+public interface ThreadStorageDAO {
+
+    /**
+     * Returns the threads that have emails in the given directory, the most recent first
+     * (from start index with the indicated number of records).
+     * @param directory The directory where the emails of the threads are stored.
+     * @param start the starting index for retrieving threads.
+     * @param number the number of threads to retrieve.
+     * @return the threads with their number of emails and latest date in the directory.
+     * @throws SQLException If there was a problem when reading from the database.
+     */
+    List<EmailThread> findThreads(String directory, int start, int number) throws SQLException;
+
+    /**
+     * Returns the ids of all emails of the thread, the oldest first.
+     * @param thread The id of the thread.
+     * @return the ids of the emails of the thread.
+     * @throws SQLException If there was a problem when reading from the database.
+     */
+    List<Integer> findThreadEmails(int thread) throws SQLException;
+
+    /**
+     * Returns the id of the thread of the email.
+     * @param email The id of the email.
+     * @return the id of the thread; -1 if the email is not found.
+     * @throws SQLException If there was a problem when reading from the database.
+     */
+    int findThreadOf(int email) throws SQLException;
+
+}
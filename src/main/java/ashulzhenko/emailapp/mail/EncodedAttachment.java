@@ -0,0 +1,78 @@
+package ashulzhenko.emailapp.mail;
+
+import java.util.Base64;
+import java.util.Enumeration;
+import javax.activation.DataHandler;
+import javax.mail.Header;
+import javax.mail.MessagingException;
+import javax.mail.internet.MimeBodyPart;
+import javax.mail.internet.PreencodedMimeBodyPart;
+import javax.mail.util.ByteArrayDataSource;
+import jodd.mail.att.ByteArrayAttachment;
+
+/**
+ * EncodedAttachment class is an attachment whose content is encoded in
+ * base64 once, so that the emails that share it, e.g. the emails of a mail
+ * merge, do not encode it again. Every email has its own copy, since an
+ * embedded attachment belongs to the message of one email, but the copies
+ * share the content and its encoding.
+ *
+ * @author Alena Shulzhenko
+ * @version 19/10/2026
+ * @since 1.8
+ */
+class EncodedAttachment extends ByteArrayAttachment {
+    private static final String ENCODING = "base64";
+    private final byte[] encoded;
+
+    /**
+     * Instantiates the attachment and encodes its content.
+     *
+     * @param attachment the attachment to encode.
+     */
+    EncodedAttachment(ByteArrayAttachment attachment) {
+        super(attachment.toByteArray(), attachment.getContentType(), attachment.getName(), 
+              attachment.getContentId());
+        this.encoded = Base64.getMimeEncoder().encode(content);
+    }
+
+    /**
+     * Instantiates a copy that shares the content and its encoding.
+     *
+     * @param shared the attachment to copy.
+     */
+    private EncodedAttachment(EncodedAttachment shared) {
+        super(shared.content, shared.contentType, shared.name, shared.contentId);
+        this.encoded = shared.encoded;
+    }
+
+    /**
+     * Returns a copy of the attachment for another email.
+     *
+     * @return the copy that shares the content and its encoding.
+     */
+    EncodedAttachment copy() {
+        return new EncodedAttachment(this);
+    }
+
+    /**
+     * Returns the part of the email holding the encoded content, with the
+     * headers of the part created by jodd, e.g. the file name and Content-ID.
+     *
+     * @param part the part created by jodd.
+     *
+     * @return the part that is written without encoding the content again.
+     *
+     * @throws MessagingException If the headers cannot be copied.
+     */
+    MimeBodyPart toEncodedPart(MimeBodyPart part) throws MessagingException {
+        MimeBodyPart encodedPart = new PreencodedMimeBodyPart(ENCODING);
+        encodedPart.setDataHandler(new DataHandler(new ByteArrayDataSource(encoded, contentType)));
+        Enumeration<?> headers = part.getAllHeaders();
+        while (headers.hasMoreElements()) {
+            Header header = (Header) headers.nextElement();
+            encodedPart.setHeader(header.getName(), header.getValue());
+        }
+        return encodedPart;
+    }
+}
@@ -0,0 +1,207 @@
+package ashulzhenko.emailapp.mail;
+
+import com.sun.mail.imap.IMAPFolder;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import javax.mail.Folder;
+import javax.mail.MessagingException;
+import jodd.mail.MailException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * ImapIdleWatcher class holds an IMAP IDLE connection to one folder of the
+ * server, so that the server tells when new emails arrive instead of being
+ * asked for them. The listener is then told that the folder changed and
+ * receives the new emails with the UID synchronization, so that the emails
+ * are only received in one place. The folder is read-only for the watcher.
+ * The connection has its own thread, which waits on the socket while nothing
+ * arrives. The IDLE command is renewed before the 30 minutes after which
+ * servers may end it, and the connection is opened again after a failure,
+ * waiting longer after every failure in a row.
+ *
+ * @author Alena Shulzhenko
+ * @version 19/10/2026
+ * @since 1.8
+ */
+class ImapIdleWatcher {
+    //time in minutes after which the IDLE command is renewed
+    private static final long RENEW_INTERVAL = 20;
+    //time in seconds waited before reconnecting, doubled after every failure
+    private static final long RETRY_DELAY = 5;
+    private static final long MAX_RETRY_DELAY = 300;
+
+    private final ImapSessionPool pool;
+    private final String folderName;
+    private final Runnable listener;
+    private final Thread thread;
+    private volatile boolean running;
+    private volatile ImapSessionPool.PooledSession session;
+    private volatile IMAPFolder folder;
+    private ScheduledFuture<?> renewal;
+    private int count;
+    private final Logger log = LoggerFactory.getLogger(getClass().getName());
+
+    /**
+     * Instantiates the watcher.
+     *
+     * @param pool opens the connections to the server.
+     * @param folderName the name of the folder of the server, e.g. INBOX.
+     * @param listener told that the folder may have new emails, on the thread of the watcher.
+     */
+    ImapIdleWatcher(ImapSessionPool pool, String folderName, Runnable listener) {
+        if (folderName == null || folderName.isEmpty() || listener == null)
+            throw new IllegalArgumentException("Invalid folder to watch: " + folderName);
+        this.pool = pool;
+        this.folderName = folderName;
+        this.listener = listener;
+        this.thread = new Thread(this::run, "imap-idle-" + folderName);
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * Connects to the folder and starts waiting for new emails.
+     *
+     * @return true if the watcher started; false if the server does not support IDLE.
+     *
+     * @throws MailException If the server cannot be reached.
+     */
+    boolean start() {
+        try {
+            if (!connect())
+                return false;
+        }
+        catch (MessagingException ex) {
+            disconnect();
+            throw new MailException("Unable to watch folder " + folderName, ex);
+        }
+        running = true;
+        thread.start();
+        return true;
+    }
+
+    /**
+     * Stops waiting for new emails and closes the connection.
+     */
+    void stop() {
+        running = false;
+        //closing the connection ends the IDLE command
+        disconnect();
+        thread.interrupt();
+    }
+
+    /**
+     * Waits for the server to notify about new emails, tells the listener
+     * and starts waiting again, until the watcher is stopped.
+     */
+    private void run() {
+        long delay = RETRY_DELAY;
+        while (running) {
+            try {
+                //stop() may close the connection at any time, so the folder is read once
+                IMAPFolder watched = folder;
+                if (watched == null) {
+                    if (!connect())
+                        throw new MessagingException("Server no longer supports IDLE");
+                    delay = RETRY_DELAY;
+                    //catch up with the emails that arrived while disconnected
+                    notifyListener();
+                    watched = folder;
+                    //stopped while connecting
+                    if (!running || watched == null)
+                        break;
+                }
+                //returns once the server sent a notification or the command was renewed
+                watched.idle(true);
+                //EXPUNGE and flag changes end the command too
+                int previous = count;
+                count = watched.getMessageCount();
+                if (count > previous)
+                    notifyListener();
+            }
+            catch (MessagingException | MailException | IllegalStateException ex) {
+                if (!running)
+                    break;
+                log.warn("IDLE connection to " + folderName + " failed, reconnecting in "
+                         + delay + " s: " + ex.getMessage());
+                disconnect();
+                try {
+                    Thread.sleep(TimeUnit.SECONDS.toMillis(delay));
+                }
+                catch (InterruptedException ie) {
+                    break;
+                }
+                delay = Math.min(delay * 2, MAX_RETRY_DELAY);
+            }
+        }
+        disconnect();
+    }
+
+    /**
+     * Opens a connection to the folder.
+     *
+     * @return true if the connection is open; false if the server does not support IDLE.
+     *
+     * @throws MessagingException If the folder cannot be opened.
+     */
+    private boolean connect() throws MessagingException {
+        ImapSessionPool.PooledSession opened = pool.open();
+        session = opened;
+        if (!opened.hasCapability("IDLE")) {
+            disconnect();
+            return false;
+        }
+        IMAPFolder watched = opened.openFolder(folderName, Folder.READ_ONLY);
+        count = watched.getMessageCount();
+        folder = watched;
+        renewal = ImapSessionPool.KEEPALIVE.scheduleWithFixedDelay(() -> renew(watched),
+                RENEW_INTERVAL, RENEW_INTERVAL, TimeUnit.MINUTES);
+        return true;
+    }
+
+    /**
+     * Tells the listener that the folder may have new emails.
+     */
+    private void notifyListener() {
+        try {
+            listener.run();
+        }
+        catch (RuntimeException ex) {
+            log.error("Unable to tell about new emails of " + folderName, ex);
+        }
+    }
+
+    /**
+     * Ends the current IDLE command with a NOOP, so that the watcher
+     * starts a new one.
+     *
+     * @param watched the folder whose IDLE command is renewed.
+     */
+    private void renew(IMAPFolder watched) {
+        try {
+            watched.doCommand(protocol -> {
+                protocol.simpleCommand("NOOP", null);
+                return null;
+            });
+        }
+        catch (MessagingException | IllegalStateException ex) {
+            //the watcher sees the failure and reconnects
+            log.debug("Unable to renew IDLE on " + folderName + ": " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Closes the connection to the folder.
+     */
+    private synchronized void disconnect() {
+        if (renewal != null) {
+            renewal.cancel(false);
+            renewal = null;
+        }
+        folder = null;
+        if (session != null) {
+            pool.invalidate(session);
+            session = null;
+        }
+    }
+}
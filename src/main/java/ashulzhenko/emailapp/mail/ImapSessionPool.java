@@ -0,0 +1,305 @@
+package ashulzhenko.emailapp.mail;
+
+import ashulzhenko.emailapp.bean.UserConfigBean;
+import com.sun.mail.imap.IMAPFolder;
+import com.sun.mail.imap.IMAPStore;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import javax.mail.Folder;
+import javax.mail.MessagingException;
+import javax.mail.NoSuchProviderException;
+import javax.mail.Session;
+import javax.mail.Store;
+import jodd.mail.ImapSslServer;
+import jodd.mail.MailException;
+import jodd.mail.ReceiveMailSession;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * ImapSessionPool class keeps the IMAP sessions of one account open and
+ * logged in between two checks for new emails, so that a check does not
+ * pay for the TLS handshake and the login every time.
+ * The most recently used session is reused first. Idle sessions are kept
+ * alive with a NOOP every minute, and are closed once they were not used
+ * for the maximum idle time or once the server dropped them.
+ *
+ * @author Alena Shulzhenko
+ * @version 19/10/2026
+ * @since 1.8
+ */
+class ImapSessionPool {
+    //time in seconds between two NOOPs sent on the idle sessions
+    private static final long KEEPALIVE_INTERVAL = 60;
+    static final ScheduledExecutorService KEEPALIVE =
+            Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "imap-keepalive");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    private final Supplier<PooledSession> factory;
+    private final Deque<PooledSession> idle = new ArrayDeque<>();
+    private final int maxIdleSessions;
+    private final long maxIdleTime;
+    private final ScheduledFuture<?> keepalive;
+    private boolean closed;
+    private static final Logger log = LoggerFactory.getLogger(ImapSessionPool.class.getName());
+
+    /**
+     * Instantiates the pool of the sessions of the user's IMAP server.
+     * The server information is read every time a session is opened.
+     *
+     * @param userInfo user's information needed to connect to the server.
+     * @param maxIdleSessions the maximum number of sessions kept open.
+     */
+    ImapSessionPool(UserConfigBean userInfo, int maxIdleSessions) {
+        this(() -> createSession(userInfo), maxIdleSessions,
+             TimeUnit.SECONDS.toMillis(userInfo.getImapIdleTime()));
+    }
+
+    /**
+     * Instantiates the pool.
+     *
+     * @param factory creates a new session that is not open yet.
+     * @param maxIdleSessions the maximum number of sessions kept open.
+     * @param maxIdleTime the time in milliseconds after which an unused session
+     *                    is closed; 0 if sessions are never kept.
+     */
+    ImapSessionPool(Supplier<PooledSession> factory, int maxIdleSessions, long maxIdleTime) {
+        if (maxIdleSessions < 1 || maxIdleTime < 0)
+            throw new IllegalArgumentException("Invalid IMAP session pool: " + maxIdleSessions
+                                               + " sessions, " + maxIdleTime + " ms");
+        this.factory = factory;
+        this.maxIdleSessions = maxIdleSessions;
+        this.maxIdleTime = maxIdleTime;
+        long interval = Math.max(1, Math.min(TimeUnit.SECONDS.toMillis(KEEPALIVE_INTERVAL), maxIdleTime));
+        this.keepalive = KEEPALIVE.scheduleWithFixedDelay(this::keepAlive, interval, interval,
+                                                          TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns an open session: the most recently used idle session,
+     * or a new one if there is none.
+     *
+     * @return an open session.
+     */
+    PooledSession borrow() {
+        long now = System.currentTimeMillis();
+        while (true) {
+            PooledSession session;
+            synchronized (this) {
+                session = idle.pollFirst();
+            }
+            if (session == null)
+                return open();
+            if (now - session.lastUsed <= maxIdleTime)
+                return session;
+            closeQuietly(session);
+        }
+    }
+
+    /**
+     * Opens a new session, e.g. to try again once a borrowed session failed.
+     *
+     * @return an open session.
+     */
+    PooledSession open() {
+        PooledSession session = factory.get();
+        session.open();
+        return session;
+    }
+
+    /**
+     * Gives back a session that worked, so that it is used again.
+     *
+     * @param session the borrowed session.
+     */
+    void release(PooledSession session) {
+        session.lastUsed = System.currentTimeMillis();
+        synchronized (this) {
+            if (!closed && maxIdleTime > 0 && idle.size() < maxIdleSessions) {
+                idle.offerFirst(session);
+                return;
+            }
+        }
+        closeQuietly(session);
+    }
+
+    /**
+     * Closes a session that failed, so that it is not used again.
+     *
+     * @param session the borrowed session.
+     */
+    void invalidate(PooledSession session) {
+        closeQuietly(session);
+    }
+
+    /**
+     * Returns the number of open sessions that are not used.
+     *
+     * @return the number of idle sessions.
+     */
+    synchronized int idleCount() {
+        return idle.size();
+    }
+
+    /**
+     * Sends a NOOP on every idle session, so that the server does not drop it,
+     * and closes the sessions that were idle for too long or were dropped.
+     * The sessions are not available while they are checked.
+     */
+    void keepAlive() {
+        List<PooledSession> checked;
+        synchronized (this) {
+            checked = new ArrayList<>(idle);
+            idle.clear();
+        }
+        long now = System.currentTimeMillis();
+        List<PooledSession> alive = new ArrayList<>(checked.size());
+        for (PooledSession session : checked) {
+            if (now - session.lastUsed <= maxIdleTime && session.isAlive())
+                alive.add(session);
+            else
+                closeQuietly(session);
+        }
+        synchronized (this) {
+            //sessions released meanwhile were used more recently
+            for (PooledSession session : alive) {
+                if (!closed && idle.size() < maxIdleSessions)
+                    idle.offerLast(session);
+                else
+                    closeQuietly(session);
+            }
+        }
+    }
+
+    /**
+     * Closes all idle sessions and stops keeping them alive.
+     * Sessions borrowed at that time are closed once they are released.
+     */
+    void close() {
+        keepalive.cancel(false);
+        List<PooledSession> open;
+        synchronized (this) {
+            closed = true;
+            open = new ArrayList<>(idle);
+            idle.clear();
+        }
+        open.forEach(ImapSessionPool::closeQuietly);
+    }
+
+    /**
+     * Creates a session of the user's IMAP server that is not open yet.
+     *
+     * @param userInfo user's information needed to connect to the server.
+     *
+     * @return the created session.
+     */
+    private static PooledSession createSession(UserConfigBean userInfo) {
+        //the store of jodd's session is only reachable from a subclass
+        ImapSslServer server = new ImapSslServer(userInfo.getImapUrl(), userInfo.getImapPort(),
+                                    userInfo.getFromEmail(), userInfo.getEmailPassword()) {
+            @Override
+            public ReceiveMailSession createSession() {
+                Session session = Session.getInstance(sessionProperties, authenticator);
+                try {
+                    return new PooledSession(session, getStore(session));
+                }
+                catch (NoSuchProviderException ex) {
+                    throw new MailException("Failed to create IMAP session", ex);
+                }
+            }
+        };
+        return (PooledSession) server.createSession();
+    }
+
+    /**
+     * Closes the session, logging the error if the connection is already broken.
+     *
+     * @param session the session to close.
+     */
+    private static void closeQuietly(PooledSession session) {
+        try {
+            session.close();
+        }
+        catch (MailException | IllegalStateException ex) {
+            log.debug("Unable to close IMAP session: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * An IMAP session that remembers when it was used last.
+     */
+    static class PooledSession extends ReceiveMailSession {
+        private volatile long lastUsed = System.currentTimeMillis();
+
+        /**
+         * Instantiates the session.
+         *
+         * @param session the mail session.
+         * @param store the store of the server.
+         */
+        PooledSession(Session session, Store store) {
+            super(session, store);
+        }
+
+        /**
+         * Verifies whether the server still holds the connection.
+         * The IMAP store sends a NOOP to find it out.
+         *
+         * @return true if the connection is alive; false otherwise.
+         */
+        boolean isAlive() {
+            return store.isConnected();
+        }
+
+        /**
+         * Verifies whether the server supports the IMAP extension.
+         *
+         * @param capability the name of the extension, e.g. IDLE.
+         *
+         * @return true if the server supports it; false otherwise.
+         *
+         * @throws MessagingException If the server cannot be reached.
+         */
+        boolean hasCapability(String capability) throws MessagingException {
+            return store instanceof IMAPStore && ((IMAPStore) store).hasCapability(capability);
+        }
+
+        /**
+         * Returns all folders of the server, at every level.
+         *
+         * @return the folders of the server.
+         *
+         * @throws MessagingException If the folders cannot be listed.
+         */
+        Folder[] listFolders() throws MessagingException {
+            return store.getDefaultFolder().list("*");
+        }
+
+        /**
+         * Opens the folder of the server, independently of the folder
+         * used by receiveEmail().
+         *
+         * @param name the name of the folder, e.g. INBOX.
+         * @param mode Folder.READ_ONLY or Folder.READ_WRITE.
+         *
+         * @return the open folder.
+         *
+         * @throws MessagingException If the folder cannot be opened.
+         */
+        IMAPFolder openFolder(String name, int mode) throws MessagingException {
+            IMAPFolder opened = (IMAPFolder) store.getFolder(name);
+            opened.open(mode);
+            return opened;
+        }
+    }
+}
@@ -1,39 +1,90 @@
 package ashulzhenko.emailapp.mail;
 
+import ashulzhenko.emailapp.interfaces.EmailSink;
 import ashulzhenko.emailapp.interfaces.Mailer;
 import ashulzhenko.emailapp.bean.EmailCustom;
+import ashulzhenko.emailapp.bean.SendResult;
+import ashulzhenko.emailapp.bean.SyncState;
 import ashulzhenko.emailapp.bean.UserConfigBean;
+import com.sun.mail.imap.IMAPFolder;
+import com.sun.mail.imap.IMAPMessage;
 import java.io.File;
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+import javax.mail.Address;
+import javax.mail.FetchProfile;
 import javax.mail.Flags;
+import javax.mail.Folder;
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.UIDFolder;
+import javax.mail.search.HeaderTerm;
 import jodd.mail.Email;
 import jodd.mail.EmailAddress;
 import jodd.mail.EmailAttachment;
 import jodd.mail.EmailFilter;
-import jodd.mail.ImapSslServer;
-import jodd.mail.ReceiveMailSession;
+import jodd.mail.MailAddress;
+import jodd.mail.MailException;
 import jodd.mail.ReceivedEmail;
-import jodd.mail.SendMailSession;
-import jodd.mail.SmtpServer;
-import jodd.mail.SmtpSslServer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * MailModule class is used to send and receive emails.
+ * The IMAP sessions are kept open between two checks for new emails
+ * (see ImapSessionPool), and watched folders have their own IDLE connection
+ * through which the server tells about new emails (see ImapIdleWatcher);
+ * close() closes them.
+ * An instance keeps no state of the emails it sends or receives, so one
+ * instance can be used by several threads at the same time, e.g. to send
+ * emails in parallel, each over its own SMTP session.
  *
  * @author Alena Shulzhenko
  * @version 18/10/2016
  * @since 1.8
  */
 public class MailModule implements Mailer {
+    
+    /** The default maximum number of mail server sessions open at the same time. */
+    public static final int DEFAULT_MAX_SESSIONS = 4;
+    //emails received with one FETCH, and batches kept while the sink is behind
+    private static final int RECEIVE_BATCH = 100;
+    private static final int BUFFERED_BATCHES = 4;
+    //hand the received emails to the sinks while the next ones are received
+    private static final ExecutorService WRITERS = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "mail-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    //SMTP reply code of a server that closes the connection
+    private static final int SERVICE_CLOSING = 421;
+    /** The separator of the levels of the folder paths returned by listFolders(). */
+    public static final String FOLDER_SEPARATOR = "/";
+    //the folder that every IMAP server has, whatever the case of its name
+    private static final String INBOX = "INBOX";
+    //folders that cannot be opened, and special-use folders that hold copies of other emails
+    private static final String[] SKIPPED_ATTRIBUTES = {"\\Noselect", "\\NonExistent", 
+                                                        "\\All", "\\Sent", "\\Drafts"};
 
-    private String[] embedCopy;
-    private int before;
     private final Logger log = LoggerFactory.getLogger(getClass().getName());
-    private UserConfigBean userInfo;
+    private final UserConfigBean userInfo;
+    private final Semaphore sessions;
+    private final ImapSessionPool imapPool;
+    private final SmtpSessionPool smtpPool;
+    private final Map<String, ImapIdleWatcher> watchers = new ConcurrentHashMap<>();
 
     /**
      * Instantiates the object with all necessary information to send and
@@ -42,8 +93,39 @@ public class MailModule implements Mailer {
      * @param userInfo user's information needed to send the email.
      */
     public MailModule(UserConfigBean userInfo) {
+        this(userInfo, DEFAULT_MAX_SESSIONS);
+    }
+    
+    /**
+     * Instantiates the object with all necessary information to send and
+     * receive emails, and limits the number of IMAP and SMTP sessions
+     * that can be open at the same time for this account.
+     *
+     * @param userInfo user's information needed to send the email.
+     * @param maxSessions the maximum number of open sessions.
+     */
+    public MailModule(UserConfigBean userInfo, int maxSessions) {
+        this(userInfo, maxSessions, () -> SmtpSessionPool.createSession(userInfo));
+    }
+
+    /**
+     * Instantiates the object with the SMTP sessions created by the factory,
+     * e.g. of a local server.
+     *
+     * @param userInfo user's information needed to send the email.
+     * @param maxSessions the maximum number of open sessions.
+     * @param smtpSessions creates a new SMTP session that is not open yet.
+     */
+    MailModule(UserConfigBean userInfo, int maxSessions, 
+               Supplier<SmtpSessionPool.PooledSession> smtpSessions) {
         validateUserInfo(userInfo);
+        if (maxSessions < 1) {
+            throw new IllegalArgumentException("Invalid maximum number of sessions: " + maxSessions);
+        }
         this.userInfo = userInfo;
+        this.sessions = new Semaphore(maxSessions, true);
+        this.imapPool = new ImapSessionPool(userInfo, maxSessions);
+        this.smtpPool = new SmtpSessionPool(smtpSessions, maxSessions);
     }
 
     /**
@@ -59,26 +141,18 @@ public class MailModule implements Mailer {
     
     /**
      * Using the provided information, checks whether there are new emails on the
-     * server.
+     * server. The unread emails of the inbox are received and marked as read
+     * on the server; receiveEmail(SyncState) does not change the server.
      *
      * @return Returns the list of new emails received from the server.
      */
     @Override
     public List<EmailCustom> receiveEmail() {
         validateUserInfo(userInfo);
-        //create an IMAP server object
-        ImapSslServer imapSslServer = new ImapSslServer(userInfo.getImapUrl(),
-                userInfo.getImapPort(), userInfo.getFromEmail(), userInfo.getEmailPassword());
-        
-        //imapSslServer.setProperty("mail.debug", "true");
-        ReceiveMailSession session = imapSslServer.createSession();
-        session.open();
         
         //messages that are delivered are then marked as read on the server
-        ReceivedEmail[] rcvEmails = session.receiveEmailAndMarkSeen
-                            (EmailFilter.filter().flag(Flags.Flag.SEEN, false));
-        
-        session.close();
+        ReceivedEmail[] rcvEmails = withSession(session -> session.receiveEmailAndMarkSeen
+                                    (EmailFilter.filter().flag(Flags.Flag.SEEN, false)));
         
         List<EmailCustom> emails = new ArrayList<>(0);
         
@@ -90,11 +164,494 @@ public class MailModule implements Mailer {
         return emails;
     }
 
+    /**
+     * Receives the emails of the folder that arrived since the last
+     * synchronization: only the emails whose UID is above the highest UID
+     * of the state are asked for. The whole folder is received only if its
+     * UIDVALIDITY changed, i.e. its UIDs were given again.
+     * The folder is opened read-only, so the emails are not marked as read
+     * on the server. The state is updated once the emails are received.
+     * All new emails are kept in memory; receiveEmail(SyncState, EmailSink)
+     * saves them as they are received instead.
+     * Only the envelopes and the structure of the emails are received, so that
+     * a large folder is listed quickly: the emails are partial, and their
+     * messages and attachments are received later with receiveContent().
+     *
+     * @param state how far the folder was synchronized.
+     *
+     * @return the new partial emails received from the server.
+     */
+    @Override
+    public List<EmailCustom> receiveEmail(SyncState state) {
+        List<EmailCustom> emails = new ArrayList<>();
+        try {
+            receiveEmail(state, emails::addAll);
+        }
+        catch (SQLException ex) {
+            //not thrown by the list
+            throw new IllegalStateException(ex);
+        }
+        return emails;
+    }
+
+    /**
+     * Receives the emails of the folder that arrived since the last
+     * synchronization, as receiveEmail(SyncState) does, and hands them
+     * to the sink in batches while the next ones are received. Only a few
+     * batches wait for the sink: receiving waits once they are all waiting,
+     * so that a large folder does not fill the memory when saving is slower.
+     * The state is set to the last UID of a batch before the sink receives
+     * it, so that the sink can save it together with the emails; if receiving
+     * fails, the batches received before are handed to the sink first.
+     *
+     * @param state how far the folder was synchronized.
+     * @param sink receives the batches of new partial emails on another thread;
+     *             a batch may be empty.
+     *
+     * @return the number of emails handed to the sink.
+     *
+     * @throws SQLException If the sink failed to save a batch; the next
+     *                      batches are not received.
+     */
+    @Override
+    public int receiveEmail(SyncState state, EmailSink sink) throws SQLException {
+        if (state == null || sink == null) {
+            throw new IllegalArgumentException("Synchronization state or sink value is null.");
+        }
+        validateUserInfo(userInfo);
+        try {
+            return withSession(session -> receiveSince(session, state, sink));
+        }
+        catch (SinkException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    /**
+     * Returns the folders of the server that hold emails, INBOX first, with
+     * their path: the names of their levels separated by FOLDER_SEPARATOR,
+     * whatever separator the server uses. The folders that only hold copies
+     * of other emails are left out: the All Mail folder of Gmail, the sent
+     * emails, which the application saves itself, and the drafts.
+     *
+     * @return the full names of the folders of the server and their path.
+     */
+    @Override
+    public Map<String, String> listFolders() {
+        validateUserInfo(userInfo);
+        return withSession(this::listFolders);
+    }
+
+    /**
+     * Receives the messages and attachments of a partial email. Only the
+     * parts of the message are asked for, every part with its own
+     * BODY.PEEK[section], so the email is not marked as read on the server.
+     * If the UIDVALIDITY of the folder changed, the email is found by its
+     * message id instead of its UID.
+     *
+     * @param email the partial email, with its location on the server.
+     *
+     * @return the same email with its messages and attachments;
+     *         null if the email is no longer on the server.
+     */
+    @Override
+    public EmailCustom receiveContent(EmailCustom email) {
+        if (email == null || email.getServerFolder() == null) {
+            throw new IllegalArgumentException("Email has no location on the server.");
+        }
+        validateUserInfo(userInfo);
+        return withSession(session -> receiveContent(session, email));
+    }
+
+    /**
+     * Starts watching the folder, through an IMAP IDLE connection kept open
+     * for it, so that the listener is told as soon as the server has new
+     * emails; they are then received with receiveEmail(SyncState).
+     * The connection is not counted in the maximum number of open sessions.
+     * The previous watcher of the folder, if any, is stopped.
+     *
+     * @param folder the name of the folder of the server, e.g. INBOX.
+     * @param listener told that the folder may have new emails; it is called
+     *                 on the thread of the connection.
+     *
+     * @return true if the server pushes new emails; false if it does not
+     *         support IDLE and has to be checked periodically.
+     */
+    @Override
+    public boolean startPush(String folder, Runnable listener) {
+        validateUserInfo(userInfo);
+        stopPush(folder);
+        ImapIdleWatcher watcher = new ImapIdleWatcher(imapPool, folder, listener);
+        if (!watcher.start()) {
+            return false;
+        }
+        watchers.put(folder, watcher);
+        return true;
+    }
+
+    /**
+     * Stops watching the folder.
+     *
+     * @param folder the name of the folder of the server.
+     */
+    @Override
+    public void stopPush(String folder) {
+        ImapIdleWatcher watcher = watchers.remove(folder);
+        if (watcher != null) {
+            watcher.stop();
+        }
+    }
+
+    /**
+     * Closes the IDLE connections and the open IMAP and SMTP sessions of this account.
+     */
+    @Override
+    public void close() {
+        for (String folder : watchers.keySet()) {
+            stopPush(folder);
+        }
+        imapPool.close();
+        smtpPool.close();
+    }
+    
+    /**
+     * Runs the action with a pooled session, counted in the maximum number
+     * of open sessions of the account and of the server. If the session fails, e.g. because the server dropped it,
+     * the session is closed and the action is run once more with a new session.
+     *
+     * @param action the action to run with an open session.
+     *
+     * @return the result of the action.
+     */
+    private <T> T withSession(Function<ImapSessionPool.PooledSession, T> action) {
+        sessions.acquireUninterruptibly();
+        ServerBudget budget = ServerBudget.forServer(userInfo.getImapUrl());
+        try {
+            if (budget != null) {
+                budget.acquire();
+            }
+        }
+        catch (MailException ex) {
+            sessions.release();
+            throw ex;
+        }
+        try {
+            try {
+                return applyOnce(action, imapPool.borrow());
+            }
+            catch (MailException | IllegalStateException ex) {
+                log.warn("IMAP session of " + userInfo.getFromEmail() + " failed, reconnecting: " 
+                         + ex.getMessage());
+                return applyOnce(action, imapPool.open());
+            }
+        }
+        finally {
+            if (budget != null) {
+                budget.release();
+            }
+            sessions.release();
+        }
+    }
+    
+    /**
+     * Runs the action with the session, and returns the session to the pool
+     * only if the action succeeded. The session is closed if the action failed
+     * in any way, since it may be left in the middle of a command.
+     *
+     * @param action the action to run with an open session.
+     * @param session the open session.
+     *
+     * @return the result of the action.
+     */
+    private <T> T applyOnce(Function<ImapSessionPool.PooledSession, T> action,
+                            ImapSessionPool.PooledSession session) {
+        T result;
+        boolean succeeded = false;
+        try {
+            result = action.apply(session);
+            succeeded = true;
+        }
+        finally {
+            if (!succeeded) {
+                imapPool.invalidate(session);
+            }
+        }
+        imapPool.release(session);
+        return result;
+    }
+
+    /**
+     * Receives the headers of the emails of the folder whose UID is above
+     * the highest UID of the state, or of all emails of the folder if its
+     * UIDVALIDITY changed, and hands them to the sink batch by batch.
+     * If receiving fails, the batches received before are saved first.
+     *
+     * @param session the open session.
+     * @param state how far the folder was synchronized.
+     * @param sink receives the batches of emails.
+     *
+     * @return the number of emails handed to the sink.
+     */
+    private int receiveSince(ImapSessionPool.PooledSession session, SyncState state, EmailSink sink) {
+        IMAPFolder folder = null;
+        ReceivePipeline pipeline = null;
+        try {
+            //read-only, so that reading the emails does not mark them as read
+            folder = session.openFolder(state.getFolder(), Folder.READ_ONLY);
+            long validity = folder.getUIDValidity();
+            boolean resync = validity != state.getUidValidity();
+            //the messages are not read yet
+            Message[] messages = resync ? folder.getMessages() 
+                    : folder.getMessagesByUID(state.getLastUid() + 1, UIDFolder.LASTUID);
+            FetchProfile profile = new FetchProfile();
+            profile.add(UIDFolder.FetchProfileItem.UID);
+            profile.add(FetchProfile.Item.ENVELOPE);
+            profile.add(FetchProfile.Item.FLAGS);
+            profile.add(FetchProfile.Item.CONTENT_INFO);
+            profile.add(FetchProfile.Item.SIZE);
+            profile.add(EmailCustom.MESSAGE_ID);
+            profile.add(EmailCustom.IN_REPLY_TO);
+            profile.add(EmailCustom.REFERENCES);
+
+            pipeline = new ReceivePipeline(state, validity, resync, sink, BUFFERED_BATCHES, WRITERS);
+            long last = resync ? 0 : state.getLastUid();
+            //an empty folder still has its UIDVALIDITY saved
+            if (messages.length == 0) {
+                pipeline.send(Collections.emptyList(), last);
+            }
+            for (int i = 0; i < messages.length; i += RECEIVE_BATCH) {
+                Message[] batch = Arrays.copyOfRange(messages, i, Math.min(i + RECEIVE_BATCH, messages.length));
+                //the headers and the structure of the batch in one FETCH, without the bodies
+                folder.fetch(batch, profile);
+                List<EmailCustom> emails = new ArrayList<>(batch.length);
+                for (Message message : batch) {
+                    long uid = folder.getUID(message);
+                    //n:* always contains the last message, even if it is older
+                    if (!resync && uid <= state.getLastUid()) {
+                        continue;
+                    }
+                    emails.add(createPartial(message, state.getFolder(), validity, uid));
+                    last = Math.max(last, uid);
+                }
+                //waits while the sink is behind
+                pipeline.send(emails, last);
+            }
+            return pipeline.finish();
+        }
+        catch (MessagingException ex) {
+            saveReceived(pipeline);
+            throw new MailException("Unable to synchronize folder " + state.getFolder(), ex);
+        }
+        catch (SQLException ex) {
+            throw new SinkException(ex);
+        }
+        finally {
+            closeQuietly(folder);
+        }
+    }
+
+    /**
+     * Waits until the sink saved the batches received before a failure,
+     * so that the state of the folder is not changed once the failure is thrown.
+     *
+     * @param pipeline the pipeline to the sink; null if it was not started.
+     */
+    private void saveReceived(ReceivePipeline pipeline) {
+        if (pipeline == null) {
+            return;
+        }
+        try {
+            pipeline.finish();
+        }
+        catch (SQLException ex) {
+            throw new SinkException(ex);
+        }
+    }
+
+    /**
+     * Returns the folders of the server that hold emails, INBOX first.
+     *
+     * @param session the open session.
+     *
+     * @return the full names of the folders of the server and their path.
+     */
+    private Map<String, String> listFolders(ImapSessionPool.PooledSession session) {
+        try {
+            Map<String, String> folders = new LinkedHashMap<>();
+            folders.put(INBOX, INBOX);
+            for (Folder folder : session.listFolders()) {
+                if ((folder.getType() & Folder.HOLDS_MESSAGES) == 0 || isSkipped(folder)
+                        || folder.getFullName().equalsIgnoreCase(INBOX)) {
+                    continue;
+                }
+                StringBuilder path = new StringBuilder();
+                String separator = Pattern.quote(String.valueOf(folder.getSeparator()));
+                for (String part : folder.getFullName().split(separator)) {
+                    //a level named a/b on a server that separates levels with a dot
+                    part = part.replace(FOLDER_SEPARATOR, "-").trim();
+                    if (!part.isEmpty()) {
+                        path.append(path.length() == 0 ? "" : FOLDER_SEPARATOR).append(part);
+                    }
+                }
+                if (path.length() != 0) {
+                    folders.put(folder.getFullName(), path.toString());
+                }
+            }
+            return folders;
+        }
+        catch (MessagingException ex) {
+            throw new MailException("Unable to list the folders of " + userInfo.getImapUrl(), ex);
+        }
+    }
+
+    /**
+     * Verifies whether the folder cannot be opened or only holds copies of other emails.
+     *
+     * @param folder the folder of the server.
+     *
+     * @return true if the folder is not synchronized; false otherwise.
+     *
+     * @throws MessagingException If the attributes of the folder cannot be read.
+     */
+    private boolean isSkipped(Folder folder) throws MessagingException {
+        if (!(folder instanceof IMAPFolder)) {
+            return false;
+        }
+        for (String attribute : ((IMAPFolder) folder).getAttributes()) {
+            for (String skipped : SKIPPED_ATTRIBUTES) {
+                if (skipped.equalsIgnoreCase(attribute)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Receives the messages and attachments of a partial email.
+     *
+     * @param session the open session.
+     * @param email the partial email.
+     *
+     * @return the same email with its messages and attachments;
+     *         null if the email is no longer on the server.
+     */
+    private EmailCustom receiveContent(ImapSessionPool.PooledSession session, EmailCustom email) {
+        IMAPFolder folder = null;
+        try {
+            folder = session.openFolder(email.getServerFolder(), Folder.READ_ONLY);
+            Message message = null;
+            if (folder.getUIDValidity() == email.getUidValidity()) {
+                message = folder.getMessageByUID(email.getUid());
+            }
+            else if (email.getMessageId() != null) {
+                //the UIDs were given again
+                Message[] found = folder.search(new HeaderTerm(EmailCustom.MESSAGE_ID, email.getMessageId()));
+                message = found.length == 0 ? null : found[0];
+            }
+            if (message == null) {
+                return null;
+            }
+            //the structure is known, so only the parts are received
+            ((IMAPMessage) message).setPeek(true);
+            email.setContent(new EmailCustom(new ReceivedEmail(message)));
+            return email;
+        }
+        catch (MessagingException ex) {
+            throw new MailException("Unable to receive email " + email.getUid() 
+                                    + " of folder " + email.getServerFolder(), ex);
+        }
+        finally {
+            closeQuietly(folder);
+        }
+    }
+
+    /**
+     * Creates a partial email from the headers of the message, 
+     * without its messages and attachments.
+     *
+     * @param message the message whose headers were fetched.
+     * @param folder the name of the folder of the server.
+     * @param validity the UIDVALIDITY of the folder.
+     * @param uid the UID of the message.
+     *
+     * @return the partial email.
+     *
+     * @throws MessagingException If the headers cannot be read.
+     */
+    private EmailCustom createPartial(Message message, String folder, long validity, long uid) 
+            throws MessagingException {
+        EmailCustom email = new EmailCustom();
+        email.setDirectory("inbox");
+        Address[] from = message.getFrom();
+        if (from != null && from.length != 0) {
+            email.setFrom(new MailAddress(from[0]));
+        }
+        email.setTo(toMailAddresses(message.getRecipients(Message.RecipientType.TO)));
+        email.setCc(toMailAddresses(message.getRecipients(Message.RecipientType.CC)));
+        email.setReplyTo(toMailAddresses(message.getReplyTo()));
+        email.setSubject(message.getSubject());
+        email.setSentDate(message.getSentDate());
+        email.setReceivedDate(message.getReceivedDate());
+        email.setFlags(message.getFlags());
+        email.setMessageNumber(message.getMessageNumber());
+        email.setMessageId(findHeader(message, EmailCustom.MESSAGE_ID));
+        email.setInReplyTo(findHeader(message, EmailCustom.IN_REPLY_TO));
+        email.setReferences(findHeader(message, EmailCustom.REFERENCES));
+        email.setServerSize(Math.max(message.getSize(), 0));
+        email.setServerLocation(folder, validity, uid);
+        email.setPartial(true);
+        return email;
+    }
+
+    /**
+     * Returns the first value of the header of the message.
+     *
+     * @param message the message.
+     * @param name the name of the header; the case does not matter.
+     *
+     * @return the value of the header; null if the message does not have it.
+     *
+     * @throws MessagingException If the header cannot be read.
+     */
+    private String findHeader(Message message, String name) throws MessagingException {
+        String[] values = message.getHeader(name);
+        return values == null || values.length == 0 ? null : values[0];
+    }
+
+    /**
+     * Converts the addresses of a message.
+     *
+     * @param addresses the addresses; may be null.
+     *
+     * @return the converted addresses; an empty array if there are none.
+     */
+    private MailAddress[] toMailAddresses(Address[] addresses) {
+        return addresses == null ? MailAddress.EMPTY_ARRAY : MailAddress.createFrom(addresses);
+    }
+
+    /**
+     * Closes the folder if it is open, without expunging deleted messages.
+     *
+     * @param folder the folder to close; may be null.
+     */
+    private void closeQuietly(Folder folder) {
+        try {
+            if (folder != null && folder.isOpen()) {
+                folder.close(false);
+            }
+        }
+        catch (MessagingException ex) {
+            log.debug("Unable to close folder: " + ex.getMessage());
+        }
+    }
+
     /**
      * Sends the email provided.
-     * Jodd's session object removes embedded attachments from the email object.
-     * Since file paths are no longer stored, the received EmailCustom object will only
-     * contain usual attachments.
+     * Jodd's session object builds the message from a copy of the attachments,
+     * so the returned email keeps both embedded and usual attachments.
+     * Nothing of the email is kept by this object, so that several threads
+     * can send emails through it at the same time.
      *
      * @param email The email to send.
      * 
@@ -106,29 +663,134 @@ public class MailModule implements Mailer {
             throw new IllegalArgumentException("Given email is null.");
         }
 
-        validateUserInfo(userInfo);
+        SendResult result = sendEmails(Collections.singletonList(email)).get(0);
+        if (!result.isSent()) {
+            throw result.getError();
+        }
+        return email;
+    }
 
-        //create an SMTP server object
-        SmtpServer<SmtpSslServer> smtpServer = SmtpSslServer
-                .create(userInfo.getSmtpUrl(), userInfo.getSmtpPort())
-                .authenticateWith(userInfo.getFromEmail(), userInfo.getEmailPassword());
+    /**
+     * Sends the emails provided over as few connections as possible:
+     * the session of the server is opened once and reset with RSET between
+     * two emails. If the server closes the connection, e.g. because too many
+     * emails were sent over it, a new one is opened and the email is sent
+     * once more. An email that fails does not stop the next ones, unless
+     * the server cannot be reached. The emails are spread out to stay below
+     * the sending rate of the server, if it has one.
+     * As with sendEmail(EmailCustom), the sent emails keep their attachments.
+     *
+     * @param emails the emails to send.
+     *
+     * @return whether every email was sent, in the same order;
+     *         the sent emails have their message id.
+     */
+    @Override
+    public List<SendResult> sendEmails(Collection<EmailCustom> emails) {
+        if (emails == null || emails.contains(null)) {
+            throw new IllegalArgumentException("Given emails value is null.");
+        }
+        validateUserInfo(userInfo);
 
-        //display Java Mail debug conversation with the server
-        //smtpServer.debug(true);
-        
-        SendMailSession session = smtpServer.createSession();
+        List<SendResult> results = new ArrayList<>(emails.size());
+        SendRate rate = SendRate.forServer(userInfo.getSmtpUrl());
+        sessions.acquireUninterruptibly();
+        SmtpSessionPool.PooledSession session = null;
+        //once the server cannot be reached, the next emails are not tried
+        MailException unreachable = null;
+        try {
+            for (EmailCustom email : emails) {
+                if (unreachable != null) {
+                    results.add(new SendResult(email, unreachable));
+                    continue;
+                }
+                try {
+                    if (rate != null) {
+                        rate.acquire();
+                    }
+                    if (session == null) {
+                        session = smtpPool.borrow();
+                    }
+                }
+                catch (MailException ex) {
+                    unreachable = ex;
+                    results.add(new SendResult(email, ex));
+                    continue;
+                }
+                SendResult result = trySend(session, email);
+                if (result.getError() instanceof MailException && isConnectionLost(session)) {
+                    smtpPool.invalidate(session);
+                    session = null;
+                    log.info("SMTP session of " + userInfo.getFromEmail() 
+                             + " closed by the server, reconnecting: " + result.getError().getMessage());
+                    try {
+                        session = smtpPool.open();
+                        result = trySend(session, email);
+                    }
+                    catch (MailException ex) {
+                        unreachable = ex;
+                        result = new SendResult(email, ex);
+                    }
+                }
+                if (!result.isSent()) {
+                    log.warn("Unable to send email " + email.getSubject() + ": " 
+                             + result.getError().getMessage());
+                }
+                results.add(result);
+                if (session != null && session.isExhausted()) {
+                    //the next email is sent over a new connection
+                    smtpPool.release(session);
+                    session = null;
+                }
+            }
+        }
+        finally {
+            if (session != null) {
+                smtpPool.release(session);
+            }
+            sessions.release();
+        }
+        return results;
+    }
 
-        //null pointer exception if file name is invalid
+    /**
+     * Resets the session and sends the email over it.
+     *
+     * @param session the open session.
+     * @param email the email to send.
+     *
+     * @return whether the email was sent.
+     */
+    private SendResult trySend(SmtpSessionPool.PooledSession session, EmailCustom email) {
         try {
-            session.open();
-            session.sendMail(email);
-            session.close();
-        } catch (NullPointerException npe) {
-            throw new IllegalArgumentException
-                    ("Attachment error, such file does not exist: " + npe.getMessage());
+            session.reset();
+            //the id given to the message is needed to thread the replies
+            email.setMessageId(session.sendMail(email));
+            return new SendResult(email);
         }
-        
-        return addEmbed(email);
+        catch (MessagingException ex) {
+            return new SendResult(email, new MailException("Unable to reset SMTP session", ex));
+        }
+        catch (MailException ex) {
+            return new SendResult(email, ex);
+        }
+        //null pointer exception if file name is invalid
+        catch (NullPointerException npe) {
+            return new SendResult(email, new IllegalArgumentException
+                    ("Attachment error, such file does not exist: " + npe.getMessage()));
+        }
+    }
+
+    /**
+     * Verifies whether the server closed the connection of the session,
+     * e.g. with 421 once too many emails were sent over it.
+     *
+     * @param session the session whose email failed.
+     *
+     * @return true if the email has to be sent over a new connection.
+     */
+    private boolean isConnectionLost(SmtpSessionPool.PooledSession session) {
+        return session.getLastReturnCode() == SERVICE_CLOSING || !session.isAlive();
     }
 
     /**
@@ -148,6 +810,50 @@ public class MailModule implements Mailer {
     @Override
     public EmailCustom sendEmail(String[] to, String[] cc, String[] bcc,
             String subject, String message, String[] attach, String[] embedAttach) {
+        return sendEmail(to, cc, bcc, subject, message, attach, embedAttach, null);
+    }
+
+    /**
+     * Using all the provided information, sends the email as a reply.
+     * The In-Reply-To and References headers are set from the original email.
+     * Both embedded and usual attachments are preserved with the returned email.
+     *
+     * @param to the array of addresses to receive the email.
+     * @param cc the carbon copy array of addresses to receive the email.
+     * @param bcc the blind carbon copy array of addresses to receive the email.
+     * @param subject the subject of the email.
+     * @param message the message of the email.
+     * @param attach the array of attachments (file paths).
+     * @param embedAttach the array of attachments to embed (file paths).
+     * @param original the email this email replies to; null if it is not a reply.
+     *
+     * @return the created and sent email.
+     */
+    @Override
+    public EmailCustom sendEmail(String[] to, String[] cc, String[] bcc, String subject, 
+            String message, String[] attach, String[] embedAttach, EmailCustom original) {
+        return sendEmail(createEmail(to, cc, bcc, subject, message, attach, embedAttach, original));
+    }
+
+    /**
+     * Using all the provided information, creates the email without sending it,
+     * e.g. to save it in the outbox. The In-Reply-To and References headers are
+     * set from the original email. The attachments are read from the files.
+     *
+     * @param to the array of addresses to receive the email.
+     * @param cc the carbon copy array of addresses to receive the email.
+     * @param bcc the blind carbon copy array of addresses to receive the email.
+     * @param subject the subject of the email.
+     * @param message the message of the email.
+     * @param attach the array of attachments (file paths).
+     * @param embedAttach the array of attachments to embed (file paths).
+     * @param original the email this email replies to; null if it is not a reply.
+     *
+     * @return the created email.
+     */
+    @Override
+    public EmailCustom createEmail(String[] to, String[] cc, String[] bcc, String subject, 
+            String message, String[] attach, String[] embedAttach, EmailCustom original) {
 
         if (to == null || cc == null || bcc == null || subject == null || 
             message == null || attach == null || embedAttach == null) {
@@ -174,6 +880,9 @@ public class MailModule implements Mailer {
         if (bccEmails.length != 0) {
             email.bcc(bccEmails);
         }
+        if (original != null) {
+            email.setReplyHeaders(original);
+        }
 
         //add attachments
         try {
@@ -183,7 +892,7 @@ public class MailModule implements Mailer {
             throw new IllegalArgumentException("Attachment error: " + ex.getMessage());
         }
 
-        return sendEmail(email);
+        return email;
     }
     
 
@@ -198,38 +907,14 @@ public class MailModule implements Mailer {
             for (String file : embed) {
                 email.embed(EmailAttachment.attachment().bytes(new File(file)));
             }
-            //copy of the embedded attachments array to add to the sent email
-            //since session object removes it
-            embedCopy = Arrays.copyOf(embed, embed.length);           
         }
         if (attach.length != 0) {
             for (String file : attach) {
                 email.attach(EmailAttachment.attachment().file(new File(file)));
             }
         }
-        List<EmailAttachment> list = email.getAttachments();
-        before = list == null? 0 : list.size();
     }
     
-    /**
-     * Adds embedded attachments if they were removed when sending the message.
-     * 
-     * @param email Email to add attachments.
-     * 
-     * @return email with added embedded attachments.
-     */
-    private EmailCustom addEmbed(EmailCustom email) {
-        List<EmailAttachment> list = email.getAttachments();
-        if(list != null && before > list.size() && embedCopy != null) {           
-            for(String file : embedCopy)
-                email.embed(EmailAttachment.attachment().bytes(new File(file)));
-            //default to null for the next email
-            embedCopy = null;
-            before = 0;
-        }
-        return email;
-    }
-
     /**
      * Copies and fills the EmailAddress array that is used when sending the
      * email.
@@ -274,4 +959,20 @@ public class MailModule implements Mailer {
         }
     }
 
+    /**
+     * Carries the failure of a sink through the session of the server,
+     * which only retries the failures of the server.
+     */
+    private static class SinkException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        SinkException(SQLException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized SQLException getCause() {
+            return (SQLException) super.getCause();
+        }
+    }
 }
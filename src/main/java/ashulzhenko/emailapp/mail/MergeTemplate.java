@@ -0,0 +1,152 @@
+package ashulzhenko.emailapp.mail;
+
+import ashulzhenko.emailapp.bean.EmailCustom;
+import ashulzhenko.emailapp.bean.MergeRecipient;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import jodd.mail.EmailAttachment;
+import jodd.mail.att.ByteArrayAttachment;
+
+/**
+ * MergeTemplate class is the email of a mail merge, from which an email is
+ * created for every recipient: the placeholders of the subject and of the
+ * message, written as {{name}}, are replaced with the values of the recipient.
+ * The values are escaped in the HTML message; a placeholder without a value
+ * is left empty.
+ * The attachments are the same for all recipients, so they are read and
+ * encoded once, when the template is created, and shared by the emails.
+ *
+ * @author Alena Shulzhenko
+ * @version 19/10/2026
+ * @since 1.8
+ */
+public class MergeTemplate {
+    private static final Pattern PLACEHOLDER = Pattern.compile("\\{\\{\\s*(\\w+)\\s*\\}\\}");
+
+    private final String subject;
+    private final String message;
+    private final List<EncodedAttachment> attachments;
+    private final List<EncodedAttachment> embedded;
+
+    /**
+     * Instantiates the template and reads its attachments.
+     *
+     * @param subject the subject of the emails.
+     * @param message the HTML message of the emails.
+     * @param attach the array of attachments (file paths).
+     * @param embed the array of attachments to embed (file paths).
+     *
+     * @throws IOException If an attachment cannot be read.
+     */
+    public MergeTemplate(String subject, String message, String[] attach, String[] embed) 
+            throws IOException {
+        if (subject == null || message == null || attach == null || embed == null)
+            throw new IllegalArgumentException("Null value passed to the mail merge template.");
+        this.subject = subject;
+        this.message = message;
+        this.attachments = encode(attach, false);
+        this.embedded = encode(embed, true);
+    }
+
+    /**
+     * Creates the email of the recipient.
+     *
+     * @param from the address of the sender.
+     * @param recipient the recipient and the values of the placeholders.
+     *
+     * @return the email of the recipient.
+     */
+    public EmailCustom render(String from, MergeRecipient recipient) {
+        if (from == null || recipient == null)
+            throw new IllegalArgumentException("Null value passed to the mail merge template.");
+        Map<String, String> variables = recipient.getVariables();
+
+        EmailCustom email = new EmailCustom();
+        email.from(from).to(recipient.getAddress()).addHtml(fill(message, variables, true));
+        String filled = fill(subject, variables, false);
+        if (!filled.isEmpty())
+            email.subject(filled);
+        //every email has its own copies, since an embedded attachment
+        //belongs to the message of the email
+        for (EncodedAttachment attachment : embedded)
+            email.embed(attachment.copy());
+        for (EncodedAttachment attachment : attachments)
+            email.attach(attachment.copy());
+        return email;
+    }
+
+    /**
+     * Replaces the placeholders of the text with their values.
+     *
+     * @param text the text with the placeholders.
+     * @param variables the values of the placeholders by their names.
+     * @param html true if the text is HTML and the values must be escaped.
+     *
+     * @return the text with the values.
+     */
+    static String fill(String text, Map<String, String> variables, boolean html) {
+        Matcher matcher = PLACEHOLDER.matcher(text);
+        StringBuffer filled = new StringBuffer(text.length());
+        while (matcher.find()) {
+            String value = variables.get(matcher.group(1));
+            if (value == null)
+                value = "";
+            else if (html)
+                value = escape(value);
+            matcher.appendReplacement(filled, Matcher.quoteReplacement(value));
+        }
+        matcher.appendTail(filled);
+        return filled.toString();
+    }
+
+    /**
+     * Escapes the characters of the value that have a meaning in HTML.
+     *
+     * @param value the value of a placeholder.
+     *
+     * @return the escaped value.
+     */
+    private static String escape(String value) {
+        StringBuilder escaped = new StringBuilder(value.length());
+        for (char c : value.toCharArray()) {
+            switch (c) {
+                case '<': escaped.append("&lt;"); break;
+                case '>': escaped.append("&gt;"); break;
+                case '&': escaped.append("&amp;"); break;
+                case '"': escaped.append("&quot;"); break;
+                case '\'': escaped.append("&#39;"); break;
+                default: escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
+    /**
+     * Reads and encodes the attachments.
+     *
+     * @param files the array of attachments (file paths).
+     * @param inline true if the attachments are embedded.
+     *
+     * @return the encoded attachments.
+     *
+     * @throws IOException If an attachment cannot be read.
+     */
+    private static List<EncodedAttachment> encode(String[] files, boolean inline) throws IOException {
+        List<EncodedAttachment> encoded = new ArrayList<>(files.length);
+        for (String file : files) {
+            File path = new File(file);
+            EmailAttachment attachment = EmailAttachment.attachment()
+                    .bytes(Files.readAllBytes(path.toPath()))
+                    .setName(path.getName()).setInline(inline).create();
+            encoded.add(new EncodedAttachment((ByteArrayAttachment) attachment));
+        }
+        return Collections.unmodifiableList(encoded);
+    }
+}
@@ -0,0 +1,174 @@
+package ashulzhenko.emailapp.mail;
+
+import ashulzhenko.emailapp.bean.EmailCustom;
+import ashulzhenko.emailapp.bean.SyncState;
+import ashulzhenko.emailapp.interfaces.EmailSink;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import jodd.mail.MailException;
+
+/**
+ * ReceivePipeline class hands the batches of emails received from the server
+ * to the sink on another thread, so that the server is read while the
+ * previous batches are saved. Only a few batches are kept in between: once
+ * they are all waiting, receiving the next one waits for the sink, so that
+ * a large folder does not fill the memory when saving is slower.
+ * The state of the folder is set to the last UID of a batch right before
+ * the sink receives it, so that the sink can save it with the emails.
+ *
+ * @author Alena Shulzhenko
+ * @version 19/10/2026
+ * @since 1.8
+ */
+class ReceivePipeline {
+    //marks the end of the batches
+    private static final Batch END = new Batch(null, 0);
+    //time in milliseconds between two checks whether the sink failed while waiting
+    private static final long WAIT_STEP = 200;
+
+    private final BlockingQueue<Batch> queue;
+    private final Future<Integer> writer;
+
+    /**
+     * Instantiates the pipeline and starts handing the batches to the sink.
+     *
+     * @param state how far the folder was synchronized; updated before every batch.
+     * @param validity the UIDVALIDITY of the folder.
+     * @param resync true if the whole folder is received.
+     * @param sink receives the batches.
+     * @param capacity the maximum number of batches waiting for the sink.
+     * @param executor runs the sink.
+     */
+    ReceivePipeline(SyncState state, long validity, boolean resync, EmailSink sink,
+                    int capacity, ExecutorService executor) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("Invalid number of waiting batches: " + capacity);
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.writer = executor.submit(() -> write(state, validity, resync, sink));
+    }
+
+    /**
+     * Hands the batch to the sink, waiting while the maximum number
+     * of batches is waiting for it.
+     *
+     * @param emails the emails of the batch.
+     * @param lastUid the highest UID of the folder received so far.
+     *
+     * @throws SQLException If the sink failed to save a previous batch.
+     */
+    void send(List<EmailCustom> emails, long lastUid) throws SQLException {
+        put(new Batch(emails, lastUid));
+    }
+
+    /**
+     * Waits until the sink received all batches.
+     *
+     * @return the number of emails handed to the sink.
+     *
+     * @throws SQLException If the sink failed to save a batch.
+     */
+    int finish() throws SQLException {
+        put(END);
+        return result();
+    }
+
+    /**
+     * Stops handing the batches to the sink, e.g. once receiving failed.
+     * The batch the sink is saving is finished.
+     */
+    void cancel() {
+        writer.cancel(true);
+    }
+
+    /**
+     * Puts the batch in the queue, unless the sink stopped.
+     *
+     * @param batch the batch.
+     *
+     * @throws SQLException If the sink failed.
+     */
+    private void put(Batch batch) throws SQLException {
+        try {
+            while (!queue.offer(batch, WAIT_STEP, TimeUnit.MILLISECONDS)) {
+                if (writer.isDone()) {
+                    result();
+                    throw new IllegalStateException("The sink stopped before the end of the emails.");
+                }
+            }
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            cancel();
+            throw new MailException("Interrupted while receiving emails.", ex);
+        }
+    }
+
+    /**
+     * Waits for the sink and returns its result.
+     *
+     * @return the number of emails handed to the sink.
+     *
+     * @throws SQLException If the sink failed.
+     */
+    private int result() throws SQLException {
+        try {
+            return writer.get();
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            cancel();
+            throw new MailException("Interrupted while receiving emails.", ex);
+        }
+        catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof SQLException)
+                throw (SQLException) cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            throw new MailException("Unable to save the received emails.", cause);
+        }
+    }
+
+    /**
+     * Hands the batches to the sink until the end.
+     *
+     * @param state how far the folder was synchronized.
+     * @param validity the UIDVALIDITY of the folder.
+     * @param resync true if the whole folder is received.
+     * @param sink receives the batches.
+     *
+     * @return the number of emails handed to the sink.
+     *
+     * @throws SQLException If the sink failed.
+     * @throws InterruptedException If the pipeline was cancelled.
+     */
+    private int write(SyncState state, long validity, boolean resync, EmailSink sink) 
+            throws SQLException, InterruptedException {
+        int written = 0;
+        for (Batch batch = queue.take(); batch != END; batch = queue.take()) {
+            state.update(validity, batch.lastUid, resync);
+            sink.accept(batch.emails);
+            written += batch.emails.size();
+        }
+        return written;
+    }
+
+    /**
+     * The emails received at once and the highest UID received so far.
+     */
+    private static class Batch {
+        private final List<EmailCustom> emails;
+        private final long lastUid;
+
+        Batch(List<EmailCustom> emails, long lastUid) {
+            this.emails = emails;
+            this.lastUid = lastUid;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package ashulzhenko.emailapp.mail;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import jodd.mail.MailException;
+
+/**
+ * SendRate class limits the number of emails that all accounts together
+ * send through one SMTP server per minute, since servers refuse or delay
+ * the emails above their own rate, e.g. for bulk senders.
+ * The emails are spread evenly over the minute, with a burst of at most
+ * the emails of a few seconds.
+ * Servers without a configured rate are not limited.
+ *
+ * @author Alena Shulzhenko
+ * @version 19/10/2026
+ * @since 1.8
+ */
+public class SendRate {
+    //time in seconds to wait for the next email before giving up
+    private static final long WAIT_TIMEOUT = 60;
+    //number of emails that may be sent at once after a quiet period
+    private static final int BURST = 5;
+    private static final Map<String, SendRate> RATES = new ConcurrentHashMap<>();
+
+    private final int perMinute;
+    //time in nanoseconds between two emails
+    private final long interval;
+    //the time at which the next email may be sent
+    private long next;
+
+    /**
+     * Instantiates the rate.
+     *
+     * @param perMinute the maximum number of emails per minute.
+     */
+    private SendRate(int perMinute) {
+        this.perMinute = perMinute;
+        this.interval = TimeUnit.MINUTES.toNanos(1) / perMinute;
+        //a burst may be sent at once from the start
+        this.next = System.nanoTime() - interval * (BURST - 1);
+    }
+
+    /**
+     * Sets the maximum number of emails sent through the server per minute.
+     *
+     * @param server the host name of the server.
+     * @param perMinute the maximum number of emails per minute.
+     */
+    public static void setLimit(String server, int perMinute) {
+        if (server == null || perMinute < 1)
+            throw new IllegalArgumentException("Invalid sending rate for " + server);
+        RATES.put(server, new SendRate(perMinute));
+    }
+
+    /**
+     * Removes the limit of the server.
+     *
+     * @param server the host name of the server.
+     */
+    public static void removeLimit(String server) {
+        if (server != null)
+            RATES.remove(server);
+    }
+
+    /**
+     * Returns the rate of the server.
+     *
+     * @param server the host name of the server.
+     *
+     * @return the rate of the server; null if the server is not limited.
+     */
+    static SendRate forServer(String server) {
+        return server == null ? null : RATES.get(server);
+    }
+
+    /**
+     * Waits until the next email may be sent.
+     *
+     * @throws MailException If the email cannot be sent in time.
+     */
+    void acquire() {
+        long wait = reserve();
+        if (wait > TimeUnit.SECONDS.toNanos(WAIT_TIMEOUT)) {
+            release();
+            throw new MailException("More than " + perMinute + " emails per minute for the server.");
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            release();
+            throw new MailException("Interrupted while waiting to send the email.", e);
+        }
+    }
+
+    /**
+     * Reserves the next free time.
+     *
+     * @return the time in nanoseconds to wait until the reserved time.
+     */
+    synchronized long reserve() {
+        long now = System.nanoTime();
+        //the emails not sent during a quiet period are sent at once, up to the burst
+        next = Math.max(next, now - interval * (BURST - 1));
+        long wait = Math.max(0, next - now);
+        next += interval;
+        return wait;
+    }
+
+    /**
+     * Gives back a reserved time that was not used.
+     */
+    synchronized void release() {
+        next -= interval;
+    }
+
+    /**
+     * Returns the maximum number of emails per minute.
+     *
+     * @return the maximum number of emails per minute.
+     */
+    public int getLimit() {
+        return perMinute;
+    }
+}
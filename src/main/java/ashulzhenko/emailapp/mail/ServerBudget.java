@@ -0,0 +1,104 @@
+package ashulzhenko.emailapp.mail;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import jodd.mail.MailException;
+
+/**
+ * ServerBudget class limits the number of IMAP sessions that all accounts
+ * together use on one mail server at the same time, since servers refuse
+ * the connections above their own limit, e.g. 15 per user.
+ * It comes on top of the limit of every account; the IDLE connections
+ * are not counted.
+ * Servers without a configured budget are not limited.
+ *
+ * @author Alena Shulzhenko
+ * @version 19/10/2026
+ * @since 1.8
+ */
+public class ServerBudget {
+    //time in seconds to wait for a free session
+    private static final long WAIT_TIMEOUT = 60;
+    private static final Map<String, ServerBudget> BUDGETS = new ConcurrentHashMap<>();
+
+    private final Semaphore permits;
+    private final int limit;
+
+    /**
+     * Instantiates the budget.
+     *
+     * @param limit the maximum number of open sessions.
+     */
+    private ServerBudget(int limit) {
+        this.limit = limit;
+        this.permits = new Semaphore(limit, true);
+    }
+
+    /**
+     * Sets the maximum number of open sessions for the server.
+     * The limit applies to the sessions opened after this call.
+     *
+     * @param server the host name of the server.
+     * @param limit the maximum number of open sessions.
+     */
+    public static void setLimit(String server, int limit) {
+        if (server == null || limit < 1)
+            throw new IllegalArgumentException("Invalid session budget for " + server);
+        BUDGETS.put(server, new ServerBudget(limit));
+    }
+
+    /**
+     * Removes the limit of the server.
+     *
+     * @param server the host name of the server.
+     */
+    public static void removeLimit(String server) {
+        if (server != null)
+            BUDGETS.remove(server);
+    }
+
+    /**
+     * Returns the budget of the server.
+     *
+     * @param server the host name of the server.
+     *
+     * @return the budget of the server; null if the server is not limited.
+     */
+    static ServerBudget forServer(String server) {
+        return server == null ? null : BUDGETS.get(server);
+    }
+
+    /**
+     * Waits for a free session.
+     *
+     * @throws MailException If no session becomes free in time.
+     */
+    void acquire() {
+        try {
+            if (!permits.tryAcquire(WAIT_TIMEOUT, TimeUnit.SECONDS))
+                throw new MailException("All " + limit + " sessions of the server are in use.");
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MailException("Interrupted while waiting for a session.", e);
+        }
+    }
+
+    /**
+     * Returns a session to the budget.
+     */
+    void release() {
+        permits.release();
+    }
+
+    /**
+     * Returns the number of sessions that can be opened now.
+     *
+     * @return the number of sessions that can be opened now.
+     */
+    public int available() {
+        return permits.availablePermits();
+    }
+}
@@ -0,0 +1,331 @@
+package ashulzhenko.emailapp.mail;
+
+import ashulzhenko.emailapp.bean.UserConfigBean;
+import com.sun.mail.smtp.SMTPTransport;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import javax.mail.MessagingException;
+import javax.mail.NoSuchProviderException;
+import javax.mail.Session;
+import javax.mail.Transport;
+import javax.mail.internet.MimeBodyPart;
+import jodd.mail.Email;
+import jodd.mail.EmailAttachment;
+import jodd.mail.MailException;
+import jodd.mail.SendMailSession;
+import jodd.mail.SmtpSslServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * SmtpSessionPool class keeps the authenticated SMTP sessions of one account
+ * open between two emails, so that sending many emails pays for the TLS
+ * handshake and the login once.
+ * A reused session is reset with RSET before the next email, which also
+ * tells whether the server still holds the connection. Since servers limit
+ * the number of emails sent over one connection, a session is closed once
+ * it sent the maximum number of emails, and idle sessions are closed
+ * before the server drops them.
+ *
+ * @author Alena Shulzhenko
+ * @version 19/10/2026
+ * @since 1.8
+ */
+class SmtpSessionPool {
+    /** The number of emails sent over one connection before it is closed. */
+    static final int MAX_MESSAGES = 50;
+    //time in milliseconds after which an unused session is closed,
+    //below the 5 minutes after which servers drop it
+    private static final long MAX_IDLE_TIME = TimeUnit.MINUTES.toMillis(1);
+
+    private final Supplier<PooledSession> factory;
+    private final Deque<PooledSession> idle = new ArrayDeque<>();
+    private final int maxIdleSessions;
+    private final long maxIdleTime;
+    private final ScheduledFuture<?> expiry;
+    private boolean closed;
+    private static final Logger log = LoggerFactory.getLogger(SmtpSessionPool.class.getName());
+
+    /**
+     * Instantiates the pool of the sessions of an SMTP server,
+     * e.g. of the user's server (see createSession(UserConfigBean)).
+     *
+     * @param factory creates a new session that is not open yet.
+     * @param maxIdleSessions the maximum number of sessions kept open.
+     */
+    SmtpSessionPool(Supplier<PooledSession> factory, int maxIdleSessions) {
+        this(factory, maxIdleSessions, MAX_IDLE_TIME);
+    }
+
+    /**
+     * Instantiates the pool.
+     *
+     * @param factory creates a new session that is not open yet.
+     * @param maxIdleSessions the maximum number of sessions kept open.
+     * @param maxIdleTime the time in milliseconds after which an unused session
+     *                    is closed; 0 if sessions are never kept.
+     */
+    SmtpSessionPool(Supplier<PooledSession> factory, int maxIdleSessions, long maxIdleTime) {
+        if (maxIdleSessions < 1 || maxIdleTime < 0)
+            throw new IllegalArgumentException("Invalid SMTP session pool: " + maxIdleSessions
+                                               + " sessions, " + maxIdleTime + " ms");
+        this.factory = factory;
+        this.maxIdleSessions = maxIdleSessions;
+        this.maxIdleTime = maxIdleTime;
+        long interval = Math.max(1, maxIdleTime);
+        this.expiry = ImapSessionPool.KEEPALIVE.scheduleWithFixedDelay(this::closeExpired, interval,
+                                                                       interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns an open session: the most recently used idle session,
+     * or a new one if there is none.
+     *
+     * @return an open session.
+     */
+    PooledSession borrow() {
+        long now = System.currentTimeMillis();
+        while (true) {
+            PooledSession session;
+            synchronized (this) {
+                session = idle.pollFirst();
+            }
+            if (session == null)
+                return open();
+            if (now - session.lastUsed <= maxIdleTime)
+                return session;
+            closeQuietly(session);
+        }
+    }
+
+    /**
+     * Opens a new session, e.g. once the server closed the previous one.
+     *
+     * @return an open session.
+     */
+    PooledSession open() {
+        PooledSession session = factory.get();
+        session.open();
+        return session;
+    }
+
+    /**
+     * Gives back a session that worked, so that it is used again,
+     * unless it sent the maximum number of emails.
+     *
+     * @param session the borrowed session.
+     */
+    void release(PooledSession session) {
+        session.lastUsed = System.currentTimeMillis();
+        synchronized (this) {
+            if (!closed && maxIdleTime > 0 && !session.isExhausted()
+                    && idle.size() < maxIdleSessions) {
+                idle.offerFirst(session);
+                return;
+            }
+        }
+        closeQuietly(session);
+    }
+
+    /**
+     * Closes a session that failed, so that it is not used again.
+     *
+     * @param session the borrowed session.
+     */
+    void invalidate(PooledSession session) {
+        closeQuietly(session);
+    }
+
+    /**
+     * Returns the number of open sessions that are not used.
+     *
+     * @return the number of idle sessions.
+     */
+    synchronized int idleCount() {
+        return idle.size();
+    }
+
+    /**
+     * Closes the sessions that were idle for too long.
+     */
+    void closeExpired() {
+        long now = System.currentTimeMillis();
+        List<PooledSession> expired = new ArrayList<>();
+        synchronized (this) {
+            //the least recently used sessions are last
+            while (!idle.isEmpty() && now - idle.peekLast().lastUsed > maxIdleTime)
+                expired.add(idle.pollLast());
+        }
+        expired.forEach(SmtpSessionPool::closeQuietly);
+    }
+
+    /**
+     * Closes all idle sessions.
+     * Sessions borrowed at that time are closed once they are released.
+     */
+    void close() {
+        expiry.cancel(false);
+        List<PooledSession> open;
+        synchronized (this) {
+            closed = true;
+            open = new ArrayList<>(idle);
+            idle.clear();
+        }
+        open.forEach(SmtpSessionPool::closeQuietly);
+    }
+
+    /**
+     * Creates a session of the user's SMTP server that is not open yet.
+     * The server information is read every time a session is created.
+     *
+     * @param userInfo user's information needed to connect to the server.
+     *
+     * @return the created session.
+     */
+    static PooledSession createSession(UserConfigBean userInfo) {
+        //the transport of jodd's session is only reachable from a subclass
+        SmtpSslServer server = new SmtpSslServer(userInfo.getSmtpUrl(), userInfo.getSmtpPort()) {
+            @Override
+            public SendMailSession createSession() {
+                Session session = Session.getInstance(createSessionProperties(), authenticator);
+                try {
+                    return new PooledSession(session, getTransport(session));
+                }
+                catch (NoSuchProviderException ex) {
+                    throw new MailException("Failed to create SMTP session", ex);
+                }
+            }
+        };
+        server.authenticateWith(userInfo.getFromEmail(), userInfo.getEmailPassword());
+        return (PooledSession) server.createSession();
+    }
+
+    /**
+     * Closes the session, logging the error if the connection is already broken.
+     *
+     * @param session the session to close.
+     */
+    private static void closeQuietly(PooledSession session) {
+        try {
+            session.close();
+        }
+        catch (MailException | IllegalStateException ex) {
+            log.debug("Unable to close SMTP session: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * An SMTP session that counts the emails sent over its connection.
+     */
+    static class PooledSession extends SendMailSession {
+        //SMTP reply code of a successful command
+        private static final int OK = 250;
+
+        private volatile long lastUsed = System.currentTimeMillis();
+        private int sent;
+
+        /**
+         * Instantiates the session.
+         *
+         * @param session the mail session.
+         * @param transport the transport of the server.
+         */
+        PooledSession(Session session, Transport transport) {
+            super(session, transport);
+        }
+
+        /**
+         * Sends the email and counts it.
+         *
+         * @param email the email to send.
+         *
+         * @return the message id given to the email.
+         */
+        @Override
+        public String sendMail(Email email) {
+            String id = super.sendMail(email);
+            sent++;
+            return id;
+        }
+
+        /**
+         * Creates the part of an attachment; the content of an attachment
+         * that is already encoded is not encoded again.
+         *
+         * @param attachment the attachment.
+         *
+         * @return the part of the email.
+         *
+         * @throws MessagingException If the part cannot be created.
+         */
+        @Override
+        protected MimeBodyPart createAttachmentBodyPart(EmailAttachment attachment) 
+                throws MessagingException {
+            MimeBodyPart part = super.createAttachmentBodyPart(attachment);
+            if (attachment instanceof EncodedAttachment)
+                return ((EncodedAttachment) attachment).toEncodedPart(part);
+            return part;
+        }
+
+        /**
+         * Resets the state of the server before the next email, unless
+         * nothing was sent yet. The server answers RSET only if it still
+         * holds the connection. If RSET is refused, the state of the server
+         * is unknown, so the connection is closed even if it is still open,
+         * and the session is no longer alive.
+         *
+         * @throws MessagingException If the server closed the connection or refused RSET.
+         */
+        void reset() throws MessagingException {
+            if (sent == 0)
+                return;
+            if (mailTransport instanceof SMTPTransport) {
+                int code = ((SMTPTransport) mailTransport).simpleCommand("RSET");
+                if (code != OK) {
+                    try {
+                        mailTransport.close();
+                    }
+                    catch (MessagingException ex) {
+                        //the connection is dropped anyway
+                    }
+                    throw new MessagingException("RSET refused: " + code);
+                }
+            }
+            else if (!mailTransport.isConnected())
+                throw new MessagingException("Connection closed.");
+        }
+
+        /**
+         * Verifies whether the server still holds the connection.
+         *
+         * @return true if the connection is alive; false otherwise.
+         */
+        boolean isAlive() {
+            return mailTransport.isConnected();
+        }
+
+        /**
+         * Returns the reply code of the last command sent to the server.
+         *
+         * @return the reply code; -1 if it is unknown.
+         */
+        int getLastReturnCode() {
+            return mailTransport instanceof SMTPTransport
+                    ? ((SMTPTransport) mailTransport).getLastReturnCode() : -1;
+        }
+
+        /**
+         * Verifies whether the connection sent the maximum number of emails.
+         *
+         * @return true if the session must not send more emails.
+         */
+        boolean isExhausted() {
+            return sent >= MAX_MESSAGES;
+        }
+    }
+}
@@ -1,7 +1,7 @@
 package ashulzhenko.emailapp.ui;
 
+import ashulzhenko.emailapp.account.Account;
 import ashulzhenko.emailapp.bean.EmailCustom;
-import ashulzhenko.emailapp.interfaces.MailStorageDAO;
 import ashulzhenko.emailapp.interfaces.Mailer;
 import java.io.File;
 import java.net.URL;
@@ -52,8 +52,9 @@ public class CreateEmailController implements Initializable {
     private List<String> attach, embedAttach;
     private String[] toArray, ccArray, bccArray;
     
+    private EmailCustom original;
     private Mailer mail;
-    private MailStorageDAO maildao;
+    private Account account;
     private ResourceBundle bundle;
     private FileChooser fileChooser;     
     private final org.slf4j.Logger log = LoggerFactory.getLogger(getClass().getName());
@@ -95,15 +96,14 @@ public class CreateEmailController implements Initializable {
     }
 
     /**
-     * Sets Mailer in order to send the email and MailStorageDAO
-     * in order to work with the database.
+     * Sets the account whose Mailer creates the email and whose
+     * outbox sends it.
      * 
-     * @param mail Mailer object that is used to send an email.
-     * @param maildao data access object that is used to read/write to the database.
+     * @param account the account that sends the email.
      */
-    public void setMailUtilities(Mailer mail, MailStorageDAO maildao) { 
-        this.mail = mail;
-        this.maildao = maildao;
+    public void setAccount(Account account) { 
+        this.mail = account.getMailer();
+        this.account = account;
     }
     
     /**
@@ -126,6 +126,16 @@ public class CreateEmailController implements Initializable {
         subject.setText(email.getSubject());
     }
     
+    /**
+     * Sets the email this email replies to, so that the reply
+     * belongs to the same conversation thread.
+     * 
+     * @param original the email this email replies to.
+     */
+    public void setOriginal(EmailCustom original) {
+        this.original = original;
+    }
+    
     /**
      * If the email is a reply, sets the recipients
      * (sender if reply was chosen, sender and CC if reply all was chosen).
@@ -180,9 +190,9 @@ public class CreateEmailController implements Initializable {
     }
     
     /**
-     * Creates and sends the new email if user input is valid.
-     * The stage is hidden afterwards.
-     * The email is saved in the database.
+     * Creates the new email if user input is valid and saves it in the
+     * outbox, from where it is sent in the background.
+     * The stage is hidden afterwards without waiting for the mail server.
      * 
      * @param event the event that triggered this action.
      */
@@ -192,15 +202,16 @@ public class CreateEmailController implements Initializable {
         boolean allValid = validate(email);      
         if(allValid) {  
             try {       
-                email = mail.sendEmail(toArray, ccArray, bccArray, 
+                email = mail.createEmail(toArray, ccArray, bccArray, 
                         subject.getText(), html.getHtmlText(), 
                         attach.toArray(new String[attach.size()]), 
-                        embedAttach.toArray(new String[embedAttach.size()])); 
+                        embedAttach.toArray(new String[embedAttach.size()]), original); 
                 //set sent date
                 email.setSentDate(Date.from(LocalDateTime.now().
                         atZone(ZoneId.systemDefault()).toInstant()));
-                log.info("The email was sent: " + email);
-                maildao.saveEmail(email); 
+                //tried again later if the server cannot be reached
+                account.queueEmail(email);
+                log.info("The email was queued: " + email);
             }
             catch(SQLException ex) {
                 log.error("Unable to save new email: ", ex);  
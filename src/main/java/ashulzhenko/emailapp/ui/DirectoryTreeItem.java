@@ -0,0 +1,147 @@
+package ashulzhenko.emailapp.ui;
+
+import ashulzhenko.emailapp.interfaces.FolderStorageDAO;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import javafx.collections.ObservableList;
+import javafx.scene.control.TreeItem;
+import javafx.scene.image.ImageView;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The tree item of a directory in the TreeView. Its value is the full name
+ * of the directory (e.g. Clients/Acme/2024). The subdirectories are read
+ * from the database only when they are displayed for the first time.
+ * The root item holds the top directories; its value is the title of the tree.
+ *
+ * @author Alena Shulzhenko
+ * @version 19/10/2026
+ * @since 1.8
+ */
+public class DirectoryTreeItem extends TreeItem<String> {
+    private final FolderStorageDAO folderdao;
+    private final boolean root;
+    private boolean leaf;
+    private boolean loaded;
+    private final org.slf4j.Logger log = LoggerFactory.getLogger(getClass().getName());
+
+    /**
+     * Instantiates the item of a directory.
+     *
+     * @param name the full name of the directory.
+     * @param leaf true if the directory has no subdirectories; false otherwise.
+     * @param folderdao directory DAO object to read the subdirectories.
+     */
+    public DirectoryTreeItem(String name, boolean leaf, FolderStorageDAO folderdao) {
+        this(name, leaf, folderdao, false);
+        setGraphic(new ImageView("/images/closedir.png"));
+    }
+
+    /**
+     * Instantiates the item.
+     *
+     * @param value the full name of the directory, or the title of the tree.
+     * @param leaf true if the directory has no subdirectories; false otherwise.
+     * @param folderdao directory DAO object to read the subdirectories.
+     * @param root true if the item holds the top directories; false otherwise.
+     */
+    private DirectoryTreeItem(String value, boolean leaf, FolderStorageDAO folderdao, boolean root) {
+        super(value);
+        this.leaf = leaf;
+        this.folderdao = folderdao;
+        this.root = root;
+    }
+
+    /**
+     * Creates the item that holds the top directories.
+     *
+     * @param title the title of the tree.
+     * @param folderdao directory DAO object to read the directories.
+     *
+     * @return the root item of the tree.
+     */
+    public static DirectoryTreeItem createRoot(String title, FolderStorageDAO folderdao) {
+        return new DirectoryTreeItem(title, false, folderdao, true);
+    }
+
+    /**
+     * Returns the full name of the directory.
+     *
+     * @return the full name of the directory; null for the root item.
+     */
+    public String getDirectory() {
+        return root ? null : getValue();
+    }
+
+    /**
+     * Returns the name of the directory without the names of its parents.
+     *
+     * @param name the full name of the directory.
+     *
+     * @return the name of the directory without the names of its parents.
+     */
+    public static String shortName(String name) {
+        return name.substring(name.lastIndexOf(FolderStorageDAO.SEPARATOR) + 1);
+    }
+
+    /**
+     * Returns whether the directory has no subdirectories.
+     *
+     * @return true if the directory has no subdirectories; false otherwise.
+     */
+    @Override
+    public boolean isLeaf() {
+        return leaf;
+    }
+
+    /**
+     * Returns the items of the subdirectories,
+     * which are read when this method is called for the first time.
+     *
+     * @return the items of the subdirectories.
+     */
+    @Override
+    public ObservableList<TreeItem<String>> getChildren() {
+        if(!loaded) {
+            try {
+                refresh();
+            } catch (SQLException e) {
+                log.error("Unable to read the subdirectories: ", e.getMessage());
+            }
+        }
+        return super.getChildren();
+    }
+
+    /**
+     * Reads the subdirectories again: the items of the removed subdirectories
+     * are removed, the items of the new ones are added, and the other items
+     * are kept, with their own subdirectories read again if they were displayed.
+     * The items that are not directories are kept first.
+     *
+     * @throws SQLException If there was a problem when reading from the database.
+     */
+    public void refresh() throws SQLException {
+        loaded = true;
+        Map<String, Integer> children = folderdao.findChildren(getDirectory());
+        if(!root)
+            leaf = children.isEmpty();
+        List<TreeItem<String>> items = super.getChildren();
+        items.removeIf(item -> item instanceof DirectoryTreeItem && !children.containsKey(item.getValue()));
+        int index = 0;
+        while(index < items.size() && !(items.get(index) instanceof DirectoryTreeItem))
+            index++;
+        //both the kept items and the subdirectories are ordered by name
+        for(Map.Entry<String, Integer> child : children.entrySet()) {
+            if(index < items.size() && items.get(index).getValue().equals(child.getKey())) {
+                DirectoryTreeItem item = (DirectoryTreeItem)items.get(index);
+                item.leaf = child.getValue() == 0;
+                if(item.loaded)
+                    item.refresh();
+            }
+            else
+                items.add(index, new DirectoryTreeItem(child.getKey(), child.getValue() == 0, folderdao));
+            index++;
+        }
+    }
+}
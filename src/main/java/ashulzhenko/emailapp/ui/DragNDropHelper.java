@@ -82,7 +82,7 @@ public class DragNDropHelper {
                 && event.getDragboard().hasString()
                 && !treeCell.getText().equals(parent.getValue())) {
             Dragboard db = event.getDragboard();
-            if(db != null && !db.getString().equals(treeCell.getText()))
+            if(db != null && !db.getString().equals(treeCell.getItem()))
                 treeCell.setTextFill(Color.WHITE);
             else
                 treeCell.setTextFill(Color.BLACK);
@@ -110,8 +110,10 @@ public class DragNDropHelper {
         if (db.hasString()) {
             try {
                 String oldDir = db.getString();
-                String newDir = treeCell.getText();
-                if(!oldDir.equals(newDir) && !newDir.equals(parent.getValue())) {
+                //only directories can receive emails, not the saved searches
+                String newDir = treeCell.getTreeItem() instanceof DirectoryTreeItem 
+                        ? ((DirectoryTreeItem)treeCell.getTreeItem()).getDirectory() : null;
+                if(newDir != null && !oldDir.equals(newDir) && !newDir.equals(parent.getValue())) {
                     currentEmail.setDirectory(newDir);
                     maildao.updateEmailDirectory(currentEmail);
                     log.info("Changed directory for" + currentEmail 
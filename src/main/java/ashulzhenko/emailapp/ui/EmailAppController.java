@@ -1,12 +1,16 @@
 package ashulzhenko.emailapp.ui;
 
+import ashulzhenko.emailapp.account.Account;
+import ashulzhenko.emailapp.account.AccountManager;
+import ashulzhenko.emailapp.bean.Change;
 import ashulzhenko.emailapp.bean.EmailCustom;
 import ashulzhenko.emailapp.bean.UserConfigBean;
-import ashulzhenko.emailapp.data.FolderStorageModule;
-import ashulzhenko.emailapp.data.MailStorageModule;
+import ashulzhenko.emailapp.data.SortKey;
+import ashulzhenko.emailapp.interfaces.ChangeLogDAO;
 import ashulzhenko.emailapp.interfaces.FolderStorageDAO;
 import ashulzhenko.emailapp.interfaces.MailStorageDAO;
-import ashulzhenko.emailapp.mail.MailModule;
+import ashulzhenko.emailapp.interfaces.Mailer;
+import ashulzhenko.emailapp.interfaces.SearchStorageDAO;
 import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileOutputStream;
@@ -16,9 +20,16 @@ import java.sql.SQLException;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.util.Collections;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.ResourceBundle;
+import java.util.Set;
+import javafx.animation.Animation;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
 import javafx.application.Platform;
 import javafx.beans.property.ReadOnlyStringWrapper;
 import javafx.collections.FXCollections;
@@ -26,9 +37,12 @@ import javafx.collections.ObservableList;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
+import javafx.geometry.Orientation;
+import javafx.scene.Node;
 import javafx.scene.Scene;
 import javafx.scene.control.Alert;
 import javafx.scene.control.Alert.AlertType;
+import javafx.scene.control.ScrollBar;
 import javafx.scene.control.TableColumn;
 import javafx.scene.control.TableView;
 import javafx.scene.control.TreeCell;
@@ -46,6 +60,7 @@ import javafx.stage.FileChooser;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
 import javafx.util.Callback;
+import javafx.util.Duration;
 import jodd.mail.EmailAttachment;
 import jodd.mail.MailAddress;
 import org.slf4j.LoggerFactory;
@@ -64,6 +79,13 @@ import org.slf4j.LoggerFactory;
  * @since 1.8
  */
 public class EmailAppController {
+    //number of emails of the unified inbox displayed at once
+    private static final int UNIFIED_PAGE = 200;
+    //number of emails of a directory read at once, in the order of the table
+    private static final int PAGE = 200;
+    //changes of the store read at once, and time in seconds between two reads
+    private static final int CHANGES = 500;
+    private static final int CHANGE_POLL = 15;
     
     @FXML
     private TableView<EmailCustom> emailTable;
@@ -77,13 +99,26 @@ public class EmailAppController {
     private HTMLEditor htmlDisplay;
     
     private MainApp mainApp;
+    private AccountManager accounts;
     private MailStorageDAO maildao;
     private FolderStorageDAO folderdao;
-    private MailModule mail;
+    private ChangeLogDAO changedao;
+    private SearchStorageDAO searchdao;
+    private Mailer mail;
     private UserConfigBean user;
+    private TreeItem<String> unifiedItem;
+    private TreeItem<String> searchesItem;
+    //directory displayed in the table; null for the unified inbox
+    private String currentDir;
+    //the displayed saved search; null if a directory is displayed
+    private String currentSearch;
+    private boolean lastPage;
+    private SortKey pageKey = SortKey.DATE;
+    private boolean pageAscending;
+    //the version of the store displayed; -1 until it is read
+    private long version = -1;
     
     private ObservableList<EmailCustom> emails;
-    private ObservableList<String> dirs;
     
     private DragNDropHelper dropHelper;
     private EmailDisplayHelper displayHelper;
@@ -123,6 +158,10 @@ public class EmailAppController {
                 (cellData.getValue().getSubject()));
         dateColumn.setCellValueFactory(cellData -> new ReadOnlyStringWrapper
                 (getDate(cellData)));
+        //the emails of a directory are sorted by the database, page by page
+        emailTable.setSortPolicy(table -> sortEmails());
+        emailTable.skinProperty().addListener((observable, oldValue, newValue) -> 
+                Platform.runLater(this::setScrollEvents));
 
         htmlDisplay.setHtmlText("<body style='background-color: black; "
                                 + "color: white;'/>");
@@ -191,7 +230,9 @@ public class EmailAppController {
                     protected void updateItem(String item, boolean empty) {
                         super.updateItem(item, empty);
                         if(item != null) {
-                            setText(item);
+                            boolean dir = getTreeItem() instanceof DirectoryTreeItem 
+                                    && ((DirectoryTreeItem)getTreeItem()).getDirectory() != null;
+                            setText(dir ? DirectoryTreeItem.shortName(item) : item);
                             setGraphic(getTreeItem().getGraphic());
                         } else {
                             setText("");
@@ -238,46 +279,107 @@ public class EmailAppController {
     }
 
     /**
-     * Sets the user information necessary for the app to function,
-     * and sets the corresponding GUI elements with user data.
+     * Sets the accounts necessary for the app to function,
+     * and sets the corresponding GUI elements with the data
+     * of the primary account.
      * 
-     * @param user the user information.
+     * @param accounts all accounts of the user.
      */
-    public void setUserInfo(UserConfigBean user) {
-        try {
-            this.user = user;
-            mail = new MailModule(user);
-            maildao = new MailStorageModule(user);
-            folderdao = new FolderStorageModule(user);
-            refreshApp();                  
-            
-            dirTree.getRoot().setExpanded(true);
-            dirTree.getSelectionModel().selectedItemProperty().addListener(
-                    (observable, oldValue, newValue) -> getDirEmails(newValue, oldValue));
-            
-            emailTable.getSelectionModel().selectedItemProperty().addListener(
-                (observable, oldValue, newValue) -> emailSelected(newValue));
-            
-        } catch (SQLException ex) {
-            log.error("Error connecting to the database.", ex.getMessage());
-            Platform.exit();
-        }
+    public void setAccounts(AccountManager accounts) {
+        this.accounts = accounts;
+        Account primary = accounts.getPrimary();
+        this.user = primary.getUserInfo();
+        mail = primary.getMailer();
+        maildao = primary.getMailDAO();
+        folderdao = primary.getFolderDAO();
+        changedao = primary.getChangeLogDAO();
+        searchdao = primary.getSearchDAO();
+        refreshApp();                  
+
+        dirTree.getRoot().setExpanded(true);
+        dirTree.getSelectionModel().selectedItemProperty().addListener(
+                (observable, oldValue, newValue) -> getDirEmails(newValue, oldValue));
+
+        emailTable.getSelectionModel().selectedItemProperty().addListener(
+            (observable, oldValue, newValue) -> emailSelected(newValue));
+        
+        //the changes made by other applications that use the same database
+        Timeline poll = new Timeline(new KeyFrame(Duration.seconds(CHANGE_POLL), event -> {
+            try {
+                applyChanges();
+            } catch (SQLException e) {
+                log.error("Error connecting to the database: ", e.getMessage());
+            }
+        }));
+        poll.setCycleCount(Animation.INDEFINITE);
+        poll.play();
+
+        //the new emails are displayed as soon as the server pushes them
+        for(Account account : accounts.getAccounts())
+            account.startPush(this::showNewEmails);
     }
     
     /**
-     * Populates TreeView with values from the database.
+     * Displays the new emails, or the emails whose messages were downloaded,
+     * once an account saved them.
+     * It is called on the scheduler thread of the account.
+     * 
+     * @param list the new emails.
      */
-    private void populateTreeView() {
-        if (dirs != null) {
-            //update TreeView directories
-            if(dirTree.getRoot().getChildren() != null)
-                dirTree.getRoot().getChildren().clear();
-            for (String str : dirs) {
-                TreeItem<String> item = new TreeItem<>(str);                
-                dirTree.getRoot().getChildren().add(item);
-                item.setGraphic(new ImageView("/images/closedir.png"));
+    private void showNewEmails(List<EmailCustom> list) {
+        Platform.runLater(() -> {
+            try {
+                applyChanges();
+            } catch (SQLException e) {
+                log.error("Error connecting to the database: ", e.getMessage());
             }
+        });
+    }
+    
+    /**
+     * Populates TreeView with the top directories from the database.
+     * The subdirectories are read when they are expanded.
+     * The saved searches are read by updateSearches().
+     */
+    private void populateTreeView() {
+        DirectoryTreeItem root = DirectoryTreeItem.createRoot(bundle.getString("dirs"), folderdao);
+        //the inbox of all accounts
+        if(accounts != null && accounts.getAccounts().size() > 1) {
+            unifiedItem = new TreeItem<>(bundle.getString("unifiedInbox"));
+            unifiedItem.setGraphic(new ImageView("/images/closedir.png"));
+            root.getChildren().add(0, unifiedItem);
         }
+        //the saved searches are displayed as folders
+        searchesItem = new TreeItem<>(bundle.getString("searches"));
+        searchesItem.setGraphic(new ImageView("/images/closedir.png"));
+        root.getChildren().add(root.getChildren().indexOf(unifiedItem) + 1, searchesItem);
+        root.setExpanded(true);
+        dirTree.setRoot(root);
+    }
+    
+    /**
+     * Finds the item of the directory in the TreeView,
+     * and expands its parents.
+     * 
+     * @param name the full name of the directory.
+     * 
+     * @return the item of the directory; null if it is not found.
+     */
+    private TreeItem<String> findItem(String name) {
+        TreeItem<String> item = dirTree.getRoot();
+        String path = null;
+        for(String part : name.split(FolderStorageDAO.SEPARATOR)) {
+            path = path == null ? part : path + FolderStorageDAO.SEPARATOR + part;
+            TreeItem<String> next = null;
+            for(TreeItem<String> child : item.getChildren())
+                if(child instanceof DirectoryTreeItem && path.equals(child.getValue()))
+                    next = child;
+            if(next == null)
+                return null;
+            item.setExpanded(true);
+            item = next;
+        }
+        return item;
     }
     
     /**
@@ -295,8 +397,21 @@ public class EmailAppController {
                         oldDirectory.setGraphic(new ImageView("/images/closedir.png"));
                 }
                 dirTree.refresh();
-                String currentDir = directory.getValue();
-                List <EmailCustom> emailsFromDb = maildao.findAllInDirectory(currentDir);
+                List <EmailCustom> emailsFromDb;
+                currentDir = null;
+                currentSearch = null;
+                if(directory == unifiedItem)
+                    emailsFromDb = accounts.unifiedView("inbox", UNIFIED_PAGE).next(UNIFIED_PAGE);
+                else if(directory == searchesItem)
+                    emailsFromDb = Collections.emptyList();
+                else if(directory.getParent() == searchesItem) {
+                    currentSearch = directory.getValue();
+                    emailsFromDb = findPage(null);
+                }
+                else {
+                    currentDir = directory.getValue();
+                    emailsFromDb = findPage(null);
+                }
                 emails = FXCollections.observableArrayList(emailsFromDb);
                 emailTable.setItems(emails);
                 setColumnName(emailsFromDb);
@@ -309,6 +424,234 @@ public class EmailAppController {
         }
     }
     
+    /**
+     * Called when the sort order of the table changes.
+     * The first page of the directory or saved search is read again 
+     * in the new order; the unified inbox is sorted in memory.
+     * 
+     * @return true if the emails were sorted; false otherwise.
+     */
+    private boolean sortEmails() {
+        if(currentDir == null && currentSearch == null)
+            return TableView.DEFAULT_SORT_POLICY.call(emailTable);
+        try {
+            emails.setAll(findPage(null));
+            emailTable.scrollTo(0);
+            return true;
+        } catch (SQLException e) {
+            log.error("Error connecting to the database: ", e.getMessage());
+            return false;
+        }
+    }
+    
+    /**
+     * Reads the next page of the directory or saved search 
+     * when the table is scrolled to the end.
+     */
+    private void setScrollEvents() {
+        for(Node node : emailTable.lookupAll(".scroll-bar")) {
+            if(node instanceof ScrollBar && ((ScrollBar)node).getOrientation() == Orientation.VERTICAL) {
+                ScrollBar bar = (ScrollBar)node;
+                bar.valueProperty().addListener((observable, oldValue, newValue) -> {
+                    if(newValue.doubleValue() >= bar.getMax() 
+                            && (currentDir != null || currentSearch != null) && !lastPage && !emails.isEmpty()) {
+                        try {
+                            emails.addAll(findPage(emails.get(emails.size() - 1)));
+                        } catch (SQLException e) {
+                            log.error("Error connecting to the database: ", e.getMessage());
+                        }
+                    }
+                });
+            }
+        }
+    }
+    
+    /**
+     * Reads a page of the current directory or saved search in the order 
+     * chosen in the table, the most recent first by default.
+     * 
+     * @param after the last email of the previous page; null for the first page.
+     * 
+     * @return the emails of the page.
+     * 
+     * @throws SQLException If there was a problem when reading from the database.
+     */
+    private List<EmailCustom> findPage(EmailCustom after) throws SQLException {
+        SortKey key = SortKey.DATE;
+        boolean ascending = false;
+        if(!emailTable.getSortOrder().isEmpty()) {
+            TableColumn<EmailCustom, ?> column = emailTable.getSortOrder().get(0);
+            if(column == contactColumn)
+                key = SortKey.CONTACT;
+            else if(column == subjectColumn)
+                key = SortKey.SUBJECT;
+            ascending = column.getSortType() == TableColumn.SortType.ASCENDING;
+        }
+        List<EmailCustom> page = currentSearch != null 
+                ? maildao.findAllInSearch(currentSearch, key, ascending, after, PAGE)
+                : maildao.findAllInDirectory(currentDir, key, ascending, after, PAGE);
+        lastPage = page.size() < PAGE;
+        pageKey = key;
+        pageAscending = ascending;
+        return page;
+    }
+    
+    /**
+     * Applies the changes of the store made since the displayed version:
+     * only the changed emails of the current directory are read again,
+     * and directories and saved searches are added to or removed from the tree.
+     * The first page of the current saved search is read again, since
+     * the changed emails may have been added to or removed from it.
+     * Everything is read again if the changes are no longer available.
+     * The unified inbox is not updated.
+     * 
+     * @throws SQLException If there was a problem when reading from the database.
+     */
+    private void applyChanges() throws SQLException {
+        if(version < 0) {
+            reloadAll();
+            return;
+        }
+        List<Change> changes;
+        do {
+            changes = changedao.findChangesSince(version, CHANGES);
+            if(changes == null) {
+                reloadAll();
+                return;
+            }
+            boolean dirsChanged = false;
+            boolean searchesChanged = false;
+            //the last operation on every email
+            Map<Integer, Change.Operation> changed = new LinkedHashMap<>();
+            for(Change change : changes) {
+                if(change.getEntity() == Change.Entity.MAILBOX) {
+                    reloadAll();
+                    return;
+                }
+                if(change.getEntity() == Change.Entity.DIRECTORY)
+                    dirsChanged = true;
+                else if(change.getEntity() == Change.Entity.SEARCH)
+                    searchesChanged = true;
+                else
+                    changed.put(change.getId(), change.getOperation());
+            }
+            if(dirsChanged)
+                updateDirectories();
+            if(searchesChanged)
+                updateSearches();
+            else if(currentSearch != null && (dirsChanged || !changed.isEmpty()))
+                emails.setAll(findPage(null));
+            for(Map.Entry<Integer, Change.Operation> entry : changed.entrySet())
+                updateEmail(entry.getKey(), entry.getValue());
+            if(!changes.isEmpty())
+                version = changes.get(changes.size() - 1).getVersion();
+        } while(changes.size() == CHANGES);
+    }
+    
+    /**
+     * Reads the directories, the saved searches and the first page 
+     * of the current directory or saved search again.
+     * 
+     * @throws SQLException If there was a problem when reading from the database.
+     */
+    private void reloadAll() throws SQLException {
+        //the changes made while reading are applied again later, which is harmless
+        version = changedao.findCurrentVersion();
+        String selected = currentDir;
+        String search = currentSearch;
+        populateTreeView();
+        currentDir = null;
+        currentSearch = null;
+        emails.clear();
+        updateSearches();
+        //selecting the directory or search again reads its first page
+        TreeItem<String> item = selected == null ? null : findItem(selected);
+        for(TreeItem<String> child : searchesItem.getChildren()) {
+            if(child.getValue().equals(search)) {
+                searchesItem.setExpanded(true);
+                item = child;
+            }
+        }
+        if(item != null)
+            dirTree.getSelectionModel().select(item);
+    }
+    
+    /**
+     * Adds the new directories to the tree and removes the deleted ones.
+     * Only the directories that were displayed are read again.
+     * 
+     * @throws SQLException If there was a problem when reading from the database.
+     */
+    private void updateDirectories() throws SQLException {
+        if(dirTree.getRoot() instanceof DirectoryTreeItem)
+            ((DirectoryTreeItem)dirTree.getRoot()).refresh();
+        //the directory was renamed, moved or deleted
+        if(currentDir != null && !folderdao.findAll().contains(currentDir)) {
+            currentDir = null;
+            emails.clear();
+        }
+    }
+    
+    /**
+     * Reads the saved searches again: the items of the deleted searches are
+     * removed from the tree and the items of the new ones are added.
+     * The first page of the current saved search is read again.
+     * 
+     * @throws SQLException If there was a problem when reading from the database.
+     */
+    private void updateSearches() throws SQLException {
+        Set<String> names = searchdao.findSearches().keySet();
+        List<TreeItem<String>> items = searchesItem.getChildren();
+        items.removeIf(item -> !names.contains(item.getValue()));
+        //both the kept items and the searches are ordered by name
+        int index = 0;
+        for(String name : names) {
+            if(index >= items.size() || !items.get(index).getValue().equals(name)) {
+                TreeItem<String> item = new TreeItem<>(name);
+                item.setGraphic(new ImageView("/images/closedir.png"));
+                items.add(index, item);
+            }
+            index++;
+        }
+        if(currentSearch != null && !names.contains(currentSearch)) {
+            currentSearch = null;
+            emails.clear();
+        }
+        else if(currentSearch != null)
+            emails.setAll(findPage(null));
+    }
+    
+    /**
+     * Updates the changed email in the table of the current directory.
+     * The email is added where the sort order places it, unless it belongs
+     * to a page that was not read yet.
+     * 
+     * @param id the id of the changed email.
+     * @param operation the last operation done on the email.
+     * 
+     * @throws SQLException If there was a problem when reading from the database.
+     */
+    private void updateEmail(int id, Change.Operation operation) throws SQLException {
+        if(currentDir == null)
+            return;
+        EmailCustom selected = emailTable.getSelectionModel().getSelectedItem();
+        emails.removeIf(e -> e.getId() == id);
+        if(operation == Change.Operation.DELETE)
+            return;
+        EmailCustom email = maildao.findEmailById(id);
+        if(email == null || email.isArchived() || !currentDir.equals(email.getDirectory()))
+            return;
+        int index = Collections.binarySearch(emails, email, 
+                                             pageKey.comparator(user.getFromEmail(), pageAscending));
+        index = index < 0 ? -(index + 1) : index;
+        if(index < emails.size() || lastPage) {
+            emails.add(index, email);
+            //the displayed email stays selected, e.g. once it was read
+            if(selected != null && selected.getId() == id)
+                emailTable.getSelectionModel().select(email);
+        }
+    }
+    
     /**
      * Depending on which email is chosen (either the user sent it or received it)
      * the appropriate column name is displayed.
@@ -332,7 +675,9 @@ public class EmailAppController {
     
     /**
      * Called when user selects an email.
-     * The email content is displayed.
+     * The email content is displayed, and the email is marked as read.
+     * The messages of a partial email are downloaded first; the email 
+     * is displayed again once they are saved.
      * 
      * @param newSelection the user selected email.
      */
@@ -340,6 +685,16 @@ public class EmailAppController {
         if(newSelection != null) {
             displayHelper = new EmailDisplayHelper(bundle, newSelection);
             htmlDisplay.setHtmlText(displayHelper.getEmailText());
+            //the emails of the unified inbox may belong to other accounts
+            if(currentDir != null || currentSearch != null) {
+                if(newSelection.isPartial())
+                    accounts.getPrimary().loadContent(newSelection, this::showNewEmails);
+                try {
+                    maildao.updateEmailSeen(newSelection.getId(), true);
+                } catch (SQLException e) {
+                    log.error("Unable to mark the email as read: ", e.getMessage());
+                }
+            }
         }
     } 
     
@@ -355,19 +710,16 @@ public class EmailAppController {
     
     /**
      * Looks for the new messages on the server and updates the tree structure.
-     * If new emails are found, adds them to the email table
-     * and saves them to the database.
+     * The accounts are checked in the background; the new emails are saved
+     * to the database and then displayed.
      */
     private void refreshApp(){
         try {
-            //get new messages
-            List<EmailCustom> list = mail.receiveEmail();
-            //save new messages in the database
-            for(EmailCustom e : list)
-                maildao.saveEmail(e);
-            //update directories
-            dirs = FXCollections.observableArrayList(folderdao.findAll());             
-            populateTreeView();
+            //the new emails are saved on the accounts' schedulers
+            for(Account account : accounts.getAccounts())
+                account.syncNow(this::showNewEmails);
+            //update directories and emails that changed
+            applyChanges();
         } catch (SQLException ex) {
             log.error("Error when working with the database.", ex.getMessage());
             Platform.exit();
@@ -542,12 +894,14 @@ public class EmailAppController {
             scene.getStylesheets().add("/styles/Styles.css");
             scene.getStylesheets().add("http://fonts.googleapis.com/css?family=Ubuntu");
             CreateEmailController controller = loader.getController();
-            controller.setMailUtilities(mail, maildao);
+            controller.setAccount(accounts.getPrimary());
             controller.setFileChooser(fileChooser);
             if(email != null) 
                 controller.setEmail(email);
-            if(to != null)
+            if(to != null) {
                 controller.setText(to);
+                controller.setOriginal(email);
+            }
             //curent stage is the owner of this window
             stage.initOwner((Stage) emailTable.getScene().getWindow());
             stage.showAndWait();
@@ -562,8 +916,8 @@ public class EmailAppController {
     //DIRECTORY EVENT HANDLERS
     
     /**
-     * Deletes the selected directory.
-     * The directory is deleted from the tree, list and database.
+     * Deletes the selected directory with its subdirectories.
+     * The directory is deleted from the tree and database.
      * It is invalid to delete the parent node.
      * 
      * @param event the event that triggered this action.
@@ -572,14 +926,15 @@ public class EmailAppController {
     private void deleteDir(ActionEvent event) {
         try {
             TreeItem<String> item = dirTree.getSelectionModel().getSelectedItem();
-            if(item != null) {
+            if(item instanceof DirectoryTreeItem) {
                 TreeItem<String> parent = item.getParent();
                 if (parent == null)
                     displayAlert(bundle.getString("parentErr"), Alert.AlertType.ERROR);
                 else {
                     parent.getChildren().remove(item);
-                    dirs.remove(item.getValue());
                     folderdao.deleteDirectory(item.getValue());
+                    if(parent instanceof DirectoryTreeItem)
+                        ((DirectoryTreeItem)parent).refresh();
                 }
             }
             else
@@ -592,13 +947,16 @@ public class EmailAppController {
     }
     
     /**
-     * Creates new directory.
+     * Creates new directory in the selected directory,
+     * or at the top if no directory is selected.
      * 
      * @param event the event that triggered this action.
      */
     @FXML 
     private void newDir(ActionEvent event) {   
-        TreeItem<String> parent = dirTree.getRoot();
+        TreeItem<String> parent = dirTree.getSelectionModel().getSelectedItem();
+        if(!(parent instanceof DirectoryTreeItem))
+            parent = dirTree.getRoot();
         getDirectoryFromUser(null, parent);
     }
     
@@ -610,7 +968,7 @@ public class EmailAppController {
     @FXML 
     private void renameDir(ActionEvent event) {
         TreeItem<String> item = dirTree.getSelectionModel().getSelectedItem();
-        if(item != null && !item.getValue().equals(dirTree.getRoot().getValue())) {    
+        if(item instanceof DirectoryTreeItem && ((DirectoryTreeItem)item).getDirectory() != null) {    
             TreeItem<String> parent = item.getParent();
             getDirectoryFromUser(item, parent);
         }
@@ -639,7 +997,6 @@ public class EmailAppController {
             ModifyDirController controller = loader.getController();
             controller.setDirectory(directory);
             controller.setFolderDAO(folderdao);
-            controller.setDirList(dirs);
             controller.setTreeParent(parent);
             //curent stage is the owner of this window
             stage.initOwner((Stage) emailTable.getScene().getWindow());
@@ -707,5 +1064,84 @@ public class EmailAppController {
             log.error("Error writing to the disk", io);
         }
     }
-
+    
+    //SAVED SEARCH EVENT HANDLERS
+    
+    /**
+     * Opens a new window to save a new search, 
+     * which is then displayed with the other saved searches.
+     * 
+     * @param event the event that triggered this action.
+     */
+    @FXML 
+    private void newSearch(ActionEvent event) {
+        try {
+            Stage stage = new Stage();
+            stage.setTitle(bundle.getString("searchTitle"));
+            FXMLLoader loader = new FXMLLoader(getClass().getResource("/fxml/SavedSearch.fxml"), bundle);
+            GridPane root = (GridPane)loader.load();
+            
+            Scene scene = new Scene(root);
+            stage.setScene(scene);
+            scene.getStylesheets().add("/styles/Styles.css");
+            scene.getStylesheets().add("http://fonts.googleapis.com/css?family=Ubuntu");
+            SavedSearchController controller = loader.getController();
+            controller.setSearchDAO(searchdao);
+            stage.initOwner((Stage) emailTable.getScene().getWindow());
+            stage.setResizable(false);
+            stage.initModality(Modality.APPLICATION_MODAL);
+            stage.showAndWait();
+            
+            updateSearches();
+            searchesItem.setExpanded(true);
+        } catch (IOException ex) {
+            log.error("Error reading the file: ", ex.getMessage());
+            Platform.exit();
+        } catch (SQLException ex) {
+            log.error("Unable to read the saved searches: ", ex.getMessage());
+        }
+    }
+    
+    /**
+     * Finds the emails of the selected saved search again from all emails,
+     * e.g. once some of them got too old for it.
+     * 
+     * @param event the event that triggered this action.
+     */
+    @FXML 
+    private void refreshSearch(ActionEvent event) {
+        TreeItem<String> item = dirTree.getSelectionModel().getSelectedItem();
+        if(item == null || item.getParent() != searchesItem) {
+            displayAlert(bundle.getString("notSelectedSearchErr"), Alert.AlertType.ERROR);
+            return;
+        }
+        try {
+            searchdao.refreshSearch(item.getValue());
+            updateSearches();
+        }
+        catch (SQLException ex) {
+            log.error("Unable to refresh the saved search: ", ex.getMessage());
+        }
+    }
+    
+    /**
+     * Deletes the selected saved search; its emails are not deleted.
+     * 
+     * @param event the event that triggered this action.
+     */
+    @FXML 
+    private void deleteSearch(ActionEvent event) {
+        TreeItem<String> item = dirTree.getSelectionModel().getSelectedItem();
+        if(item == null || item.getParent() != searchesItem) {
+            displayAlert(bundle.getString("notSelectedSearchErr"), Alert.AlertType.ERROR);
+            return;
+        }
+        try {
+            searchdao.deleteSearch(item.getValue());
+            updateSearches();
+        }
+        catch (SQLException ex) {
+            log.error("Unable to delete the saved search: ", ex.getMessage());
+        }
+    }
 }
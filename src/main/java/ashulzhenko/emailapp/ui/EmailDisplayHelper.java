@@ -109,6 +109,9 @@ public class EmailDisplayHelper {
      * @return all messages belonging to the selected email.
      */
     private String getMessages() {
+        //the messages are being downloaded from the server
+        if(currentEmail.isPartial())
+            return bundle.getString("loading");
         StringBuilder message = new StringBuilder("");
         List<EmailMessage> list = currentEmail.getAllMessages();
         for(EmailMessage em : list)
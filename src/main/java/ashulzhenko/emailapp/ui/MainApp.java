@@ -1,7 +1,12 @@
 package ashulzhenko.emailapp.ui;
 
+import ashulzhenko.emailapp.account.AccountManager;
 import ashulzhenko.emailapp.bean.UserConfigBean;
+import ashulzhenko.emailapp.data.QueryStatistics;
 import ashulzhenko.emailapp.properties.PropertiesManager;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.List;
 import java.util.ResourceBundle;
 import javafx.application.Application;
 import javafx.fxml.FXMLLoader;
@@ -24,8 +29,11 @@ import javafx.scene.image.Image;
 public class MainApp extends Application {   
     private final Logger log = LoggerFactory.getLogger(getClass().getName());
     private PropertiesManager pm;
+    private AccountManager accounts;
     private ResourceBundle bundle;
     private static final String PROPERTIES_PATH = "src/main/resources/properties";
+    //interval in seconds between two query statistics reports in the log
+    private static final long STATS_INTERVAL = 300;
     
     /**
      * Instantiates the object.
@@ -43,6 +51,7 @@ public class MainApp extends Application {
     @Override
     public void start(Stage stage) {
         try {           
+            QueryStatistics.startReporting(STATS_INTERVAL);
             pm = new PropertiesManager();
             UserConfigBean user = pm.loadTextProperties(PROPERTIES_PATH, "data");
             stage.getIcons().add(new Image(MainApp.class.getResourceAsStream("/images/email.png")));
@@ -89,7 +98,7 @@ public class MainApp extends Application {
             EmailAppController controller = loader.getController();
             controller.setBundle(bundle);
             controller.setMainApp(this);
-            controller.setUserInfo(user);
+            controller.setAccounts(createAccounts(user));
             stage.show();
         } catch (Exception ex) {
             log.error("Error in Email App", ex.getMessage());
@@ -128,6 +137,39 @@ public class MainApp extends Application {
         }
     }
     
+    /**
+     * Stops the background work of all accounts when the application is closed
+     * and writes the final query statistics to the log.
+     */
+    @Override
+    public void stop() {
+        if(accounts != null)
+            accounts.close();
+        QueryStatistics.stopReporting();
+        QueryStatistics.report();
+    }
+    
+    /**
+     * Creates the accounts of the user: the given primary account and
+     * the additional accounts found in the properties directory.
+     * 
+     * @param user the primary account information.
+     * 
+     * @return all accounts of the user.
+     * 
+     * @throws IOException If there is a problem when reading properties files.
+     * @throws SQLException If there is a problem when connecting to the database.
+     */
+    private AccountManager createAccounts(UserConfigBean user) throws IOException, SQLException {
+        if(accounts != null)
+            accounts.close();
+        List<UserConfigBean> users = pm.loadAccounts(PROPERTIES_PATH, "data");
+        //the primary account may have just been configured
+        users.set(0, user);
+        accounts = new AccountManager(users);
+        return accounts;
+    }
+    
     /**
      * Verifies the UserConfigBean if some values are empty.
      * 
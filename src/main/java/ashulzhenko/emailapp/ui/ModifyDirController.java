@@ -5,7 +5,6 @@ import java.net.URL;
 import java.sql.SQLException;
 import java.util.List;
 import java.util.ResourceBundle;;
-import javafx.collections.ObservableList;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
@@ -13,7 +12,6 @@ import javafx.scene.control.Button;
 import javafx.scene.control.Label;
 import javafx.scene.control.TextField;
 import javafx.scene.control.TreeItem;
-import javafx.scene.image.ImageView;
 import javafx.stage.Stage;
 import org.slf4j.LoggerFactory;
 
@@ -39,7 +37,6 @@ public class ModifyDirController implements Initializable {
     private ResourceBundle bundle;
     private FolderStorageDAO folderdao;
     private TreeItem<String> currentDir;
-    private ObservableList<String> dirs;
     private TreeItem<String> parent;
     
     private final org.slf4j.Logger log = LoggerFactory.getLogger(getClass().getName());
@@ -78,8 +75,8 @@ public class ModifyDirController implements Initializable {
     /**
      * Renames or creates a new directory if the user input was valid.
      * The stage is hidden afterwards.
-     * Both TreeView and ObservableList are updated.
-     * The changes are saved in the database.
+     * The changes are saved in the database, and the subdirectories 
+     * of the parent are read again in the TreeView.
      * 
      * @param event the event that triggered this action.
      */
@@ -89,22 +86,17 @@ public class ModifyDirController implements Initializable {
         boolean valid = validateDir(newDir);
         if(valid) {
             dirError.setVisible(false);
-            newDir = newDir.trim();
-            TreeItem<String> item = new TreeItem<>(newDir);
-            item.setGraphic(new ImageView("/images/closedir.png"));
+            newDir = fullName(newDir.trim());
             try {
                 //rename directory
-                if(currentDir != null) {
-                    List<TreeItem<String>> list = parent.getChildren();
-                    list.set(list.indexOf(currentDir), item);
-                    dirs.set(dirs.indexOf(currentDir.getValue()), newDir);
+                if(currentDir != null)
                     folderdao.updateDirectory(currentDir.getValue(), newDir);
-                }
                 //create new directory
-                else {
-                    parent.getChildren().add(item);
-                    dirs.add(newDir);
+                else
                     folderdao.createDirectory(newDir);
+                if(parent instanceof DirectoryTreeItem) {
+                    ((DirectoryTreeItem)parent).refresh();
+                    parent.setExpanded(true);
                 }
             }
             catch (SQLException ex) {
@@ -119,7 +111,8 @@ public class ModifyDirController implements Initializable {
     
     /**
      * Validates the directory name provided by the user.
-     * It is invalid if it is null, an empty string, or it is a duplicate.
+     * It is invalid if it is null, an empty string, contains the separator
+     * of the directories, or it is a duplicate.
      * 
      * @param dir the directory name provided by the user.
      * 
@@ -131,8 +124,13 @@ public class ModifyDirController implements Initializable {
             dirError.setVisible(true);
             return false;
         }
+        if(dir.contains(FolderStorageDAO.SEPARATOR)) {           
+            dirError.setText(bundle.getString("separatorDirErr"));
+            dirError.setVisible(true);
+            return false;
+        }
         List<TreeItem<String>> list = parent.getChildren();
-        if(inList(list, dir) || dir.equals(parent.getValue())) {           
+        if(inList(list, fullName(dir.trim())) || dir.equals(parent.getValue())) {           
             dirError.setText(bundle.getString("duplicateDirErr"));
             dirError.setVisible(true);
             return false;
@@ -140,6 +138,19 @@ public class ModifyDirController implements Initializable {
         return true;    
     }
     
+    /**
+     * Returns the full name of the directory in the parent directory.
+     * 
+     * @param name the name of the directory without the names of its parents.
+     * 
+     * @return the full name of the directory.
+     */
+    private String fullName(String name) {
+        String parentDir = parent instanceof DirectoryTreeItem ? 
+                           ((DirectoryTreeItem)parent).getDirectory() : null;
+        return parentDir == null ? name : parentDir + FolderStorageDAO.SEPARATOR + name;
+    }
+    
     /**
      * Verifies if the specific value is in the list.
      * 
@@ -157,14 +168,15 @@ public class ModifyDirController implements Initializable {
 
     /**
      * Sets the current directory name. It is null if the new directory
-     * should be created. The input field shows the old directory name.
+     * should be created. The input field shows the old directory name
+     * without the names of its parents.
      * 
      * @param directory the old directory name.
      */
     public void setDirectory(TreeItem<String> directory) {
         this.currentDir = directory;
         if(directory != null) {
-            input.setText(currentDir.getValue());
+            input.setText(DirectoryTreeItem.shortName(currentDir.getValue()));
         }
         else
             input.setText("");
@@ -180,16 +192,6 @@ public class ModifyDirController implements Initializable {
         this.folderdao = folderdao;
     }
 
-    /**
-     * Sets the ObservableList of directories containing the names of all
-     * current directories.
-     * 
-     * @param dirs the ObservableList all current directories.
-     */
-    public void setDirList(ObservableList<String> dirs) {
-        this.dirs = dirs;
-    }
-
     /**
      * Sets the parent object for the TreeView, which will contain
      * the new directory, or which contains the directory to be renamed.
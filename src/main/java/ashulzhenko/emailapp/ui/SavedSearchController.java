@@ -0,0 +1,134 @@
+package ashulzhenko.emailapp.ui;
+
+import ashulzhenko.emailapp.interfaces.SearchStorageDAO;
+import java.net.URL;
+import java.sql.SQLException;
+import java.util.ResourceBundle;
+import javafx.event.ActionEvent;
+import javafx.fxml.FXML;
+import javafx.fxml.Initializable;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.control.TextField;
+import javafx.stage.Stage;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The controller that is responsible for displaying the stage for
+ * saving a new search, which is then displayed as a folder.
+ *
+ * Note: since it is a child window, when an error occurs (e.g. SQLException),
+ * the window is closed to display the main app, and the error is logged.
+ *
+ * @author Alena Shulzhenko
+ * @version 19/10/2026
+ * @since 1.8
+ */
+public class SavedSearchController implements Initializable {
+    @FXML
+    private Label searchError;
+    @FXML
+    private Button cancel;
+    @FXML
+    private TextField name;
+    @FXML
+    private TextField query;
+
+    private ResourceBundle bundle;
+    private SearchStorageDAO searchdao;
+
+    private final org.slf4j.Logger log = LoggerFactory.getLogger(getClass().getName());
+
+    /**
+     * Instantiates the object.
+     */
+    public SavedSearchController() {}
+
+    /**
+     * Called to initialize a controller after its root element
+     * has been completely processed.
+     *
+     * @param url The location used to resolve relative paths for
+     *            the root object, or null if the location is not known.
+     * @param rb The resources used to localize the root object,
+     *            or null if the root object was not localized.
+     */
+    @FXML
+    @Override
+    public void initialize(URL url, ResourceBundle rb) {
+        this.bundle = rb;
+    }
+
+    /**
+     * Closes the stage if the user presses cancel button.
+     *
+     * @param event the event that triggered this action.
+     */
+    @FXML
+    private void onCancel(ActionEvent event) {
+        Stage stage = (Stage) cancel.getScene().getWindow();
+        stage.close();
+    }
+
+    /**
+     * Saves the search if the user input was valid, which finds its emails.
+     * The stage is hidden afterwards.
+     *
+     * @param event the event that triggered this action.
+     */
+    @FXML
+    private void onSubmit(ActionEvent event) {
+        if(isEmpty(name.getText()) || isEmpty(query.getText())) {
+            showError(bundle.getString("noValueErr"));
+            return;
+        }
+        try {
+            if(searchdao.findSearches().containsKey(name.getText().trim())) {
+                showError(bundle.getString("duplicateSearchErr"));
+                return;
+            }
+            searchdao.createSearch(name.getText(), query.getText());
+        }
+        catch (IllegalArgumentException ex) {
+            //the search has an unknown term
+            showError(bundle.getString("invalidQueryErr") + ex.getMessage());
+            return;
+        }
+        catch (SQLException ex) {
+            log.error("Unable to save the search: ", ex.getMessage());
+        }
+        Stage stage = (Stage) cancel.getScene().getWindow();
+        stage.close();
+    }
+
+    /**
+     * Verifies whether the value provided by the user is empty.
+     *
+     * @param value the value provided by the user.
+     *
+     * @return true if the value is null or an empty string; false otherwise.
+     */
+    private boolean isEmpty(String value) {
+        return value == null || value.trim().isEmpty();
+    }
+
+    /**
+     * Displays the error message in the window.
+     *
+     * @param message the error message to display.
+     */
+    private void showError(String message) {
+        searchError.setText(message);
+        searchError.setVisible(true);
+    }
+
+    /**
+     * Sets saved searches data access object in order to
+     * work with the database.
+     *
+     * @param searchdao saved searches DAO object to work with the database.
+     */
+    public void setSearchDAO(SearchStorageDAO searchdao) {
+        this.searchdao = searchdao;
+    }
+}
@@ -1,14 +1,44 @@
 -- dropping
+drop table if exists schema_version;
+drop table if exists merge_progress;
+drop table if exists outbox;
+drop table if exists sync_state;
+drop table if exists search_members;
+drop table if exists saved_searches;
+drop table if exists change_log;
+drop table if exists folder_stats;
+drop table if exists correspondent_stats;
+drop table if exists thread_folders;
+drop table if exists thread_ids;
 drop table if exists email_address;
 drop table if exists attachments;
+drop table if exists email_archive;
 drop table if exists emails;
+drop table if exists threads;
 drop table if exists addresses;
+drop table if exists directory_paths;
 drop table if exists directories;
 
 -- creating new tables
+-- name is the full path of the directory, e.g. Clients/Acme/2024;
+-- parent has no foreign key, so that a subtree is deleted at once
+-- instead of cascading one level at a time
 create table directories (
 	id integer primary key AUTO_INCREMENT,
-	name varchar(50) default '' unique
+	name varchar(255) default '' unique,
+	parent integer null,
+	index (parent)
+);
+
+-- every ancestor of every directory, the directory itself at depth 0
+create table directory_paths (
+    ancestor integer,
+    descendant integer,
+    depth integer not null,
+    primary key (ancestor, descendant),
+    index (descendant),
+    foreign key (ancestor) references directories(id) ON DELETE CASCADE,
+    foreign key (descendant) references directories(id) ON DELETE CASCADE
 );
 
 create table addresses (
@@ -17,6 +47,13 @@ create table addresses (
 );
 
 
+-- conversation threads; subject is stored without Re: and Fw: prefixes
+create table threads (
+    id integer primary key AUTO_INCREMENT,
+    subject varchar(50) not null default '',
+    index (subject)
+);
+
 create table emails (
 	id integer primary key AUTO_INCREMENT,
 	msgNumber integer default 0,
@@ -26,6 +63,36 @@ create table emails (
 	message text,
 	sentDate timestamp null,
 	subject varchar(50) default '',
+	archived boolean not null default false,
+	-- deleted emails are kept until they are purged in the background
+	deleted boolean not null default false,
+	-- received emails are unread until they are displayed
+	seen boolean not null default false,
+	-- sort keys of the email table: received or sent date, and sender or first recipient
+	emailDate datetime not null default '1970-01-01 00:00:00',
+	contact varchar(150) not null default '',
+	-- size of the messages and attachments in bytes
+	size integer not null default 0,
+	messageId varchar(255) null,
+	inReplyTo varchar(255) null,
+	refs text,
+	thread integer null,
+	-- where a received email is on the server: the folder, its UIDVALIDITY and the UID
+	serverFolder varchar(255) null,
+	uidValidity bigint null,
+	uid bigint null,
+	-- true while only the headers are saved; the messages and attachments
+	-- are downloaded when the email is opened or by the background prefetch
+	partial boolean not null default false,
+	index (directory, deleted, archived, emailDate, id),
+	index (directory, deleted, archived, contact, id),
+	index (directory, deleted, archived, subject, id),
+	index (deleted),
+	index (partial, emailDate),
+	index (messageId),
+	index (uid, serverFolder),
+	index (thread, directory),
+	foreign key (thread) references threads(id) ON DELETE SET NULL,
 	foreign key (directory) references directories(id) ON DELETE CASCADE ON UPDATE CASCADE,
     foreign key (fromEmail) references addresses(id)
 );
@@ -50,6 +117,129 @@ create table attachments (
     foreign key (email) references emails(id) ON DELETE CASCADE ON UPDATE CASCADE
 );
 
+-- every message id seen in Message-ID, In-Reply-To and References headers
+create table thread_ids (
+    messageId varchar(255) primary key,
+    thread integer not null,
+    index (thread),
+    foreign key (thread) references threads(id) ON DELETE CASCADE ON UPDATE CASCADE
+);
+
+-- number of emails and latest date of every thread in every directory
+create table thread_folders (
+    thread integer,
+    directory integer,
+    messageCount integer not null default 0,
+    latestDate timestamp null,
+    primary key (directory, thread),
+    index (directory, latestDate),
+    foreign key (thread) references threads(id) ON DELETE CASCADE ON UPDATE CASCADE,
+    foreign key (directory) references directories(id) ON DELETE CASCADE ON UPDATE CASCADE
+);
+
+-- number of emails, their size and their first and last dates
+-- of every correspondent in every directory by month
+create table correspondent_stats (
+    contact varchar(150) not null,
+    directory integer,
+    month date not null,
+    messageCount integer not null default 0,
+    bytes bigint not null default 0,
+    firstSeen datetime null,
+    lastSeen datetime null,
+    primary key (contact, directory, month),
+    index (directory, month),
+    foreign key (directory) references directories(id) ON DELETE CASCADE ON UPDATE CASCADE
+);
+
+-- the same statistics for every directory by month
+create table folder_stats (
+    directory integer,
+    month date not null,
+    messageCount integer not null default 0,
+    bytes bigint not null default 0,
+    firstSeen datetime null,
+    lastSeen datetime null,
+    primary key (directory, month),
+    foreign key (directory) references directories(id) ON DELETE CASCADE ON UPDATE CASCADE
+);
+
+-- every change of the emails and directories; the version only grows,
+-- so that the application reads the changes after the version it has
+create table change_log (
+    version bigint primary key AUTO_INCREMENT,
+    entity varchar(10) not null,
+    operation varchar(10) not null,
+    entityId integer not null,
+    changed timestamp not null default current_timestamp,
+    index (changed)
+);
+
+-- saved searches displayed as folders; query holds the search terms,
+-- e.g. from:alice has:attachment newer:30 is:unread
+create table saved_searches (
+    id integer primary key AUTO_INCREMENT,
+    name varchar(100) not null unique,
+    query varchar(255) not null
+);
+
+-- emails that match every saved search, kept up to date when emails are
+-- saved, moved and read; emails that became too old for newer:days
+-- are skipped when the search is displayed, and removed when it is rebuilt
+create table search_members (
+    search integer,
+    email integer,
+    primary key (search, email),
+    index (email),
+    foreign key (search) references saved_searches(id) ON DELETE CASCADE,
+    foreign key (email) references emails(id) ON DELETE CASCADE ON UPDATE CASCADE
+);
+
+-- compressed messages and attachments of archived emails; rows are never updated
+create table email_archive (
+    email integer primary key,
+    payload longblob not null,
+    archivedDate timestamp not null default current_timestamp,
+    foreign key (email) references emails(id) ON DELETE CASCADE ON UPDATE CASCADE
+);
+
+-- the synchronization of every folder of the mail server: the emails whose
+-- UID is above lastUid are new, as long as the UIDVALIDITY of the folder is the same
+create table sync_state (
+    folder varchar(255) primary key,
+    uidValidity bigint not null,
+    lastUid bigint not null
+);
+
+-- the delivery of the emails waiting in the outbox directory: an email without
+-- a row was not tried yet, and nextAttempt is null once its delivery was given up
+create table outbox (
+    email integer primary key,
+    attempts integer not null default 0,
+    nextAttempt timestamp null,
+    lastError varchar(255) null,
+    index (nextAttempt),
+    foreign key (email) references emails(id) ON DELETE CASCADE ON UPDATE CASCADE
+);
+
+-- how far a mail merge went: the number of recipients handled from the start
+-- of its list, so that it is resumed after them
+create table merge_progress (
+    name varchar(100) primary key,
+    position bigint not null default 0,
+    sent integer not null default 0,
+    failed integer not null default 0
+);
+
+-- the version of the schema; it is the same as SchemaMigration.VERSION;
+-- step is the number of statements of the next version already executed
+create table schema_version (
+    version integer not null,
+    step integer not null default 0
+);
+insert into schema_version (version) values (13);
+
 -- default directories
 insert into directories (name) values ('inbox');
 insert into directories (name) values ('sent');
+insert into directory_paths (ancestor, descendant, depth) select id, id, 0 from directories;
@@ -0,0 +1,47 @@
+package ashulzhenko.emailapp.account;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+/**
+ * Creates the implementations of the interfaces used by the account classes
+ * from objects that only have the methods a test needs.
+ * @author Alena Shulzhenko
+ */
+final class Fakes {
+
+    /**
+     * Prevents instantiation.
+     */
+    private Fakes() {}
+
+    /**
+     * Implements the interface with the methods of the target that have
+     * the same name and parameters; the other methods throw
+     * UnsupportedOperationException.
+     * @param type the interface.
+     * @param target the object with the methods.
+     * @return the implementation of the interface.
+     */
+    static <T> T of(Class<T> type, Object target) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type},
+                (proxy, method, args) -> {
+            Method implementation;
+            try {
+                implementation = target.getClass().getDeclaredMethod(method.getName(),
+                                                                     method.getParameterTypes());
+            }
+            catch (NoSuchMethodException ex) {
+                throw new UnsupportedOperationException(type.getSimpleName() + "." + method.getName());
+            }
+            implementation.setAccessible(true);
+            try {
+                return implementation.invoke(target, args);
+            }
+            catch (InvocationTargetException ex) {
+                throw ex.getCause();
+            }
+        }));
+    }
+}
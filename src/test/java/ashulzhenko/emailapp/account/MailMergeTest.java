@@ -0,0 +1,168 @@
+package ashulzhenko.emailapp.account;
+
+import ashulzhenko.emailapp.bean.EmailCustom;
+import ashulzhenko.emailapp.bean.MergeProgress;
+import ashulzhenko.emailapp.bean.MergeRecipient;
+import ashulzhenko.emailapp.bean.SendResult;
+import ashulzhenko.emailapp.bean.UserConfigBean;
+import ashulzhenko.emailapp.interfaces.Mailer;
+import ashulzhenko.emailapp.interfaces.MergeStorageDAO;
+import ashulzhenko.emailapp.mail.MergeTemplate;
+import ashulzhenko.emailapp.rules.MethodLogger;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import jodd.mail.MailException;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ * Tests MailMerge with a server and a progress kept in memory.
+ * @author Alena Shulzhenko
+ */
+public class MailMergeTest {
+
+    @Rule
+    public MethodLogger methodLogger = new MethodLogger();
+
+    private static final String MERGE = "newsletter";
+    private static final int RECIPIENTS = 45;
+
+    //the number of emails received by every recipient
+    private final Map<String, AtomicInteger> received = new ConcurrentHashMap<>();
+    //the recipients whose emails fail
+    private final Set<String> failing = ConcurrentHashMap.newKeySet();
+    //the number of emails after which the server cannot be reached
+    private volatile int capacity = Integer.MAX_VALUE;
+    private final AtomicInteger delivered = new AtomicInteger();
+    private final Map<String, MergeProgress> saved = new ConcurrentHashMap<>();
+    private MergeTemplate template;
+
+    @Before
+    public void init() throws IOException {
+        template = new MergeTemplate("Hello {{name}}", "<p>Dear {{name}}</p>", new String[0], new String[0]);
+    }
+
+    @Test
+    public void runTest() throws Exception {
+        MergeProgress progress = createMerge(3).run(MERGE, template, recipients().iterator());
+        assertEquals(RECIPIENTS, progress.getPosition());
+        assertEquals(RECIPIENTS, progress.getSent());
+        assertEquals(0, progress.getFailed());
+        assertEquals(RECIPIENTS, saved.get(MERGE).getPosition());
+        assertReceivedOnce(0, RECIPIENTS);
+    }
+
+    @Test
+    public void runTest_RecipientFails() throws Exception {
+        failing.add(address(5));
+        MergeProgress progress = createMerge(3).run(MERGE, template, recipients().iterator());
+        //the other recipients of the chunk are sent and the failure is counted
+        assertEquals(RECIPIENTS, progress.getPosition());
+        assertEquals(RECIPIENTS - 1, progress.getSent());
+        assertEquals(1, progress.getFailed());
+        assertEquals(null, received.get(address(5)));
+        assertEquals(1, received.get(address(4)).get());
+    }
+
+    @Test
+    public void runTest_Resumed() throws Exception {
+        saved.put(MERGE, new MergeProgress(MERGE, 20, 18, 2));
+        MergeProgress progress = createMerge(2).run(MERGE, template, recipients().iterator());
+        assertEquals(RECIPIENTS, progress.getPosition());
+        assertEquals(18 + RECIPIENTS - 20, progress.getSent());
+        assertEquals(2, progress.getFailed());
+        assertEquals(null, received.get(address(19)));
+        assertReceivedOnce(20, RECIPIENTS);
+    }
+
+    @Test
+    public void runTest_ServerUnreachable() throws Exception {
+        MailMerge merge = createMerge(1);
+        //the server stops answering after the first chunk
+        capacity = 20;
+        try {
+            merge.run(MERGE, template, recipients().iterator());
+            fail();
+        }
+        catch (MailException ex) {
+            assertEquals(20, saved.get(MERGE).getPosition());
+        }
+        capacity = Integer.MAX_VALUE;
+        MergeProgress progress = merge.run(MERGE, template, recipients().iterator());
+        assertEquals(RECIPIENTS, progress.getSent());
+        assertReceivedOnce(0, RECIPIENTS);
+    }
+
+    /**
+     * Verifies that every recipient between the positions received one email.
+     * @param from the first position.
+     * @param to the position after the last one.
+     */
+    private void assertReceivedOnce(int from, int to) {
+        for (int i = from; i < to; i++)
+            assertEquals(address(i), 1, received.get(address(i)).get());
+    }
+
+    /**
+     * Creates the recipients of the mail merge.
+     * @return the recipients.
+     */
+    private List<MergeRecipient> recipients() {
+        List<MergeRecipient> recipients = new ArrayList<>();
+        for (int i = 0; i < RECIPIENTS; i++)
+            recipients.add(new MergeRecipient(address(i), Collections.singletonMap("name", "reader " + i)));
+        return recipients;
+    }
+
+    private String address(int position) {
+        return "reader" + position + "@gmail.com";
+    }
+
+    /**
+     * Creates the mail merge of a server and a progress kept in memory.
+     * @param parallelism the maximum number of chunks sent at once.
+     * @return the mail merge.
+     */
+    private MailMerge createMerge(int parallelism) {
+        UserConfigBean userInfo = new UserConfigBean("cs.517.send@gmail.com", "password", 993,
+                                                     "imap.gmail.com", 465, "smtp.gmail.com");
+        Mailer mail = Fakes.of(Mailer.class, new Object() {
+            UserConfigBean getUserInfo() {
+                return userInfo;
+            }
+            List<SendResult> sendEmails(Collection<EmailCustom> emails) {
+                List<SendResult> results = new ArrayList<>();
+                for (EmailCustom email : emails) {
+                    String to = email.getTo()[0].getEmail();
+                    if (delivered.get() >= capacity || failing.contains(to))
+                        results.add(new SendResult(email, new MailException("Connection refused")));
+                    else {
+                        received.computeIfAbsent(to, k -> new AtomicInteger()).incrementAndGet();
+                        delivered.incrementAndGet();
+                        results.add(new SendResult(email));
+                    }
+                }
+                return results;
+            }
+        });
+        MergeStorageDAO mergedao = Fakes.of(MergeStorageDAO.class, new Object() {
+            MergeProgress findProgress(String name) {
+                return saved.getOrDefault(name, new MergeProgress(name, 0, 0, 0));
+            }
+            void saveProgress(MergeProgress progress) {
+                saved.put(progress.getName(), progress);
+            }
+        });
+        return new MailMerge("cs.517.send@gmail.com", mail, mergedao, parallelism);
+    }
+}
@@ -0,0 +1,192 @@
+package ashulzhenko.emailapp.account;
+
+import ashulzhenko.emailapp.bean.EmailCustom;
+import ashulzhenko.emailapp.bean.OutboxEntry;
+import ashulzhenko.emailapp.bean.SendResult;
+import ashulzhenko.emailapp.interfaces.MailStorageDAO;
+import ashulzhenko.emailapp.interfaces.Mailer;
+import ashulzhenko.emailapp.interfaces.OutboxDAO;
+import ashulzhenko.emailapp.rules.MethodLogger;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import jodd.mail.MailException;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ * Tests OutboxSender with an outbox and a server kept in memory.
+ * @author Alena Shulzhenko
+ */
+public class OutboxSenderTest {
+
+    @Rule
+    public MethodLogger methodLogger = new MethodLogger();
+
+    //the emails saved in the database by id
+    private final Map<Integer, EmailCustom> emails = new HashMap<>();
+    //the delivery state of the outbox by id
+    private final Map<Integer, OutboxEntry> due = new TreeMap<>();
+    private final Set<Integer> claimed = new HashSet<>();
+    private final Map<Integer, String> sent = new HashMap<>();
+    private final Map<Integer, Date> retried = new HashMap<>();
+    private final Map<Integer, String> failed = new HashMap<>();
+    //the failure of every recipient; the other recipients receive their email
+    private final Map<String, RuntimeException> errors = new HashMap<>();
+    private int claims;
+    private OutboxSender sender;
+
+    @After
+    public void close() {
+        if (sender != null)
+            sender.close();
+    }
+
+    @Test
+    public void delayOfTest() {
+        Random random = new Random(17);
+        for (int i = 0; i < 100; i++) {
+            long first = OutboxSender.delayOf(1, random);
+            assertTrue(first >= TimeUnit.SECONDS.toMillis(15) && first <= TimeUnit.SECONDS.toMillis(30));
+            long third = OutboxSender.delayOf(3, random);
+            assertTrue(third >= TimeUnit.SECONDS.toMillis(60) && third <= TimeUnit.SECONDS.toMillis(120));
+            //the delay stops growing at 2 hours
+            long last = OutboxSender.delayOf(40, random);
+            assertTrue(last >= TimeUnit.HOURS.toMillis(1) && last <= TimeUnit.HOURS.toMillis(2));
+        }
+    }
+
+    @Test
+    public void deliverDueTest_Sent() throws Exception {
+        queue(1, "first@gmail.com", 0);
+        queue(2, "second@gmail.com", 2);
+        assertEquals(2, createSender().deliverDue());
+        assertEquals("<1@localhost>", sent.get(1));
+        assertEquals("<2@localhost>", sent.get(2));
+        assertTrue(due.isEmpty());
+        assertEquals(OutboxDAO.SENT_DIRECTORY, emails.get(1).getDirectory());
+    }
+
+    @Test
+    public void deliverDueTest_Retried() throws Exception {
+        queue(1, "first@gmail.com", 0);
+        queue(2, "second@gmail.com", 0);
+        errors.put("second@gmail.com", new MailException("Connection refused"));
+        long before = System.currentTimeMillis();
+        assertEquals(1, createSender().deliverDue());
+        assertEquals(1, sent.size());
+        assertTrue(failed.isEmpty());
+        long delay = retried.get(2).getTime() - before;
+        assertTrue(delay >= TimeUnit.SECONDS.toMillis(15) && delay <= TimeUnit.SECONDS.toMillis(31));
+        assertEquals(1, due.get(2).getAttempts());
+    }
+
+    @Test
+    public void deliverDueTest_GivenUp() throws Exception {
+        queue(1, "refused@gmail.com", 0);
+        queue(2, "unreachable@gmail.com", OutboxSender.MAX_ATTEMPTS - 1);
+        errors.put("refused@gmail.com", new IllegalArgumentException("Invalid recipient"));
+        errors.put("unreachable@gmail.com", new MailException("Connection refused"));
+        assertEquals(0, createSender().deliverDue());
+        assertEquals("Invalid recipient", failed.get(1));
+        assertEquals("Connection refused", failed.get(2));
+        assertTrue(retried.isEmpty());
+        assertTrue(sent.isEmpty());
+    }
+
+    @Test
+    public void deliverDueTest_MovedOut() throws Exception {
+        queue(1, "first@gmail.com", 0);
+        emails.get(1).setDirectory("drafts");
+        assertEquals(0, createSender().deliverDue());
+        assertTrue(sent.isEmpty());
+    }
+
+    @Test
+    public void deliverDueTest_Batches() throws Exception {
+        for (int i = 1; i <= 25; i++)
+            queue(i, "recipient" + i + "@gmail.com", 0);
+        assertEquals(25, createSender().deliverDue());
+        //a full batch and the rest
+        assertEquals(2, claims);
+        assertEquals(25, sent.size());
+    }
+
+    /**
+     * Saves an email in the outbox.
+     * @param id the id of the email.
+     * @param to the recipient.
+     * @param attempts the number of failed attempts.
+     */
+    private void queue(int id, String to, int attempts) {
+        EmailCustom email = new EmailCustom();
+        email.from("cs.517.send@gmail.com").to(to).subject("queued").addHtml("<p>queued</p>");
+        email.setId(id);
+        email.setDirectory(OutboxDAO.DIRECTORY);
+        emails.put(id, email);
+        due.put(id, new OutboxEntry(id, attempts, null));
+    }
+
+    /**
+     * Creates the sender of the outbox kept in memory; it is not started.
+     * @return the sender.
+     */
+    private OutboxSender createSender() {
+        Mailer mail = Fakes.of(Mailer.class, new Object() {
+            List<SendResult> sendEmails(Collection<EmailCustom> batch) {
+                List<SendResult> results = new ArrayList<>();
+                for (EmailCustom email : batch) {
+                    RuntimeException error = errors.get(email.getTo()[0].getEmail());
+                    if (error == null) {
+                        email.setMessageId("<" + email.getId() + "@localhost>");
+                        results.add(new SendResult(email));
+                    }
+                    else
+                        results.add(new SendResult(email, error));
+                }
+                return results;
+            }
+        });
+        MailStorageDAO maildao = Fakes.of(MailStorageDAO.class, new Object() {
+            EmailCustom findEmailById(int id) {
+                return emails.get(id);
+            }
+        });
+        OutboxDAO outboxdao = Fakes.of(OutboxDAO.class, new Object() {
+            List<OutboxEntry> claimDueEmails(int number, int lease) {
+                claims++;
+                //the claimed emails are not due until their lease ends
+                List<OutboxEntry> entries = new ArrayList<>();
+                for (OutboxEntry entry : due.values())
+                    if (entries.size() < number && claimed.add(entry.getEmailId()))
+                        entries.add(entry);
+                return entries;
+            }
+            void scheduleRetry(int id, Date nextAttempt, String error) {
+                retried.put(id, nextAttempt);
+                due.put(id, new OutboxEntry(id, due.get(id).getAttempts() + 1, error));
+            }
+            void markFailed(int id, String error) {
+                failed.put(id, error);
+            }
+            void markSent(int id, String messageId) {
+                sent.put(id, messageId);
+                due.remove(id);
+                emails.get(id).setDirectory(OutboxDAO.SENT_DIRECTORY);
+            }
+        });
+        sender = new OutboxSender("cs.517.send@gmail.com", mail, maildao, outboxdao);
+        return sender;
+    }
+}
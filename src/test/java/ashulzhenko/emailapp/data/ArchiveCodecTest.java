@@ -0,0 +1,44 @@
+package ashulzhenko.emailapp.data;
+
+import ashulzhenko.emailapp.rules.MethodLogger;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ * Tests ArchiveCodec.
+ * @author Alena Shulzhenko
+ */
+public class ArchiveCodecTest {
+    
+    @Rule     
+    public MethodLogger methodLogger = new MethodLogger();
+    
+    @Test
+    public void encodeTest() throws IOException {
+        byte[] image = {1, 2, 3, 4, 5};
+        ArchiveCodec archive = new ArchiveCodec("<html>café</html>;", 
+                Arrays.asList("c.jpg"), Arrays.asList(image));
+        ArchiveCodec decoded = ArchiveCodec.decode(archive.encode());
+        assertEquals("<html>café</html>;", decoded.getMessage());
+        assertEquals(Arrays.asList("c.jpg"), decoded.getNames());
+        assertArrayEquals(image, decoded.getAttachments().get(0));
+    }
+    
+    @Test
+    public void encodeTest_NoAttachments() throws IOException {
+        ArchiveCodec archive = new ArchiveCodec(null, Collections.emptyList(), Collections.emptyList());
+        ArchiveCodec decoded = ArchiveCodec.decode(archive.encode());
+        assertEquals("", decoded.getMessage());
+        assertEquals(0, decoded.getAttachments().size());
+    }
+    
+    @Test(expected=IOException.class)
+    public void decodeTest_Damaged() throws IOException {
+        ArchiveCodec.decode(new byte[] {1, 2, 3});
+    }
+}
@@ -12,6 +12,7 @@ import static java.nio.file.Paths.get;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 import org.apache.logging.log4j.LogManager;
@@ -81,6 +82,62 @@ public class FolderStorageModuleTest {
         assertEquals(list.size(), 6);
     }
     
+    @Test
+    public void createDirectoryTest_Nested() throws SQLException {
+        data.createDirectory(" Clients / Acme /2024");
+        assertTrue(data.findAll().containsAll(Arrays.asList("Clients", "Clients/Acme", "Clients/Acme/2024")));
+        assertEquals(1, (int)data.findChildren("Clients").get("Clients/Acme"));
+        assertEquals(0, (int)data.findChildren("Clients/Acme").get("Clients/Acme/2024"));
+        assertTrue(data.findChildren(null).containsKey("Clients"));
+        assertFalse(data.findChildren(null).containsKey("Clients/Acme"));
+    }
+    
+    @Test
+    public void deleteDirectoryTest_Subtree() throws SQLException {
+        data.createDirectory("Clients/Acme/2024");
+        data.createDirectory("Clients/Other");
+        assertEquals(4, data.deleteDirectory("Clients"));
+        assertEquals(6, data.findAll().size());
+    }
+    
+    @Test
+    public void findSubtreeTest() throws SQLException {
+        data.createDirectory("Clients/Acme/2024");
+        data.createDirectory("Clients/Other");
+        assertEquals(Arrays.asList("Clients/Acme", "Clients/Acme/2024"), data.findSubtree("Clients/Acme"));
+        assertEquals(4, data.findSubtree("Clients").size());
+        assertEquals(0, data.findSubtree("nothing").size());
+        assertEquals(0, data.countEmails("Clients"));
+        assertEquals(3, data.countEmails("inbox"));
+    }
+    
+    @Test
+    public void updateDirectoryTest_Subtree() throws SQLException {
+        data.createDirectory("Clients/Acme/2024");
+        assertEquals(3, data.updateDirectory("Clients", "Customers"));
+        assertEquals(Arrays.asList("Customers", "Customers/Acme", "Customers/Acme/2024"), 
+                     data.findSubtree("Customers"));
+        assertEquals(0, data.findSubtree("Clients").size());
+    }
+    
+    @Test
+    public void moveDirectoryTest() throws SQLException {
+        data.createDirectory("Clients/Acme/2024");
+        assertEquals(2, data.moveDirectory("Clients/Acme", "new"));
+        assertEquals(Arrays.asList("new", "new/Acme", "new/Acme/2024"), data.findSubtree("new"));
+        assertEquals(Arrays.asList("Clients"), data.findSubtree("Clients"));
+        assertEquals(2, data.moveDirectory("new/Acme", null));
+        assertEquals(Arrays.asList("Acme", "Acme/2024"), data.findSubtree("Acme"));
+        assertEquals(0, data.findChildren("new").size());
+    }
+    
+    @Test(expected=IllegalArgumentException.class)
+    public void moveDirectoryTest_IntoItself() throws SQLException {
+        data.createDirectory("Clients/Acme");
+        data.moveDirectory("Clients", "Clients/Acme");
+        fail();
+    }
+    
     @Test
     public void updateDirectoryTest() throws SQLException {
         data.updateDirectory("new","newdir");
@@ -127,6 +184,8 @@ public class FolderStorageModuleTest {
             for (String statement : splitStatements(new StringReader(seedDataScript), ";")) {
                 connection.prepareStatement(statement).execute();
             }
+            //the ids cached by the previous test are no longer valid
+            StoreCache.forUser(userInfo).clear();
         } catch (SQLException e) {
             throw new RuntimeException("Failed seeding database", e);
         }
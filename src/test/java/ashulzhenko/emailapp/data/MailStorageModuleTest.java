@@ -1,6 +1,7 @@
 package ashulzhenko.emailapp.data;
 
 import ashulzhenko.emailapp.bean.EmailCustom;
+import ashulzhenko.emailapp.bean.SyncState;
 import ashulzhenko.emailapp.bean.UserConfigBean;
 import ashulzhenko.emailapp.interfaces.MailStorageDAO;
 import ashulzhenko.emailapp.rules.MethodLogger;
@@ -12,6 +13,9 @@ import java.io.StringReader;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Date;
 import java.util.LinkedList;
 import java.util.List;
 import static java.nio.file.Files.readAllBytes;
@@ -19,6 +23,9 @@ import jodd.mail.EmailAddress;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.Rule;
@@ -26,6 +33,22 @@ import jodd.mail.EmailAttachment;
 import static org.junit.Assert.fail;
 import static java.nio.file.Paths.get;
 import org.junit.Ignore;
+import ashulzhenko.emailapp.interfaces.ThreadStorageDAO;
+import ashulzhenko.emailapp.interfaces.StatisticsDAO;
+import ashulzhenko.emailapp.interfaces.SnapshotDAO;
+import ashulzhenko.emailapp.bean.Snapshot;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import ashulzhenko.emailapp.bean.EmailStats;
+import ashulzhenko.emailapp.bean.Change;
+import ashulzhenko.emailapp.interfaces.ChangeLogDAO;
+import ashulzhenko.emailapp.interfaces.SearchStorageDAO;
+import ashulzhenko.emailapp.interfaces.SyncStorageDAO;
+import ashulzhenko.emailapp.interfaces.OutboxDAO;
+import ashulzhenko.emailapp.bean.OutboxEntry;
+import ashulzhenko.emailapp.interfaces.MergeStorageDAO;
+import ashulzhenko.emailapp.bean.MergeProgress;
 @Ignore
 /**
  * Tests MailStorageModule.
@@ -34,6 +57,14 @@ import org.junit.Ignore;
 public class MailStorageModuleTest {
     private final Logger log = LogManager.getLogger(MailStorageModuleTest.class.getName());
     private MailStorageDAO data;
+    private ThreadStorageDAO threads;
+    private StatisticsDAO stats;
+    private SnapshotDAO snapshots;
+    private ChangeLogDAO changes;
+    private SearchStorageDAO searches;
+    private SyncStorageDAO sync;
+    private OutboxDAO outbox;
+    private MergeStorageDAO merges;
     
      //A Rule is implemented as a class with methods that are associated     
      //with the lifecycle of a unit test. These methods run when required.     
@@ -47,6 +78,16 @@ public class MailStorageModuleTest {
         assertEquals(null, data.findEmailById(3));
     } 
     
+    @Test
+    public void deleteEmailTest_Purged() throws SQLException {
+        data.deleteEmail(3);
+        assertEquals(0, data.deleteEmail(3));
+        assertEquals(2, data.findAllInDirectory("inbox").size());
+        assertEquals(1, data.purgeDeleted(10));
+        assertEquals(0, data.purgeDeleted(10));
+        assertEquals(5, data.findAll().size());
+    }
+    
     @Test
     public void deleteEmailTest_IdNotExists() throws SQLException {
         int result = data.deleteEmail(33);
@@ -77,6 +118,22 @@ public class MailStorageModuleTest {
         fail();
     }
      
+    @Test
+    public void archiveEmailsTest() throws SQLException {
+        int archived = data.archiveEmails(Timestamp.valueOf("2016-01-01 00:00:00"));
+        assertEquals(1, archived);
+        assertEquals(2, data.findAllInDirectory("inbox").size());
+        assertEquals(3, data.findAllInDirectory("inbox", true).size());
+    }
+    
+    @Test
+    public void archiveEmailsTest_Rehydrated() throws SQLException {
+        data.archiveEmails(Timestamp.valueOf("2016-01-01 00:00:00"));
+        EmailCustom email = data.findEmailById(1);
+        assertTrue(email.isArchived());
+        assertEquals("plain text", email.getAllMessages().get(0).getContent());
+    }
+    
     @Test
     public void findAllTest() throws SQLException {
         List <EmailCustom> list = data.findAll();
@@ -95,6 +152,25 @@ public class MailStorageModuleTest {
         assertEquals(list.size(), 2);
     }
     
+    @Test
+    public void findAllInDirectoryTest_Keyset() throws SQLException {
+        List<EmailCustom> page = data.findAllInDirectory("inbox", SortKey.SUBJECT, true, null, 2);
+        assertEquals("important", page.get(0).getSubject());
+        assertEquals("important2", page.get(1).getSubject());
+        page = data.findAllInDirectory("inbox", SortKey.SUBJECT, true, page.get(1), 2);
+        assertEquals(1, page.size());
+        assertEquals("important3", page.get(0).getSubject());
+    }
+    
+    @Test
+    public void findAllInDirectoryTest_KeysetByDate() throws SQLException {
+        List<EmailCustom> page = data.findAllInDirectory("inbox", SortKey.DATE, false, null, 1);
+        assertEquals(3, page.get(0).getId());
+        page = data.findAllInDirectory("inbox", SortKey.DATE, false, page.get(0), 5);
+        assertEquals(2, page.size());
+        assertEquals(1, page.get(1).getId());
+    }
+    
     @Test
     public void findEmailByIdTest() throws SQLException {
         EmailCustom emailDb = data.findEmailById(3);
@@ -137,6 +213,20 @@ public class MailStorageModuleTest {
         assertEquals("trash", data.findEmailById(4).getDirectory());
     } 
     
+    @Test
+    public void updateEmailDirectoryTest_NewDirectoryWithOneConnection() throws SQLException {
+        ConnectionBudget.setLimit("cs.517.receive@gmail.com", 1);
+        try {
+            EmailCustom email = data.findEmailById(4);
+            email.setDirectory("Clients/Acme");
+            data.updateEmailDirectory(email);
+            assertEquals("Clients/Acme", data.findEmailById(4).getDirectory());
+        }
+        finally {
+            ConnectionBudget.removeLimit("cs.517.receive@gmail.com");
+        }
+    }
+    
     @Test
     public void updateEmailDirectoryTest_EmailIdNotInDb() throws SQLException {
         EmailCustom email = createEmail();
@@ -151,6 +241,348 @@ public class MailStorageModuleTest {
         fail();
     }
     
+    @Test
+    public void threadTest_Reply() throws SQLException {
+        EmailCustom email = createEmail();
+        email.setMessageId("<original@gmail.com>");
+        int original = data.saveEmail(email);
+        EmailCustom reply = createEmail();
+        reply.subject("RE: important3");
+        reply.setReplyHeaders(email);
+        int id = data.saveEmail(reply);
+        assertEquals(threads.findThreadOf(original), threads.findThreadOf(id));
+        assertEquals(2, threads.findThreads("inbox", 0, 10).get(0).getMessageCount());
+    }
+    
+    @Test
+    public void threadTest_ReplyBeforeOriginal() throws SQLException {
+        EmailCustom email = createEmail();
+        email.setMessageId("<original@gmail.com>");
+        EmailCustom reply = createEmail();
+        reply.setReplyHeaders(email);
+        int id = data.saveEmail(reply);
+        int original = data.saveEmail(email);
+        assertEquals(threads.findThreadOf(original), threads.findThreadOf(id));
+        assertEquals(2, threads.findThreadEmails(threads.findThreadOf(id)).size());
+    }
+    
+    @Test
+    public void threadTest_Moved() throws SQLException {
+        EmailCustom email = createEmail();
+        data.saveEmail(email);
+        email.setDirectory("trash");
+        data.updateEmailDirectory(email);
+        assertEquals(0, threads.findThreads("inbox", 0, 10).size());
+        assertEquals(1, threads.findThreads("trash", 0, 10).size());
+    }
+    
+    
+    @Test
+    public void statisticsTest_Rebuild() throws SQLException {
+        assertEquals(6, stats.rebuild());
+        List<EmailStats> top = stats.findTopCorrespondents("inbox", 1);
+        assertEquals("cs.517.send@gmail.com", top.get(0).getName());
+        assertEquals(3, top.get(0).getMessageCount());
+    }
+    
+    @Test
+    public void statisticsTest_Deltas() throws SQLException {
+        stats.rebuild();
+        EmailCustom email = createEmail();
+        data.saveEmail(email);
+        assertEquals(4, stats.findTopCorrespondents("inbox", 1).get(0).getMessageCount());
+        email.setDirectory("trash");
+        data.updateEmailDirectory(email);
+        assertEquals(3, stats.findTopCorrespondents("inbox", 1).get(0).getMessageCount());
+        assertEquals(1, stats.findFolderByMonth("trash").get(0).getMessageCount());
+        data.deleteEmail(email.getId());
+        assertEquals(0, stats.findFolderByMonth("trash").size());
+    }
+    
+    @Test(expected=IllegalArgumentException.class)
+    public void statisticsTest_InvalidNumber() throws SQLException {
+        stats.findTopCorrespondents("inbox", 0);
+        fail();
+    }
+    
+    @Test
+    public void changeLogTest() throws SQLException {
+        long version = changes.findCurrentVersion();
+        int id = data.saveEmail(createEmail());
+        EmailCustom moved = data.findEmailById(2);
+        moved.setDirectory("trash");
+        data.updateEmailDirectory(moved);
+        data.deleteEmail(1);
+        data.deleteEmail(1);
+        List<Change> list = changes.findChangesSince(version, 10);
+        assertEquals(3, list.size());
+        assertEquals(new Change(version + 1, Change.Entity.EMAIL, Change.Operation.INSERT, id), list.get(0));
+        assertEquals(Change.Operation.UPDATE, list.get(1).getOperation());
+        assertEquals(1, list.get(2).getId());
+        assertEquals(1, changes.findChangesSince(version, 1).size());
+        assertEquals(0, changes.findChangesSince(changes.findCurrentVersion(), 10).size());
+    }
+    
+    @Test
+    public void changeLogTest_OpenTransaction() throws SQLException {
+        long version = changes.findCurrentVersion();
+        try (Connection other = DriverManager.getConnection
+                ("jdbc:mysql://waldo2.dawsoncollege.qc.ca:3306/cs1242395", "CS1242395", "harsioco")) {
+            other.setAutoCommit(false);
+            other.prepareStatement("insert into change_log (entity, operation, entityId) "
+                                   + "values ('EMAIL', 'UPDATE', 2)").executeUpdate();
+            data.deleteEmail(1);
+            //the open transaction may still commit the missing version
+            assertEquals(0, changes.findChangesSince(version, 10).size());
+            other.rollback();
+        }
+        List<Change> list = changes.findChangesSince(version, 10);
+        assertEquals(1, list.size());
+        assertEquals(1, list.get(0).getId());
+    }
+    
+    @Test
+    public void changeLogTest_Pruned() throws SQLException {
+        long version = changes.findCurrentVersion();
+        data.deleteEmail(1);
+        data.deleteEmail(2);
+        assertEquals(1, changes.pruneChanges(new java.util.Date(System.currentTimeMillis() + 60000)));
+        assertEquals(null, changes.findChangesSince(version, 10));
+        assertEquals(0, changes.findChangesSince(changes.findCurrentVersion(), 10).size());
+    }
+    
+    @Test
+    public void searchTest() throws SQLException {
+        assertEquals(3, searches.createSearch("important", "from:send@gmail in:inbox"));
+        assertEquals(3, data.findAllInSearch("important", SortKey.DATE, false, null, 10).size());
+        int id = data.saveEmail(createEmail());
+        EmailCustom moved = data.findEmailById(2);
+        moved.setDirectory("trash");
+        data.updateEmailDirectory(moved);
+        //the new email has no date, so it is the oldest
+        List<EmailCustom> list = data.findAllInSearch("important", SortKey.DATE, true, null, 10);
+        assertEquals(3, list.size());
+        assertEquals(id, list.get(0).getId());
+        assertEquals(3, searches.refreshSearch("important"));
+    }
+    
+    @Test
+    public void searchTest_Unread() throws SQLException {
+        assertEquals(1, searches.createSearch("recent", "is:unread newer:30"));
+        assertEquals(3, data.findAllInSearch("recent", SortKey.DATE, false, null, 10).get(0).getId());
+        assertEquals(1, data.updateEmailSeen(3, true));
+        assertEquals(0, data.updateEmailSeen(3, true));
+        assertEquals(0, data.findAllInSearch("recent", SortKey.DATE, false, null, 10).size());
+        assertEquals(1, searches.deleteSearch("recent"));
+        assertEquals(0, searches.findSearches().size());
+    }
+    
+    @Test(expected=IllegalArgumentException.class)
+    public void searchTest_Duplicate() throws SQLException {
+        searches.createSearch("attached", "has:attachment");
+        searches.createSearch("attached", "has:attachment");
+        fail();
+    }
+    
+    @Test
+    public void syncStateTest() throws SQLException {
+        SyncState state = sync.findSyncState("INBOX");
+        assertEquals(-1, state.getUidValidity());
+        assertEquals(0, state.getLastUid());
+        state.update(1234, 56, true);
+        sync.saveSyncState(state);
+        state.update(1234, 78, false);
+        sync.saveSyncState(state);
+        assertEquals(78, sync.findSyncState("INBOX").getLastUid());
+        assertEquals(-1, sync.findSyncState("Archive").getUidValidity());
+    }
+    
+    @Test
+    public void findNewEmailsTest() throws SQLException {
+        EmailCustom received = createEmail();
+        received.setMessageId("<received@example.com>");
+        received.setReceivedDate(new Date());
+        data.saveEmail(received);
+        //the copy of a sent email has no received date
+        EmailCustom sent = createEmail();
+        sent.setMessageId("<sent@example.com>");
+        data.saveEmail(sent);
+        
+        EmailCustom again = createEmail();
+        again.setMessageId("<received@example.com>");
+        EmailCustom sentCopy = createEmail();
+        sentCopy.setMessageId("<sent@example.com>");
+        EmailCustom noId = createEmail();
+        List<EmailCustom> found = sync.findNewEmails(Arrays.asList(again, sentCopy, noId));
+        assertEquals(2, found.size());
+        assertSame(sentCopy, found.get(0));
+        assertSame(noId, found.get(1));
+    }
+    
+    @Test
+    public void findNewEmailsTest_NoMessageId() throws SQLException {
+        EmailCustom received = createEmail();
+        received.setReceivedDate(new Date());
+        received.setServerLocation("INBOX", 7, 42);
+        data.saveEmail(received);
+        
+        EmailCustom again = createEmail();
+        again.setServerLocation("INBOX", 7, 42);
+        EmailCustom other = createEmail();
+        other.setServerLocation("INBOX", 7, 43);
+        EmailCustom renumbered = createEmail();
+        renumbered.setServerLocation("INBOX", 8, 42);
+        List<EmailCustom> found = sync.findNewEmails(Arrays.asList(again, other, renumbered));
+        assertEquals(2, found.size());
+        assertSame(other, found.get(0));
+        assertSame(renumbered, found.get(1));
+    }
+    
+    @Test
+    public void partialEmailTest() throws SQLException {
+        EmailCustom email = new EmailCustom();
+        email.setDirectory("inbox");
+        email.from("cs.517.send@gmail.com");
+        email.to("cs.517.receive@gmail.com");
+        email.subject("headers only");
+        email.setReceivedDate(new Date());
+        email.setServerLocation("INBOX", 7, 42);
+        email.setServerSize(2048);
+        email.setPartial(true);
+        int id = data.saveEmail(email);
+        
+        List<EmailCustom> partial = data.findPartialEmails(10);
+        assertEquals(1, partial.size());
+        assertEquals(42, partial.get(0).getUid());
+        assertEquals(7, partial.get(0).getUidValidity());
+        
+        EmailCustom content = createEmail();
+        content.attach(EmailAttachment.attachment().bytes(new byte[] {1, 2, 3}).setName("a.bin"));
+        email.setContent(content);
+        assertEquals(1, data.saveEmailContent(email));
+        //the prefetch and the user may load the same email
+        assertEquals(0, data.saveEmailContent(email));
+        EmailCustom found = data.findEmailById(id);
+        assertFalse(found.isPartial());
+        assertEquals(1, found.getAttachments().size());
+        assertTrue(data.findPartialEmails(10).isEmpty());
+    }
+    
+    @Test
+    public void snapshotTest_Incremental() throws SQLException, IOException {
+        File full = Files.createTempDirectory("full").toFile();
+        File incremental = Files.createTempDirectory("incremental").toFile();
+        Snapshot first = snapshots.backup(full, null);
+        assertEquals(6L, (long)first.getRows().get("emails"));
+        EmailCustom email = createEmail();
+        int id = data.saveEmail(email);
+        data.deleteEmail(1);
+        EmailCustom moved = data.findEmailById(2);
+        moved.setDirectory("trash");
+        data.updateEmailDirectory(moved);
+        Snapshot second = snapshots.backup(incremental, first);
+        assertEquals(1L, (long)second.getRows().get("emails"));
+        
+        data.deleteEmail(id);
+        snapshots.restore(incremental);
+        assertEquals(6, data.findAll().size());
+        assertEquals(null, data.findEmailById(1));
+        assertEquals("trash", data.findEmailById(2).getDirectory());
+        assertEquals("plain text3", data.findEmailById(id).getAllMessages().get(0).getContent());
+    }
+    
+    @Test
+    public void snapshotTest_OutboxAndMerges() throws SQLException, IOException {
+        EmailCustom email = createEmail();
+        email.setDirectory(OutboxDAO.DIRECTORY);
+        int id = data.saveEmail(email);
+        merges.saveProgress(new MergeProgress("newsletter", 40, 38, 2));
+        File full = Files.createTempDirectory("full").toFile();
+        snapshots.backup(full, null);
+        
+        merges.saveProgress(new MergeProgress("newsletter", 60, 57, 3));
+        outbox.claimDueEmails(10, 600);
+        snapshots.restore(full);
+        assertEquals(40, merges.findProgress("newsletter").getPosition());
+        //the claim made after the snapshot is gone
+        assertEquals(id, outbox.claimDueEmails(10, 600).get(0).getEmailId());
+    }
+    
+    @Test
+    public void claimDueEmailsTest() throws SQLException {
+        EmailCustom email = createEmail();
+        email.setDirectory(OutboxDAO.DIRECTORY);
+        int id = data.saveEmail(email);
+        EmailCustom sent = createEmail();
+        sent.setDirectory(OutboxDAO.DIRECTORY);
+        sent.setMessageId("<sent@gmail.com>");
+        data.saveEmail(sent);
+        List<OutboxEntry> due = outbox.claimDueEmails(10, 600);
+        assertEquals(1, due.size());
+        assertEquals(id, due.get(0).getEmailId());
+        assertEquals(0, due.get(0).getAttempts());
+        //claimed by this application until the lease ends
+        assertTrue(outbox.claimDueEmails(10, 600).isEmpty());
+    }
+    
+    @Test
+    public void scheduleRetryTest() throws SQLException {
+        EmailCustom email = createEmail();
+        email.setDirectory(OutboxDAO.DIRECTORY);
+        int id = data.saveEmail(email);
+        outbox.claimDueEmails(10, 600);
+        outbox.scheduleRetry(id, new Date(System.currentTimeMillis() - 1000), "Connection refused");
+        List<OutboxEntry> due = outbox.claimDueEmails(10, 600);
+        assertEquals(1, due.get(0).getAttempts());
+        assertEquals("Connection refused", due.get(0).getLastError());
+        outbox.scheduleRetry(id, new Date(System.currentTimeMillis() + 60000), "Connection refused");
+        assertTrue(outbox.claimDueEmails(10, 600).isEmpty());
+    }
+    
+    @Test
+    public void markFailedTest() throws SQLException {
+        EmailCustom email = createEmail();
+        email.setDirectory(OutboxDAO.DIRECTORY);
+        int id = data.saveEmail(email);
+        outbox.markFailed(id, "Invalid recipient");
+        assertTrue(outbox.claimDueEmails(10, 1).isEmpty());
+        assertEquals(OutboxDAO.DIRECTORY, data.findEmailById(id).getDirectory());
+    }
+    
+    @Test
+    public void markSentTest() throws SQLException {
+        EmailCustom email = createEmail();
+        email.setDirectory(OutboxDAO.DIRECTORY);
+        int id = data.saveEmail(email);
+        outbox.claimDueEmails(10, 1);
+        outbox.markSent(id, "<sent@gmail.com>");
+        EmailCustom found = data.findEmailById(id);
+        assertEquals(OutboxDAO.SENT_DIRECTORY, found.getDirectory());
+        assertEquals("<sent@gmail.com>", found.getMessageId());
+        //moving it back does not send it again
+        found.setDirectory(OutboxDAO.DIRECTORY);
+        data.updateEmailDirectory(found);
+        assertTrue(outbox.claimDueEmails(10, 1).isEmpty());
+    }
+    
+    @Test
+    public void mergeProgressTest() throws SQLException {
+        MergeProgress progress = merges.findProgress("newsletter");
+        assertEquals(0, progress.getPosition());
+        merges.saveProgress(new MergeProgress("newsletter", 40, 38, 2));
+        merges.saveProgress(new MergeProgress("newsletter", 60, 57, 3));
+        merges.saveProgress(new MergeProgress("other", 20, 20, 0));
+        progress = merges.findProgress("newsletter");
+        assertEquals(60, progress.getPosition());
+        assertEquals(57, progress.getSent());
+        assertEquals(3, progress.getFailed());
+    }
+    
+    @Test(expected=IllegalArgumentException.class)
+    public void mergeProgressTest_InvalidName() throws SQLException {
+        merges.findProgress("");
+        fail();
+    }
     
     @Before
     public void init() {
@@ -171,10 +603,20 @@ public class MailStorageModuleTest {
                                 userInfo.getMysqlPassword());) {
             
             data = new MailStorageModule(userInfo);
+            threads = new ThreadStorageModule(userInfo);
+            stats = new StatisticsModule(userInfo);
+            snapshots = new SnapshotModule(userInfo);
+            changes = new ChangeLogModule(userInfo);
+            searches = new SearchStorageModule(userInfo);
+            sync = new SyncStorageModule(userInfo);
+            outbox = new OutboxModule(userInfo);
+            merges = new MergeStorageModule(userInfo);
             
             for (String statement : splitStatements(new StringReader(seedDataScript), ";")) {
                 connection.prepareStatement(statement).execute();
             }
+            //the ids cached by the previous test are no longer valid
+            StoreCache.forUser(userInfo).clear();
         } catch (SQLException e) {
             throw new RuntimeException("Failed seeding database", e);
         }
@@ -0,0 +1,137 @@
+package ashulzhenko.emailapp.data;
+
+import ashulzhenko.emailapp.rules.MethodLogger;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ * Tests QueryStatistics, LatencyHistogram, SlowQueryLog and JdbcInstrumentation.
+ * @author Alena Shulzhenko
+ */
+public class QueryStatisticsTest {
+
+    @Rule
+    public MethodLogger methodLogger = new MethodLogger();
+
+    @Before
+    public void init() {
+        QueryStatistics.reset();
+        QueryStatistics.setEnabled(true);
+    }
+
+    @Test
+    public void histogramTest() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for(int i = 1; i <= 1000; i++)
+            histogram.record(i * 10);
+        assertEquals(1000, histogram.getCount());
+        assertEquals(10000, histogram.getMax());
+        assertEquals(5005, histogram.getMean(), 0.001);
+        assertEquals(5000, histogram.getValueAtPercentile(50), 5000 * 0.016);
+        assertEquals(9900, histogram.getValueAtPercentile(99), 9900 * 0.016);
+    }
+
+    @Test
+    public void histogramTest_Buckets() {
+        for(long value : new long[] {0, 1, 127, 128, 1000, 123456, LatencyHistogram.MAX_VALUE}) {
+            int index = LatencyHistogram.indexOf(value);
+            assertTrue(value <= LatencyHistogram.highestValueOf(index));
+            assertTrue(index == 0 || value > LatencyHistogram.highestValueOf(index - 1));
+        }
+    }
+
+    @Test
+    public void shapeOfTest() {
+        assertEquals("select * from emails where id = ? and subject = ?",
+                QueryStatistics.shapeOf("select *  from emails\n where id = 42 and subject = 'it''s'"));
+        assertEquals("select * from directories where id in (?)",
+                QueryStatistics.shapeOf("select * from directories where id in (?, ?,?)"));
+        assertEquals("select email_address from t1",
+                QueryStatistics.shapeOf("select email_address from t1"));
+    }
+
+    @Test
+    public void instrumentationTest() throws SQLException {
+        Connection connection = JdbcInstrumentation.wrap(fakeConnection(2), "MailStorageModule.findEmails");
+        try(PreparedStatement pstmt = connection.prepareStatement("select subject from emails where id = ?")) {
+            pstmt.setInt(1, 7);
+            ResultSet rs = pstmt.executeQuery();
+            while(rs.next())
+                rs.getString("subject");
+        }
+
+        List<QueryStats> stats = QueryStatistics.snapshot("MailStorageModule.findEmails");
+        assertEquals(1, stats.size());
+        assertEquals("select subject from emails where id = ?", stats.get(0).getShape());
+        assertEquals(1, stats.get(0).getCalls());
+        assertEquals(2, stats.get(0).getRows());
+        assertEquals(10, stats.get(0).getBytesRead());
+        assertEquals(4, stats.get(0).getBytesWritten());
+    }
+
+    @Test
+    public void instrumentationTest_Disabled() {
+        QueryStatistics.setEnabled(false);
+        Connection connection = fakeConnection(0);
+        assertTrue(connection == JdbcInstrumentation.wrap(connection, "test"));
+    }
+
+    @Test
+    public void redactTest() {
+        Map<Integer, Object> parameters = new TreeMap<>();
+        parameters.put(1, 42);
+        parameters.put(2, "secret@mail.com");
+        parameters.put(3, new byte[10]);
+        parameters.put(4, null);
+        assertEquals("[1=42, 2='***'(15 chars), 3=<10 bytes>, 4=NULL]", SlowQueryLog.redact(parameters));
+    }
+
+    @Test
+    public void slowQueryTest_Explained() throws SQLException, InterruptedException {
+        CountDownLatch explained = new CountDownLatch(1);
+        SlowQueryLog slowLog = new SlowQueryLog(0, () -> {
+            explained.countDown();
+            throw new SQLException("no server in tests");
+        });
+        Connection connection = JdbcInstrumentation.wrap(fakeConnection(1), "test", slowLog);
+        try(PreparedStatement pstmt = connection.prepareStatement("select subject from emails where id = 13")) {
+            ResultSet rs = pstmt.executeQuery();
+            while(rs.next())
+                rs.getString(1);
+        }
+        assertTrue(explained.await(5, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Creates a connection whose statements return the given number of rows
+     * with the value "hello" in every column.
+     * @param rows the number of rows.
+     * @return the fake connection.
+     */
+    private Connection fakeConnection(int rows) {
+        int[] left = {rows};
+        ResultSet rs = (ResultSet)Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] {ResultSet.class}, (proxy, m, args) ->
+                        m.getName().equals("next") ? left[0]-- > 0 :
+                        m.getName().equals("getString") ? "hello" : null);
+        PreparedStatement pstmt = (PreparedStatement)Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] {PreparedStatement.class}, (proxy, m, args) ->
+                        m.getName().equals("executeQuery") ? rs : null);
+        return (Connection)Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] {Connection.class}, (proxy, m, args) ->
+                        m.getName().equals("prepareStatement") ? pstmt : null);
+    }
+}
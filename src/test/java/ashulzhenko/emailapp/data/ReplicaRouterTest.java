@@ -0,0 +1,70 @@
+package ashulzhenko.emailapp.data;
+
+import ashulzhenko.emailapp.bean.UserConfigBean;
+import ashulzhenko.emailapp.rules.MethodLogger;
+import java.sql.SQLException;
+import java.util.Arrays;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ * Tests ReplicaRouter.
+ * @author Alena Shulzhenko
+ */
+public class ReplicaRouterTest {
+    
+    @Rule     
+    public MethodLogger methodLogger = new MethodLogger();
+    
+    @Test
+    public void parseHostsTest() {
+        assertEquals(Arrays.asList("db1", "db2:3307"), 
+                     ReplicaRouter.parseHosts(" db1, ,db2:3307 "));
+    }
+    
+    @Test
+    public void parseHostsTest_Empty() {
+        assertEquals(0, ReplicaRouter.parseHosts("").size());
+        assertEquals(0, ReplicaRouter.parseHosts(null).size());
+    }
+    
+    @Test
+    public void forUserTest_SameConfiguration() {
+        UserConfigBean user = createUser("db1,db2:3307", 1000);
+        ReplicaRouter router = ReplicaRouter.forUser(user);
+        assertTrue(router == ReplicaRouter.forUser(createUser("db1,db2:3307", 1000)));
+        assertEquals(2, router.getReplicaCount());
+    }
+    
+    @Test
+    public void writePinsReadsTest() {
+        ReplicaRouter router = ReplicaRouter.forUser(createUser("localhost:1", 60000));
+        assertFalse(router.isPinned());
+        try {
+            router.getWriteConnection("user", "password");
+        }
+        catch(SQLException e) {
+            //no server is listening, only the routing decision is tested
+        }
+        assertTrue(router.isPinned());
+    }
+    
+    /**
+     * Creates user information pointing to an unused local port.
+     * @param replicas the comma separated list of replicas.
+     * @param window the read-after-write window.
+     * @return the user information.
+     */
+    private UserConfigBean createUser(String replicas, int window) {
+        UserConfigBean user = new UserConfigBean();
+        user.setMysqlUrl("localhost");
+        user.setMysqlPort(1);
+        user.setMysqlDbName("emailapp");
+        user.setMysqlReplicas(replicas);
+        user.setReadAfterWriteWindow(window);
+        return user;
+    }
+}
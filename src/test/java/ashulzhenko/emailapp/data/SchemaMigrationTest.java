@@ -0,0 +1,37 @@
+package ashulzhenko.emailapp.data;
+
+import ashulzhenko.emailapp.rules.MethodLogger;
+import java.io.IOException;
+import static java.nio.file.Files.readAllBytes;
+import static java.nio.file.Paths.get;
+import static org.junit.Assert.assertTrue;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ * Tests that the scripts creating the tables record the version of SchemaMigration.
+ * @author Alena Shulzhenko
+ */
+public class SchemaMigrationTest {
+    
+    @Rule     
+    public MethodLogger methodLogger = new MethodLogger();
+    
+    @Test
+    public void createTablesVersionTest() throws IOException {
+        assertVersion("src/main/resources/resources/createTables.sql");
+    }
+    
+    @Test
+    public void createDBVersionTest() throws IOException {
+        assertVersion("src/test/res/createDB.sql");
+    }
+    
+    private void assertVersion(String path) throws IOException {
+        String script = new String(readAllBytes(get(path)));
+        assertTrue(path, script.contains("insert into schema_version (version) values (" 
+                + SchemaMigration.VERSION + ");"));
+        //the migration records its progress in the step
+        assertTrue(path, script.contains("step integer not null default 0"));
+    }
+}
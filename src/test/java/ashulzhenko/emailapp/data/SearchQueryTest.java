@@ -0,0 +1,56 @@
+package ashulzhenko.emailapp.data;
+
+import ashulzhenko.emailapp.rules.MethodLogger;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ * Tests the parsing of the queries of the saved searches.
+ * @author Alena Shulzhenko
+ */
+public class SearchQueryTest {
+
+    @Rule
+    public MethodLogger methodLogger = new MethodLogger();
+
+    @Test
+    public void parseTest() {
+        SearchQuery query = SearchQuery.parse("from:alice has:attachment newer:30d is:unread");
+        assertEquals("e.fromEmail in (select id from addresses where address like ?) "
+                + "and exists (select 1 from attachments a where a.email = e.id) "
+                + "and e.seen = false and e.emailDate >= ?", query.getCondition());
+        assertEquals(30, query.getDays());
+        assertFalse(query.isByDirectory());
+    }
+
+    @Test
+    public void parseTest_QuotedValue() {
+        SearchQuery query = SearchQuery.parse("subject:\"lunch plans\" in:Clients/Acme");
+        assertEquals("e.subject like ? and e.directory in (select p.descendant from directory_paths p "
+                + "join directories d on d.id = p.ancestor where d.name = ?)", query.getCondition());
+        assertEquals(0, query.getDays());
+        assertTrue(query.isByDirectory());
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void parseTest_UnknownTerm() {
+        SearchQuery.parse("from:alice unread");
+        fail();
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void parseTest_InvalidDays() {
+        SearchQuery.parse("newer:month");
+        fail();
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void parseTest_Empty() {
+        SearchQuery.parse(" ");
+        fail();
+    }
+}
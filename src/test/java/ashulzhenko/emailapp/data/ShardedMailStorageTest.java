@@ -0,0 +1,383 @@
+package ashulzhenko.emailapp.data;
+
+import ashulzhenko.emailapp.bean.EmailCustom;
+import ashulzhenko.emailapp.interfaces.MailStorageDAO;
+import ashulzhenko.emailapp.rules.MethodLogger;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ * Tests ShardedMailStorage and ShardRing using in-memory shards.
+ * @author Alena Shulzhenko
+ */
+public class ShardedMailStorageTest {
+    private List<MailStorageDAO> shards;
+    private ShardedMailStorage data;
+    private final List<String> dirs = Arrays.asList("inbox", "sent", "trash", 
+                                        "drafts", "work", "family", "travel", "bills");
+    
+    @Rule     
+    public MethodLogger methodLogger = new MethodLogger();
+    
+    @Test
+    public void ringTest_SameKeySameShard() {
+        ShardRing ring = new ShardRing(4);
+        assertEquals(ring.shardFor("inbox"), ring.shardFor("inbox"));
+        assertEquals(ring.shardFor("inbox"), new ShardRing(4).shardFor("inbox"));
+    }
+    
+    @Test
+    public void ringTest_NewShardOnlyTakesKeys() {
+        ShardRing ring = new ShardRing(3);
+        ShardRing bigger = ring.withNewShard();
+        for(int i = 0; i < 1000; i++) {
+            String key = "dir" + i;
+            int after = bigger.shardFor(key);
+            //keys either stay or move to the new shard
+            assertTrue(after == ring.shardFor(key) || after == 3);
+        }
+    }
+    
+    @Test
+    public void findEmailByIdTest() throws SQLException {
+        for(String dir : dirs) {
+            int id = data.saveEmail(createEmail(dir));
+            assertEquals(dir, data.findEmailById(id).getDirectory());
+        }
+    }
+    
+    @Test
+    public void findAllTest_FanOut() throws SQLException {
+        for(String dir : dirs)
+            data.saveEmail(createEmail(dir));
+        List<EmailCustom> list = data.findAll();
+        assertEquals(dirs.size(), list.size());
+        for(int i = 1; i < list.size(); i++)
+            assertTrue(list.get(i - 1).getId() < list.get(i).getId());
+        assertEquals(3, data.findEmails(5, 10).size());
+    }
+    
+    @Test
+    public void deleteEmailTest() throws SQLException {
+        int id = data.saveEmail(createEmail("inbox"));
+        assertEquals(1, data.deleteEmail(id));
+        assertNull(data.findEmailById(id));
+    }
+    
+    @Test
+    public void updateEmailDirectoryTest_OtherShard() throws SQLException {
+        EmailCustom email = createEmail("inbox");
+        data.saveEmail(email);
+        for(String dir : dirs) {
+            email.setDirectory(dir);
+            assertEquals(1, data.updateEmailDirectory(email));
+            assertEquals(dir, data.findEmailById(email.getId()).getDirectory());
+        }
+        assertEquals(1, data.findAll().size());
+    }
+    
+    @Test
+    public void updateEmailDirectoryTest_KeepsSeen() throws SQLException {
+        EmailCustom email = createEmail("inbox");
+        data.saveEmail(email);
+        data.updateEmailSeen(email.getId(), true);
+        for(String dir : dirs) {
+            email.setDirectory(dir);
+            assertEquals(1, data.updateEmailDirectory(email));
+            assertTrue(data.findEmailById(email.getId()).isSeen());
+        }
+    }
+    
+    @Test
+    public void updateEmailDirectoryTest_DeleteFailed() throws SQLException {
+        EmailCustom email = createEmail("inbox");
+        data.saveEmail(email);
+        int id = email.getId();
+        MemoryShard from = (MemoryShard)shards.get(id % ShardedMailStorage.MAX_SHARDS);
+        from.failDelete = true;
+        for(String dir : dirs) {
+            email.setDirectory(dir);
+            try {
+                data.updateEmailDirectory(email);
+            }
+            catch(SQLException e) {
+                //the copy is deleted and the email stays where it was
+                assertEquals(1, data.findAll().size());
+                assertEquals("inbox", data.findEmailById(id).getDirectory());
+                return;
+            }
+        }
+        throw new AssertionError("The email was never moved to another shard.");
+    }
+    
+    @Test
+    public void rebalanceTest() throws SQLException {
+        for(String dir : dirs)
+            data.saveEmail(createEmail(dir));
+        data.addShard(new MemoryShard());
+        assertTrue(data.isRebalancing());
+        //old emails are still visible before they are moved
+        for(String dir : dirs)
+            assertEquals(1, data.findAllInDirectory(dir).size());
+        data.rebalance(dirs);
+        assertFalse(data.isRebalancing());
+        for(String dir : dirs)
+            assertEquals(1, data.findAllInDirectory(dir).size());
+        assertEquals(dirs.size(), data.findAll().size());
+    }
+    
+    @Test
+    public void accountKeyTest_OneShard() throws SQLException {
+        ShardedMailStorage byAccount = new ShardedMailStorage(shards, "user@example.com");
+        for(String dir : dirs)
+            byAccount.saveEmail(createEmail(dir));
+        int used = 0;
+        for(MailStorageDAO shard : shards)
+            if(!shard.findAll().isEmpty())
+                used++;
+        assertEquals(1, used);
+    }
+    
+    @Test
+    public void keysetTest_Rebalancing() throws SQLException {
+        List<String> many = new ArrayList<>();
+        for(int i = 0; i < 20; i++)
+            many.add("dir" + i);
+        for(String dir : many)
+            for(int i = 0; i < 5; i++)
+                data.saveEmail(createEmail(dir));
+        data.addShard(new MemoryShard());
+        //the moved directories are now split between two shards
+        for(String dir : many)
+            for(int i = 0; i < 5; i++)
+                data.saveEmail(createEmail(dir));
+        for(boolean ascending : new boolean[] {true, false}) {
+            for(String dir : many) {
+                List<EmailCustom> all = new ArrayList<>();
+                List<EmailCustom> page = data.findAllInDirectory(dir, SortKey.DATE, ascending, null, 3);
+                while(!page.isEmpty()) {
+                    all.addAll(page);
+                    page = data.findAllInDirectory(dir, SortKey.DATE, ascending, 
+                                                   page.get(page.size() - 1), 3);
+                }
+                assertEquals(10, all.size());
+                for(int i = 1; i < all.size(); i++)
+                    assertEquals(ascending, all.get(i - 1).getId() < all.get(i).getId());
+            }
+        }
+    }
+    
+    @Test
+    public void partialEmailsTest() throws SQLException {
+        for(String dir : dirs) {
+            EmailCustom email = createEmail(dir);
+            email.setPartial(true);
+            data.saveEmail(email);
+        }
+        data.saveEmail(createEmail("inbox"));
+        List<EmailCustom> partial = data.findPartialEmails(100);
+        assertEquals(dirs.size(), partial.size());
+        assertEquals(3, data.findPartialEmails(3).size());
+        EmailCustom loaded = partial.get(0);
+        assertTrue(loaded.isPartial());
+        //the content is saved in the shard of the email
+        assertEquals(1, data.saveEmailContent(loaded));
+        assertEquals(0, data.saveEmailContent(loaded));
+        assertEquals(dirs.size() - 1, data.findPartialEmails(100).size());
+    }
+    
+    @Test
+    public void sortKeyTest_Contact() {
+        EmailCustom email = createEmail("sent");
+        assertEquals("cs.517.send@gmail.com", SortKey.contactOf(email, null));
+        assertEquals("cs.517.receive@gmail.com", SortKey.contactOf(email, "cs.517.send@gmail.com"));
+        assertEquals(0, SortKey.dateOf(email).getTime());
+    }
+    
+    @Before
+    public void init() {
+        shards = new ArrayList<>();
+        for(int i = 0; i < 3; i++)
+            shards.add(new MemoryShard());
+        data = new ShardedMailStorage(shards);
+    }
+    
+    /**
+     * Creates new EmailCustom object.
+     * @param dir the directory of the email.
+     * @return new EmailCustom object.
+     */
+    private EmailCustom createEmail(String dir) {
+        EmailCustom email = new EmailCustom();
+        email.setDirectory(dir);
+        email.from("cs.517.send@gmail.com");
+        email.to("cs.517.receive@gmail.com");
+        email.subject("important");
+        return email;
+    }
+    
+    /**
+     * Shard that keeps emails in memory.
+     */
+    private static class MemoryShard implements MailStorageDAO {
+        private final Map<Integer, String> emails = new TreeMap<>();
+        private final Set<Integer> partial = new HashSet<>();
+        private final Set<Integer> seen = new HashSet<>();
+        private int nextId = 1;
+        //true if deleting an email fails
+        private boolean failDelete;
+        
+        @Override
+        public int deleteEmail(int id) throws SQLException {
+            if(failDelete)
+                throw new SQLException("Delete failed.");
+            seen.remove(id);
+            return emails.remove(id) == null ? 0 : 1;
+        }
+
+        @Override
+        public List<EmailCustom> findEmails(int start, int number) {
+            List<EmailCustom> list = new ArrayList<>();
+            for(int id : emails.keySet())
+                list.add(create(id));
+            return list.subList(Math.min(start, list.size()), 
+                                (int)Math.min((long)start + number, list.size()));
+        }
+
+        @Override
+        public List<EmailCustom> findEmails(int number) {
+            return findEmails(0, number);
+        }
+
+        @Override
+        public List<EmailCustom> findAll() {
+            return findEmails(0, Integer.MAX_VALUE);
+        }
+
+        @Override
+        public List<EmailCustom> findAllInDirectory(String directory) {
+            List<EmailCustom> list = new ArrayList<>();
+            for(Map.Entry<Integer, String> e : emails.entrySet())
+                if(e.getValue().equals(directory))
+                    list.add(create(e.getKey()));
+            return list;
+        }
+
+        @Override
+        public List<EmailCustom> findAllInDirectory(String directory, boolean includeArchive) {
+            return findAllInDirectory(directory);
+        }
+
+        @Override
+        public List<EmailCustom> findAllInDirectory(String directory, int start, int number) {
+            List<EmailCustom> list = findAllInDirectory(directory);
+            return list.subList(Math.min(start, list.size()), 
+                                (int)Math.min((long)start + number, list.size()));
+        }
+
+        @Override
+        public List<EmailCustom> findAllInDirectory(String directory, SortKey key, boolean ascending,
+                                                    EmailCustom after, int number) {
+            Comparator<EmailCustom> comparator = key.comparator(null, ascending);
+            List<EmailCustom> list = new ArrayList<>();
+            for(EmailCustom email : findAllInDirectory(directory))
+                if(after == null || comparator.compare(email, after) > 0)
+                    list.add(email);
+            list.sort(comparator);
+            return list.subList(0, Math.min(number, list.size()));
+        }
+
+        @Override
+        public List<EmailCustom> findAllInSearch(String search, SortKey key, boolean ascending,
+                                                 EmailCustom after, int number) {
+            return new ArrayList<>();
+        }
+
+        @Override
+        public int updateEmailSeen(int id, boolean seen) {
+            if(!emails.containsKey(id))
+                return 0;
+            if(seen)
+                this.seen.add(id);
+            else
+                this.seen.remove(id);
+            return 1;
+        }
+
+        @Override
+        public int purgeDeleted(int number) {
+            return 0;
+        }
+
+        @Override
+        public void compactStorage() {
+        }
+
+        @Override
+        public EmailCustom findEmailById(int id) {
+            return emails.containsKey(id) ? create(id) : null;
+        }
+
+        @Override
+        public int saveEmail(EmailCustom email) {
+            int id = nextId++;
+            emails.put(id, email.getDirectory());
+            if(email.isPartial())
+                partial.add(id);
+            email.setId(id);
+            return id;
+        }
+
+        @Override
+        public int saveEmailContent(EmailCustom email) {
+            return partial.remove(email.getId()) ? 1 : 0;
+        }
+
+        @Override
+        public List<EmailCustom> findPartialEmails(int number) {
+            List<EmailCustom> list = new ArrayList<>();
+            for(int id : partial) {
+                EmailCustom email = create(id);
+                email.setPartial(true);
+                list.add(email);
+            }
+            return list.subList(0, Math.min(number, list.size()));
+        }
+
+        @Override
+        public int updateEmailDirectory(EmailCustom email) {
+            if(!emails.containsKey(email.getId()))
+                return 0;
+            emails.put(email.getId(), email.getDirectory());
+            return 1;
+        }
+        
+        @Override
+        public int archiveEmails(Date olderThan) {
+            return 0;
+        }
+        
+        private EmailCustom create(int id) {
+            EmailCustom email = new EmailCustom();
+            email.setId(id);
+            email.setDirectory(emails.get(id));
+            email.setSeen(seen.contains(id));
+            return email;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package ashulzhenko.emailapp.data;
+
+import ashulzhenko.emailapp.rules.MethodLogger;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ * Tests SnapshotCodec.
+ * @author Alena Shulzhenko
+ */
+public class SnapshotCodecTest {
+    private final String[] columns = {"id", "subject", "binarydata", "rcvDate"};
+    private final char[] types = {SnapshotCodec.LONG, SnapshotCodec.TEXT, 
+                                  SnapshotCodec.BYTES, SnapshotCodec.TIMESTAMP};
+    
+    @Rule     
+    public MethodLogger methodLogger = new MethodLogger();
+    
+    @Test
+    public void writeTest_SeveralChunks() throws IOException {
+        byte[] file = write(2500);
+        try(SnapshotCodec.Reader reader = new SnapshotCodec.Reader(new ByteArrayInputStream(file))) {
+            assertEquals("emails", reader.getTable());
+            assertArrayEquals(columns, reader.getColumns());
+            for(int i = 0; i < 2500; i++) {
+                Object[] row = reader.read();
+                assertEquals((long)i, row[0]);
+                assertEquals(i % 2 == 0 ? null : "café " + i, row[1]);
+                assertArrayEquals(new byte[] {(byte)i, 2, 3}, (byte[])row[2]);
+                assertEquals(new Timestamp(1000L * i), row[3]);
+            }
+            assertNull(reader.read());
+        }
+    }
+    
+    @Test
+    public void writeTest_Empty() throws IOException {
+        try(SnapshotCodec.Reader reader = new SnapshotCodec.Reader(new ByteArrayInputStream(write(0)))) {
+            assertNull(reader.read());
+        }
+    }
+    
+    @Test(expected=IOException.class)
+    public void readTest_Damaged() throws IOException {
+        byte[] file = write(10);
+        //changes one byte of the compressed rows
+        file[file.length - 20] ^= 0x55;
+        try(SnapshotCodec.Reader reader = new SnapshotCodec.Reader(new ByteArrayInputStream(file))) {
+            while(reader.read() != null);
+        }
+    }
+    
+    @Test
+    public void typeOfTest() {
+        assertEquals(SnapshotCodec.LONG, SnapshotCodec.typeOf(Types.BIT));
+        assertEquals(SnapshotCodec.BYTES, SnapshotCodec.typeOf(Types.LONGVARBINARY));
+        assertEquals(SnapshotCodec.TEXT, SnapshotCodec.typeOf(Types.LONGVARCHAR));
+    }
+    
+    /**
+     * Writes a table with the given number of rows.
+     * @param rows the number of rows.
+     * @return the content of the table file.
+     */
+    private byte[] write(int rows) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try(SnapshotCodec.Writer writer = new SnapshotCodec.Writer(out, "emails", columns, types)) {
+            for(int i = 0; i < rows; i++)
+                writer.write(new Object[] {i, i % 2 == 0 ? null : "café " + i, 
+                                           new byte[] {(byte)i, 2, 3}, new Timestamp(1000L * i)});
+            assertEquals(rows, writer.getRows());
+        }
+        return out.toByteArray();
+    }
+}
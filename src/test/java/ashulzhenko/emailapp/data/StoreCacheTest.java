@@ -0,0 +1,69 @@
+package ashulzhenko.emailapp.data;
+
+import ashulzhenko.emailapp.bean.UserConfigBean;
+import ashulzhenko.emailapp.rules.MethodLogger;
+import java.util.Arrays;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ * Tests StoreCache without a database.
+ * @author Alena Shulzhenko
+ */
+public class StoreCacheTest {
+    
+    @Rule     
+    public MethodLogger methodLogger = new MethodLogger();
+    
+    @Test
+    public void forUserTest() {
+        UserConfigBean first = new UserConfigBean();
+        first.setMysqlDbName("cacheOne");
+        UserConfigBean second = new UserConfigBean();
+        second.setMysqlDbName("cacheOne");
+        UserConfigBean other = new UserConfigBean();
+        other.setMysqlDbName("cacheTwo");
+        assertSame(StoreCache.forUser(first), StoreCache.forUser(second));
+        assertFalse(StoreCache.forUser(first) == StoreCache.forUser(other));
+    }
+    
+    @Test
+    public void clearDirectoriesTest() {
+        StoreCache cache = cacheOf("cacheClear");
+        cache.putDirectory("inbox", 1, cache.getGeneration());
+        cache.putDirectories(Arrays.asList("inbox", "sent"), cache.getGeneration());
+        cache.putAddress("a@x.com", 7);
+        assertEquals(1, (int)cache.getDirectory("inbox"));
+        assertEquals(Arrays.asList("inbox", "sent"), cache.getDirectories());
+        
+        cache.clearDirectories();
+        assertNull(cache.getDirectory("inbox"));
+        assertNull(cache.getDirectories());
+        assertEquals(7, (int)cache.getAddress("a@x.com"));
+        cache.clear();
+        assertNull(cache.getAddress("a@x.com"));
+    }
+    
+    @Test
+    public void putDirectoryTest_ClearedWhileRead() {
+        StoreCache cache = cacheOf("cacheRace");
+        int generation = cache.getGeneration();
+        cache.clearDirectories();
+        cache.putDirectory("inbox", 1, generation);
+        cache.putDirectories(Arrays.asList("inbox"), generation);
+        assertNull(cache.getDirectory("inbox"));
+        assertNull(cache.getDirectories());
+        assertNull(cache.getAddress(null));
+        assertFalse(cache.isFresh());
+    }
+    
+    private StoreCache cacheOf(String dbName) {
+        UserConfigBean userInfo = new UserConfigBean();
+        userInfo.setMysqlDbName(dbName);
+        return StoreCache.forUser(userInfo);
+    }
+}
@@ -0,0 +1,49 @@
+package ashulzhenko.emailapp.data;
+
+import ashulzhenko.emailapp.bean.EmailCustom;
+import ashulzhenko.emailapp.rules.MethodLogger;
+import java.util.Arrays;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ * Tests ThreadIndex and the reply headers of EmailCustom.
+ * @author Alena Shulzhenko
+ */
+public class ThreadIndexTest {
+    
+    @Rule     
+    public MethodLogger methodLogger = new MethodLogger();
+    
+    @Test
+    public void parseIdsTest() {
+        assertEquals(Arrays.asList("<a@x.com>", "<b@y.com>"), 
+                ThreadIndex.parseIds(" <a@x.com>\r\n\t<b@y.com> garbage"));
+        assertEquals(0, ThreadIndex.parseIds(null).size());
+        assertEquals(0, ThreadIndex.parseIds("no ids").size());
+    }
+    
+    @Test
+    public void normalizeSubjectTest() {
+        assertEquals("Lunch", ThreadIndex.normalizeSubject("Re: FW: re[2]: Lunch "));
+        assertEquals("Lunch", ThreadIndex.normalizeSubject("Lunch"));
+        assertEquals("", ThreadIndex.normalizeSubject(null));
+        assertTrue(ThreadIndex.isReplySubject("RE: Lunch"));
+        assertFalse(ThreadIndex.isReplySubject("Really: Lunch"));
+    }
+    
+    @Test
+    public void setReplyHeadersTest() {
+        EmailCustom original = new EmailCustom();
+        original.setMessageId("<b@y.com>");
+        original.setReferences("<a@x.com>");
+        EmailCustom reply = new EmailCustom();
+        reply.setReplyHeaders(original);
+        assertEquals("<b@y.com>", reply.getInReplyTo());
+        assertEquals(Arrays.asList("<a@x.com>", "<b@y.com>"), 
+                ThreadIndex.parseIds(reply.getReferences()));
+    }
+}
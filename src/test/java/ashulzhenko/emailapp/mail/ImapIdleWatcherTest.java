@@ -0,0 +1,51 @@
+package ashulzhenko.emailapp.mail;
+
+import ashulzhenko.emailapp.rules.MethodLogger;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ * Tests ImapIdleWatcher with sessions that do not connect to a server.
+ * @author Alena Shulzhenko
+ */
+public class ImapIdleWatcherTest {
+
+    @Rule
+    public MethodLogger methodLogger = new MethodLogger();
+
+    @Test
+    public void startTest_NoIdle() {
+        List<ImapSessionPool.PooledSession> opened = new ArrayList<>();
+        ImapSessionPool pool = new ImapSessionPool(() -> {
+            ImapSessionPool.PooledSession session = ImapSessionPoolTest.createFakeSession();
+            opened.add(session);
+            return session;
+        }, 2, 60000);
+        try {
+            ImapIdleWatcher watcher = new ImapIdleWatcher(pool, "INBOX", () -> {});
+            assertFalse(watcher.start());
+            //the connection is closed and not kept for receiving emails
+            assertEquals(1, opened.size());
+            assertFalse(opened.get(0).isAlive());
+            assertEquals(0, pool.idleCount());
+        }
+        finally {
+            pool.close();
+        }
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void constructorTest_NoFolder() {
+        ImapSessionPool pool = new ImapSessionPool(ImapSessionPoolTest::createFakeSession, 1, 0);
+        try {
+            new ImapIdleWatcher(pool, "", () -> {});
+        }
+        finally {
+            pool.close();
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package ashulzhenko.emailapp.mail;
+
+import ashulzhenko.emailapp.rules.MethodLogger;
+import java.util.Properties;
+import javax.mail.Folder;
+import javax.mail.Session;
+import javax.mail.Store;
+import javax.mail.URLName;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ * Tests ImapSessionPool with sessions that do not connect to a server.
+ * @author Alena Shulzhenko
+ */
+public class ImapSessionPoolTest {
+
+    @Rule
+    public MethodLogger methodLogger = new MethodLogger();
+
+    private int opened;
+    private ImapSessionPool pool;
+
+    @After
+    public void close() {
+        if (pool != null)
+            pool.close();
+    }
+
+    @Test
+    public void borrowTest_Reused() {
+        pool = new ImapSessionPool(this::fakeSession, 2, 60000);
+        ImapSessionPool.PooledSession first = pool.borrow();
+        pool.release(first);
+        assertEquals(1, pool.idleCount());
+        assertSame(first, pool.borrow());
+        assertEquals(1, opened);
+    }
+
+    @Test
+    public void borrowTest_Expired() throws InterruptedException {
+        pool = new ImapSessionPool(this::fakeSession, 2, 20);
+        ImapSessionPool.PooledSession first = pool.borrow();
+        pool.release(first);
+        Thread.sleep(50);
+        assertNotSame(first, pool.borrow());
+        assertFalse(first.isAlive());
+        assertEquals(2, opened);
+    }
+
+    @Test
+    public void releaseTest_MaxIdle() {
+        pool = new ImapSessionPool(this::fakeSession, 1, 60000);
+        ImapSessionPool.PooledSession first = pool.borrow();
+        ImapSessionPool.PooledSession second = pool.borrow();
+        pool.release(first);
+        pool.release(second);
+        assertEquals(1, pool.idleCount());
+        assertFalse(second.isAlive());
+    }
+
+    @Test
+    public void keepAliveTest_Dropped() {
+        pool = new ImapSessionPool(this::fakeSession, 2, 60000);
+        ImapSessionPool.PooledSession first = pool.borrow();
+        ImapSessionPool.PooledSession second = pool.borrow();
+        pool.release(first);
+        pool.release(second);
+        //the server closes the connection of the first session
+        first.close();
+        pool.keepAlive();
+        assertEquals(1, pool.idleCount());
+        assertSame(second, pool.borrow());
+        assertTrue(second.isAlive());
+    }
+
+    @Test
+    public void closeTest() {
+        pool = new ImapSessionPool(this::fakeSession, 2, 60000);
+        ImapSessionPool.PooledSession first = pool.borrow();
+        ImapSessionPool.PooledSession second = pool.borrow();
+        pool.release(first);
+        pool.close();
+        assertFalse(first.isAlive());
+        //a session borrowed before is closed once it is given back
+        pool.release(second);
+        assertFalse(second.isAlive());
+        assertEquals(0, pool.idleCount());
+    }
+
+    /**
+     * Creates a session whose store connects without a server.
+     * @return the session that is not open yet.
+     */
+    private ImapSessionPool.PooledSession fakeSession() {
+        opened++;
+        return createFakeSession();
+    }
+
+    /**
+     * Creates a session whose store connects without a server
+     * and does not support any IMAP extension.
+     * @return the session that is not open yet.
+     */
+    static ImapSessionPool.PooledSession createFakeSession() {
+        Session session = Session.getInstance(new Properties());
+        Store store = new Store(session, new URLName("imap://localhost")) {
+            @Override
+            protected boolean protocolConnect(String host, int port, String user, String password) {
+                return true;
+            }
+            @Override
+            public Folder getDefaultFolder() {
+                return null;
+            }
+            @Override
+            public Folder getFolder(String name) {
+                return null;
+            }
+            @Override
+            public Folder getFolder(URLName url) {
+                return null;
+            }
+        };
+        return new ImapSessionPool.PooledSession(session, store);
+    }
+}
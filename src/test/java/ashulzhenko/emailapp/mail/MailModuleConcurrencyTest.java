@@ -0,0 +1,345 @@
+package ashulzhenko.emailapp.mail;
+
+import ashulzhenko.emailapp.bean.EmailCustom;
+import ashulzhenko.emailapp.bean.SendResult;
+import ashulzhenko.emailapp.bean.UserConfigBean;
+import ashulzhenko.emailapp.rules.MethodLogger;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.mail.BodyPart;
+import javax.mail.MessagingException;
+import javax.mail.Multipart;
+import javax.mail.Part;
+import javax.mail.Session;
+import javax.mail.internet.MimeMessage;
+import jodd.mail.EmailAttachment;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ * Tests that one MailModule sends emails from several threads at the same
+ * time to a local SMTP server that keeps the emails it receives.
+ * @author Alena Shulzhenko
+ */
+public class MailModuleConcurrencyTest {
+
+    @Rule
+    public MethodLogger methodLogger = new MethodLogger();
+
+    private static final String FROM = "cs.517.send@gmail.com";
+    private static final String TO = "cs.517.receive@gmail.com";
+    private static final String[] IMAGES = {"src/test/res/c.jpg", "src/test/res/w.jpg"};
+    private static final int THREADS = 8;
+    private static final int EMAILS = 20;
+    private static final int SESSIONS = 3;
+
+    private LocalSmtpServer server;
+    private MailModule mail;
+    private ExecutorService senders;
+
+    @Before
+    public void start() throws IOException {
+        server = new LocalSmtpServer();
+        UserConfigBean userInfo = new UserConfigBean(FROM, "password", 993, "localhost",
+                                                     server.getPort(), "localhost");
+        mail = new MailModule(userInfo, SESSIONS, this::localSession);
+        senders = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @After
+    public void stop() throws IOException {
+        senders.shutdownNow();
+        mail.close();
+        server.close();
+    }
+
+    @Test
+    public void sendEmailTest_Concurrent() throws Exception {
+        List<Future<List<EmailCustom>>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            futures.add(senders.submit(() -> {
+                List<EmailCustom> sent = new ArrayList<>();
+                for (int i = 0; i < EMAILS; i++) {
+                    //every email embeds its own image, so that mixed up emails are noticed
+                    String image = IMAGES[(thread + i) % IMAGES.length];
+                    sent.add(mail.sendEmail(new String[] {TO}, new String[0], new String[0],
+                            subjectOf(thread, i), "<img src='cid:" + nameOf(image) + "'>",
+                            new String[0], new String[] {image}));
+                }
+                return sent;
+            }));
+        }
+        for (int t = 0; t < THREADS; t++) {
+            List<EmailCustom> sent = futures.get(t).get();
+            assertEquals(EMAILS, sent.size());
+            for (int i = 0; i < EMAILS; i++) {
+                EmailCustom email = sent.get(i);
+                assertEquals(subjectOf(t, i), email.getSubject());
+                //the returned email keeps only its own embedded image
+                assertEquals(1, email.getAttachments().size());
+                EmailAttachment image = email.getAttachments().get(0);
+                assertTrue(image.isInline());
+                assertEquals(nameOf(IMAGES[(t + i) % IMAGES.length]), image.getName());
+            }
+        }
+        assertReceived(THREADS * EMAILS);
+    }
+
+    @Test
+    public void sendEmailsTest_Concurrent() throws Exception {
+        List<Callable<List<SendResult>>> batches = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            List<EmailCustom> emails = new ArrayList<>();
+            for (int i = 0; i < EMAILS; i++) {
+                String image = IMAGES[(t + i) % IMAGES.length];
+                emails.add(mail.createEmail(new String[] {TO}, new String[0], new String[0],
+                        subjectOf(t, i), "<img src='cid:" + nameOf(image) + "'>",
+                        new String[0], new String[] {image}, null));
+            }
+            batches.add(() -> mail.sendEmails(emails));
+        }
+        for (Future<List<SendResult>> future : senders.invokeAll(batches))
+            for (SendResult result : future.get())
+                assertTrue(result.toString(), result.isSent());
+        assertReceived(THREADS * EMAILS);
+        //the sessions were reused instead of opened for every email
+        assertTrue(server.getConnections() <= THREADS);
+    }
+
+    /**
+     * Verifies that the server received every email once,
+     * with the image that belongs to it.
+     * @param number the number of emails sent.
+     */
+    private void assertReceived(int number) throws MessagingException, IOException {
+        Map<String, MimeMessage> received = server.getMessages();
+        assertEquals(number, server.getDelivered());
+        assertEquals(number, received.size());
+        for (int t = 0; t < THREADS; t++) {
+            for (int i = 0; i < EMAILS; i++) {
+                MimeMessage message = received.get(subjectOf(t, i));
+                assertNotNull(subjectOf(t, i), message);
+                assertNotNull(findPart(message, nameOf(IMAGES[(t + i) % IMAGES.length])));
+            }
+        }
+    }
+
+    /**
+     * Returns the subject of an email of a thread.
+     * @param thread the number of the thread.
+     * @param email the number of the email.
+     * @return the subject.
+     */
+    private String subjectOf(int thread, int email) {
+        return "thread " + thread + " email " + email;
+    }
+
+    /**
+     * Returns the file name of a path.
+     * @param path the path of the file.
+     * @return the file name.
+     */
+    private String nameOf(String path) {
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
+
+    /**
+     * Finds the part of the email with the file name.
+     * @param part the email or one of its parts.
+     * @param fileName the file name of the part.
+     * @return the part; null if there is none.
+     */
+    private Part findPart(Part part, String fileName) throws MessagingException, IOException {
+        if (fileName.equals(part.getFileName()))
+            return part;
+        if (part.isMimeType("multipart/*")) {
+            Multipart multipart = (Multipart) part.getContent();
+            for (int i = 0; i < multipart.getCount(); i++) {
+                BodyPart body = multipart.getBodyPart(i);
+                Part found = findPart(body, fileName);
+                if (found != null)
+                    return found;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Creates a session of the local server without TLS and login.
+     * @return the session that is not open yet.
+     */
+    private SmtpSessionPool.PooledSession localSession() {
+        Properties properties = new Properties();
+        properties.setProperty("mail.smtp.host", "localhost");
+        properties.setProperty("mail.smtp.port", String.valueOf(server.getPort()));
+        Session session = Session.getInstance(properties);
+        try {
+            return new SmtpSessionPool.PooledSession(session, session.getTransport("smtp"));
+        }
+        catch (MessagingException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * An SMTP server on a local port that accepts every email and keeps it
+     * by its subject. Every connection is served by its own thread.
+     */
+    private static class LocalSmtpServer {
+        private final ServerSocket socket;
+        private final ExecutorService connections = Executors.newCachedThreadPool();
+        private final Map<String, MimeMessage> messages = new ConcurrentHashMap<>();
+        private final AtomicInteger accepted = new AtomicInteger();
+        private final AtomicInteger delivered = new AtomicInteger();
+
+        /**
+         * Starts the server on a free port.
+         */
+        LocalSmtpServer() throws IOException {
+            socket = new ServerSocket(0);
+            connections.execute(this::accept);
+        }
+
+        /**
+         * Returns the port of the server.
+         * @return the local port.
+         */
+        int getPort() {
+            return socket.getLocalPort();
+        }
+
+        /**
+         * Returns the number of connections accepted.
+         * @return the number of connections.
+         */
+        int getConnections() {
+            return accepted.get();
+        }
+
+        /**
+         * Returns the number of emails received, including the emails
+         * received twice.
+         * @return the number of emails.
+         */
+        int getDelivered() {
+            return delivered.get();
+        }
+
+        /**
+         * Returns the emails received by their subject.
+         * @return the emails received.
+         */
+        Map<String, MimeMessage> getMessages() {
+            return messages;
+        }
+
+        /**
+         * Stops the server and its connections.
+         */
+        void close() throws IOException {
+            socket.close();
+            connections.shutdownNow();
+        }
+
+        /**
+         * Accepts the connections until the server is closed.
+         */
+        private void accept() {
+            while (!socket.isClosed()) {
+                try {
+                    Socket client = socket.accept();
+                    accepted.incrementAndGet();
+                    connections.execute(() -> serve(client));
+                }
+                catch (IOException ex) {
+                    //closed
+                }
+            }
+        }
+
+        /**
+         * Answers the commands of one connection.
+         * @param client the connection.
+         */
+        private void serve(Socket client) {
+            try (Socket connection = client;
+                 BufferedReader in = new BufferedReader(new InputStreamReader(
+                         connection.getInputStream(), StandardCharsets.ISO_8859_1))) {
+                OutputStream out = connection.getOutputStream();
+                reply(out, "220 localhost ESMTP");
+                String line;
+                while ((line = in.readLine()) != null) {
+                    String command = line.length() < 4 ? line : line.substring(0, 4).toUpperCase();
+                    switch (command) {
+                        case "EHLO":
+                        case "HELO":
+                            reply(out, "250 localhost");
+                            break;
+                        case "DATA":
+                            reply(out, "354 End data with <CR><LF>.<CR><LF>");
+                            receive(in);
+                            reply(out, "250 OK");
+                            break;
+                        case "QUIT":
+                            reply(out, "221 Bye");
+                            return;
+                        default:
+                            //MAIL, RCPT, RSET and NOOP
+                            reply(out, "250 OK");
+                    }
+                }
+            }
+            catch (IOException | MessagingException ex) {
+                //the client closed the connection
+            }
+        }
+
+        /**
+         * Reads an email up to the line with a single dot and keeps it.
+         * @param in the connection.
+         */
+        private void receive(BufferedReader in) throws IOException, MessagingException {
+            StringBuilder data = new StringBuilder();
+            String line;
+            while ((line = in.readLine()) != null && !line.equals(".")) {
+                data.append(line.startsWith("..") ? line.substring(1) : line).append("\r\n");
+            }
+            MimeMessage message = new MimeMessage(Session.getInstance(new Properties()),
+                    new ByteArrayInputStream(data.toString().getBytes(StandardCharsets.ISO_8859_1)));
+            messages.put(message.getSubject(), message);
+            delivered.incrementAndGet();
+        }
+
+        /**
+         * Sends a reply line to the client.
+         * @param out the connection.
+         * @param line the reply.
+         */
+        private void reply(OutputStream out, String line) throws IOException {
+            out.write((line + "\r\n").getBytes(StandardCharsets.ISO_8859_1));
+            out.flush();
+        }
+    }
+}
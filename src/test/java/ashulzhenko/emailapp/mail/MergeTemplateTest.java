@@ -0,0 +1,176 @@
+package ashulzhenko.emailapp.mail;
+
+import ashulzhenko.emailapp.bean.EmailCustom;
+import ashulzhenko.emailapp.bean.MergeRecipient;
+import ashulzhenko.emailapp.rules.MethodLogger;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import javax.mail.Address;
+import javax.mail.BodyPart;
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.Multipart;
+import javax.mail.Part;
+import javax.mail.Session;
+import javax.mail.Transport;
+import javax.mail.URLName;
+import javax.mail.internet.MimeMessage;
+import javax.mail.internet.MimePart;
+import jodd.io.StreamUtil;
+import jodd.mail.EmailAttachment;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ * Tests MergeTemplate and the sending of its encoded attachments
+ * with sessions that do not connect to a server.
+ * @author Alena Shulzhenko
+ */
+public class MergeTemplateTest {
+
+    @Rule
+    public MethodLogger methodLogger = new MethodLogger();
+
+    private static final String FROM = "cs.517.send@gmail.com";
+    private static final String IMAGE = "src/test/res/c.jpg";
+    private static final String ATTACHMENT = "src/test/res/w.jpg";
+
+    private final List<MimeMessage> delivered = new ArrayList<>();
+
+    @Test
+    public void renderTest() throws IOException {
+        MergeTemplate template = new MergeTemplate("Hello {{name}}", 
+                "<p>Dear {{ name }}, your code is {{code}}.{{missing}}</p>", new String[0], new String[0]);
+        Map<String, String> variables = new HashMap<>();
+        variables.put("name", "Tom & <Jerry>");
+        variables.put("code", "$1\\2");
+        EmailCustom email = template.render(FROM, new MergeRecipient("cs.517.receive@gmail.com", variables));
+        assertEquals("Hello Tom & <Jerry>", email.getSubject());
+        assertEquals("<p>Dear Tom &amp; &lt;Jerry&gt;, your code is $1\\2.</p>", 
+                     email.getAllMessages().get(0).getContent());
+        assertEquals("cs.517.receive@gmail.com", email.getTo()[0].getEmail());
+    }
+
+    @Test
+    public void renderTest_CopiedAttachments() throws IOException {
+        MergeTemplate template = new MergeTemplate("subject", "<img src='cid:c.jpg'>", 
+                new String[] {ATTACHMENT}, new String[] {IMAGE});
+        EmailCustom first = template.render(FROM, recipient("first@gmail.com"));
+        EmailCustom second = template.render(FROM, recipient("second@gmail.com"));
+        assertEquals(2, first.getAttachments().size());
+        for (int i = 0; i < 2; i++) {
+            EmailAttachment a = first.getAttachments().get(i);
+            EmailAttachment b = second.getAttachments().get(i);
+            assertNotSame(a, b);
+            assertArrayEquals(a.toByteArray(), b.toByteArray());
+        }
+        //the embedded image belongs to the message of its own email
+        assertTrue(first.getAttachments().get(0).isEmbeddedInto(first.getAllMessages().get(0)));
+        assertTrue(second.getAttachments().get(0).isEmbeddedInto(second.getAllMessages().get(0)));
+    }
+
+    @Test
+    public void sendTest_EncodedAttachments() throws Exception {
+        MergeTemplate template = new MergeTemplate("subject", "<img src='cid:c.jpg'>", 
+                new String[] {ATTACHMENT}, new String[] {IMAGE});
+        SmtpSessionPool.PooledSession session = fakeSession();
+        session.open();
+        session.sendMail(template.render(FROM, recipient("first@gmail.com")));
+        session.sendMail(template.render(FROM, recipient("second@gmail.com")));
+        session.close();
+
+        assertEquals(2, delivered.size());
+        for (MimeMessage sent : delivered) {
+            //the message is read back as a server would receive it
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            sent.writeTo(out);
+            MimeMessage received = new MimeMessage(Session.getInstance(new Properties()), 
+                                                   new ByteArrayInputStream(out.toByteArray()));
+            Part image = findPart(received, "c.jpg");
+            Part attachment = findPart(received, "w.jpg");
+            assertNotNull(image);
+            assertNotNull(attachment);
+            assertEquals("<c.jpg>", ((MimePart) image).getContentID());
+            assertEquals(Part.INLINE, image.getDisposition());
+            assertEquals(Part.ATTACHMENT, attachment.getDisposition());
+            assertArrayEquals(Files.readAllBytes(new File(IMAGE).toPath()), read(image));
+            assertArrayEquals(Files.readAllBytes(new File(ATTACHMENT).toPath()), read(attachment));
+        }
+    }
+
+    /**
+     * Creates a recipient without values.
+     * @param address the address of the recipient.
+     * @return the recipient.
+     */
+    private MergeRecipient recipient(String address) {
+        return new MergeRecipient(address, Collections.emptyMap());
+    }
+
+    /**
+     * Finds the part of the email with the file name.
+     * @param part the email or one of its parts.
+     * @param fileName the file name of the part.
+     * @return the part; null if there is none.
+     */
+    private Part findPart(Part part, String fileName) throws MessagingException, IOException {
+        if (fileName.equals(part.getFileName()))
+            return part;
+        if (part.isMimeType("multipart/*")) {
+            Multipart multipart = (Multipart) part.getContent();
+            for (int i = 0; i < multipart.getCount(); i++) {
+                BodyPart body = multipart.getBodyPart(i);
+                Part found = findPart(body, fileName);
+                if (found != null)
+                    return found;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reads the decoded content of the part.
+     * @param part the part of the email.
+     * @return the content.
+     */
+    private byte[] read(Part part) throws MessagingException, IOException {
+        try (InputStream in = part.getInputStream()) {
+            return StreamUtil.readBytes(in);
+        }
+    }
+
+    /**
+     * Creates a session whose transport connects without a server
+     * and keeps the delivered emails.
+     * @return the session that is not open yet.
+     */
+    private SmtpSessionPool.PooledSession fakeSession() {
+        Session session = Session.getInstance(new Properties());
+        Transport transport = new Transport(session, new URLName("smtp://localhost")) {
+            @Override
+            protected boolean protocolConnect(String host, int port, String user, String password) {
+                return true;
+            }
+            @Override
+            public void sendMessage(Message message, Address[] addresses) {
+                delivered.add((MimeMessage) message);
+            }
+        };
+        return new SmtpSessionPool.PooledSession(session, transport);
+    }
+}
@@ -0,0 +1,100 @@
+package ashulzhenko.emailapp.mail;
+
+import ashulzhenko.emailapp.bean.EmailCustom;
+import ashulzhenko.emailapp.bean.SyncState;
+import ashulzhenko.emailapp.rules.MethodLogger;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ * Tests ReceivePipeline.
+ * @author Alena Shulzhenko
+ */
+public class ReceivePipelineTest {
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @Rule
+    public MethodLogger methodLogger = new MethodLogger();
+
+    @After
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test(timeout = 10000)
+    public void sendTest_StateBeforeEveryBatch() throws SQLException {
+        SyncState state = new SyncState("INBOX");
+        List<Long> seen = Collections.synchronizedList(new ArrayList<>());
+        ReceivePipeline pipeline = new ReceivePipeline(state, 7, true,
+                emails -> seen.add(state.getLastUid()), 2, executor);
+        pipeline.send(Arrays.asList(new EmailCustom(), new EmailCustom()), 2);
+        pipeline.send(Collections.singletonList(new EmailCustom()), 5);
+        assertEquals(3, pipeline.finish());
+        assertEquals(Arrays.asList(2L, 5L), seen);
+        assertEquals(7, state.getUidValidity());
+        assertEquals(5, state.getLastUid());
+        assertTrue(state.isResync());
+    }
+
+    @Test(timeout = 10000)
+    public void sendTest_WaitsForSlowSink() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger sent = new AtomicInteger();
+        ReceivePipeline pipeline = new ReceivePipeline(new SyncState("INBOX"), 1, false,
+                emails -> await(release), 2, executor);
+        Thread receiver = new Thread(() -> {
+            try {
+                for (int i = 1; i <= 10; i++) {
+                    pipeline.send(Collections.singletonList(new EmailCustom()), i);
+                    sent.incrementAndGet();
+                }
+                pipeline.finish();
+            }
+            catch (SQLException ex) {
+                throw new IllegalStateException(ex);
+            }
+        });
+        receiver.start();
+        Thread.sleep(500);
+        //one batch in the sink and two waiting
+        assertEquals(3, sent.get());
+        assertTrue(receiver.isAlive());
+        release.countDown();
+        receiver.join(5000);
+        assertFalse(receiver.isAlive());
+        assertEquals(10, sent.get());
+    }
+
+    @Test(timeout = 10000, expected = SQLException.class)
+    public void finishTest_SinkFailed() throws SQLException {
+        ReceivePipeline pipeline = new ReceivePipeline(new SyncState("INBOX"), 1, false,
+                emails -> { throw new SQLException("disk full"); }, 1, executor);
+        //the receiver learns about the failure once the queue is full or at the end
+        for (int i = 1; i <= 3; i++)
+            pipeline.send(Collections.singletonList(new EmailCustom()), i);
+        pipeline.finish();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package ashulzhenko.emailapp.mail;
+
+import ashulzhenko.emailapp.rules.MethodLogger;
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ * Tests SendRate.
+ * @author Alena Shulzhenko
+ */
+public class SendRateTest {
+    private static final String SERVER = "smtp.example.com";
+
+    @Rule
+    public MethodLogger methodLogger = new MethodLogger();
+
+    @After
+    public void removeLimit() {
+        SendRate.removeLimit(SERVER);
+    }
+
+    @Test
+    public void forServerTest_NotLimited() {
+        assertNull(SendRate.forServer(SERVER));
+        assertNull(SendRate.forServer(null));
+    }
+
+    @Test
+    public void reserveTest_Spread() {
+        SendRate.setLimit(SERVER, 60);
+        SendRate rate = SendRate.forServer(SERVER);
+        assertEquals(60, rate.getLimit());
+        //a burst is sent at once after a quiet period
+        for (int i = 0; i < 5; i++)
+            assertEquals(0, rate.reserve());
+        //the next emails wait one second each
+        long wait = rate.reserve();
+        assertTrue(wait > TimeUnit.MILLISECONDS.toNanos(900) && wait <= TimeUnit.SECONDS.toNanos(1));
+        assertTrue(rate.reserve() > TimeUnit.MILLISECONDS.toNanos(1900));
+        //a time given back is used by the next email
+        rate.release();
+        assertTrue(rate.reserve() <= TimeUnit.SECONDS.toNanos(2));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void setLimitTest_Invalid() {
+        SendRate.setLimit(SERVER, 0);
+    }
+}
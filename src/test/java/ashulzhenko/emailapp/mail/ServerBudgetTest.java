@@ -0,0 +1,49 @@
+package ashulzhenko.emailapp.mail;
+
+import ashulzhenko.emailapp.rules.MethodLogger;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ * Tests ServerBudget.
+ * @author Alena Shulzhenko
+ */
+public class ServerBudgetTest {
+    private static final String SERVER = "imap.example.com";
+
+    @Rule
+    public MethodLogger methodLogger = new MethodLogger();
+
+    @After
+    public void removeLimit() {
+        ServerBudget.removeLimit(SERVER);
+    }
+
+    @Test
+    public void forServerTest_NotLimited() {
+        assertNull(ServerBudget.forServer(SERVER));
+        assertNull(ServerBudget.forServer(null));
+    }
+
+    @Test
+    public void acquireTest_Shared() {
+        ServerBudget.setLimit(SERVER, 2);
+        //every account of the server uses the same budget
+        ServerBudget budget = ServerBudget.forServer(SERVER);
+        assertSame(budget, ServerBudget.forServer(SERVER));
+        budget.acquire();
+        budget.acquire();
+        assertEquals(0, budget.available());
+        budget.release();
+        assertEquals(1, budget.available());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void setLimitTest_Invalid() {
+        ServerBudget.setLimit(SERVER, 0);
+    }
+}
@@ -0,0 +1,178 @@
+package ashulzhenko.emailapp.mail;
+
+import ashulzhenko.emailapp.bean.EmailCustom;
+import ashulzhenko.emailapp.rules.MethodLogger;
+import com.sun.mail.smtp.SMTPTransport;
+import java.util.Properties;
+import javax.mail.Address;
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.Session;
+import javax.mail.Transport;
+import javax.mail.URLName;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ * Tests SmtpSessionPool with sessions that do not connect to a server.
+ * @author Alena Shulzhenko
+ */
+public class SmtpSessionPoolTest {
+
+    @Rule
+    public MethodLogger methodLogger = new MethodLogger();
+
+    private int opened;
+    private int delivered;
+    private SmtpSessionPool pool;
+
+    @After
+    public void close() {
+        if (pool != null)
+            pool.close();
+    }
+
+    @Test
+    public void borrowTest_Reused() throws MessagingException {
+        pool = new SmtpSessionPool(this::fakeSession, 2, 60000);
+        SmtpSessionPool.PooledSession first = pool.borrow();
+        first.sendMail(createEmail());
+        pool.release(first);
+        assertEquals(1, pool.idleCount());
+        SmtpSessionPool.PooledSession again = pool.borrow();
+        assertSame(first, again);
+        //the connection is still held, so it can be reset for the next email
+        again.reset();
+        again.sendMail(createEmail());
+        assertEquals(1, opened);
+        assertEquals(2, delivered);
+    }
+
+    @Test
+    public void releaseTest_Exhausted() {
+        pool = new SmtpSessionPool(this::fakeSession, 2, 60000);
+        SmtpSessionPool.PooledSession first = pool.borrow();
+        for (int i = 0; i < SmtpSessionPool.MAX_MESSAGES; i++)
+            first.sendMail(createEmail());
+        assertTrue(first.isExhausted());
+        pool.release(first);
+        assertEquals(0, pool.idleCount());
+        assertFalse(first.isAlive());
+        assertNotSame(first, pool.borrow());
+    }
+
+    @Test(expected = MessagingException.class)
+    public void resetTest_Closed() throws MessagingException {
+        pool = new SmtpSessionPool(this::fakeSession, 2, 60000);
+        SmtpSessionPool.PooledSession first = pool.borrow();
+        first.sendMail(createEmail());
+        //the server closes the connection
+        first.close();
+        first.reset();
+    }
+
+    @Test
+    public void resetTest_Refused() {
+        pool = new SmtpSessionPool(this::refusingSession, 2, 60000);
+        SmtpSessionPool.PooledSession first = pool.borrow();
+        first.sendMail(createEmail());
+        try {
+            first.reset();
+            fail();
+        }
+        catch (MessagingException ex) {
+            //the connection is open, but it is not used again
+            assertFalse(first.isAlive());
+        }
+    }
+
+    @Test
+    public void closeExpiredTest() throws InterruptedException {
+        pool = new SmtpSessionPool(this::fakeSession, 2, 60000);
+        SmtpSessionPool.PooledSession first = pool.borrow();
+        pool.release(first);
+        pool.closeExpired();
+        assertEquals(1, pool.idleCount());
+        pool.close();
+        pool = new SmtpSessionPool(this::fakeSession, 2, 20);
+        SmtpSessionPool.PooledSession second = pool.borrow();
+        pool.release(second);
+        Thread.sleep(50);
+        pool.closeExpired();
+        assertEquals(0, pool.idleCount());
+        assertFalse(second.isAlive());
+    }
+
+    /**
+     * Creates an email that can be sent.
+     * @return the email.
+     */
+    private EmailCustom createEmail() {
+        EmailCustom email = new EmailCustom();
+        email.from("cs.517.send@gmail.com").to("cs.517.receive@gmail.com")
+             .subject("pooled").addText("a very important message");
+        return email;
+    }
+
+    /**
+     * Creates a session whose transport connects without a server
+     * and counts the delivered emails.
+     * @return the session that is not open yet.
+     */
+    private SmtpSessionPool.PooledSession fakeSession() {
+        opened++;
+        Session session = Session.getInstance(new Properties());
+        Transport transport = new Transport(session, new URLName("smtp://localhost")) {
+            @Override
+            protected boolean protocolConnect(String host, int port, String user, String password) {
+                return true;
+            }
+            @Override
+            public void sendMessage(Message message, Address[] addresses) {
+                delivered++;
+            }
+        };
+        return new SmtpSessionPool.PooledSession(session, transport);
+    }
+
+    /**
+     * Creates a session whose server keeps the connection open
+     * but refuses RSET.
+     * @return the session that is not open yet.
+     */
+    private SmtpSessionPool.PooledSession refusingSession() {
+        Session session = Session.getInstance(new Properties());
+        SMTPTransport transport = new SMTPTransport(session, new URLName("smtp://localhost")) {
+            private boolean connected;
+            @Override
+            protected boolean protocolConnect(String host, int port, String user, String password) {
+                connected = true;
+                return true;
+            }
+            @Override
+            public synchronized boolean isConnected() {
+                return connected;
+            }
+            @Override
+            public synchronized void close() {
+                connected = false;
+            }
+            @Override
+            public synchronized int simpleCommand(String command) {
+                return 502;
+            }
+            @Override
+            public void sendMessage(Message message, Address[] addresses) {
+                delivered++;
+            }
+        };
+        return new SmtpSessionPool.PooledSession(session, transport);
+    }
+}